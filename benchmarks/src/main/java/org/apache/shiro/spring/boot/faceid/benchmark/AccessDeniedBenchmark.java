@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.benchmark;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.shiro.biz.authc.AuthcResponse;
+import org.apache.shiro.biz.web.servlet.http.HttpStatus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import com.alibaba.fastjson.JSONObject;
+
+/**
+ * onAccessDenied 固定失败响应：登录地址的非 POST 请求、未认证的 Ajax 请求，
+ * 以及逐次经 fastjson 序列化的对照组
+ * @author 		： <a href="https://github.com/hiwepy">wandl</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = { "-Xms1g", "-Xmx1g" })
+public class AccessDeniedBenchmark {
+
+	private BenchmarkFaceIDFilter filter;
+
+	@Setup
+	public void setup() {
+		filter = new BenchmarkFaceIDFilter();
+	}
+
+	@Benchmark
+	public MockHttpServletResponse loginNotPost() throws Exception {
+		MockHttpServletRequest request = BenchmarkFaceIDFilter.request(new MockHttpServletRequest(), "GET",
+				BenchmarkFaceIDFilter.LOGIN_URL);
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		filter.accessDenied(request, response);
+		return response;
+	}
+
+	@Benchmark
+	public MockHttpServletResponse unauthenticatedAjax() throws Exception {
+		MockHttpServletRequest request = BenchmarkFaceIDFilter.request(new MockHttpServletRequest(), "GET", "/api/profile");
+		request.addHeader("X-Requested-With", "XMLHttpRequest");
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		filter.accessDenied(request, response);
+		return response;
+	}
+
+	/**
+	 * 对照组：每次构建 AuthcResponse 并经 fastjson 写出
+	 */
+	@Benchmark
+	public MockHttpServletResponse fastjsonPerRequest() throws Exception {
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		response.setStatus(HttpStatus.SC_OK);
+		response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+		response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+		JSONObject.writeJSONString(response.getWriter(), AuthcResponse.fail(HttpStatus.SC_UNAUTHORIZED,
+				"Attempting to access a path which requires authentication. "));
+		return response;
+	}
+
+}
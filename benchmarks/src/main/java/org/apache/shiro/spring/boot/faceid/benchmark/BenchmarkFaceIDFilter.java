@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.benchmark;
+
+import java.util.Random;
+
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+
+import org.apache.shiro.authc.AuthenticationToken;
+import org.apache.shiro.biz.authc.AuthenticationSuccessHandler;
+import org.apache.shiro.spring.boot.faceid.authc.FaceIDAuthenticatingFilter;
+import org.apache.shiro.subject.Subject;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+/**
+ * 基准测试用过滤器：公开受保护的登录环节。登录成功后仍经过 {@link FaceIDAuthenticatingFilter#onLoginSuccess} 的计时，
+ * 只有 shiro-biz 对成功处理器的分发（依赖其 Spring 装配）替换为直接调用指定的成功处理器
+ * @author 		： <a href="https://github.com/hiwepy">wandl</a>
+ */
+public class BenchmarkFaceIDFilter extends FaceIDAuthenticatingFilter {
+
+	public static final String LOGIN_URL = "/login/faceid";
+
+	private AuthenticationSuccessHandler successHandler;
+
+	public BenchmarkFaceIDFilter() {
+		super();
+		setLoginUrl(LOGIN_URL);
+	}
+
+	public AuthenticationToken newToken(ServletRequest request, ServletResponse response) {
+		return createToken(request, response);
+	}
+
+	public boolean accessDenied(ServletRequest request, ServletResponse response) throws Exception {
+		return onAccessDenied(request, response);
+	}
+
+	public boolean login(ServletRequest request, ServletResponse response) throws Exception {
+		return executeLogin(request, response);
+	}
+
+	@Override
+	protected boolean dispatchLoginSuccess(AuthenticationToken token, Subject subject, ServletRequest request,
+			ServletResponse response) throws Exception {
+		if (successHandler != null) {
+			successHandler.onAuthenticationSuccess(token, request, response, subject);
+		}
+		return false;
+	}
+
+	public void setSuccessHandler(AuthenticationSuccessHandler successHandler) {
+		this.successHandler = successHandler;
+	}
+
+	/**
+	 * 新版 Shiro 按 servletPath + pathInfo 匹配路径，模拟请求需同时设置 servletPath
+	 */
+	public static <T extends MockHttpServletRequest> T request(T request, String method, String uri) {
+		request.setMethod(method);
+		request.setRequestURI(uri);
+		request.setServletPath(uri);
+		return request;
+	}
+
+	/**
+	 * @param size 字节数
+	 * @return 固定种子生成的伪图片数据，各次运行保持一致
+	 */
+	public static byte[] image(int size) {
+		byte[] image = new byte[size];
+		new Random(size).nextBytes(image);
+		// JPEG SOI 标记
+		image[0] = (byte) 0xFF;
+		image[1] = (byte) 0xD8;
+		return image;
+	}
+
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * 运行全部人脸登录基准并启用 GC 分析（分配速率 gc.alloc.rate.norm），结果写入 target/jmh-result.json 作为比较基线。
+ * 命令行参数与 JMH 相同，如 {@code FaceIDBenchmarks FaceLoginBenchmark -f 1}
+ * @author 		： <a href="https://github.com/hiwepy">wandl</a>
+ */
+public class FaceIDBenchmarks {
+
+	public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+		CommandLineOptions commandLine = new CommandLineOptions(args);
+		OptionsBuilder builder = new OptionsBuilder();
+		if (commandLine.getIncludes().isEmpty()) {
+			builder.include(FaceIDBenchmarks.class.getPackage().getName() + ".*Benchmark");
+		}
+		Options options = builder
+				.parent(commandLine)
+				.addProfiler(GCProfiler.class)
+				.resultFormat(ResultFormatType.JSON)
+				.result("target/jmh-result.json")
+				.build();
+		new Runner(options).run();
+	}
+
+}
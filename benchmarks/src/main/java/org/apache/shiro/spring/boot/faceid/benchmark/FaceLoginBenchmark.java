@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.benchmark;
+
+import java.security.SecureRandom;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.shiro.authc.AuthenticationException;
+import org.apache.shiro.authc.AuthenticationInfo;
+import org.apache.shiro.authc.AuthenticationToken;
+import org.apache.shiro.authc.SimpleAuthenticationInfo;
+import org.apache.shiro.authc.credential.AllowAllCredentialsMatcher;
+import org.apache.shiro.biz.authz.principal.ShiroPrincipal;
+import org.apache.shiro.mgt.DefaultSubjectDAO;
+import org.apache.shiro.spring.boot.faceid.FaceInfo;
+import org.apache.shiro.spring.boot.faceid.authc.FaceIDAuthenticationSuccessHandler;
+import org.apache.shiro.spring.boot.faceid.authc.FaceRecognitionProvider;
+import org.apache.shiro.spring.boot.faceid.realm.FaceIDStatefulAuthorizingRealm;
+import org.apache.shiro.spring.boot.faceid.token.FaceIDLoginToken;
+import org.apache.shiro.spring.boot.faceid.token.FaceIDSessionTokenCodec;
+import org.apache.shiro.util.ThreadContext;
+import org.apache.shiro.web.mgt.DefaultWebSecurityManager;
+import org.apache.shiro.web.mgt.DefaultWebSessionStorageEvaluator;
+import org.apache.shiro.web.subject.WebSubject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+/**
+ * 完整的同步人脸登录：过滤器创建令牌 → Subject.login → FaceIDStatefulAuthorizingRealm → 桩识别服务 → 登录成功响应。
+ * 桩识别服务立即返回，测得的是本组件自身的开销。
+ * @author 		： <a href="https://github.com/hiwepy">wandl</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = { "-Xms1g", "-Xmx1g" })
+public class FaceLoginBenchmark {
+
+	/**
+	 * 登录成功后是否签发无状态会话令牌
+	 */
+	@Param({ "false", "true" })
+	private boolean sessionToken;
+
+	private byte[] image;
+	private DefaultWebSecurityManager securityManager;
+	private BenchmarkFaceIDFilter filter;
+
+	@Setup
+	public void setup() {
+		image = BenchmarkFaceIDFilter.image(64 * 1024);
+
+		StubRealm realm = new StubRealm();
+		realm.setCredentialsMatcher(new AllowAllCredentialsMatcher());
+		realm.setFaceRecognitionProvider(new StubFaceRecognitionProvider());
+
+		securityManager = new DefaultWebSecurityManager(realm);
+		securityManager.setRememberMeManager(null);
+		DefaultWebSessionStorageEvaluator evaluator = new DefaultWebSessionStorageEvaluator();
+		evaluator.setSessionStorageEnabled(false);
+		((DefaultSubjectDAO) securityManager.getSubjectDAO()).setSessionStorageEvaluator(evaluator);
+
+		FaceIDSessionTokenCodec codec = null;
+		if (sessionToken) {
+			byte[] secret = new byte[32];
+			new SecureRandom().nextBytes(secret);
+			Map<String, byte[]> secrets = Collections.singletonMap("k1", secret);
+			codec = new FaceIDSessionTokenCodec("k1", secrets, TimeUnit.HOURS.toMillis(2));
+		}
+		filter = new BenchmarkFaceIDFilter();
+		filter.setFaceRecognitionProvider(realm.getFaceRecognitionProvider());
+		filter.setSuccessHandler(new FaceIDAuthenticationSuccessHandler(codec));
+	}
+
+	@Benchmark
+	public MockHttpServletResponse login() throws Exception {
+		MockHttpServletRequest request = BenchmarkFaceIDFilter.request(new MockHttpServletRequest(), "POST",
+				BenchmarkFaceIDFilter.LOGIN_URL);
+		request.setContentType(MediaType.IMAGE_JPEG_VALUE);
+		request.setContent(image);
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		WebSubject.Builder builder = new WebSubject.Builder(securityManager, request, response);
+		builder.sessionCreationEnabled(false);
+		ThreadContext.bind(builder.buildWebSubject());
+		try {
+			filter.login(request, response);
+		} finally {
+			ThreadContext.unbindSubject();
+		}
+		return response;
+	}
+
+	/**
+	 * 立即返回固定结果的识别服务
+	 */
+	static class StubFaceRecognitionProvider implements FaceRecognitionProvider {
+
+		@Override
+		public FaceInfo loadFaceInfo(AuthenticationToken token) {
+			FaceInfo faceInfo = new FaceInfo();
+			faceInfo.setFaceId("benchmark");
+			faceInfo.setScore(0.92f);
+			return faceInfo;
+		}
+
+	}
+
+	/**
+	 * 内存账号：按人脸ID直接构建用户信息，不依赖账号仓库
+	 */
+	public static class StubRealm extends FaceIDStatefulAuthorizingRealm {
+
+		private final Set<String> roles = new HashSet<String>(Collections.singletonList("user"));
+		private final Set<String> perms = new HashSet<String>(Collections.singletonList("profile:view"));
+
+		@Override
+		protected AuthenticationInfo loadAuthenticationInfo(FaceIDLoginToken token) throws AuthenticationException {
+			ShiroPrincipal principal = new ShiroPrincipal();
+			principal.setUserid(token.getUsername());
+			principal.setUserkey(token.getUsername());
+			principal.setUsername(token.getUsername());
+			principal.setRoles(roles);
+			principal.setPerms(perms);
+			return new SimpleAuthenticationInfo(principal, token.getCredentials(), getName());
+		}
+
+	}
+
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.benchmark;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.shiro.spring.boot.faceid.authc.FaceIDAuthenticatingFilter;
+import org.apache.shiro.spring.boot.faceid.token.FaceIDLoginToken;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockMultipartHttpServletRequest;
+import org.springframework.mock.web.MockPart;
+
+/**
+ * FaceIDLoginToken 创建：按请求格式读取人脸图片并放入池化缓冲区
+ * @author 		： <a href="https://github.com/hiwepy">wandl</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = { "-Xms1g", "-Xmx1g" })
+public class LoginTokenBenchmark {
+
+	/**
+	 * 请求格式：二进制请求体、base64 文本请求体、multipart 文件
+	 */
+	@Param({ "image", "base64", "multipart" })
+	private String format;
+
+	@Param({ "65536", "262144" })
+	private int size;
+
+	private byte[] image;
+	private byte[] base64;
+	private BenchmarkFaceIDFilter filter;
+
+	@Setup
+	public void setup() {
+		image = BenchmarkFaceIDFilter.image(size);
+		base64 = Base64.getEncoder().encodeToString(image).getBytes(StandardCharsets.US_ASCII);
+		filter = new BenchmarkFaceIDFilter();
+	}
+
+	@Benchmark
+	public FaceIDLoginToken createToken() {
+		FaceIDLoginToken token = (FaceIDLoginToken) filter.newToken(request(), new MockHttpServletResponse());
+		token.releasePayload();
+		return token;
+	}
+
+	private MockHttpServletRequest request() {
+		if ("multipart".equals(format)) {
+			MockMultipartHttpServletRequest request = BenchmarkFaceIDFilter.request(new MockMultipartHttpServletRequest(),
+					"POST", BenchmarkFaceIDFilter.LOGIN_URL);
+			MockPart part = new MockPart(FaceIDAuthenticatingFilter.DEFAULT_FACE_PARAM, "face.jpg", image);
+			part.getHeaders().setContentType(MediaType.IMAGE_JPEG);
+			request.addPart(part);
+			return request;
+		}
+		MockHttpServletRequest request = BenchmarkFaceIDFilter.request(new MockHttpServletRequest(), "POST",
+				BenchmarkFaceIDFilter.LOGIN_URL);
+		if ("base64".equals(format)) {
+			request.setContentType(MediaType.TEXT_PLAIN_VALUE);
+			request.setContent(base64);
+		} else {
+			request.setContentType(MediaType.IMAGE_JPEG_VALUE);
+			request.setContent(image);
+		}
+		return request;
+	}
+
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.shiro.spring.boot.faceid.image.FaceImageBufferPool;
+import org.apache.shiro.spring.boot.faceid.image.FaceImagePayload;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * FaceInfo.face（base64）解码：池化增量解码与 JDK 一次性解码的对比
+ * @author 		： <a href="https://github.com/hiwepy">wandl</a>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = { "-Xms1g", "-Xmx1g" })
+public class PayloadDecodeBenchmark {
+
+	private static final int MAX_IMAGE_BYTES = 4 * 1024 * 1024;
+
+	/**
+	 * 解码后的图片字节数：16KB 缩略图、256KB 手机压缩图、1MB 原图
+	 */
+	@Param({ "16384", "262144", "1048576" })
+	private int size;
+
+	private String face;
+	private byte[] faceBytes;
+	private FaceImageBufferPool pool;
+
+	@Setup
+	public void setup() {
+		face = Base64.getEncoder().encodeToString(BenchmarkFaceIDFilter.image(size));
+		faceBytes = face.getBytes();
+		pool = new FaceImageBufferPool();
+	}
+
+	/**
+	 * 基准：String → byte[] 一次性解码
+	 */
+	@Benchmark
+	public byte[] jdkDecode() {
+		return Base64.getDecoder().decode(face);
+	}
+
+	@Benchmark
+	public int pooledDecode() throws IOException {
+		try (FaceImagePayload payload = FaceImagePayload.decode(face, MAX_IMAGE_BYTES, pool)) {
+			return payload.length();
+		}
+	}
+
+	/**
+	 * text/plain 请求体边读边解码
+	 */
+	@Benchmark
+	public int pooledStreamDecode() throws IOException {
+		try (FaceImagePayload payload = FaceImagePayload.decode(new ByteArrayInputStream(faceBytes), faceBytes.length,
+				MAX_IMAGE_BYTES, pool)) {
+			return payload.length();
+		}
+	}
+
+}
@@ -0,0 +1,310 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.benchmark.loadtest;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.shiro.authc.credential.AllowAllCredentialsMatcher;
+import org.apache.shiro.mgt.DefaultSubjectDAO;
+import org.apache.shiro.spring.boot.faceid.authc.FaceIDAuthenticationSuccessHandler;
+import org.apache.shiro.spring.boot.faceid.benchmark.BenchmarkFaceIDFilter;
+import org.apache.shiro.spring.boot.faceid.benchmark.FaceLoginBenchmark;
+import org.apache.shiro.spring.boot.faceid.token.FaceIDSessionTokenCodec;
+import org.apache.shiro.web.mgt.DefaultWebSecurityManager;
+import org.apache.shiro.web.mgt.DefaultWebSessionStorageEvaluator;
+
+/**
+ * 人脸登录压测：内嵌 Tomcat 运行 FaceIDAuthenticatingFilter，识别服务替换为 {@link SimulatedFaceRecognitionProvider}，
+ * 按目标速率开环回放 FaceInfo 数据集，依次压测各登录模式并并排输出：
+ * <ul>
+ * <li>sync：容器线程上同步识别，登录后写入 HttpSession</li>
+ * <li>async：Servlet 异步处理，识别期间释放容器线程，登录后写入 HttpSession</li>
+ * <li>stateless：不创建会话，同步识别后签发无状态会话令牌</li>
+ * </ul>
+ * 每个模式使用独立的服务端实例，先预热再测量；结果同时写入 CSV 作为比较基线。
+ * 参数形如 {@code --rate=500 --duration=60 --modes=sync,async --latency=lognormal:20,120 --replay=/data/faces}，
+ * 完整列表见 {@code --help}。
+ * @author 		： <a href="https://github.com/hiwepy">wandl</a>
+ */
+public class FaceIDLoadTest {
+
+	/**
+	 * 登录模式
+	 */
+	public enum Mode {
+		SYNC, ASYNC, STATELESS
+	}
+
+	private static final String[][] OPTIONS = {
+		{ "rate", "200", "目标速率（请求/秒）" },
+		{ "duration", "30", "每个模式的测量时长（秒）" },
+		{ "warmup", "10", "每个模式的预热时长（秒）" },
+		{ "modes", "sync,async,stateless", "压测的登录模式" },
+		{ "arrival", "poisson", "到达过程：poisson | constant" },
+		{ "latency", "lognormal:20,120", "识别耗时分布：fixed:<ms> | uniform:<min>-<max> | lognormal:<p50>,<p99>" },
+		{ "reject-rate", "0.05", "识别未匹配比例" },
+		{ "error-rate", "0.01", "识别后端异常比例" },
+		{ "replay", "", "录制的 FaceInfo 目录，为空时使用合成数据" },
+		{ "faces", "1000", "合成数据的人脸数" },
+		{ "image-bytes", "65536", "合成图片大小（字节）" },
+		{ "max-threads", "200", "容器线程数上限" },
+		{ "recognition-threads", "2", "异步识别完成线程数" },
+		{ "connections", "512", "客户端并发连接数" },
+		{ "timeout", "10000", "请求超时（毫秒），同时作为异步登录超时" },
+		{ "result", "target/loadtest-result.csv", "结果文件" }
+	};
+
+	/**
+	 * 保持引用，避免 JUL 配置被回收
+	 */
+	private static final Logger TOMCAT_LOGGER = Logger.getLogger("org.apache");
+
+	public static void main(String[] args) throws Exception {
+		Map<String, String> options = parse(args);
+		if (options == null) {
+			usage(System.out);
+			return;
+		}
+		TOMCAT_LOGGER.setLevel(Level.WARNING);
+		int connections = Integer.parseInt(options.get("connections"));
+		// HttpURLConnection 默认每个地址只保留 5 个空闲连接
+		System.setProperty("http.maxConnections", String.valueOf(connections));
+
+		String replay = options.get("replay");
+		int imageBytes = Integer.parseInt(options.get("image-bytes"));
+		FaceReplaySet replaySet = replay.isEmpty() ? FaceReplaySet.synthetic(Integer.parseInt(options.get("faces")), imageBytes)
+				: FaceReplaySet.load(Paths.get(replay), imageBytes);
+
+		List<ModeReport> reports = new ArrayList<ModeReport>();
+		for (String name : options.get("modes").split(",")) {
+			Mode mode = Mode.valueOf(name.trim().toUpperCase(Locale.ROOT));
+			System.out.println("Running " + mode + " ...");
+			reports.add(run(mode, options, replaySet));
+		}
+		print(reports, options, replaySet, System.out);
+		write(reports, Paths.get(options.get("result")));
+	}
+
+	static ModeReport run(Mode mode, Map<String, String> options, FaceReplaySet replaySet) throws Exception {
+		double rate = Double.parseDouble(options.get("rate"));
+		long warmupMillis = TimeUnit.SECONDS.toMillis(Long.parseLong(options.get("warmup")));
+		long durationMillis = TimeUnit.SECONDS.toMillis(Long.parseLong(options.get("duration")));
+		OpenLoopLoadGenerator.Arrival arrival = OpenLoopLoadGenerator.Arrival.valueOf(options.get("arrival").toUpperCase(Locale.ROOT));
+		int timeoutMillis = Integer.parseInt(options.get("timeout"));
+
+		try (SimulatedFaceRecognitionProvider provider = new SimulatedFaceRecognitionProvider(replaySet,
+				LatencyDistribution.parse(options.get("latency")), Double.parseDouble(options.get("reject-rate")),
+				Double.parseDouble(options.get("error-rate")), Integer.parseInt(options.get("recognition-threads")))) {
+
+			FaceLoginBenchmark.StubRealm realm = new FaceLoginBenchmark.StubRealm();
+			realm.setCredentialsMatcher(new AllowAllCredentialsMatcher());
+			realm.setFaceRecognitionProvider(provider);
+			DefaultWebSecurityManager securityManager = new DefaultWebSecurityManager(realm);
+			securityManager.setRememberMeManager(null);
+
+			LoadTestFaceIDFilter filter = new LoadTestFaceIDFilter();
+			filter.setFaceRecognitionProvider(provider);
+			FaceIDSessionTokenCodec codec = null;
+			if (mode == Mode.STATELESS) {
+				DefaultWebSessionStorageEvaluator evaluator = new DefaultWebSessionStorageEvaluator();
+				evaluator.setSessionStorageEnabled(false);
+				((DefaultSubjectDAO) securityManager.getSubjectDAO()).setSessionStorageEvaluator(evaluator);
+				byte[] secret = new byte[32];
+				new SecureRandom().nextBytes(secret);
+				codec = new FaceIDSessionTokenCodec("k1", Collections.singletonMap("k1", secret), TimeUnit.HOURS.toMillis(2));
+				filter.setSessionStateless(true);
+				filter.setSessionTokenCodec(codec);
+			}
+			if (mode == Mode.ASYNC) {
+				filter.setAsyncEnabled(true);
+				filter.setAsyncFaceRecognitionProvider(provider);
+				filter.setAsyncTimeout(timeoutMillis);
+			}
+			filter.setSuccessHandler(new FaceIDAuthenticationSuccessHandler(codec));
+
+			LoadTestServer server = new LoadTestServer(securityManager, filter, Integer.parseInt(options.get("max-threads")));
+			server.start();
+			try (OpenLoopLoadGenerator generator = new OpenLoopLoadGenerator(
+					"http://127.0.0.1:" + server.getPort() + BenchmarkFaceIDFilter.LOGIN_URL, filter.getFaceTokenParam(),
+					replaySet, Integer.parseInt(options.get("connections")), timeoutMillis);
+					ServerResourceMonitor monitor = new ServerResourceMonitor("http-", SimulatedFaceRecognitionProvider.THREAD_NAME_PREFIX)) {
+				if (warmupMillis > 0) {
+					generator.run(rate, warmupMillis, arrival);
+				}
+				monitor.addPool("container", server.getExecutor());
+				if (mode == Mode.ASYNC) {
+					monitor.addPool("recognition", provider.getScheduler());
+				}
+				monitor.start();
+				OpenLoopLoadGenerator.LoadResult result = generator.run(rate, durationMillis, arrival);
+				long allocated = monitor.stop();
+				return new ModeReport(mode, result, monitor.getPools(), allocated);
+			} finally {
+				server.close();
+			}
+		}
+	}
+
+	static void print(List<ModeReport> reports, Map<String, String> options, FaceReplaySet replaySet, PrintStream out) {
+		out.println();
+		out.printf("target %s req/s (%s), %s s after %s s warmup, %d faces, recognition %s, reject %s, error %s%n",
+				options.get("rate"), options.get("arrival"), options.get("duration"), options.get("warmup"),
+				replaySet.size(), options.get("latency"), options.get("reject-rate"), options.get("error-rate"));
+		StringBuilder header = new StringBuilder(String.format("%-34s", ""));
+		for (ModeReport report : reports) {
+			header.append(String.format("%16s", report.mode.name().toLowerCase(Locale.ROOT)));
+		}
+		out.println(header);
+		for (String[] row : ModeReport.ROWS) {
+			StringBuilder line = new StringBuilder(String.format("%-34s", row[1]));
+			for (ModeReport report : reports) {
+				line.append(String.format("%16s", report.values.get(row[0])));
+			}
+			out.println(line);
+		}
+	}
+
+	static void write(List<ModeReport> reports, Path file) throws IOException {
+		if (file.getParent() != null) {
+			Files.createDirectories(file.getParent());
+		}
+		try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+			writer.write("mode");
+			for (String[] row : ModeReport.ROWS) {
+				writer.write("," + row[0]);
+			}
+			writer.write("\n");
+			for (ModeReport report : reports) {
+				writer.write(report.mode.name().toLowerCase(Locale.ROOT));
+				for (String[] row : ModeReport.ROWS) {
+					writer.write("," + report.values.get(row[0]));
+				}
+				writer.write("\n");
+			}
+		}
+		System.out.println("Results written to " + file.toAbsolutePath());
+	}
+
+	/**
+	 * @return 参数与默认值合并后的结果，{@code --help} 时为 null
+	 */
+	static Map<String, String> parse(String[] args) {
+		Map<String, String> options = new HashMap<String, String>();
+		for (String[] option : OPTIONS) {
+			options.put(option[0], option[1]);
+		}
+		for (String arg : args) {
+			if ("--help".equals(arg) || "-h".equals(arg)) {
+				return null;
+			}
+			int eq = arg.indexOf('=');
+			String name = arg.startsWith("--") && eq > 2 ? arg.substring(2, eq) : null;
+			if (name == null || !options.containsKey(name)) {
+				throw new IllegalArgumentException("Unknown option: " + arg + ", see --help");
+			}
+			options.put(name, arg.substring(eq + 1));
+		}
+		return options;
+	}
+
+	static void usage(PrintStream out) {
+		out.println("Usage: FaceIDLoadTest [--option=value ...]");
+		for (String[] option : OPTIONS) {
+			out.printf("  --%-22s %s (default: %s)%n", option[0], option[2], option[1]);
+		}
+	}
+
+	/**
+	 * 单个模式的汇总指标，按 ROWS 的顺序输出
+	 */
+	static class ModeReport {
+
+		static final String[][] ROWS = {
+			{ "sent", "requests sent" },
+			{ "throughput", "throughput (req/s)" },
+			{ "succeeded", "200 ok" },
+			{ "failed", "401 failed" },
+			{ "shed", "429/503 shed" },
+			{ "errors", "errors/timeouts" },
+			{ "p50_ms", "latency p50 (ms)" },
+			{ "p99_ms", "latency p99 (ms)" },
+			{ "p999_ms", "latency p999 (ms)" },
+			{ "max_ms", "latency max (ms)" },
+			{ "container_busy_max", "container threads busy max" },
+			{ "container_utilization", "container threads mean busy (%)" },
+			{ "container_saturated", "container saturated time (%)" },
+			{ "container_queue_max", "container queue max" },
+			{ "recognition_inflight_max", "async recognitions in flight max" },
+			{ "client_backlog_max", "client backlog max" },
+			{ "alloc_per_login_kb", "server alloc per login (KB)" }
+		};
+
+		final Mode mode;
+		final Map<String, String> values = new HashMap<String, String>();
+
+		ModeReport(Mode mode, OpenLoopLoadGenerator.LoadResult result, Map<String, ServerResourceMonitor.PoolStats> pools,
+				long allocated) {
+			this.mode = mode;
+			LatencyHistogram latency = result.getLatency();
+			values.put("sent", String.valueOf(result.getSent()));
+			values.put("throughput", format(result.getThroughput()));
+			values.put("succeeded", String.valueOf(result.getSucceeded()));
+			values.put("failed", String.valueOf(result.getFailed()));
+			values.put("shed", String.valueOf(result.getShed()));
+			values.put("errors", String.valueOf(result.getErrors()));
+			values.put("p50_ms", millis(latency.percentile(0.5)));
+			values.put("p99_ms", millis(latency.percentile(0.99)));
+			values.put("p999_ms", millis(latency.percentile(0.999)));
+			values.put("max_ms", millis(latency.getMax()));
+			ServerResourceMonitor.PoolStats container = pools.get("container");
+			values.put("container_busy_max", container == null ? "-" : container.getMaxActive() + "/" + container.getMaximumPoolSize());
+			values.put("container_utilization", container == null ? "-" : format(container.getMeanUtilization() * 100));
+			values.put("container_saturated", container == null ? "-" : format(container.getSaturatedRatio() * 100));
+			values.put("container_queue_max", container == null ? "-" : String.valueOf(container.getMaxQueue()));
+			ServerResourceMonitor.PoolStats recognition = pools.get("recognition");
+			values.put("recognition_inflight_max", recognition == null ? "-" : String.valueOf(recognition.getMaxQueue()));
+			values.put("client_backlog_max", String.valueOf(result.getMaxClientBacklog()));
+			values.put("alloc_per_login_kb", allocated < 0 || result.getCompleted() == 0 ? "-"
+					: format(allocated / 1024d / result.getCompleted()));
+		}
+
+		private static String millis(long micros) {
+			return format(micros / 1000d);
+		}
+
+		private static String format(double value) {
+			return String.format(Locale.ROOT, "%.2f", value);
+		}
+
+	}
+
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.benchmark.loadtest;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.shiro.spring.boot.faceid.FaceInfo;
+import org.apache.shiro.spring.boot.faceid.benchmark.BenchmarkFaceIDFilter;
+import org.springframework.http.MediaType;
+
+import com.alibaba.fastjson.JSON;
+
+/**
+ * 回放数据集：目录中每个 {@code *.json} 为一条录制的 {@link FaceInfo}。
+ * 登录图片依次取自 FaceInfo 的 base64 字段 face、同名的 .jpg/.jpeg/.png 文件，都没有时生成固定大小的伪图片。
+ * 请求以 faceToken（缺省为 faceId）作为回放键，桩识别服务按该键返回对应的 FaceInfo。
+ * @author 		： <a href="https://github.com/hiwepy">wandl</a>
+ */
+public class FaceReplaySet {
+
+	private static final String[] IMAGE_SUFFIXES = { ".jpg", ".jpeg", ".png" };
+
+	private final List<Entry> entries;
+	private final Map<String, FaceInfo> faceInfos;
+
+	private FaceReplaySet(List<Entry> entries) {
+		if (entries.isEmpty()) {
+			throw new IllegalArgumentException("Replay set is empty");
+		}
+		this.entries = Collections.unmodifiableList(entries);
+		Map<String, FaceInfo> faceInfos = new HashMap<String, FaceInfo>(entries.size() * 2);
+		for (Entry entry : entries) {
+			faceInfos.put(entry.getKey(), entry.getFaceInfo());
+		}
+		this.faceInfos = faceInfos;
+	}
+
+	/**
+	 * 读取录制目录
+	 * @param directory 录制目录
+	 * @param imageBytes 缺少图片时生成的伪图片大小
+	 */
+	public static FaceReplaySet load(Path directory, int imageBytes) throws IOException {
+		List<Entry> entries = new ArrayList<Entry>();
+		byte[] syntheticImage = null;
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*.json")) {
+			for (Path file : stream) {
+				FaceInfo faceInfo = JSON.parseObject(new String(Files.readAllBytes(file), StandardCharsets.UTF_8), FaceInfo.class);
+				String baseName = file.getFileName().toString();
+				baseName = baseName.substring(0, baseName.length() - ".json".length());
+				if (faceInfo.getFaceId() == null) {
+					faceInfo.setFaceId(baseName);
+				}
+				String key = faceInfo.getFaceToken() != null ? faceInfo.getFaceToken() : faceInfo.getFaceId();
+
+				byte[] image = null;
+				String contentType = MediaType.IMAGE_JPEG_VALUE;
+				if (faceInfo.getFace() != null && !faceInfo.getFace().isEmpty()) {
+					image = Base64.getMimeDecoder().decode(faceInfo.getFace());
+					// 识别结果不需要携带原图
+					faceInfo.setFace(null);
+				} else {
+					for (String suffix : IMAGE_SUFFIXES) {
+						Path imageFile = directory.resolve(baseName + suffix);
+						if (Files.isRegularFile(imageFile)) {
+							image = Files.readAllBytes(imageFile);
+							contentType = ".png".equals(suffix) ? MediaType.IMAGE_PNG_VALUE : MediaType.IMAGE_JPEG_VALUE;
+							break;
+						}
+					}
+				}
+				if (image == null) {
+					if (syntheticImage == null) {
+						syntheticImage = BenchmarkFaceIDFilter.image(imageBytes);
+					}
+					image = syntheticImage;
+				}
+				entries.add(new Entry(key, faceInfo, image, contentType));
+			}
+		}
+		// 目录遍历顺序与文件系统有关，排序后各次回放顺序一致
+		Collections.sort(entries, (a, b) -> a.getKey().compareTo(b.getKey()));
+		return new FaceReplaySet(entries);
+	}
+
+	/**
+	 * 未提供录制目录时生成合成数据集：每个人脸一条 FaceInfo，共用同一张伪图片
+	 */
+	public static FaceReplaySet synthetic(int faces, int imageBytes) {
+		byte[] image = BenchmarkFaceIDFilter.image(imageBytes);
+		List<Entry> entries = new ArrayList<Entry>(faces);
+		for (int i = 0; i < faces; i++) {
+			FaceInfo faceInfo = new FaceInfo();
+			faceInfo.setFaceId("face-" + i);
+			faceInfo.setFaceToken("face-" + i);
+			faceInfo.setScore(0.92f);
+			entries.add(new Entry(faceInfo.getFaceToken(), faceInfo, image, MediaType.IMAGE_JPEG_VALUE));
+		}
+		return new FaceReplaySet(entries);
+	}
+
+	/**
+	 * @param sequence 请求序号，按序循环回放
+	 */
+	public Entry get(long sequence) {
+		return entries.get((int) (sequence % entries.size()));
+	}
+
+	public FaceInfo getFaceInfo(String key) {
+		return key == null ? null : faceInfos.get(key);
+	}
+
+	public int size() {
+		return entries.size();
+	}
+
+	public static class Entry {
+
+		private final String key;
+		private final FaceInfo faceInfo;
+		private final byte[] image;
+		private final String contentType;
+
+		Entry(String key, FaceInfo faceInfo, byte[] image, String contentType) {
+			this.key = key;
+			this.faceInfo = faceInfo;
+			this.image = image;
+			this.contentType = contentType;
+		}
+
+		public String getKey() {
+			return key;
+		}
+
+		public FaceInfo getFaceInfo() {
+			return faceInfo;
+		}
+
+		public byte[] getImage() {
+			return image;
+		}
+
+		public String getContentType() {
+			return contentType;
+		}
+
+	}
+
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.benchmark.loadtest;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 桩识别服务的耗时分布，单位毫秒：
+ * <ul>
+ * <li>{@code fixed:20} 固定 20ms</li>
+ * <li>{@code uniform:10-50} 10~50ms 均匀分布</li>
+ * <li>{@code lognormal:20,120} 对数正态分布，中位数 20ms、p99 为 120ms，贴近真实识别服务的长尾</li>
+ * </ul>
+ * @author 		： <a href="https://github.com/hiwepy">wandl</a>
+ */
+public abstract class LatencyDistribution {
+
+	/**
+	 * 标准正态分布的 0.99 分位点
+	 */
+	private static final double Z_99 = 2.3263478740408408;
+
+	/**
+	 * @return 下一次识别耗时（纳秒）
+	 */
+	public abstract long nextNanos(Random random);
+
+	public static LatencyDistribution parse(String spec) {
+		int colon = spec.indexOf(':');
+		if (colon < 0) {
+			throw new IllegalArgumentException("Latency must be fixed:<ms>, uniform:<min>-<max> or lognormal:<p50>,<p99>, got " + spec);
+		}
+		String type = spec.substring(0, colon).trim();
+		String args = spec.substring(colon + 1).trim();
+		if ("fixed".equals(type)) {
+			return fixed(Double.parseDouble(args));
+		}
+		if ("uniform".equals(type)) {
+			int dash = args.indexOf('-');
+			return uniform(Double.parseDouble(args.substring(0, dash)), Double.parseDouble(args.substring(dash + 1)));
+		}
+		if ("lognormal".equals(type)) {
+			int comma = args.indexOf(',');
+			return lognormal(Double.parseDouble(args.substring(0, comma)), Double.parseDouble(args.substring(comma + 1)));
+		}
+		throw new IllegalArgumentException("Unknown latency distribution: " + type);
+	}
+
+	public static LatencyDistribution fixed(double millis) {
+		final long nanos = toNanos(millis);
+		return new LatencyDistribution() {
+
+			@Override
+			public long nextNanos(Random random) {
+				return nanos;
+			}
+
+			@Override
+			public String toString() {
+				return "fixed:" + millis;
+			}
+
+		};
+	}
+
+	public static LatencyDistribution uniform(double minMillis, double maxMillis) {
+		if (maxMillis < minMillis) {
+			throw new IllegalArgumentException("uniform max must not be less than min");
+		}
+		final long min = toNanos(minMillis);
+		final long range = toNanos(maxMillis) - min;
+		return new LatencyDistribution() {
+
+			@Override
+			public long nextNanos(Random random) {
+				return min + (long) (random.nextDouble() * range);
+			}
+
+			@Override
+			public String toString() {
+				return "uniform:" + minMillis + "-" + maxMillis;
+			}
+
+		};
+	}
+
+	/**
+	 * @param p50Millis 中位数
+	 * @param p99Millis 0.99 分位数，需大于中位数
+	 */
+	public static LatencyDistribution lognormal(double p50Millis, double p99Millis) {
+		if (p50Millis <= 0 || p99Millis <= p50Millis) {
+			throw new IllegalArgumentException("lognormal requires 0 < p50 < p99");
+		}
+		final double mu = Math.log(p50Millis);
+		final double sigma = (Math.log(p99Millis) - mu) / Z_99;
+		return new LatencyDistribution() {
+
+			@Override
+			public long nextNanos(Random random) {
+				return toNanos(Math.exp(mu + sigma * random.nextGaussian()));
+			}
+
+			@Override
+			public String toString() {
+				return "lognormal:" + p50Millis + "," + p99Millis;
+			}
+
+		};
+	}
+
+	private static long toNanos(double millis) {
+		return (long) (millis * TimeUnit.MILLISECONDS.toNanos(1));
+	}
+
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.benchmark.loadtest;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 并发记录的对数线性直方图（微秒）：每个 2 的幂区间再均分为 128 个子桶，相对误差小于 1%，
+ * 记录只是一次数组自增，不随样本数增长占用内存，适合长时间压测下统计 p99/p999。
+ * @author 		： <a href="https://github.com/hiwepy">wandl</a>
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 7;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	/**
+	 * 可记录的最大值约 2^40 微秒（约 12 天），超出部分计入最后一个桶
+	 */
+	private static final int MAX_VALUE_BITS = 40;
+
+	private final AtomicLongArray counts = new AtomicLongArray((MAX_VALUE_BITS - SUB_BUCKET_BITS + 2) * SUB_BUCKETS);
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong max = new AtomicLong();
+
+	public void record(long micros) {
+		long value = Math.max(0, micros);
+		counts.incrementAndGet(Math.min(index(value), counts.length() - 1));
+		count.incrementAndGet();
+		long current;
+		while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+			// 重试
+		}
+	}
+
+	/**
+	 * @param quantile 0~1
+	 * @return 对应分位数所在桶的上界（微秒），无样本时为 0
+	 */
+	public long percentile(double quantile) {
+		long total = count.get();
+		if (total == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(quantile * total));
+		long seen = 0;
+		for (int i = 0; i < counts.length(); i++) {
+			seen += counts.get(i);
+			if (seen >= rank) {
+				return Math.min(upperBound(i), max.get());
+			}
+		}
+		return max.get();
+	}
+
+	public long getCount() {
+		return count.get();
+	}
+
+	public long getMax() {
+		return max.get();
+	}
+
+	static int index(long value) {
+		int shift = Math.max(0, 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS);
+		return (shift << SUB_BUCKET_BITS) + (int) (value >>> shift);
+	}
+
+	static long upperBound(int index) {
+		int shift = Math.max(0, (index >>> SUB_BUCKET_BITS) - 1);
+		long subBucket = index - ((long) shift << SUB_BUCKET_BITS);
+		return ((subBucket + 1) << shift) - 1;
+	}
+
+}
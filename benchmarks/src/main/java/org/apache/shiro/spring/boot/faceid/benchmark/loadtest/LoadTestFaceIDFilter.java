@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.benchmark.loadtest;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+
+import org.apache.shiro.authc.AuthenticationException;
+import org.apache.shiro.authc.AuthenticationToken;
+import org.apache.shiro.biz.authc.AuthcResponse;
+import org.apache.shiro.biz.web.servlet.http.HttpStatus;
+import org.apache.shiro.spring.boot.faceid.benchmark.BenchmarkFaceIDFilter;
+import org.apache.shiro.spring.boot.faceid.exception.AuthenticationOverloadException;
+
+import com.alibaba.fastjson.JSONObject;
+
+/**
+ * 压测用过滤器：登录失败时直接以 401 响应（运行时由 shiro-biz 的失败处理器完成），
+ * 便于压测客户端按状态码区分 成功 / 认证失败 / 过载拒绝。
+ * @author 		： <a href="https://github.com/hiwepy">wandl</a>
+ */
+public class LoadTestFaceIDFilter extends BenchmarkFaceIDFilter {
+
+	private static final byte[] LOGIN_FAILURE_BODY = JSONObject.toJSONString(AuthcResponse.fail(HttpStatus.SC_UNAUTHORIZED,
+			"Authentication Failure.")).getBytes(StandardCharsets.UTF_8);
+
+	@Override
+	protected boolean onAccessFailure(AuthenticationToken token, AuthenticationException e, ServletRequest request,
+			ServletResponse response) {
+		return e instanceof AuthenticationOverloadException ? super.onAccessFailure(token, e, request, response)
+				: writeLoginFailure(response);
+	}
+
+	@Override
+	protected boolean onLoginFailure(AuthenticationToken token, AuthenticationException e, ServletRequest request,
+			ServletResponse response) {
+		return e instanceof AuthenticationOverloadException ? super.onLoginFailure(token, e, request, response)
+				: writeLoginFailure(response);
+	}
+
+	private boolean writeLoginFailure(ServletResponse response) {
+		try {
+			writeJSONBody(response, HttpStatus.SC_UNAUTHORIZED, LOGIN_FAILURE_BODY);
+		} catch (IOException e) {
+			// 客户端已断开
+		}
+		return false;
+	}
+
+}
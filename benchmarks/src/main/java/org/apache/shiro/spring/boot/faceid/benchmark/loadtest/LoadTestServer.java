@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.benchmark.loadtest;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.Wrapper;
+import org.apache.catalina.connector.Connector;
+import org.apache.catalina.session.StandardManager;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.shiro.spring.boot.faceid.authc.FaceIDAuthenticatingFilter;
+import org.apache.shiro.web.filter.mgt.DefaultFilterChainManager;
+import org.apache.shiro.web.filter.mgt.PathMatchingFilterChainResolver;
+import org.apache.shiro.web.mgt.WebSecurityManager;
+import org.apache.shiro.web.servlet.AbstractShiroFilter;
+import org.apache.tomcat.util.descriptor.web.FilterDef;
+import org.apache.tomcat.util.descriptor.web.FilterMap;
+
+/**
+ * 内嵌 Tomcat：请求经 ShiroFilter 进入 {@link FaceIDAuthenticatingFilter}，与应用中的过滤链一致。
+ * 过滤器与 Servlet 均开启异步支持，异步模式下识别期间释放容器线程。
+ * @author 		： <a href="https://github.com/hiwepy">wandl</a>
+ */
+public class LoadTestServer implements AutoCloseable {
+
+	private static final String FILTER_NAME = "faceid";
+
+	private final Tomcat tomcat;
+	private final Connector connector;
+
+	/**
+	 * @param securityManager 安全管理器
+	 * @param authcFilter 被测过滤器，映射到全部路径
+	 * @param maxThreads 容器线程数上限
+	 */
+	public LoadTestServer(WebSecurityManager securityManager, FaceIDAuthenticatingFilter authcFilter, int maxThreads)
+			throws IOException {
+		DefaultFilterChainManager chainManager = new DefaultFilterChainManager();
+		chainManager.addFilter(FILTER_NAME, authcFilter);
+		chainManager.createChain("/**", FILTER_NAME);
+		PathMatchingFilterChainResolver chainResolver = new PathMatchingFilterChainResolver();
+		chainResolver.setFilterChainManager(chainManager);
+		AbstractShiroFilter shiroFilter = new AbstractShiroFilter() {
+		};
+		shiroFilter.setSecurityManager(securityManager);
+		shiroFilter.setFilterChainResolver(chainResolver);
+
+		String baseDir = Files.createTempDirectory("faceid-loadtest").toString();
+		tomcat = new Tomcat();
+		tomcat.setBaseDir(baseDir);
+		tomcat.setPort(0);
+		connector = tomcat.getConnector();
+		connector.setProperty("maxThreads", String.valueOf(maxThreads));
+		connector.setProperty("acceptCount", String.valueOf(maxThreads));
+
+		Context context = tomcat.addContext("", baseDir);
+		// 有状态模式每次登录都会创建会话，停止时不持久化
+		StandardManager sessionManager = new StandardManager();
+		sessionManager.setPathname(null);
+		context.setManager(sessionManager);
+
+		FilterDef filterDef = new FilterDef();
+		filterDef.setFilterName("shiroFilter");
+		filterDef.setFilter(shiroFilter);
+		filterDef.setAsyncSupported(Boolean.TRUE.toString());
+		context.addFilterDef(filterDef);
+		FilterMap filterMap = new FilterMap();
+		filterMap.setFilterName("shiroFilter");
+		filterMap.addURLPattern("/*");
+		filterMap.setDispatcher("REQUEST");
+		filterMap.setDispatcher("ASYNC");
+		context.addFilterMap(filterMap);
+
+		Wrapper servlet = Tomcat.addServlet(context, "ok", new OkServlet());
+		servlet.setAsyncSupported(true);
+		context.addServletMappingDecoded("/", "ok");
+	}
+
+	public void start() throws LifecycleException {
+		tomcat.start();
+	}
+
+	public int getPort() {
+		return connector.getLocalPort();
+	}
+
+	/**
+	 * @return 容器线程池，未启动或使用了非 ThreadPoolExecutor 的实现时为 null
+	 */
+	public ThreadPoolExecutor getExecutor() {
+		Executor executor = connector.getProtocolHandler().getExecutor();
+		return executor instanceof ThreadPoolExecutor ? (ThreadPoolExecutor) executor : null;
+	}
+
+	@Override
+	public void close() throws LifecycleException {
+		tomcat.stop();
+		tomcat.destroy();
+	}
+
+	/**
+	 * 过滤链放行后的终点
+	 */
+	@SuppressWarnings("serial")
+	static class OkServlet extends HttpServlet {
+
+		@Override
+		protected void service(HttpServletRequest request, HttpServletResponse response) throws IOException {
+			response.setStatus(HttpServletResponse.SC_OK);
+			response.setContentLength(0);
+		}
+
+	}
+
+}
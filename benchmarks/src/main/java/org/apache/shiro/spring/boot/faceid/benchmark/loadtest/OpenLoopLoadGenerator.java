@@ -0,0 +1,242 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.benchmark.loadtest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.shiro.biz.web.servlet.http.HttpStatus;
+import org.apache.shiro.spring.boot.faceid.exception.AuthenticationOverloadException;
+
+/**
+ * 开环压测客户端：按目标速率（固定间隔或泊松到达）生成请求，发送时刻与服务端响应快慢无关。
+ * 延迟从计划发送时刻起算，客户端连接不足而排队的时间同样计入，避免闭环压测的协调遗漏（coordinated omission）。
+ * @author 		： <a href="https://github.com/hiwepy">wandl</a>
+ */
+public class OpenLoopLoadGenerator implements AutoCloseable {
+
+	public static final String THREAD_NAME_PREFIX = "loadtest-client-";
+
+	/**
+	 * 请求到达过程
+	 */
+	public enum Arrival {
+		/** 固定间隔 */
+		CONSTANT,
+		/** 泊松过程，间隔服从指数分布，更接近真实用户的登录突发 */
+		POISSON
+	}
+
+	private final String loginUrl;
+	private final String faceTokenParam;
+	private final FaceReplaySet replaySet;
+	private final ThreadPoolExecutor clients;
+	private final int timeoutMillis;
+	private final AtomicLong sequence = new AtomicLong();
+
+	/**
+	 * @param loginUrl 登录地址
+	 * @param faceTokenParam 回放键的请求参数名
+	 * @param replaySet 回放数据集
+	 * @param connections 并发连接数（客户端线程数）
+	 * @param timeoutMillis 单个请求的读超时
+	 */
+	public OpenLoopLoadGenerator(String loginUrl, String faceTokenParam, FaceReplaySet replaySet, int connections,
+			int timeoutMillis) {
+		this.loginUrl = loginUrl;
+		this.faceTokenParam = faceTokenParam;
+		this.replaySet = replaySet;
+		this.timeoutMillis = timeoutMillis;
+		final AtomicInteger threadCount = new AtomicInteger();
+		this.clients = new ThreadPoolExecutor(connections, connections, 0, TimeUnit.MILLISECONDS,
+				new LinkedBlockingQueue<Runnable>(), r -> {
+					Thread thread = new Thread(r, THREAD_NAME_PREFIX + threadCount.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				});
+		this.clients.prestartAllCoreThreads();
+	}
+
+	/**
+	 * 以目标速率持续发送 duration 时长，之后等待已发送的请求完成
+	 * @param ratePerSecond 目标速率（请求/秒）
+	 * @param durationMillis 发送时长
+	 * @param arrival 到达过程
+	 */
+	public LoadResult run(double ratePerSecond, long durationMillis, Arrival arrival) throws InterruptedException {
+		final LoadResult result = new LoadResult();
+		final double meanIntervalNanos = TimeUnit.SECONDS.toNanos(1) / ratePerSecond;
+		final long start = System.nanoTime();
+		final long end = start + TimeUnit.MILLISECONDS.toNanos(durationMillis);
+		long intended = start;
+		int maxBacklog = 0;
+		while (intended < end) {
+			long now;
+			while ((now = System.nanoTime()) < intended) {
+				LockSupport.parkNanos(intended - now);
+			}
+			final long scheduledAt = intended;
+			final FaceReplaySet.Entry entry = replaySet.get(sequence.getAndIncrement());
+			clients.execute(() -> send(entry, scheduledAt, result));
+			result.sent++;
+			maxBacklog = Math.max(maxBacklog, clients.getQueue().size());
+			intended += arrival == Arrival.POISSON
+					? (long) (-Math.log(1 - ThreadLocalRandom.current().nextDouble()) * meanIntervalNanos)
+					: (long) meanIntervalNanos;
+		}
+		result.maxClientBacklog = maxBacklog;
+		// 等待在途请求，最长一个请求超时
+		long drainDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+		while (result.completed() < result.sent && System.nanoTime() < drainDeadline) {
+			Thread.sleep(10);
+		}
+		result.elapsedNanos = System.nanoTime() - start;
+		return result;
+	}
+
+	private void send(FaceReplaySet.Entry entry, long scheduledAt, LoadResult result) {
+		int status = -1;
+		try {
+			URL url = new URL(loginUrl + "?" + faceTokenParam + "=" + URLEncoder.encode(entry.getKey(), StandardCharsets.UTF_8.name()));
+			HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+			connection.setRequestMethod("POST");
+			connection.setDoOutput(true);
+			connection.setConnectTimeout(timeoutMillis);
+			connection.setReadTimeout(timeoutMillis);
+			connection.setRequestProperty("Content-Type", entry.getContentType());
+			connection.setFixedLengthStreamingMode(entry.getImage().length);
+			try (OutputStream out = connection.getOutputStream()) {
+				out.write(entry.getImage());
+			}
+			status = connection.getResponseCode();
+			// 读完响应体才能复用 keep-alive 连接
+			InputStream in = status >= 400 ? connection.getErrorStream() : connection.getInputStream();
+			if (in != null) {
+				try (InputStream body = in) {
+					byte[] buffer = new byte[4096];
+					while (body.read(buffer) >= 0) {
+						// 丢弃
+					}
+				}
+			}
+		} catch (IOException e) {
+			status = -1;
+		}
+		result.record(status, TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - scheduledAt));
+	}
+
+	@Override
+	public void close() {
+		clients.shutdownNow();
+	}
+
+	/**
+	 * 一轮压测的客户端统计
+	 */
+	public static class LoadResult {
+
+		private final LatencyHistogram latency = new LatencyHistogram();
+		private final AtomicLong succeeded = new AtomicLong();
+		private final AtomicLong failed = new AtomicLong();
+		private final AtomicLong shed = new AtomicLong();
+		private final AtomicLong errors = new AtomicLong();
+		private long sent;
+		private long elapsedNanos;
+		private int maxClientBacklog;
+
+		void record(int status, long micros) {
+			latency.record(micros);
+			if (status == HttpStatus.SC_OK) {
+				succeeded.incrementAndGet();
+			} else if (status == HttpStatus.SC_UNAUTHORIZED) {
+				failed.incrementAndGet();
+			} else if (status == AuthenticationOverloadException.SC_TOO_MANY_REQUESTS
+					|| status == AuthenticationOverloadException.SC_SERVICE_UNAVAILABLE) {
+				shed.incrementAndGet();
+			} else {
+				errors.incrementAndGet();
+			}
+		}
+
+		long completed() {
+			return succeeded.get() + failed.get() + shed.get() + errors.get();
+		}
+
+		public LatencyHistogram getLatency() {
+			return latency;
+		}
+
+		public long getSent() {
+			return sent;
+		}
+
+		public long getCompleted() {
+			return completed();
+		}
+
+		/** 200 */
+		public long getSucceeded() {
+			return succeeded.get();
+		}
+
+		/** 401：未匹配或识别失败 */
+		public long getFailed() {
+			return failed.get();
+		}
+
+		/** 429 / 503：限流或过载拒绝 */
+		public long getShed() {
+			return shed.get();
+		}
+
+		/** 其它状态码、超时与连接错误 */
+		public long getErrors() {
+			return errors.get();
+		}
+
+		public long getElapsedNanos() {
+			return elapsedNanos;
+		}
+
+		/**
+		 * @return 完成的请求数 / 秒
+		 */
+		public double getThroughput() {
+			return elapsedNanos == 0 ? 0 : completed() * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+		}
+
+		/**
+		 * @return 客户端等待连接的最大排队请求数；持续增长说明压测客户端本身成为瓶颈，应增加连接数
+		 */
+		public int getMaxClientBacklog() {
+			return maxClientBacklog;
+		}
+
+	}
+
+}
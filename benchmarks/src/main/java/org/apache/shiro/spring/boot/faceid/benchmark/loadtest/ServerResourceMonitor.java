@@ -0,0 +1,207 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.benchmark.loadtest;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 压测期间的服务端资源采样：
+ * <ul>
+ * <li>线程池饱和度：定时采样活跃线程数与队列长度，统计峰值、平均利用率以及线程全部占满的时间占比</li>
+ * <li>分配量：按线程名前缀筛选服务端线程（容器线程、识别线程），以 {@code com.sun.management.ThreadMXBean}
+ * 的线程分配字节数求差，不含压测客户端自身的分配；运行期间退出的线程按最后一次采样值计入</li>
+ * </ul>
+ * @author 		： <a href="https://github.com/hiwepy">wandl</a>
+ */
+public class ServerResourceMonitor implements AutoCloseable {
+
+	private static final long SAMPLE_INTERVAL_MILLIS = 50;
+	private static final int ALLOCATION_SAMPLE_EVERY = 20;
+
+	private final Map<String, PoolStats> pools = new LinkedHashMap<String, PoolStats>();
+	private final String[] threadNamePrefixes;
+	private final com.sun.management.ThreadMXBean threadBean;
+	private final Map<Long, Long> baseline = new HashMap<Long, Long>();
+	private final Map<Long, Long> lastSeen = new HashMap<Long, Long>();
+	private final ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor(r -> {
+		Thread thread = new Thread(r, "loadtest-monitor");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private int ticks;
+
+	/**
+	 * @param threadNamePrefixes 计入分配量的服务端线程名前缀
+	 */
+	public ServerResourceMonitor(String... threadNamePrefixes) {
+		this.threadNamePrefixes = threadNamePrefixes;
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean
+				&& ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+			threadBean = (com.sun.management.ThreadMXBean) bean;
+			threadBean.setThreadAllocatedMemoryEnabled(true);
+		} else {
+			threadBean = null;
+		}
+	}
+
+	/**
+	 * @param name 报告中的名称
+	 * @param executor 为 null 时忽略
+	 */
+	public ServerResourceMonitor addPool(String name, ThreadPoolExecutor executor) {
+		if (executor != null) {
+			pools.put(name, new PoolStats(executor));
+		}
+		return this;
+	}
+
+	public synchronized void start() {
+		sampleAllocation(baseline);
+		lastSeen.putAll(baseline);
+		sampler.scheduleAtFixedRate(this::sample, SAMPLE_INTERVAL_MILLIS, SAMPLE_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+	}
+
+	private synchronized void sample() {
+		for (PoolStats stats : pools.values()) {
+			stats.sample();
+		}
+		if (++ticks % ALLOCATION_SAMPLE_EVERY == 0) {
+			sampleAllocation(lastSeen);
+		}
+	}
+
+	/**
+	 * 停止采样
+	 * @return 服务端线程在 start 之后的分配字节数，JVM 不支持时为 -1
+	 */
+	public synchronized long stop() {
+		sampler.shutdownNow();
+		if (threadBean == null) {
+			return -1;
+		}
+		sampleAllocation(lastSeen);
+		long allocated = 0;
+		for (Map.Entry<Long, Long> entry : lastSeen.entrySet()) {
+			Long start = baseline.get(entry.getKey());
+			allocated += entry.getValue() - (start != null ? start : 0L);
+		}
+		return allocated;
+	}
+
+	private void sampleAllocation(Map<Long, Long> target) {
+		if (threadBean == null) {
+			return;
+		}
+		long[] ids = threadBean.getAllThreadIds();
+		ThreadInfo[] infos = threadBean.getThreadInfo(ids, 0);
+		for (int i = 0; i < ids.length; i++) {
+			if (infos[i] != null && isServerThread(infos[i].getThreadName())) {
+				long bytes = threadBean.getThreadAllocatedBytes(ids[i]);
+				if (bytes >= 0) {
+					target.put(ids[i], bytes);
+				}
+			}
+		}
+	}
+
+	private boolean isServerThread(String name) {
+		for (String prefix : threadNamePrefixes) {
+			if (name.startsWith(prefix)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public Map<String, PoolStats> getPools() {
+		return pools;
+	}
+
+	@Override
+	public void close() {
+		sampler.shutdownNow();
+	}
+
+	/**
+	 * 单个线程池的采样统计
+	 */
+	public static class PoolStats {
+
+		private final ThreadPoolExecutor executor;
+		private long samples;
+		private long activeSum;
+		private long saturatedSamples;
+		private int maxActive;
+		private int maxQueue;
+
+		PoolStats(ThreadPoolExecutor executor) {
+			this.executor = executor;
+		}
+
+		void sample() {
+			int active = executor.getActiveCount();
+			int queue = executor.getQueue().size();
+			samples++;
+			activeSum += active;
+			if (active >= getMaximumPoolSize()) {
+				saturatedSamples++;
+			}
+			maxActive = Math.max(maxActive, active);
+			maxQueue = Math.max(maxQueue, queue);
+		}
+
+		/**
+		 * @return 线程数上限；定时线程池的上限参数不生效，以核心线程数为准
+		 */
+		public int getMaximumPoolSize() {
+			return executor instanceof ScheduledThreadPoolExecutor ? executor.getCorePoolSize() : executor.getMaximumPoolSize();
+		}
+
+		public int getMaxActive() {
+			return maxActive;
+		}
+
+		public int getMaxQueue() {
+			return maxQueue;
+		}
+
+		/**
+		 * @return 平均活跃线程数 / 线程数上限
+		 */
+		public double getMeanUtilization() {
+			return samples == 0 ? 0 : (double) activeSum / samples / getMaximumPoolSize();
+		}
+
+		/**
+		 * @return 线程全部占满的采样占比
+		 */
+		public double getSaturatedRatio() {
+			return samples == 0 ? 0 : (double) saturatedSamples / samples;
+		}
+
+	}
+
+}
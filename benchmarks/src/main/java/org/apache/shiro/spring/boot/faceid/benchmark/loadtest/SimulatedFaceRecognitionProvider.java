@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.benchmark.loadtest;
+
+import java.io.Closeable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.shiro.authc.AuthenticationException;
+import org.apache.shiro.authc.AuthenticationToken;
+import org.apache.shiro.spring.boot.faceid.FaceInfo;
+import org.apache.shiro.spring.boot.faceid.authc.AsyncFaceRecognitionProvider;
+import org.apache.shiro.spring.boot.faceid.authc.FaceRecognitionProvider;
+import org.apache.shiro.spring.boot.faceid.exception.AuthenticationFaceIDNotFoundException;
+import org.apache.shiro.spring.boot.faceid.token.FaceIDLoginToken;
+
+/**
+ * 模拟识别服务：按 {@link LatencyDistribution} 产生识别耗时，并按比例返回未匹配（认证失败）或后端异常。
+ * 识别结果取自 {@link FaceReplaySet} 中与请求 faceToken 对应的录制数据。
+ * 同步调用在当前线程上休眠，异步调用由定时线程到期后完成，识别期间不占用任何线程，与真实的非阻塞客户端一致。
+ * @author 		： <a href="https://github.com/hiwepy">wandl</a>
+ */
+public class SimulatedFaceRecognitionProvider implements FaceRecognitionProvider, AsyncFaceRecognitionProvider, Closeable {
+
+	public static final String THREAD_NAME_PREFIX = "loadtest-recognition-";
+
+	private final FaceReplaySet replaySet;
+	private final LatencyDistribution latency;
+	private final double rejectRate;
+	private final double errorRate;
+	private final ScheduledThreadPoolExecutor scheduler;
+
+	/**
+	 * @param replaySet 录制的识别结果
+	 * @param latency 识别耗时分布
+	 * @param rejectRate 未匹配比例，抛出 AuthenticationException
+	 * @param errorRate 后端异常比例，抛出非认证异常
+	 * @param schedulerThreads 异步模式下完成识别结果的定时线程数
+	 */
+	public SimulatedFaceRecognitionProvider(FaceReplaySet replaySet, LatencyDistribution latency, double rejectRate,
+			double errorRate, int schedulerThreads) {
+		this.replaySet = replaySet;
+		this.latency = latency;
+		this.rejectRate = rejectRate;
+		this.errorRate = errorRate;
+		final AtomicInteger threadCount = new AtomicInteger();
+		ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(schedulerThreads, r -> {
+			Thread thread = new Thread(r, THREAD_NAME_PREFIX + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		scheduler.setRemoveOnCancelPolicy(true);
+		this.scheduler = scheduler;
+	}
+
+	@Override
+	public FaceInfo loadFaceInfo(AuthenticationToken token) throws AuthenticationException {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		long delay = latency.nextNanos(random);
+		double outcome = random.nextDouble();
+		try {
+			TimeUnit.NANOSECONDS.sleep(delay);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new AuthenticationException("Face recognition interrupted.", e);
+		}
+		return result(token, outcome);
+	}
+
+	@Override
+	public CompletableFuture<FaceInfo> loadFaceInfoAsync(AuthenticationToken token) {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		long delay = latency.nextNanos(random);
+		final double outcome = random.nextDouble();
+		final CompletableFuture<FaceInfo> future = new CompletableFuture<FaceInfo>();
+		scheduler.schedule(() -> {
+			try {
+				future.complete(result(token, outcome));
+			} catch (RuntimeException e) {
+				future.completeExceptionally(e);
+			}
+		}, delay, TimeUnit.NANOSECONDS);
+		return future;
+	}
+
+	private FaceInfo result(AuthenticationToken token, double outcome) {
+		if (outcome < errorRate) {
+			throw new IllegalStateException("Simulated face recognition backend error.");
+		}
+		FaceInfo faceInfo = outcome < errorRate + rejectRate ? null
+				: replaySet.getFaceInfo(((FaceIDLoginToken) token).getFaceToken());
+		if (faceInfo == null) {
+			throw new AuthenticationFaceIDNotFoundException("No enrolled face matches the submitted image.");
+		}
+		return faceInfo;
+	}
+
+	/**
+	 * @return 异步模式下完成识别结果的定时线程池，队列长度即进行中的异步识别数
+	 */
+	public ScheduledThreadPoolExecutor getScheduler() {
+		return scheduler;
+	}
+
+	@Override
+	public void close() {
+		scheduler.shutdownNow();
+	}
+
+	@Override
+	public String toString() {
+		return "latency=" + latency + ", rejectRate=" + rejectRate + ", errorRate=" + errorRate;
+	}
+
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.shiro.spring.boot.faceid.authc.CachingFaceRecognitionProvider;
+import org.apache.shiro.spring.boot.faceid.authc.FaceRecognitionProvider;
+import org.apache.shiro.spring.boot.faceid.authc.LimitingFaceRecognitionProvider;
+import org.apache.shiro.spring.boot.faceid.authc.PreprocessingFaceRecognitionProvider;
+import org.apache.shiro.spring.boot.faceid.authc.RoutingFaceRecognitionProvider;
+import org.apache.shiro.spring.boot.faceid.authc.ScreeningFaceRecognitionProvider;
+import org.springframework.beans.factory.ListableBeanFactory;
+
+/**
+ * 识别服务的组合顺序：缓存 → 识别前检查 → 裁剪缩放 → 并发限制 → 多后端路由 → 后端识别服务。
+ * <p>各层包装以 autowireCandidate = false 发布，不参与 FaceRecognitionProvider 的按类型注入，
+ * 后端识别服务（唯一或 @Primary）与路由的后端集合因此不会包含包装本身；包装只能按类型显式查找。</p>
+ */
+final class FaceRecognitionProviderChain {
+
+	/** 由外到内 */
+	private static final List<Class<? extends FaceRecognitionProvider>> LAYERS = Arrays.asList(
+			CachingFaceRecognitionProvider.class,
+			ScreeningFaceRecognitionProvider.class,
+			PreprocessingFaceRecognitionProvider.class,
+			LimitingFaceRecognitionProvider.class,
+			RoutingFaceRecognitionProvider.class);
+
+	private FaceRecognitionProviderChain() {
+	}
+
+	/**
+	 * 已启用的包装，未启用时为空
+	 */
+	static <T extends FaceRecognitionProvider> T layer(ListableBeanFactory beanFactory, Class<T> type) {
+		String[] names = beanFactory.getBeanNamesForType(type);
+		return names.length == 0 ? null : beanFactory.getBean(names[0], type);
+	}
+
+	/**
+	 * 最外层的包装，未启用任何包装时为空
+	 */
+	static FaceRecognitionProvider outermost(ListableBeanFactory beanFactory) {
+		return innerLayer(beanFactory, 0);
+	}
+
+	/**
+	 * 指定包装的下一层：内层已启用的包装，没有时为唯一或 @Primary 的后端识别服务
+	 */
+	static FaceRecognitionProvider delegateOf(ListableBeanFactory beanFactory, Class<? extends FaceRecognitionProvider> type) {
+		FaceRecognitionProvider delegate = innerLayer(beanFactory, LAYERS.indexOf(type) + 1);
+		return delegate != null ? delegate : beanFactory.getBeanProvider(FaceRecognitionProvider.class).getObject();
+	}
+
+	/**
+	 * 是否为组合链中的包装，包装不能作为后端识别服务
+	 */
+	static boolean isLayer(Object provider) {
+		for (Class<? extends FaceRecognitionProvider> type : LAYERS) {
+			if (type.isInstance(provider)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static FaceRecognitionProvider innerLayer(ListableBeanFactory beanFactory, int from) {
+		for (int i = from; i < LAYERS.size(); i++) {
+			FaceRecognitionProvider provider = layer(beanFactory, LAYERS.get(i));
+			if (provider != null) {
+				return provider;
+			}
+		}
+		return null;
+	}
+
+}
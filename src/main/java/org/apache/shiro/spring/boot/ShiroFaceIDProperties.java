@@ -15,18 +15,94 @@
  */
 package org.apache.shiro.spring.boot;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.shiro.spring.boot.faceid.authc.FaceRecognitionExecutorType;
+import org.apache.shiro.spring.boot.faceid.gallery.FaceGalleryPartition;
+import org.apache.shiro.spring.boot.faceid.gallery.FaceGalleryType;
+import org.apache.shiro.spring.boot.faceid.gallery.FaceMetric;
+import org.apache.shiro.spring.boot.faceid.gallery.FaceQuantization;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
 @ConfigurationProperties(ShiroFaceIDProperties.PREFIX)
 public class ShiroFaceIDProperties {
 
-	public static final String PREFIX = "shiro.kisso";
-	
+	public static final String PREFIX = "shiro.faceid";
+
 	/**
-	 * Enable Shiro Kisso.
+	 * Enable Shiro FaceID.
 	 */
 	private boolean enabled = false;
-	
+
+	/**
+	 * Local face gallery (1:N identification) settings.
+	 */
+	private Gallery gallery = new Gallery();
+
+	/**
+	 * Face login filter settings.
+	 */
+	private Authc authc = new Authc();
+
+	/**
+	 * Micro-batching of concurrent recognition calls.
+	 */
+	private Batch batch = new Batch();
+
+	/**
+	 * Latency-aware routing across multiple recognition backends.
+	 */
+	private Routing routing = new Routing();
+
+	/**
+	 * Pool of native recognition engines.
+	 */
+	private Engine engine = new Engine();
+
+	/**
+	 * Cache of recognition results for re-submitted images and face tokens.
+	 */
+	private Cache cache = new Cache();
+
+	/**
+	 * Signed session token issued after a successful face login (stateless mode).
+	 */
+	private Session session = new Session();
+
+	/**
+	 * Cheap checks rejecting unusable images before recognition.
+	 */
+	private Screening screening = new Screening();
+
+	/**
+	 * Crop and downscale images before recognition.
+	 */
+	private Preprocess preprocess = new Preprocess();
+
+	/**
+	 * Adaptive concurrency limit and load shedding in front of the recognition backends.
+	 */
+	private Limit limit = new Limit();
+
+	/**
+	 * Per-IP and per-face token-bucket throttling of login attempts.
+	 */
+	private Throttle throttle = new Throttle();
+
+	/**
+	 * Incremental enrollment into the local gallery through a write-ahead log.
+	 */
+	private Enrollment enrollment = new Enrollment();
+
+	/**
+	 * WebFlux face login filter, used instead of the Shiro servlet filter in reactive web applications.
+	 */
+	private Reactive reactive = new Reactive();
+
 	public boolean isEnabled() {
 		return enabled;
 	}
@@ -34,6 +110,1663 @@ public class ShiroFaceIDProperties {
 	public void setEnabled(boolean enabled) {
 		this.enabled = enabled;
 	}
-	
-}
 
+	public Gallery getGallery() {
+		return gallery;
+	}
+
+	public void setGallery(Gallery gallery) {
+		this.gallery = gallery;
+	}
+
+	public Authc getAuthc() {
+		return authc;
+	}
+
+	public void setAuthc(Authc authc) {
+		this.authc = authc;
+	}
+
+	public Batch getBatch() {
+		return batch;
+	}
+
+	public void setBatch(Batch batch) {
+		this.batch = batch;
+	}
+
+	public Routing getRouting() {
+		return routing;
+	}
+
+	public void setRouting(Routing routing) {
+		this.routing = routing;
+	}
+
+	public Engine getEngine() {
+		return engine;
+	}
+
+	public void setEngine(Engine engine) {
+		this.engine = engine;
+	}
+
+	public Cache getCache() {
+		return cache;
+	}
+
+	public void setCache(Cache cache) {
+		this.cache = cache;
+	}
+
+	public Session getSession() {
+		return session;
+	}
+
+	public void setSession(Session session) {
+		this.session = session;
+	}
+
+	public Screening getScreening() {
+		return screening;
+	}
+
+	public void setScreening(Screening screening) {
+		this.screening = screening;
+	}
+
+	public Preprocess getPreprocess() {
+		return preprocess;
+	}
+
+	public void setPreprocess(Preprocess preprocess) {
+		this.preprocess = preprocess;
+	}
+
+	public Limit getLimit() {
+		return limit;
+	}
+
+	public void setLimit(Limit limit) {
+		this.limit = limit;
+	}
+
+	public Throttle getThrottle() {
+		return throttle;
+	}
+
+	public void setThrottle(Throttle throttle) {
+		this.throttle = throttle;
+	}
+
+	public Enrollment getEnrollment() {
+		return enrollment;
+	}
+
+	public void setEnrollment(Enrollment enrollment) {
+		this.enrollment = enrollment;
+	}
+
+	public Reactive getReactive() {
+		return reactive;
+	}
+
+	public void setReactive(Reactive reactive) {
+		this.reactive = reactive;
+	}
+
+	public static class Authc {
+
+		/**
+		 * Request parameter (or multipart part) carrying the face image.
+		 */
+		private String faceParam = "face";
+
+		/**
+		 * Request parameter carrying the face type.
+		 */
+		private String faceTypeParam = "faceType";
+
+		/**
+		 * Request parameter carrying the face token.
+		 */
+		private String faceTokenParam = "faceToken";
+
+		/**
+		 * Request parameter carrying the tenant (department) hint that narrows a sharded gallery search.
+		 */
+		private String tenantParam = "tenant";
+
+		/**
+		 * Maximum accepted size in bytes of a decoded face image.
+		 */
+		private int maxImageBytes = 2 * 1024 * 1024;
+
+		/**
+		 * Maximum number of pooled image buffers kept per size class.
+		 */
+		private int bufferPoolSize = 16;
+
+		/**
+		 * Release the servlet container thread while face recognition is in flight (Servlet 3.1 async).
+		 */
+		private boolean async = false;
+
+		/**
+		 * Timeout in milliseconds of an asynchronous face login.
+		 */
+		private long asyncTimeout = 30000L;
+
+		/**
+		 * Threads running blocking recognition providers in async mode.
+		 */
+		private int asyncPoolSize = Runtime.getRuntime().availableProcessors() * 4;
+
+		/**
+		 * Pending recognitions queued in async mode before new logins are rejected.
+		 */
+		private int asyncQueueCapacity = 1000;
+
+		/**
+		 * Threads running blocking recognition providers in async mode: a bounded platform pool, or one virtual
+		 * thread per recognition on JDK 21+ (falls back to the platform pool on older JVMs).
+		 */
+		private FaceRecognitionExecutorType asyncExecutor = FaceRecognitionExecutorType.PLATFORM;
+
+		/**
+		 * Maximum in-flight recognitions on virtual threads before new logins are rejected.
+		 */
+		private int asyncMaxConcurrency = 10000;
+
+		/**
+		 * Retry-After in seconds sent with the 503 response when the recognition executor rejects a login.
+		 */
+		private int asyncRejectedRetryAfter = 1;
+
+		public String getFaceParam() {
+			return faceParam;
+		}
+
+		public void setFaceParam(String faceParam) {
+			this.faceParam = faceParam;
+		}
+
+		public String getFaceTypeParam() {
+			return faceTypeParam;
+		}
+
+		public void setFaceTypeParam(String faceTypeParam) {
+			this.faceTypeParam = faceTypeParam;
+		}
+
+		public String getFaceTokenParam() {
+			return faceTokenParam;
+		}
+
+		public void setFaceTokenParam(String faceTokenParam) {
+			this.faceTokenParam = faceTokenParam;
+		}
+
+		public String getTenantParam() {
+			return tenantParam;
+		}
+
+		public void setTenantParam(String tenantParam) {
+			this.tenantParam = tenantParam;
+		}
+
+		public int getMaxImageBytes() {
+			return maxImageBytes;
+		}
+
+		public void setMaxImageBytes(int maxImageBytes) {
+			this.maxImageBytes = maxImageBytes;
+		}
+
+		public int getBufferPoolSize() {
+			return bufferPoolSize;
+		}
+
+		public void setBufferPoolSize(int bufferPoolSize) {
+			this.bufferPoolSize = bufferPoolSize;
+		}
+
+		public boolean isAsync() {
+			return async;
+		}
+
+		public void setAsync(boolean async) {
+			this.async = async;
+		}
+
+		public long getAsyncTimeout() {
+			return asyncTimeout;
+		}
+
+		public void setAsyncTimeout(long asyncTimeout) {
+			this.asyncTimeout = asyncTimeout;
+		}
+
+		public int getAsyncPoolSize() {
+			return asyncPoolSize;
+		}
+
+		public void setAsyncPoolSize(int asyncPoolSize) {
+			this.asyncPoolSize = asyncPoolSize;
+		}
+
+		public int getAsyncQueueCapacity() {
+			return asyncQueueCapacity;
+		}
+
+		public void setAsyncQueueCapacity(int asyncQueueCapacity) {
+			this.asyncQueueCapacity = asyncQueueCapacity;
+		}
+
+		public FaceRecognitionExecutorType getAsyncExecutor() {
+			return asyncExecutor;
+		}
+
+		public void setAsyncExecutor(FaceRecognitionExecutorType asyncExecutor) {
+			this.asyncExecutor = asyncExecutor;
+		}
+
+		public int getAsyncMaxConcurrency() {
+			return asyncMaxConcurrency;
+		}
+
+		public void setAsyncMaxConcurrency(int asyncMaxConcurrency) {
+			this.asyncMaxConcurrency = asyncMaxConcurrency;
+		}
+
+		public int getAsyncRejectedRetryAfter() {
+			return asyncRejectedRetryAfter;
+		}
+
+		public void setAsyncRejectedRetryAfter(int asyncRejectedRetryAfter) {
+			this.asyncRejectedRetryAfter = asyncRejectedRetryAfter;
+		}
+
+	}
+
+	public static class Gallery {
+
+		/**
+		 * Enable the in-process face gallery.
+		 */
+		private boolean enabled = false;
+
+		/**
+		 * Search mode of the gallery: exact parallel scan or approximate HNSW graph.
+		 */
+		private FaceGalleryType type = FaceGalleryType.FLAT;
+
+		/**
+		 * Dimension of the face feature vectors.
+		 */
+		private int dimension = 512;
+
+		/**
+		 * Similarity metric used to compare face features.
+		 */
+		private FaceMetric metric = FaceMetric.COSINE;
+
+		/**
+		 * Minimum similarity score for a match to be accepted, must lie in the score range of the metric. Defaults to
+		 * 0.6 for COSINE and -0.8 (squared distance 0.8) for EUCLIDEAN.
+		 */
+		private Float threshold;
+
+		/**
+		 * Initial number of face templates the gallery is sized for.
+		 */
+		private int initialCapacity = 1024;
+
+		/**
+		 * Number of templates scanned by a single parallel search task.
+		 */
+		private int chunkSize = 4096;
+
+		/**
+		 * HNSW approximate search settings, used when type is HNSW.
+		 */
+		private Hnsw hnsw = new Hnsw();
+
+		/**
+		 * Persistent memory-mapped template store settings.
+		 */
+		private Store store = new Store();
+
+		/**
+		 * In-memory quantization of the templates, applies to FLAT galleries.
+		 */
+		private Quantization quantization = new Quantization();
+
+		/**
+		 * Partitioning of the gallery into shards searched in parallel.
+		 */
+		private Sharding sharding = new Sharding();
+
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		public FaceGalleryType getType() {
+			return type;
+		}
+
+		public void setType(FaceGalleryType type) {
+			this.type = type;
+		}
+
+		public int getDimension() {
+			return dimension;
+		}
+
+		public void setDimension(int dimension) {
+			this.dimension = dimension;
+		}
+
+		public FaceMetric getMetric() {
+			return metric;
+		}
+
+		public void setMetric(FaceMetric metric) {
+			this.metric = metric;
+		}
+
+		public Float getThreshold() {
+			return threshold;
+		}
+
+		/**
+		 * @return 配置的匹配阈值，未配置时按相似度度量方式取默认值
+		 */
+		public float resolveThreshold() {
+			return threshold != null ? threshold : metric.defaultThreshold();
+		}
+
+		public void setThreshold(Float threshold) {
+			this.threshold = threshold;
+		}
+
+		public int getInitialCapacity() {
+			return initialCapacity;
+		}
+
+		public void setInitialCapacity(int initialCapacity) {
+			this.initialCapacity = initialCapacity;
+		}
+
+		public int getChunkSize() {
+			return chunkSize;
+		}
+
+		public void setChunkSize(int chunkSize) {
+			this.chunkSize = chunkSize;
+		}
+
+		public Hnsw getHnsw() {
+			return hnsw;
+		}
+
+		public void setHnsw(Hnsw hnsw) {
+			this.hnsw = hnsw;
+		}
+
+		public Store getStore() {
+			return store;
+		}
+
+		public void setStore(Store store) {
+			this.store = store;
+		}
+
+		public Quantization getQuantization() {
+			return quantization;
+		}
+
+		public void setQuantization(Quantization quantization) {
+			this.quantization = quantization;
+		}
+
+		public Sharding getSharding() {
+			return sharding;
+		}
+
+		public void setSharding(Sharding sharding) {
+			this.sharding = sharding;
+		}
+
+	}
+
+	public static class Sharding {
+
+		/**
+		 * How face templates are distributed over shards: NONE, HASH of the face id, or TENANT prefix of the face id.
+		 */
+		private FaceGalleryPartition partition = FaceGalleryPartition.NONE;
+
+		/**
+		 * Number of shards when partitioning by hash.
+		 */
+		private int shards = Runtime.getRuntime().availableProcessors();
+
+		/**
+		 * Separator between the tenant prefix and the rest of the face id, e.g. dept01:10086.
+		 */
+		private String tenantSeparator = ":";
+
+		/**
+		 * Parallelism of a dedicated fork-join pool for shard fan-out; 0 uses the common pool.
+		 */
+		private int parallelism = 0;
+
+		public FaceGalleryPartition getPartition() {
+			return partition;
+		}
+
+		public void setPartition(FaceGalleryPartition partition) {
+			this.partition = partition;
+		}
+
+		public int getShards() {
+			return shards;
+		}
+
+		public void setShards(int shards) {
+			this.shards = shards;
+		}
+
+		public String getTenantSeparator() {
+			return tenantSeparator;
+		}
+
+		public void setTenantSeparator(String tenantSeparator) {
+			this.tenantSeparator = tenantSeparator;
+		}
+
+		public int getParallelism() {
+			return parallelism;
+		}
+
+		public void setParallelism(int parallelism) {
+			this.parallelism = parallelism;
+		}
+
+	}
+
+	public static class Hnsw {
+
+		/**
+		 * Number of neighbours kept per node on upper layers (2M on the base layer).
+		 */
+		private int m = 16;
+
+		/**
+		 * Size of the dynamic candidate list while building the graph.
+		 */
+		private int efConstruction = 200;
+
+		/**
+		 * Size of the dynamic candidate list while searching; higher values trade latency for recall.
+		 */
+		private int efSearch = 64;
+
+		/**
+		 * Ratio of deleted to live nodes above which the graph is rebuilt from the live nodes; 0 disables it.
+		 */
+		private double maxDeletedRatio = 0.25d;
+
+		public int getM() {
+			return m;
+		}
+
+		public void setM(int m) {
+			this.m = m;
+		}
+
+		public int getEfConstruction() {
+			return efConstruction;
+		}
+
+		public void setEfConstruction(int efConstruction) {
+			this.efConstruction = efConstruction;
+		}
+
+		public int getEfSearch() {
+			return efSearch;
+		}
+
+		public void setEfSearch(int efSearch) {
+			this.efSearch = efSearch;
+		}
+
+		public double getMaxDeletedRatio() {
+			return maxDeletedRatio;
+		}
+
+		public void setMaxDeletedRatio(double maxDeletedRatio) {
+			this.maxDeletedRatio = maxDeletedRatio;
+		}
+
+	}
+
+	public static class Store {
+
+		/**
+		 * Path of the memory-mapped template file; the gallery is kept in memory only when empty.
+		 */
+		private String path;
+
+		/**
+		 * Size in bytes of each memory-mapped segment of the template file.
+		 */
+		private long segmentSize = 256L * 1024 * 1024;
+
+		/**
+		 * Maximum length in UTF-8 bytes of a faceId stored in the template file.
+		 */
+		private int maxFaceIdBytes = 64;
+
+		public String getPath() {
+			return path;
+		}
+
+		public void setPath(String path) {
+			this.path = path;
+		}
+
+		public long getSegmentSize() {
+			return segmentSize;
+		}
+
+		public void setSegmentSize(long segmentSize) {
+			this.segmentSize = segmentSize;
+		}
+
+		public int getMaxFaceIdBytes() {
+			return maxFaceIdBytes;
+		}
+
+		public void setMaxFaceIdBytes(int maxFaceIdBytes) {
+			this.maxFaceIdBytes = maxFaceIdBytes;
+		}
+
+	}
+
+	public static class Quantization {
+
+		/**
+		 * Quantization applied to the templates kept in memory.
+		 */
+		private FaceQuantization type = FaceQuantization.NONE;
+
+		/**
+		 * Largest absolute component value representable by int8 quantization, shared by all dimensions. When unset
+		 * the range is calibrated per dimension from the stored templates, falling back to 4/sqrt(dimension) for
+		 * normalized metrics when the store is empty.
+		 */
+		private Float maxAbs;
+
+		/**
+		 * Number of product quantization sub-spaces (bytes per template); must divide the dimension.
+		 */
+		private int subspaces = 64;
+
+		/**
+		 * Maximum number of stored templates used to train the product quantizer or calibrate int8 quantization.
+		 */
+		private int trainingSamples = 50000;
+
+		/**
+		 * Number of k-means iterations used to train the product quantizer.
+		 */
+		private int iterations = 10;
+
+		/**
+		 * Candidates re-ranked with exact templates per requested result (requires a template store).
+		 */
+		private int rerankFactor = 4;
+
+		public FaceQuantization getType() {
+			return type;
+		}
+
+		public void setType(FaceQuantization type) {
+			this.type = type;
+		}
+
+		public Float getMaxAbs() {
+			return maxAbs;
+		}
+
+		public void setMaxAbs(Float maxAbs) {
+			this.maxAbs = maxAbs;
+		}
+
+		public int getSubspaces() {
+			return subspaces;
+		}
+
+		public void setSubspaces(int subspaces) {
+			this.subspaces = subspaces;
+		}
+
+		public int getTrainingSamples() {
+			return trainingSamples;
+		}
+
+		public void setTrainingSamples(int trainingSamples) {
+			this.trainingSamples = trainingSamples;
+		}
+
+		public int getIterations() {
+			return iterations;
+		}
+
+		public void setIterations(int iterations) {
+			this.iterations = iterations;
+		}
+
+		public int getRerankFactor() {
+			return rerankFactor;
+		}
+
+		public void setRerankFactor(int rerankFactor) {
+			this.rerankFactor = rerankFactor;
+		}
+
+	}
+
+	public static class Batch {
+
+		/**
+		 * Collect concurrent recognition requests into batched backend calls.
+		 */
+		private boolean enabled = false;
+
+		/**
+		 * Maximum number of requests dispatched in one batch.
+		 */
+		private int maxBatchSize = 16;
+
+		/**
+		 * Maximum time in milliseconds the first request of a batch waits for more requests.
+		 */
+		private long maxWaitMillis = 5;
+
+		/**
+		 * Maximum number of requests waiting to be batched before new ones are rejected.
+		 */
+		private int queueCapacity = 1000;
+
+		/**
+		 * Number of batches that may be executed concurrently.
+		 */
+		private int concurrency = Runtime.getRuntime().availableProcessors();
+
+		/**
+		 * Value of the Retry-After header when the batch queue or executor is full, in seconds.
+		 */
+		private int retryAfterSeconds = 1;
+
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		public int getMaxBatchSize() {
+			return maxBatchSize;
+		}
+
+		public void setMaxBatchSize(int maxBatchSize) {
+			this.maxBatchSize = maxBatchSize;
+		}
+
+		public long getMaxWaitMillis() {
+			return maxWaitMillis;
+		}
+
+		public void setMaxWaitMillis(long maxWaitMillis) {
+			this.maxWaitMillis = maxWaitMillis;
+		}
+
+		public int getQueueCapacity() {
+			return queueCapacity;
+		}
+
+		public void setQueueCapacity(int queueCapacity) {
+			this.queueCapacity = queueCapacity;
+		}
+
+		public int getConcurrency() {
+			return concurrency;
+		}
+
+		public void setConcurrency(int concurrency) {
+			this.concurrency = concurrency;
+		}
+
+		public int getRetryAfterSeconds() {
+			return retryAfterSeconds;
+		}
+
+		public void setRetryAfterSeconds(int retryAfterSeconds) {
+			this.retryAfterSeconds = retryAfterSeconds;
+		}
+
+	}
+
+	public static class Routing {
+
+		/**
+		 * Route recognition calls across multiple FaceRecognitionProvider beans.
+		 */
+		private boolean enabled = false;
+
+		/**
+		 * Bean names of the providers to route across; all FaceRecognitionProvider beans when empty.
+		 */
+		private List<String> providers = new ArrayList<String>();
+
+		/**
+		 * Send a hedged request to the next backend when the first exceeds its p95 deadline.
+		 */
+		private boolean hedgeEnabled = true;
+
+		/**
+		 * Minimum delay in milliseconds before a hedged request is sent.
+		 */
+		private long minHedgeDelayMillis = 50;
+
+		/**
+		 * Smoothing factor of the latency and error EWMA, in (0, 1].
+		 */
+		private double alpha = 0.2d;
+
+		/**
+		 * Latency in milliseconds added per unit of error rate when ranking backends:
+		 * score = successLatency + errorPenaltyMillis * errorRate.
+		 */
+		private long errorPenaltyMillis = 1000;
+
+		/**
+		 * Number of threads executing calls to synchronous providers.
+		 */
+		private int poolSize = Runtime.getRuntime().availableProcessors() * 4;
+
+		/**
+		 * Maximum number of calls to synchronous providers waiting for a thread; 0 disables queueing.
+		 * A rejected call fails over to the next backend.
+		 */
+		private int queueCapacity = 1000;
+
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		public List<String> getProviders() {
+			return providers;
+		}
+
+		public void setProviders(List<String> providers) {
+			this.providers = providers;
+		}
+
+		public boolean isHedgeEnabled() {
+			return hedgeEnabled;
+		}
+
+		public void setHedgeEnabled(boolean hedgeEnabled) {
+			this.hedgeEnabled = hedgeEnabled;
+		}
+
+		public long getMinHedgeDelayMillis() {
+			return minHedgeDelayMillis;
+		}
+
+		public void setMinHedgeDelayMillis(long minHedgeDelayMillis) {
+			this.minHedgeDelayMillis = minHedgeDelayMillis;
+		}
+
+		public double getAlpha() {
+			return alpha;
+		}
+
+		public void setAlpha(double alpha) {
+			this.alpha = alpha;
+		}
+
+		public long getErrorPenaltyMillis() {
+			return errorPenaltyMillis;
+		}
+
+		public void setErrorPenaltyMillis(long errorPenaltyMillis) {
+			this.errorPenaltyMillis = errorPenaltyMillis;
+		}
+
+		public int getPoolSize() {
+			return poolSize;
+		}
+
+		public void setPoolSize(int poolSize) {
+			this.poolSize = poolSize;
+		}
+
+		public int getQueueCapacity() {
+			return queueCapacity;
+		}
+
+		public void setQueueCapacity(int queueCapacity) {
+			this.queueCapacity = queueCapacity;
+		}
+
+	}
+
+	public static class Engine {
+
+		/**
+		 * Number of pooled engine instances; defaults to the number of available cores.
+		 */
+		private int poolSize = Runtime.getRuntime().availableProcessors();
+
+		/**
+		 * Maximum time in milliseconds a login waits for a free engine.
+		 */
+		private long borrowTimeoutMillis = 3000;
+
+		/**
+		 * Run each new engine once against a synthetic image before it serves logins.
+		 */
+		private boolean warmUp = true;
+
+		/**
+		 * Interval in milliseconds between health checks of idle engines; 0 disables them.
+		 */
+		private long healthCheckIntervalMillis = 60000;
+
+		/**
+		 * Value of the Retry-After header when no engine becomes available within the borrow timeout, in seconds.
+		 */
+		private int retryAfterSeconds = 1;
+
+		public int getPoolSize() {
+			return poolSize;
+		}
+
+		public void setPoolSize(int poolSize) {
+			this.poolSize = poolSize;
+		}
+
+		public long getBorrowTimeoutMillis() {
+			return borrowTimeoutMillis;
+		}
+
+		public void setBorrowTimeoutMillis(long borrowTimeoutMillis) {
+			this.borrowTimeoutMillis = borrowTimeoutMillis;
+		}
+
+		public boolean isWarmUp() {
+			return warmUp;
+		}
+
+		public void setWarmUp(boolean warmUp) {
+			this.warmUp = warmUp;
+		}
+
+		public long getHealthCheckIntervalMillis() {
+			return healthCheckIntervalMillis;
+		}
+
+		public void setHealthCheckIntervalMillis(long healthCheckIntervalMillis) {
+			this.healthCheckIntervalMillis = healthCheckIntervalMillis;
+		}
+
+		public int getRetryAfterSeconds() {
+			return retryAfterSeconds;
+		}
+
+		public void setRetryAfterSeconds(int retryAfterSeconds) {
+			this.retryAfterSeconds = retryAfterSeconds;
+		}
+
+	}
+
+	public static class Cache {
+
+		/**
+		 * Short-circuit identical image submissions, or a face token resubmitted without an image by the same client, to the cached recognition result.
+		 */
+		private boolean enabled = false;
+
+		/**
+		 * Maximum number of cached entries; the oldest entries are evicted first.
+		 */
+		private int maxSize = 10000;
+
+		/**
+		 * Time in milliseconds a cached result stays valid.
+		 */
+		private long ttlMillis = 30000;
+
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		public int getMaxSize() {
+			return maxSize;
+		}
+
+		public void setMaxSize(int maxSize) {
+			this.maxSize = maxSize;
+		}
+
+		public long getTtlMillis() {
+			return ttlMillis;
+		}
+
+		public void setTtlMillis(long ttlMillis) {
+			this.ttlMillis = ttlMillis;
+		}
+
+	}
+
+	public static class Session {
+
+		/**
+		 * Issue an HS256-signed token on face login and authenticate stateless requests by verifying it.
+		 */
+		private boolean enabled = false;
+
+		/**
+		 * Id of the key used to sign new tokens.
+		 */
+		private String keyId = "default";
+
+		/**
+		 * HMAC secret of the signing key; a random secret is generated when empty (tokens then do not survive restarts).
+		 */
+		private String secret;
+
+		/**
+		 * Retired secrets by key id, still accepted when verifying tokens issued before a key rotation.
+		 */
+		private Map<String, String> verificationSecrets = new LinkedHashMap<String, String>();
+
+		/**
+		 * Lifetime of an issued token in milliseconds.
+		 */
+		private long ttlMillis = 2 * 60 * 60 * 1000L;
+
+		/**
+		 * Request and response header carrying the token; "Authorization: Bearer" is accepted as well.
+		 */
+		private String header = "X-Authorization";
+
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		public String getKeyId() {
+			return keyId;
+		}
+
+		public void setKeyId(String keyId) {
+			this.keyId = keyId;
+		}
+
+		public String getSecret() {
+			return secret;
+		}
+
+		public void setSecret(String secret) {
+			this.secret = secret;
+		}
+
+		public Map<String, String> getVerificationSecrets() {
+			return verificationSecrets;
+		}
+
+		public void setVerificationSecrets(Map<String, String> verificationSecrets) {
+			this.verificationSecrets = verificationSecrets;
+		}
+
+		public long getTtlMillis() {
+			return ttlMillis;
+		}
+
+		public void setTtlMillis(long ttlMillis) {
+			this.ttlMillis = ttlMillis;
+		}
+
+		public String getHeader() {
+			return header;
+		}
+
+		public void setHeader(String header) {
+			this.header = header;
+		}
+
+	}
+
+	public static class Screening {
+
+		/**
+		 * Reject unusable images before they reach the recognition provider.
+		 */
+		private boolean enabled = false;
+
+		/**
+		 * Minimum image size in bytes.
+		 */
+		private int minBytes = 2048;
+
+		/**
+		 * Maximum image size in bytes; 0 leaves the limit to authc.max-image-bytes.
+		 */
+		private int maxBytes = 0;
+
+		/**
+		 * Minimum length in pixels of the shorter image side, read from the image header.
+		 */
+		private int minSide = 80;
+
+		/**
+		 * Maximum length in pixels of the longer image side, read from the image header; 0 disables the limit.
+		 */
+		private int maxSide = 8000;
+
+		/**
+		 * Estimate brightness and blur on a downscaled copy of the image.
+		 */
+		private boolean qualityEnabled = true;
+
+		/**
+		 * Minimum mean brightness, 0-255.
+		 */
+		private double minBrightness = 40d;
+
+		/**
+		 * Maximum mean brightness, 0-255.
+		 */
+		private double maxBrightness = 220d;
+
+		/**
+		 * Minimum sharpness, measured as the variance of the Laplacian on the downscaled image.
+		 */
+		private double minSharpness = 15d;
+
+		/**
+		 * Minimum number of detected faces; only checked when a FaceDetector bean is present.
+		 */
+		private int minFaces = 1;
+
+		/**
+		 * Maximum number of detected faces; 0 disables the limit.
+		 */
+		private int maxFaces = 1;
+
+		/**
+		 * Longest side in pixels of the downscaled copy used by the quality and face-count checks.
+		 */
+		private int analysisSize = 320;
+
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		public int getMinBytes() {
+			return minBytes;
+		}
+
+		public void setMinBytes(int minBytes) {
+			this.minBytes = minBytes;
+		}
+
+		public int getMaxBytes() {
+			return maxBytes;
+		}
+
+		public void setMaxBytes(int maxBytes) {
+			this.maxBytes = maxBytes;
+		}
+
+		public int getMinSide() {
+			return minSide;
+		}
+
+		public void setMinSide(int minSide) {
+			this.minSide = minSide;
+		}
+
+		public int getMaxSide() {
+			return maxSide;
+		}
+
+		public void setMaxSide(int maxSide) {
+			this.maxSide = maxSide;
+		}
+
+		public boolean isQualityEnabled() {
+			return qualityEnabled;
+		}
+
+		public void setQualityEnabled(boolean qualityEnabled) {
+			this.qualityEnabled = qualityEnabled;
+		}
+
+		public double getMinBrightness() {
+			return minBrightness;
+		}
+
+		public void setMinBrightness(double minBrightness) {
+			this.minBrightness = minBrightness;
+		}
+
+		public double getMaxBrightness() {
+			return maxBrightness;
+		}
+
+		public void setMaxBrightness(double maxBrightness) {
+			this.maxBrightness = maxBrightness;
+		}
+
+		public double getMinSharpness() {
+			return minSharpness;
+		}
+
+		public void setMinSharpness(double minSharpness) {
+			this.minSharpness = minSharpness;
+		}
+
+		public int getMinFaces() {
+			return minFaces;
+		}
+
+		public void setMinFaces(int minFaces) {
+			this.minFaces = minFaces;
+		}
+
+		public int getMaxFaces() {
+			return maxFaces;
+		}
+
+		public void setMaxFaces(int maxFaces) {
+			this.maxFaces = maxFaces;
+		}
+
+		public int getAnalysisSize() {
+			return analysisSize;
+		}
+
+		public void setAnalysisSize(int analysisSize) {
+			this.analysisSize = analysisSize;
+		}
+
+	}
+
+	public static class Preprocess {
+
+		/**
+		 * Crop to the detected face and downscale images before they reach the recognition provider.
+		 */
+		private boolean enabled = false;
+
+		/**
+		 * Longest side in pixels of the image sent for recognition.
+		 */
+		private int targetSize = 400;
+
+		/**
+		 * Fraction of the face box added on each side when cropping; only used when a FaceDetector bean is present.
+		 */
+		private float margin = 0.3f;
+
+		/**
+		 * JPEG quality of the re-encoded image, between 0 and 1.
+		 */
+		private float quality = 0.85f;
+
+		/**
+		 * Longest side in pixels of the downscaled copy used for face detection.
+		 */
+		private int analysisSize = 640;
+
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		public int getTargetSize() {
+			return targetSize;
+		}
+
+		public void setTargetSize(int targetSize) {
+			this.targetSize = targetSize;
+		}
+
+		public float getMargin() {
+			return margin;
+		}
+
+		public void setMargin(float margin) {
+			this.margin = margin;
+		}
+
+		public float getQuality() {
+			return quality;
+		}
+
+		public void setQuality(float quality) {
+			this.quality = quality;
+		}
+
+		public int getAnalysisSize() {
+			return analysisSize;
+		}
+
+		public void setAnalysisSize(int analysisSize) {
+			this.analysisSize = analysisSize;
+		}
+
+	}
+
+	public static class Limit {
+
+		/**
+		 * Limit concurrent recognition requests and reject the excess with 503 instead of queueing them on blocked threads.
+		 */
+		private boolean enabled = false;
+
+		/**
+		 * Concurrency limit before any adjustment.
+		 */
+		private int initialLimit = 20;
+
+		/**
+		 * Lower bound of the adaptive concurrency limit.
+		 */
+		private int minLimit = 1;
+
+		/**
+		 * Upper bound of the adaptive concurrency limit; set to the backend QPS quota times its latency for remote APIs.
+		 */
+		private int maxLimit = 200;
+
+		/**
+		 * Factor applied to the limit when a backend fails or exceeds the latency threshold.
+		 */
+		private double backoffRatio = 0.9d;
+
+		/**
+		 * Latency in milliseconds above which a successful call still shrinks the limit; 0 reacts to errors only.
+		 */
+		private long latencyThresholdMillis = 0L;
+
+		/**
+		 * Maximum number of requests waiting for capacity; further requests are rejected immediately.
+		 */
+		private int maxQueueSize = 100;
+
+		/**
+		 * Maximum time in milliseconds a request waits for capacity before being rejected.
+		 */
+		private long maxWaitMillis = 1000L;
+
+		/**
+		 * Value of the Retry-After header on rejected requests, in seconds.
+		 */
+		private int retryAfterSeconds = 1;
+
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		public int getInitialLimit() {
+			return initialLimit;
+		}
+
+		public void setInitialLimit(int initialLimit) {
+			this.initialLimit = initialLimit;
+		}
+
+		public int getMinLimit() {
+			return minLimit;
+		}
+
+		public void setMinLimit(int minLimit) {
+			this.minLimit = minLimit;
+		}
+
+		public int getMaxLimit() {
+			return maxLimit;
+		}
+
+		public void setMaxLimit(int maxLimit) {
+			this.maxLimit = maxLimit;
+		}
+
+		public double getBackoffRatio() {
+			return backoffRatio;
+		}
+
+		public void setBackoffRatio(double backoffRatio) {
+			this.backoffRatio = backoffRatio;
+		}
+
+		public long getLatencyThresholdMillis() {
+			return latencyThresholdMillis;
+		}
+
+		public void setLatencyThresholdMillis(long latencyThresholdMillis) {
+			this.latencyThresholdMillis = latencyThresholdMillis;
+		}
+
+		public int getMaxQueueSize() {
+			return maxQueueSize;
+		}
+
+		public void setMaxQueueSize(int maxQueueSize) {
+			this.maxQueueSize = maxQueueSize;
+		}
+
+		public long getMaxWaitMillis() {
+			return maxWaitMillis;
+		}
+
+		public void setMaxWaitMillis(long maxWaitMillis) {
+			this.maxWaitMillis = maxWaitMillis;
+		}
+
+		public int getRetryAfterSeconds() {
+			return retryAfterSeconds;
+		}
+
+		public void setRetryAfterSeconds(int retryAfterSeconds) {
+			this.retryAfterSeconds = retryAfterSeconds;
+		}
+
+	}
+
+	public static class Throttle {
+
+		/**
+		 * Reject excess login attempts per client IP and per target face with 429 before the image is read.
+		 */
+		private boolean enabled = false;
+
+		/**
+		 * Login attempts per minute allowed from one client IP; 0 disables the IP dimension.
+		 */
+		private double ipPermitsPerMinute = 60d;
+
+		/**
+		 * Consecutive attempts allowed from an idle client IP.
+		 */
+		private int ipBurst = 20;
+
+		/**
+		 * Login attempts per minute allowed against one face; 0 disables the face dimension.
+		 */
+		private double faceIdPermitsPerMinute = 10d;
+
+		/**
+		 * Consecutive attempts allowed against an idle face.
+		 */
+		private int faceIdBurst = 5;
+
+		/**
+		 * Query parameter identifying the target face; defaults to the face token parameter. It is read from the
+		 * query string only, so the request body is not parsed before throttling. The key is supplied by the client
+		 * and is advisory: varying it evades the face dimension, the IP dimension is the actual bound.
+		 */
+		private String faceIdParam = "faceToken";
+
+		/**
+		 * Maximum number of keys tracked per dimension. Once reached, only refilled buckets are evicted and further new
+		 * keys share one overflow bucket per stripe.
+		 */
+		private int maxKeys = 100000;
+
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		public double getIpPermitsPerMinute() {
+			return ipPermitsPerMinute;
+		}
+
+		public void setIpPermitsPerMinute(double ipPermitsPerMinute) {
+			this.ipPermitsPerMinute = ipPermitsPerMinute;
+		}
+
+		public int getIpBurst() {
+			return ipBurst;
+		}
+
+		public void setIpBurst(int ipBurst) {
+			this.ipBurst = ipBurst;
+		}
+
+		public double getFaceIdPermitsPerMinute() {
+			return faceIdPermitsPerMinute;
+		}
+
+		public void setFaceIdPermitsPerMinute(double faceIdPermitsPerMinute) {
+			this.faceIdPermitsPerMinute = faceIdPermitsPerMinute;
+		}
+
+		public int getFaceIdBurst() {
+			return faceIdBurst;
+		}
+
+		public void setFaceIdBurst(int faceIdBurst) {
+			this.faceIdBurst = faceIdBurst;
+		}
+
+		public String getFaceIdParam() {
+			return faceIdParam;
+		}
+
+		public void setFaceIdParam(String faceIdParam) {
+			this.faceIdParam = faceIdParam;
+		}
+
+		public int getMaxKeys() {
+			return maxKeys;
+		}
+
+		public void setMaxKeys(int maxKeys) {
+			this.maxKeys = maxKeys;
+		}
+
+	}
+
+	public static class Enrollment {
+
+		/**
+		 * Enable the enrollment service; flat galleries become copy-on-write so searches never block on updates.
+		 */
+		private boolean enabled = false;
+
+		/**
+		 * Path of the write-ahead log replayed on startup. With a template store it only holds the changes since the
+		 * last checkpoint, the store being the durable record.
+		 */
+		private String path = "faceid/enrollment.wal";
+
+		/**
+		 * Force every log append to disk before it is applied.
+		 */
+		private boolean sync = true;
+
+		/**
+		 * Number of changes kept outside the contiguous copy-on-write array before they are merged into it.
+		 */
+		private int maxDelta = 1024;
+
+		/**
+		 * Interval in milliseconds between compaction checks of the log, or between checkpoints with a template store.
+		 */
+		private long compactionIntervalMillis = 10 * 60 * 1000L;
+
+		/**
+		 * Minimum number of log records before compaction is considered.
+		 */
+		private long compactionMinRecords = 10000L;
+
+		/**
+		 * Compact once the log holds more than this many records per enrolled face.
+		 */
+		private double compactionRatio = 2d;
+
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		public String getPath() {
+			return path;
+		}
+
+		public void setPath(String path) {
+			this.path = path;
+		}
+
+		public boolean isSync() {
+			return sync;
+		}
+
+		public void setSync(boolean sync) {
+			this.sync = sync;
+		}
+
+		public int getMaxDelta() {
+			return maxDelta;
+		}
+
+		public void setMaxDelta(int maxDelta) {
+			this.maxDelta = maxDelta;
+		}
+
+		public long getCompactionIntervalMillis() {
+			return compactionIntervalMillis;
+		}
+
+		public void setCompactionIntervalMillis(long compactionIntervalMillis) {
+			this.compactionIntervalMillis = compactionIntervalMillis;
+		}
+
+		public long getCompactionMinRecords() {
+			return compactionMinRecords;
+		}
+
+		public void setCompactionMinRecords(long compactionMinRecords) {
+			this.compactionMinRecords = compactionMinRecords;
+		}
+
+		public double getCompactionRatio() {
+			return compactionRatio;
+		}
+
+		public void setCompactionRatio(double compactionRatio) {
+			this.compactionRatio = compactionRatio;
+		}
+
+	}
+
+	public static class Reactive {
+
+		/**
+		 * Path accepting face login POST requests.
+		 */
+		private String loginUrl = "/login/faceid";
+
+		/**
+		 * Ant-style paths requiring a valid session token.
+		 */
+		private List<String> authcPaths = new ArrayList<String>(Collections.singletonList("/**"));
+
+		/**
+		 * Ant-style paths passed through without authentication, checked before the authenticated paths.
+		 */
+		private List<String> anonPaths = new ArrayList<String>();
+
+		/**
+		 * Order of the filter among the WebFilters.
+		 */
+		private int order = -100;
+
+		public String getLoginUrl() {
+			return loginUrl;
+		}
+
+		public void setLoginUrl(String loginUrl) {
+			this.loginUrl = loginUrl;
+		}
+
+		public List<String> getAuthcPaths() {
+			return authcPaths;
+		}
+
+		public void setAuthcPaths(List<String> authcPaths) {
+			this.authcPaths = authcPaths;
+		}
+
+		public List<String> getAnonPaths() {
+			return anonPaths;
+		}
+
+		public void setAnonPaths(List<String> anonPaths) {
+			this.anonPaths = anonPaths;
+		}
+
+		public int getOrder() {
+			return order;
+		}
+
+		public void setOrder(int order) {
+			this.order = order;
+		}
+
+	}
+
+}
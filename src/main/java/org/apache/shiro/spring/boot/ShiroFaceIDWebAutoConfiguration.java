@@ -1,13 +1,93 @@
 package org.apache.shiro.spring.boot;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+
+import org.apache.shiro.spring.boot.faceid.authc.AsyncFaceRecognitionProvider;
+import org.apache.shiro.spring.boot.faceid.authc.BatchFaceRecognitionProvider;
+import org.apache.shiro.spring.boot.faceid.authc.BatchingFaceRecognitionProvider;
+import org.apache.shiro.spring.boot.faceid.authc.CachingFaceRecognitionProvider;
+import org.apache.shiro.spring.boot.faceid.authc.ExecutorAsyncFaceRecognitionProvider;
+import org.apache.shiro.spring.boot.faceid.authc.FaceFeatureExtractor;
+import org.apache.shiro.spring.boot.faceid.authc.FaceRecognitionExecutor;
+import org.apache.shiro.spring.boot.faceid.authc.FaceRecognitionExecutorType;
+import org.apache.shiro.spring.boot.faceid.authc.FaceRecognitionProvider;
+import org.apache.shiro.spring.boot.faceid.authc.GalleryFaceRecognitionProvider;
+import org.apache.shiro.spring.boot.faceid.authc.LimitingFaceRecognitionProvider;
+import org.apache.shiro.spring.boot.faceid.authc.MeteredFaceRecognitionProvider;
+import org.apache.shiro.spring.boot.faceid.authc.PreprocessingFaceRecognitionProvider;
+import org.apache.shiro.spring.boot.faceid.authc.RoutingFaceRecognitionProvider;
+import org.apache.shiro.spring.boot.faceid.authc.ScreeningFaceRecognitionProvider;
+import org.apache.shiro.spring.boot.faceid.engine.FaceEngineFactory;
+import org.apache.shiro.spring.boot.faceid.engine.FaceEnginePool;
+import org.apache.shiro.spring.boot.faceid.enrollment.FaceEnrollmentLog;
+import org.apache.shiro.spring.boot.faceid.enrollment.FaceEnrollmentService;
+import org.apache.shiro.spring.boot.faceid.gallery.CopyOnWriteFaceGallery;
+import org.apache.shiro.spring.boot.faceid.gallery.FaceGallery;
+import org.apache.shiro.spring.boot.faceid.gallery.FaceGalleryPartition;
+import org.apache.shiro.spring.boot.faceid.gallery.FaceGalleryType;
+import org.apache.shiro.spring.boot.faceid.gallery.FaceQuantization;
+import org.apache.shiro.spring.boot.faceid.gallery.FaceQuantizer;
+import org.apache.shiro.spring.boot.faceid.gallery.FaceTemplateStore;
+import org.apache.shiro.spring.boot.faceid.gallery.FlatFaceGallery;
+import org.apache.shiro.spring.boot.faceid.gallery.HnswFaceGallery;
+import org.apache.shiro.spring.boot.faceid.gallery.MappedFaceTemplateStore;
+import org.apache.shiro.spring.boot.faceid.gallery.PersistentFaceGallery;
+import org.apache.shiro.spring.boot.faceid.gallery.ProductQuantizer;
+import org.apache.shiro.spring.boot.faceid.gallery.QuantizedFaceGallery;
+import org.apache.shiro.spring.boot.faceid.gallery.ScalarQuantizer;
+import org.apache.shiro.spring.boot.faceid.gallery.ShardedFaceGallery;
+import org.apache.shiro.spring.boot.faceid.image.FaceDetector;
+import org.apache.shiro.spring.boot.faceid.image.FaceImageBufferPool;
+import org.apache.shiro.spring.boot.faceid.image.FaceImagePreprocessor;
+import org.apache.shiro.spring.boot.faceid.metrics.FaceIDLoginMetrics;
+import org.apache.shiro.spring.boot.faceid.metrics.FaceIDMeterBinder;
+import org.apache.shiro.spring.boot.faceid.metrics.MicrometerFaceIDLoginMetrics;
+import org.apache.shiro.spring.boot.faceid.realm.FaceIDStatefulAuthorizingRealm;
+import org.apache.shiro.spring.boot.faceid.screening.ByteSizeCheck;
+import org.apache.shiro.spring.boot.faceid.screening.DimensionCheck;
+import org.apache.shiro.spring.boot.faceid.screening.FaceCountCheck;
+import org.apache.shiro.spring.boot.faceid.screening.FaceImageCheck;
+import org.apache.shiro.spring.boot.faceid.screening.FaceImageScreening;
+import org.apache.shiro.spring.boot.faceid.screening.QualityCheck;
+import org.apache.shiro.spring.boot.faceid.throttle.FaceIDLoginThrottle;
+import org.apache.shiro.spring.boot.faceid.throttle.TokenBucketThrottle;
+import org.apache.shiro.spring.boot.faceid.token.FaceIDSessionTokenCodec;
 import org.apache.shiro.spring.web.config.AbstractShiroWebConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
 import org.springframework.boot.autoconfigure.AutoConfigureBefore;
+import org.springframework.boot.autoconfigure.condition.AnyNestedCondition;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationContextAware;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Conditional;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.StringUtils;
+
+import io.micrometer.core.instrument.MeterRegistry;
 
 //https://blog.csdn.net/weixin_42058600/article/details/81837056
 @Configuration
@@ -15,12 +95,539 @@ import org.springframework.context.annotation.Configuration;
 	"org.apache.shiro.spring.config.web.autoconfigure.ShiroWebAutoConfiguration",  // shiro-spring-boot-web-starter
 	"org.apache.shiro.spring.boot.ShiroBizWebAutoConfiguration" // spring-boot-starter-shiro-biz
 })
+@AutoConfigureAfter( name = {
+	"org.springframework.boot.actuate.autoconfigure.metrics.CompositeMeterRegistryAutoConfiguration" // MeterRegistry
+})
 @ConditionalOnProperty(prefix = ShiroFaceIDProperties.PREFIX, value = "enabled", havingValue = "true")
 @EnableConfigurationProperties({ ShiroFaceIDProperties.class })
 public class ShiroFaceIDWebAutoConfiguration extends AbstractShiroWebConfiguration implements ApplicationContextAware {
 
+	protected static final Logger LOG = LoggerFactory.getLogger(ShiroFaceIDWebAutoConfiguration.class);
 	private ApplicationContext applicationContext;
+
+	@Bean
+	@ConditionalOnMissingBean
+	@ConditionalOnProperty(prefix = ShiroFaceIDProperties.PREFIX + ".gallery", value = "enabled", havingValue = "true")
+	public FaceGallery faceGallery(ShiroFaceIDProperties properties) throws IOException {
+		ShiroFaceIDProperties.Gallery gallery = properties.getGallery();
+		ShiroFaceIDProperties.Sharding sharding = gallery.getSharding();
+		String path = gallery.getStore().getPath();
+		if (FaceGalleryPartition.NONE.equals(sharding.getPartition())) {
+			return createFaceGallery(gallery, properties.getEnrollment(), path, ForkJoinPool.commonPool());
+		}
+		if (FaceGalleryPartition.TENANT.equals(sharding.getPartition()) && StringUtils.hasText(path)) {
+			throw new IllegalStateException("Tenant-partitioned face galleries do not support the template store.");
+		}
+		// 分片与分片内的并行扫描共用同一个线程池；哈希分片的模板文件按分片编号区分，分片数变化后需重建
+		final ForkJoinPool pool = sharding.getParallelism() > 0 ? new ForkJoinPool(sharding.getParallelism())
+				: ForkJoinPool.commonPool();
+		Function<String, FaceGallery> shardFactory = key -> {
+			try {
+				return createFaceGallery(gallery, properties.getEnrollment(), StringUtils.hasText(path) ? path + "-" + key : null,
+						pool);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		};
+		LOG.info("Sharding face gallery by {}", sharding.getPartition());
+		return new ShardedFaceGallery(gallery.getDimension(), sharding.getPartition(), sharding.getShards(),
+				sharding.getTenantSeparator(), shardFactory, pool) {
+
+			@Override
+			public void close() throws IOException {
+				super.close();
+				if (pool != ForkJoinPool.commonPool()) {
+					pool.shutdown();
+				}
+			}
+
+		};
+	}
+
+	protected FaceGallery createFaceGallery(ShiroFaceIDProperties.Gallery gallery, ShiroFaceIDProperties.Enrollment enrollment,
+			String path, ForkJoinPool pool) throws IOException {
+		FaceTemplateStore store = null;
+		if (StringUtils.hasText(path)) {
+			ShiroFaceIDProperties.Store storeProperties = gallery.getStore();
+			MappedFaceTemplateStore mappedStore = new MappedFaceTemplateStore(new File(path),
+					gallery.getDimension(), gallery.getMetric(), storeProperties.getMaxFaceIdBytes(),
+					storeProperties.getSegmentSize(), pool);
+			mappedStore.setChunkSize(gallery.getChunkSize());
+			store = mappedStore;
+		}
+		if (FaceGalleryType.HNSW.equals(gallery.getType())) {
+			ShiroFaceIDProperties.Hnsw hnsw = gallery.getHnsw();
+			HnswFaceGallery hnswGallery = new HnswFaceGallery(gallery.getDimension(), gallery.getMetric(), hnsw.getM(),
+					hnsw.getEfConstruction(), hnsw.getEfSearch(), gallery.getInitialCapacity());
+			hnswGallery.setMaxDeletedRatio(hnsw.getMaxDeletedRatio());
+			return store == null ? hnswGallery : new PersistentFaceGallery(store, hnswGallery);
+		}
+		ShiroFaceIDProperties.Quantization quantization = gallery.getQuantization();
+		if (!FaceQuantization.NONE.equals(quantization.getType())) {
+			QuantizedFaceGallery quantizedGallery = new QuantizedFaceGallery(faceQuantizer(gallery, store),
+					gallery.getMetric(), gallery.getInitialCapacity(), pool);
+			quantizedGallery.setChunkSize(gallery.getChunkSize());
+			quantizedGallery.setRerankFactor(quantization.getRerankFactor());
+			quantizedGallery.setExactStore(store);
+			return store == null ? quantizedGallery : new PersistentFaceGallery(store, quantizedGallery);
+		}
+		// 精确检索直接扫描映射文件，模板数据不进入 Java 堆
+		if (store != null) {
+			return store;
+		}
+		// 在线注册时使用写时复制的特征库，注册与注销不阻塞检索
+		if (enrollment.isEnabled()) {
+			CopyOnWriteFaceGallery faceGallery = new CopyOnWriteFaceGallery(gallery.getDimension(), gallery.getMetric(), pool);
+			faceGallery.setChunkSize(gallery.getChunkSize());
+			faceGallery.setMaxDelta(enrollment.getMaxDelta());
+			return faceGallery;
+		}
+		FlatFaceGallery faceGallery = new FlatFaceGallery(gallery.getDimension(), gallery.getMetric(),
+				gallery.getInitialCapacity(), pool);
+		faceGallery.setChunkSize(gallery.getChunkSize());
+		return faceGallery;
+	}
+
+	/**
+	 * 在线注册：变更先写入预写日志再应用到特征库，启动时重放日志恢复
+	 */
+	@Bean
+	@ConditionalOnBean(FaceGallery.class)
+	@ConditionalOnMissingBean
+	@ConditionalOnProperty(prefix = ShiroFaceIDProperties.PREFIX + ".enrollment", value = "enabled", havingValue = "true")
+	public FaceEnrollmentService faceEnrollmentService(FaceGallery faceGallery, ShiroFaceIDProperties properties)
+			throws IOException {
+		ShiroFaceIDProperties.Enrollment enrollment = properties.getEnrollment();
+		FaceEnrollmentLog log = new FaceEnrollmentLog(new File(enrollment.getPath()), faceGallery.dimension(), enrollment.isSync());
+		FaceEnrollmentService enrollmentService = new FaceEnrollmentService(faceGallery, log);
+		enrollmentService.setCompactionMinRecords(enrollment.getCompactionMinRecords());
+		enrollmentService.setCompactionRatio(enrollment.getCompactionRatio());
+		enrollmentService.recover();
+		// 注销或替换后清除识别结果缓存，旧结果不能继续用于登录
+		CachingFaceRecognitionProvider cachingProvider = FaceRecognitionProviderChain.layer(applicationContext,
+				CachingFaceRecognitionProvider.class);
+		if (cachingProvider != null) {
+			enrollmentService.addChangeListener(faceId -> cachingProvider.invalidateAll());
+		}
+		enrollmentService.scheduleCompaction(
+				Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("faceid-enrollment-")),
+				enrollment.getCompactionIntervalMillis());
+		return enrollmentService;
+	}
+
+	protected FaceQuantizer faceQuantizer(ShiroFaceIDProperties.Gallery gallery, FaceTemplateStore store) {
+		ShiroFaceIDProperties.Quantization quantization = gallery.getQuantization();
+		boolean pq = FaceQuantization.PQ.equals(quantization.getType());
+		if (!pq && quantization.getMaxAbs() != null) {
+			return new ScalarQuantizer(gallery.getDimension(), gallery.getMetric(), quantization.getMaxAbs());
+		}
+		// 乘积量化与 int8 量化范围的校准都需要训练样本，从已持久化的模板中抽取
+		final List<float[]> samples = new ArrayList<float[]>();
+		if (store != null) {
+			final int limit = quantization.getTrainingSamples();
+			store.forEach((faceId, feature) -> {
+				if (samples.size() < limit) {
+					samples.add(feature);
+				}
+			});
+		}
+		if (!samples.isEmpty()) {
+			if (pq) {
+				return ProductQuantizer.train(samples, gallery.getDimension(), gallery.getMetric(),
+						quantization.getSubspaces(), quantization.getIterations(), 42L);
+			}
+			return ScalarQuantizer.train(samples, gallery.getDimension(), gallery.getMetric());
+		}
+		if (quantization.getMaxAbs() != null) {
+			LOG.warn("No stored face templates to train the product quantizer, falling back to int8 quantization.");
+			return new ScalarQuantizer(gallery.getDimension(), gallery.getMetric(), quantization.getMaxAbs());
+		}
+		if (!gallery.getMetric().isNormalized()) {
+			throw new IllegalStateException("No stored face templates to calibrate int8 quantization, "
+					+ "set the quantization max-abs for the " + gallery.getMetric() + " metric.");
+		}
+		LOG.warn("No stored face templates to calibrate {} quantization, using int8 with range ±{}.", quantization.getType(),
+				ScalarQuantizer.normalizedMaxAbs(gallery.getDimension()));
+		return new ScalarQuantizer(gallery.getDimension(), gallery.getMetric(),
+				ScalarQuantizer.normalizedMaxAbs(gallery.getDimension()));
+	}
+
+	/**
+	 * 原生识别引擎池：引擎非线程安全且初始化昂贵，按核数预先创建并预热
+	 */
+	@Bean(destroyMethod = "close")
+	@ConditionalOnBean(FaceEngineFactory.class)
+	@ConditionalOnMissingBean
+	public FaceEnginePool<?> faceEnginePool(FaceEngineFactory<?> engineFactory, ShiroFaceIDProperties properties) {
+		return createEnginePool(engineFactory, properties.getEngine());
+	}
+
+	private static <E> FaceEnginePool<E> createEnginePool(FaceEngineFactory<E> engineFactory, ShiroFaceIDProperties.Engine engine) {
+		FaceEnginePool<E> pool = new FaceEnginePool<E>(engineFactory, engine.getPoolSize(), engine.getBorrowTimeoutMillis());
+		pool.setWarmUp(engine.isWarmUp());
+		pool.setHealthCheckIntervalMillis(engine.getHealthCheckIntervalMillis());
+		pool.setRetryAfterSeconds(engine.getRetryAfterSeconds());
+		pool.start();
+		return pool;
+	}
+
+	@Bean
+	@ConditionalOnBean({ FaceFeatureExtractor.class, FaceGallery.class })
+	@ConditionalOnMissingBean
+	public FaceRecognitionProvider faceRecognitionProvider(FaceFeatureExtractor featureExtractor,
+			FaceGallery faceGallery, ShiroFaceIDProperties properties) {
+		ShiroFaceIDProperties.Gallery gallery = properties.getGallery();
+		float threshold = gallery.resolveThreshold();
+		// 阈值超出度量方式的得分范围时所有匹配都会被拒绝（或放行），启动时即报错
+		if (!gallery.getMetric().isValidThreshold(threshold)) {
+			throw new IllegalStateException("Face gallery threshold " + threshold + " is out of the score range of the "
+					+ gallery.getMetric() + " metric.");
+		}
+		return new GalleryFaceRecognitionProvider(featureExtractor, faceGallery, threshold);
+	}
+
+	@Bean
+	@Primary
+	@ConditionalOnBean(BatchFaceRecognitionProvider.class)
+	@ConditionalOnProperty(prefix = ShiroFaceIDProperties.PREFIX + ".batch", value = "enabled", havingValue = "true")
+	public BatchingFaceRecognitionProvider batchingFaceRecognitionProvider(BatchFaceRecognitionProvider batchProvider,
+			ShiroFaceIDProperties properties) {
+		ShiroFaceIDProperties.Batch batch = properties.getBatch();
+		BatchingFaceRecognitionProvider batchingProvider = new BatchingFaceRecognitionProvider(batchProvider,
+				Executors.newFixedThreadPool(batch.getConcurrency(), new CustomizableThreadFactory("faceid-batch-")),
+				batch.getMaxBatchSize(), batch.getMaxWaitMillis(), batch.getQueueCapacity());
+		batchingProvider.setRetryAfterSeconds(batch.getRetryAfterSeconds());
+		return batchingProvider;
+	}
+
+	/**
+	 * 多后端路由：未指定后端名称时路由到全部后端识别服务，组合链中的包装不作为后端
+	 */
+	@Bean(autowireCandidate = false)
+	@ConditionalOnBean(FaceRecognitionProvider.class)
+	@ConditionalOnMissingBean
+	@ConditionalOnProperty(prefix = ShiroFaceIDProperties.PREFIX + ".routing", value = "enabled", havingValue = "true")
+	public RoutingFaceRecognitionProvider routingFaceRecognitionProvider(Map<String, FaceRecognitionProvider> providers,
+			ObjectProvider<FaceIDLoginMetrics> loginMetrics, ShiroFaceIDProperties properties) {
+		ShiroFaceIDProperties.Routing routing = properties.getRouting();
+		List<String> names = new ArrayList<String>(routing.getProviders());
+		if (names.isEmpty()) {
+			providers.forEach((name, provider) -> {
+				if (!FaceRecognitionProviderChain.isLayer(provider)) {
+					names.add(name);
+				}
+			});
+		}
+		FaceIDLoginMetrics metrics = loginMetrics.getIfAvailable();
+		FaceRecognitionExecutor executor = null;
+		List<RoutingFaceRecognitionProvider.Backend> backends = new ArrayList<RoutingFaceRecognitionProvider.Backend>();
+		for (String name : names) {
+			FaceRecognitionProvider provider = providers.get(name);
+			if (provider == null || FaceRecognitionProviderChain.isLayer(provider)) {
+				throw new IllegalStateException("No backend FaceRecognitionProvider bean named '" + name + "' to route to.");
+			}
+			AsyncFaceRecognitionProvider asyncProvider;
+			if (provider instanceof AsyncFaceRecognitionProvider) {
+				asyncProvider = (AsyncFaceRecognitionProvider) provider;
+			} else {
+				// 同步实现在路由专用线程池上执行，请求线程只等待最先返回的结果；队列已满时拒绝并切换到下一个后端
+				if (executor == null) {
+					executor = FaceRecognitionExecutor.platform(routing.getPoolSize(), routing.getQueueCapacity(),
+							new CustomizableThreadFactory("faceid-route-"));
+				}
+				asyncProvider = new ExecutorAsyncFaceRecognitionProvider(provider, executor);
+			}
+			if (metrics != null) {
+				asyncProvider = new MeteredFaceRecognitionProvider(asyncProvider, name, FaceIDLoginMetrics.STAGE_BACKEND, metrics);
+			}
+			backends.add(new RoutingFaceRecognitionProvider.Backend(name, asyncProvider, routing.getAlpha()));
+		}
+		LOG.info("Routing face recognition across backends {}", names);
+		final FaceRecognitionExecutor routeExecutor = executor;
+		RoutingFaceRecognitionProvider routingProvider = new RoutingFaceRecognitionProvider(backends,
+				Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("faceid-hedge-"))) {
+
+			@Override
+			public void close() {
+				super.close();
+				if (routeExecutor != null) {
+					routeExecutor.close();
+				}
+			}
+
+		};
+		routingProvider.setHedgeEnabled(routing.isHedgeEnabled());
+		routingProvider.setMinHedgeDelayMillis(routing.getMinHedgeDelayMillis());
+		routingProvider.setErrorPenaltyMillis(routing.getErrorPenaltyMillis());
+		return routingProvider;
+	}
+
+	@Bean
+	@ConditionalOnMissingBean
+	@ConditionalOnProperty(prefix = ShiroFaceIDProperties.PREFIX + ".screening", value = "enabled", havingValue = "true")
+	public FaceImageScreening faceImageScreening(ShiroFaceIDProperties properties, ObjectProvider<FaceDetector> faceDetector) {
+		ShiroFaceIDProperties.Screening screening = properties.getScreening();
+		int maxBytes = screening.getMaxBytes() > 0 ? screening.getMaxBytes() : properties.getAuthc().getMaxImageBytes();
+		// 按开销从低到高排列：字节数 → 图片头尺寸 → 降采样画质 → 人脸检测
+		List<FaceImageCheck> checks = new ArrayList<FaceImageCheck>();
+		checks.add(new ByteSizeCheck(screening.getMinBytes(), maxBytes));
+		checks.add(new DimensionCheck(screening.getMinSide(), screening.getMaxSide()));
+		if (screening.isQualityEnabled()) {
+			checks.add(new QualityCheck(screening.getMinBrightness(), screening.getMaxBrightness(), screening.getMinSharpness()));
+		}
+		FaceDetector detector = faceDetector.getIfAvailable();
+		if (detector != null) {
+			checks.add(new FaceCountCheck(detector, screening.getMinFaces(), screening.getMaxFaces()));
+		}
+		return new FaceImageScreening(checks, screening.getAnalysisSize());
+	}
+
+	/**
+	 * 并发限制与过载拒绝：紧贴多后端路由（启用时），否则包装唯一或 @Primary 的识别服务；缓存命中与识别前检查不占用许可
+	 */
+	@Bean(autowireCandidate = false)
+	@ConditionalOnBean(FaceRecognitionProvider.class)
+	@ConditionalOnMissingBean
+	@ConditionalOnProperty(prefix = ShiroFaceIDProperties.PREFIX + ".limit", value = "enabled", havingValue = "true")
+	public LimitingFaceRecognitionProvider limitingFaceRecognitionProvider(
+			ObjectProvider<FaceRecognitionExecutor> faceRecognitionExecutor, ShiroFaceIDProperties properties) {
+		FaceRecognitionProvider delegate = FaceRecognitionProviderChain.delegateOf(applicationContext,
+				LimitingFaceRecognitionProvider.class);
+		ShiroFaceIDProperties.Limit limit = properties.getLimit();
+		LimitingFaceRecognitionProvider limitingProvider = new LimitingFaceRecognitionProvider(delegate,
+				limit.getInitialLimit(), limit.getMinLimit(), limit.getMaxLimit(),
+				Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("faceid-limit-")));
+		limitingProvider.setBackoffRatio(limit.getBackoffRatio());
+		limitingProvider.setLatencyThresholdMillis(limit.getLatencyThresholdMillis());
+		limitingProvider.setMaxQueueSize(limit.getMaxQueueSize());
+		limitingProvider.setMaxWaitMillis(limit.getMaxWaitMillis());
+		limitingProvider.setRetryAfterSeconds(limit.getRetryAfterSeconds());
+		// 异步登录时，同步识别服务在识别线程池上执行，不占用释放许可的线程
+		limitingProvider.setExecutor(faceRecognitionExecutor.getIfAvailable());
+		return limitingProvider;
+	}
+
+	/**
+	 * 识别前裁剪与缩放：包装并发限制、多后端路由（启用时），否则包装唯一或 @Primary 的识别服务
+	 */
+	@Bean(autowireCandidate = false)
+	@ConditionalOnBean(FaceRecognitionProvider.class)
+	@ConditionalOnMissingBean
+	@ConditionalOnProperty(prefix = ShiroFaceIDProperties.PREFIX + ".preprocess", value = "enabled", havingValue = "true")
+	public PreprocessingFaceRecognitionProvider preprocessingFaceRecognitionProvider(
+			ObjectProvider<FaceImageBufferPool> bufferPool,
+			ObjectProvider<FaceDetector> faceDetector,
+			ObjectProvider<FaceRecognitionExecutor> faceRecognitionExecutor, ShiroFaceIDProperties properties) {
+		FaceRecognitionProvider delegate = FaceRecognitionProviderChain.delegateOf(applicationContext,
+				PreprocessingFaceRecognitionProvider.class);
+		ShiroFaceIDProperties.Preprocess preprocess = properties.getPreprocess();
+		FaceImageBufferPool pool = bufferPool.getIfAvailable(() -> new FaceImageBufferPool(properties.getAuthc().getBufferPoolSize()));
+		FaceImagePreprocessor preprocessor = new FaceImagePreprocessor(pool);
+		preprocessor.setDetector(faceDetector.getIfAvailable());
+		preprocessor.setTargetSize(preprocess.getTargetSize());
+		preprocessor.setMargin(preprocess.getMargin());
+		preprocessor.setQuality(preprocess.getQuality());
+		preprocessor.setAnalysisSize(preprocess.getAnalysisSize());
+		preprocessor.setMaxBytes(properties.getAuthc().getMaxImageBytes());
+		PreprocessingFaceRecognitionProvider preprocessingProvider = new PreprocessingFaceRecognitionProvider(delegate, preprocessor);
+		// 异步登录时，解码与重新编码在识别线程池上执行
+		preprocessingProvider.setExecutor(faceRecognitionExecutor.getIfAvailable());
+		return preprocessingProvider;
+	}
+
+	/**
+	 * 识别前检查：包装识别前裁剪与缩放、并发限制、多后端路由（启用时），否则包装唯一或 @Primary 的识别服务
+	 */
+	@Bean(autowireCandidate = false)
+	@ConditionalOnBean({ FaceRecognitionProvider.class, FaceImageScreening.class })
+	@ConditionalOnMissingBean
+	public ScreeningFaceRecognitionProvider screeningFaceRecognitionProvider(FaceImageScreening screening,
+			ObjectProvider<FaceRecognitionExecutor> faceRecognitionExecutor) {
+		FaceRecognitionProvider delegate = FaceRecognitionProviderChain.delegateOf(applicationContext,
+				ScreeningFaceRecognitionProvider.class);
+		ScreeningFaceRecognitionProvider screeningProvider = new ScreeningFaceRecognitionProvider(delegate, screening);
+		// 异步登录时，检查中的解码与同步识别都在识别线程池上执行
+		screeningProvider.setExecutor(faceRecognitionExecutor.getIfAvailable());
+		return screeningProvider;
+	}
+
+	/**
+	 * 识别结果缓存：位于识别前检查、裁剪缩放、并发限制和多后端路由之前（启用时），否则直接包装唯一或 @Primary 的识别服务
+	 */
+	@Bean(autowireCandidate = false)
+	@ConditionalOnBean(FaceRecognitionProvider.class)
+	@ConditionalOnMissingBean
+	@ConditionalOnProperty(prefix = ShiroFaceIDProperties.PREFIX + ".cache", value = "enabled", havingValue = "true")
+	public CachingFaceRecognitionProvider cachingFaceRecognitionProvider(
+			ObjectProvider<FaceRecognitionExecutor> faceRecognitionExecutor, ShiroFaceIDProperties properties) {
+		FaceRecognitionProvider delegate = FaceRecognitionProviderChain.delegateOf(applicationContext,
+				CachingFaceRecognitionProvider.class);
+		ShiroFaceIDProperties.Cache cache = properties.getCache();
+		CachingFaceRecognitionProvider cachingProvider = new CachingFaceRecognitionProvider(delegate, cache.getMaxSize(),
+				cache.getTtlMillis());
+		// 异步登录时，同步实现的未命中请求在识别线程池上执行，不占用容器线程
+		FaceRecognitionExecutor executor = faceRecognitionExecutor.getIfAvailable();
+		if (!(delegate instanceof AsyncFaceRecognitionProvider) && executor != null) {
+			cachingProvider.setAsyncDelegate(new ExecutorAsyncFaceRecognitionProvider(delegate, executor));
+		}
+		return cachingProvider;
+	}
+
+	@Bean
+	@ConditionalOnMissingBean
+	public FaceImageBufferPool faceImageBufferPool(ShiroFaceIDProperties properties) {
+		return new FaceImageBufferPool(properties.getAuthc().getBufferPoolSize());
+	}
+	
+	/**
+	 * 识别线程池：Servlet 异步登录时执行同步识别；WebFlux 下同时执行识别与 Realm 认证，事件循环线程不被阻塞
+	 */
+	@Bean
+	@ConditionalOnMissingBean
+	@Conditional(OnAsyncRecognitionCondition.class)
+	public FaceRecognitionExecutor faceRecognitionExecutor(ShiroFaceIDProperties properties) {
+		ShiroFaceIDProperties.Authc authc = properties.getAuthc();
+		if (authc.getAsyncExecutor() == FaceRecognitionExecutorType.VIRTUAL) {
+			FaceRecognitionExecutor executor = FaceRecognitionExecutor.virtual("faceid-recognition-", authc.getAsyncMaxConcurrency());
+			if (executor != null) {
+				LOG.info("Running blocking face recognition on virtual threads, at most {} in flight.", authc.getAsyncMaxConcurrency());
+				return executor;
+			}
+			LOG.warn("Virtual threads require JDK 21 or later, running face recognition on a pool of {} platform threads instead.",
+					authc.getAsyncPoolSize());
+		}
+		return FaceRecognitionExecutor.platform(authc.getAsyncPoolSize(), authc.getAsyncQueueCapacity(),
+				new CustomizableThreadFactory("faceid-recognition-"));
+	}
+	
+	@Bean
+	@ConditionalOnMissingBean
+	@ConditionalOnProperty(prefix = ShiroFaceIDProperties.PREFIX + ".session", value = "enabled", havingValue = "true")
+	public FaceIDSessionTokenCodec faceIDSessionTokenCodec(ShiroFaceIDProperties properties) {
+		ShiroFaceIDProperties.Session session = properties.getSession();
+		Map<String, byte[]> secrets = new LinkedHashMap<String, byte[]>();
+		for (Map.Entry<String, String> entry : session.getVerificationSecrets().entrySet()) {
+			secrets.put(entry.getKey(), entry.getValue().getBytes(StandardCharsets.UTF_8));
+		}
+		if (StringUtils.hasText(session.getSecret())) {
+			secrets.put(session.getKeyId(), session.getSecret().getBytes(StandardCharsets.UTF_8));
+		} else {
+			LOG.warn("No face session token secret configured, using a random one; issued tokens are only valid on this node until restart.");
+			byte[] secret = new byte[32];
+			new SecureRandom().nextBytes(secret);
+			secrets.put(session.getKeyId(), secret);
+		}
+		return new FaceIDSessionTokenCodec(session.getKeyId(), secrets, session.getTtlMillis());
+	}
+	
+	@Bean
+	@ConditionalOnMissingBean
+	@ConditionalOnProperty(prefix = ShiroFaceIDProperties.PREFIX + ".throttle", value = "enabled", havingValue = "true")
+	public FaceIDLoginThrottle faceIDLoginThrottle(ShiroFaceIDProperties properties) {
+		ShiroFaceIDProperties.Throttle throttle = properties.getThrottle();
+		TokenBucketThrottle ipThrottle = throttle.getIpPermitsPerMinute() > 0
+				? new TokenBucketThrottle(throttle.getIpPermitsPerMinute() / 60d, throttle.getIpBurst(), throttle.getMaxKeys())
+				: null;
+		TokenBucketThrottle faceIdThrottle = throttle.getFaceIdPermitsPerMinute() > 0
+				? new TokenBucketThrottle(throttle.getFaceIdPermitsPerMinute() / 60d, throttle.getFaceIdBurst(), throttle.getMaxKeys())
+				: null;
+		return new FaceIDLoginThrottle(ipThrottle, faceIdThrottle);
+	}
+	
+	/**
+	 * 同步登录由 Realm 完成识别：未指定识别服务（或直接使用后端识别服务）的 Realm 改用组合后的识别服务，
+	 * 与异步登录一样经过缓存、识别前检查、裁剪缩放、并发限制与多后端路由
+	 */
+	@Bean
+	public SmartInitializingSingleton faceIDRealmInitializer(ObjectProvider<FaceIDStatefulAuthorizingRealm> realms,
+			ObjectProvider<FaceRecognitionProvider> faceRecognitionProvider) {
+		return () -> {
+			FaceRecognitionProvider backend = faceRecognitionProvider.getIfAvailable();
+			FaceRecognitionProvider composed = FaceRecognitionProviderChain.outermost(applicationContext);
+			FaceRecognitionProvider provider = composed != null ? composed : backend;
+			if (provider == null) {
+				return;
+			}
+			realms.orderedStream().forEach(realm -> {
+				FaceRecognitionProvider current = realm.getFaceRecognitionProvider();
+				if (current == null || current == backend) {
+					realm.setFaceRecognitionProvider(provider);
+				} else if (current != provider) {
+					LOG.info("Realm [{}] keeps its own face recognition provider {}.", realm.getName(), current);
+				}
+			});
+		};
+	}
 	
+	/**
+	 * 存在 MeterRegistry 时记录人脸登录各环节耗时，并导出已启用组件的统计；否则不做任何记录
+	 */
+	@Configuration
+	@ConditionalOnClass(MeterRegistry.class)
+	@ConditionalOnBean(MeterRegistry.class)
+	protected static class ShiroFaceIDMetricsConfiguration {
+
+		@Bean
+		@ConditionalOnMissingBean
+		public FaceIDLoginMetrics faceIDLoginMetrics(MeterRegistry registry) {
+			return new MicrometerFaceIDLoginMetrics(registry);
+		}
+
+		/**
+		 * 全部单例创建完成后再绑定：Realm 由应用自行声明，组件统计依赖的识别服务也可能晚于 MeterRegistry 创建
+		 */
+		@Bean
+		public SmartInitializingSingleton faceIDMetricsInitializer(MeterRegistry registry, FaceIDLoginMetrics loginMetrics,
+				ApplicationContext applicationContext,
+				ObjectProvider<FaceIDStatefulAuthorizingRealm> realms,
+				ObjectProvider<BatchingFaceRecognitionProvider> batchingFaceRecognitionProvider,
+				ObjectProvider<FaceImageScreening> faceImageScreening,
+				ObjectProvider<FaceIDLoginThrottle> faceIDLoginThrottle,
+				ObjectProvider<FaceEnginePool<?>> faceEnginePool,
+				ObjectProvider<FaceRecognitionExecutor> faceRecognitionExecutor) {
+			return () -> {
+				List<FaceIDStatefulAuthorizingRealm> realmList = new ArrayList<FaceIDStatefulAuthorizingRealm>();
+				realms.orderedStream().forEach(realm -> {
+					realm.setLoginMetrics(loginMetrics);
+					realmList.add(realm);
+				});
+				FaceIDMeterBinder binder = new FaceIDMeterBinder();
+				binder.setRealms(realmList);
+				binder.setRoutingProvider(FaceRecognitionProviderChain.layer(applicationContext, RoutingFaceRecognitionProvider.class));
+				binder.setCachingProvider(FaceRecognitionProviderChain.layer(applicationContext, CachingFaceRecognitionProvider.class));
+				binder.setBatchingProvider(batchingFaceRecognitionProvider.getIfAvailable());
+				binder.setPreprocessingProvider(FaceRecognitionProviderChain.layer(applicationContext,
+						PreprocessingFaceRecognitionProvider.class));
+				binder.setLimitingProvider(FaceRecognitionProviderChain.layer(applicationContext, LimitingFaceRecognitionProvider.class));
+				binder.setScreening(faceImageScreening.getIfAvailable());
+				binder.setLoginThrottle(faceIDLoginThrottle.getIfAvailable());
+				binder.setEnginePool(faceEnginePool.getIfAvailable());
+				binder.setRecognitionExecutor(faceRecognitionExecutor.getIfAvailable());
+				binder.bindTo(registry);
+			};
+		}
+
+	}
+
+	/**
+	 * 启用 Servlet 异步登录或运行在 WebFlux 下时需要识别线程池
+	 */
+	static class OnAsyncRecognitionCondition extends AnyNestedCondition {
+
+		OnAsyncRecognitionCondition() {
+			super(ConfigurationPhase.REGISTER_BEAN);
+		}
+
+		@ConditionalOnProperty(prefix = ShiroFaceIDProperties.PREFIX + ".authc", value = "async", havingValue = "true")
+		static class AsyncEnabled {
+		}
+
+		@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+		static class ReactiveWebApplication {
+		}
+
+	}
+
 	@Override
 	public void setApplicationContext(ApplicationContext applicationContext) throws BeansException {
 		this.applicationContext = applicationContext;
@@ -1,13 +1,28 @@
 package org.apache.shiro.spring.boot;
 
+import org.apache.shiro.spring.boot.faceid.authc.AsyncFaceRecognitionProvider;
+import org.apache.shiro.spring.boot.faceid.authc.ExecutorAsyncFaceRecognitionProvider;
+import org.apache.shiro.spring.boot.faceid.authc.FaceIDAuthenticatingFilter;
+import org.apache.shiro.spring.boot.faceid.authc.FaceIDAuthenticationSuccessHandler;
+import org.apache.shiro.spring.boot.faceid.authc.FaceRecognitionExecutor;
+import org.apache.shiro.spring.boot.faceid.authc.FaceRecognitionProvider;
+import org.apache.shiro.spring.boot.faceid.image.FaceImageBufferPool;
+import org.apache.shiro.spring.boot.faceid.metrics.FaceIDLoginMetrics;
+import org.apache.shiro.spring.boot.faceid.throttle.FaceIDLoginThrottle;
+import org.apache.shiro.spring.boot.faceid.token.FaceIDSessionTokenCodec;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.autoconfigure.AutoConfigureBefore;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationContextAware;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 
@@ -21,6 +36,7 @@ import org.springframework.context.annotation.Configuration;
 	"org.apache.shiro.spring.config.web.autoconfigure.ShiroWebFilterConfiguration",  // shiro-spring-boot-web-starter
 	"org.apache.shiro.spring.boot.ShiroBizWebFilterConfiguration" // spring-boot-starter-shiro-biz
 })
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @ConditionalOnProperty(prefix = ShiroFaceIDProperties.PREFIX, value = "enabled", havingValue = "true")
 @EnableConfigurationProperties({ ShiroFaceIDProperties.class })
 public class ShiroFaceIDWebFilterConfiguration implements ApplicationContextAware {
@@ -28,7 +44,64 @@ public class ShiroFaceIDWebFilterConfiguration implements ApplicationContextAwar
 	protected static final Logger LOG = LoggerFactory.getLogger(ShiroFaceIDWebFilterConfiguration.class);
 	private ApplicationContext applicationContext;
 	
+	@Bean
+	@ConditionalOnMissingBean
+	public FaceIDAuthenticationSuccessHandler faceIDAuthenticationSuccessHandler(ShiroFaceIDProperties properties,
+			ObjectProvider<FaceIDSessionTokenCodec> sessionTokenCodec) {
+		FaceIDAuthenticationSuccessHandler successHandler = new FaceIDAuthenticationSuccessHandler(sessionTokenCodec.getIfAvailable());
+		successHandler.setSessionTokenHeader(properties.getSession().getHeader());
+		return successHandler;
+	}
 	
+	@Bean("faceid")
+	public FilterRegistrationBean<FaceIDAuthenticatingFilter> faceIDAuthenticatingFilter(
+			ShiroFaceIDProperties properties, FaceImageBufferPool bufferPool,
+			ObjectProvider<FaceRecognitionProvider> faceRecognitionProvider,
+			ObjectProvider<AsyncFaceRecognitionProvider> asyncFaceRecognitionProvider,
+			ObjectProvider<FaceRecognitionExecutor> faceRecognitionExecutor,
+			ObjectProvider<FaceIDSessionTokenCodec> sessionTokenCodec,
+			ObjectProvider<FaceIDLoginThrottle> loginThrottle,
+			ObjectProvider<FaceIDLoginMetrics> loginMetrics) {
+		
+		ShiroFaceIDProperties.Authc authc = properties.getAuthc();
+		// 组合后的识别服务优先于各个单独的识别服务：缓存 → 识别前检查 → 裁剪缩放 → 并发限制 → 多后端路由 → 单一服务
+		AsyncFaceRecognitionProvider composedProvider = (AsyncFaceRecognitionProvider) FaceRecognitionProviderChain
+				.outermost(applicationContext);
+		FaceRecognitionProvider recognitionProvider = composedProvider != null ? (FaceRecognitionProvider) composedProvider
+				: faceRecognitionProvider.getIfAvailable();
+		
+		FaceIDAuthenticatingFilter authcFilter = new FaceIDAuthenticatingFilter();
+		authcFilter.setBufferPool(bufferPool);
+		authcFilter.setLoginMetrics(loginMetrics.getIfAvailable());
+		authcFilter.setFaceRecognitionProvider(recognitionProvider);
+		authcFilter.setAsyncEnabled(authc.isAsync());
+		authcFilter.setAsyncTimeout(authc.getAsyncTimeout());
+		authcFilter.setRejectedRetryAfter(authc.getAsyncRejectedRetryAfter());
+		if (authc.isAsync()) {
+			AsyncFaceRecognitionProvider asyncProvider = composedProvider != null ? composedProvider : asyncFaceRecognitionProvider.getIfAvailable();
+			// 同步实现在独立线程池上执行，同样可以释放容器线程
+			if (asyncProvider == null && recognitionProvider != null) {
+				asyncProvider = new ExecutorAsyncFaceRecognitionProvider(recognitionProvider,
+						faceRecognitionExecutor.getObject());
+			}
+			authcFilter.setAsyncFaceRecognitionProvider(asyncProvider);
+		}
+		authcFilter.setFaceParam(authc.getFaceParam());
+		authcFilter.setFaceTypeParam(authc.getFaceTypeParam());
+		authcFilter.setFaceTokenParam(authc.getFaceTokenParam());
+		authcFilter.setTenantParam(authc.getTenantParam());
+		authcFilter.setMaxImageBytes(authc.getMaxImageBytes());
+		authcFilter.setSessionTokenCodec(sessionTokenCodec.getIfAvailable());
+		authcFilter.setSessionTokenHeader(properties.getSession().getHeader());
+		authcFilter.setLoginThrottle(loginThrottle.getIfAvailable());
+		authcFilter.setThrottleKeyParam(properties.getThrottle().getFaceIdParam());
+		
+		FilterRegistrationBean<FaceIDAuthenticatingFilter> registration = new FilterRegistrationBean<FaceIDAuthenticatingFilter>();
+		registration.setFilter(authcFilter);
+		// 仅作为 Shiro 过滤链中的过滤器使用，不注册到 Servlet 容器
+		registration.setEnabled(false);
+		return registration;
+	}
 	
 	@Override
 	public void setApplicationContext(ApplicationContext applicationContext) throws BeansException {
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot;
+
+import java.util.stream.Collectors;
+
+import org.apache.shiro.mgt.DefaultSecurityManager;
+import org.apache.shiro.mgt.SecurityManager;
+import org.apache.shiro.realm.Realm;
+import org.apache.shiro.spring.boot.faceid.authc.AsyncFaceRecognitionProvider;
+import org.apache.shiro.spring.boot.faceid.authc.ExecutorAsyncFaceRecognitionProvider;
+import org.apache.shiro.spring.boot.faceid.authc.FaceRecognitionExecutor;
+import org.apache.shiro.spring.boot.faceid.authc.FaceRecognitionProvider;
+import org.apache.shiro.spring.boot.faceid.image.FaceImageBufferPool;
+import org.apache.shiro.spring.boot.faceid.metrics.FaceIDLoginMetrics;
+import org.apache.shiro.spring.boot.faceid.reactive.AsyncReactiveFaceRecognitionProvider;
+import org.apache.shiro.spring.boot.faceid.reactive.FaceIDAuthenticationWebFilter;
+import org.apache.shiro.spring.boot.faceid.reactive.ReactiveFaceRecognitionProvider;
+import org.apache.shiro.spring.boot.faceid.throttle.FaceIDLoginThrottle;
+import org.apache.shiro.spring.boot.faceid.token.FaceIDSessionTokenCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.server.WebFilter;
+
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * WebFlux 下的人脸登录：注册 {@link FaceIDAuthenticationWebFilter}，识别服务与 Servlet 版本共用
+ * {@link ShiroFaceIDWebAutoConfiguration} 中组合的识别链；同步识别与 Realm 认证在识别线程池上执行。
+ * 未声明 SecurityManager 时以容器中的 Realm 构建 {@link DefaultSecurityManager}。
+ * @author 		： <a href="https://github.com/hiwepy">wandl</a>
+ */
+@Configuration
+@AutoConfigureAfter(ShiroFaceIDWebAutoConfiguration.class)
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@ConditionalOnClass({ WebFilter.class, Mono.class })
+@ConditionalOnProperty(prefix = ShiroFaceIDProperties.PREFIX, value = "enabled", havingValue = "true")
+@EnableConfigurationProperties({ ShiroFaceIDProperties.class })
+public class ShiroFaceIDWebFluxAutoConfiguration {
+
+	protected static final Logger LOG = LoggerFactory.getLogger(ShiroFaceIDWebFluxAutoConfiguration.class);
+
+	@Bean
+	@ConditionalOnMissingBean
+	public ReactiveFaceRecognitionProvider reactiveFaceRecognitionProvider(
+			ObjectProvider<FaceRecognitionProvider> faceRecognitionProvider,
+			ObjectProvider<AsyncFaceRecognitionProvider> asyncFaceRecognitionProvider,
+			FaceRecognitionExecutor faceRecognitionExecutor, ApplicationContext applicationContext) {
+		// 与 Servlet 过滤器相同的优先级：缓存 → 识别前检查 → 裁剪缩放 → 并发限制 → 多后端路由 → 单一服务
+		AsyncFaceRecognitionProvider asyncProvider = (AsyncFaceRecognitionProvider) FaceRecognitionProviderChain
+				.outermost(applicationContext);
+		if (asyncProvider == null) {
+			asyncProvider = asyncFaceRecognitionProvider.getIfAvailable();
+		}
+		// 同步实现在识别线程池上执行，不阻塞事件循环线程
+		if (asyncProvider == null) {
+			asyncProvider = new ExecutorAsyncFaceRecognitionProvider(faceRecognitionProvider.getObject(), faceRecognitionExecutor);
+		}
+		return new AsyncReactiveFaceRecognitionProvider(asyncProvider);
+	}
+
+	@Bean
+	@ConditionalOnMissingBean
+	public FaceIDAuthenticationWebFilter faceIDAuthenticationWebFilter(ShiroFaceIDProperties properties,
+			ObjectProvider<SecurityManager> securityManager, ObjectProvider<Realm> realms,
+			ReactiveFaceRecognitionProvider reactiveFaceRecognitionProvider,
+			FaceRecognitionExecutor faceRecognitionExecutor, FaceImageBufferPool bufferPool,
+			ObjectProvider<FaceIDSessionTokenCodec> sessionTokenCodec,
+			ObjectProvider<FaceIDLoginThrottle> loginThrottle,
+			ObjectProvider<FaceIDLoginMetrics> loginMetrics) {
+
+		SecurityManager manager = securityManager.getIfUnique(
+				() -> new DefaultSecurityManager(realms.orderedStream().collect(Collectors.toList())));
+		if (sessionTokenCodec.getIfAvailable() == null) {
+			LOG.warn("Face session tokens are disabled, requests after a reactive face login cannot be authenticated; "
+					+ "set {}.session.enabled=true.", ShiroFaceIDProperties.PREFIX);
+		}
+
+		ShiroFaceIDProperties.Authc authc = properties.getAuthc();
+		ShiroFaceIDProperties.Reactive reactive = properties.getReactive();
+		FaceIDAuthenticationWebFilter authcFilter = new FaceIDAuthenticationWebFilter(manager, reactiveFaceRecognitionProvider);
+		authcFilter.setLoginScheduler(Schedulers.fromExecutor(faceRecognitionExecutor));
+		authcFilter.setLoginUrl(reactive.getLoginUrl());
+		authcFilter.setAuthcPaths(reactive.getAuthcPaths());
+		authcFilter.setAnonPaths(reactive.getAnonPaths());
+		authcFilter.setOrder(reactive.getOrder());
+		authcFilter.setRecognitionTimeout(authc.getAsyncTimeout());
+		authcFilter.setRejectedRetryAfter(authc.getAsyncRejectedRetryAfter());
+		authcFilter.setBufferPool(bufferPool);
+		authcFilter.setFaceParam(authc.getFaceParam());
+		authcFilter.setFaceTypeParam(authc.getFaceTypeParam());
+		authcFilter.setFaceTokenParam(authc.getFaceTokenParam());
+		authcFilter.setTenantParam(authc.getTenantParam());
+		authcFilter.setMaxImageBytes(authc.getMaxImageBytes());
+		authcFilter.setSessionTokenCodec(sessionTokenCodec.getIfAvailable());
+		authcFilter.setSessionTokenHeader(properties.getSession().getHeader());
+		authcFilter.setLoginThrottle(loginThrottle.getIfAvailable());
+		authcFilter.setThrottleKeyParam(properties.getThrottle().getFaceIdParam());
+		authcFilter.setLoginMetrics(loginMetrics.getIfAvailable());
+		return authcFilter;
+	}
+
+}
@@ -40,5 +40,9 @@ public class FaceInfo {
 	 * 人脸图片的唯一标识
 	 */
 	protected String faceToken;
+	/**
+	 * 人脸比对的相似度得分（由识别服务或本地特征库给出，越大越相似）
+	 */
+	protected float score;
 
 }
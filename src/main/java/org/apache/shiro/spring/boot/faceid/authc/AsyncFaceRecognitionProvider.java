@@ -0,0 +1,31 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.authc;
+
+import java.util.concurrent.CompletableFuture;
+
+import org.apache.shiro.authc.AuthenticationToken;
+import org.apache.shiro.spring.boot.faceid.FaceInfo;
+
+/**
+ * 异步人脸识别：识别过程中不占用调用线程，识别结果（或 AuthenticationException）通过 CompletableFuture 返回
+ * @author 		： <a href="https://github.com/hiwepy">wandl</a>
+ */
+public interface AsyncFaceRecognitionProvider {
+
+	CompletableFuture<FaceInfo> loadFaceInfoAsync(AuthenticationToken token);
+
+}
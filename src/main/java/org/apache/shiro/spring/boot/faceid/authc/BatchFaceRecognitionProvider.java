@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.authc;
+
+import java.util.List;
+
+import org.apache.shiro.authc.AuthenticationToken;
+import org.apache.shiro.spring.boot.faceid.FaceInfo;
+
+/**
+ * 支持批量识别的人脸识别服务（如本地引擎批量提取特征、远程接口多人脸检索）
+ * @author 		： <a href="https://github.com/hiwepy">wandl</a>
+ */
+public interface BatchFaceRecognitionProvider {
+
+	/**
+	 * 批量识别
+	 * @param tokens 认证Token列表
+	 * @return 与 tokens 一一对应的识别结果；某一项为 null 表示该请求未匹配到人脸
+	 */
+	List<FaceInfo> loadFaceInfos(List<AuthenticationToken> tokens);
+
+}
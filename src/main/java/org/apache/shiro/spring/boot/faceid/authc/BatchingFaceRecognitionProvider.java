@@ -0,0 +1,262 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.authc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.shiro.authc.AuthenticationException;
+import org.apache.shiro.authc.AuthenticationToken;
+import org.apache.shiro.spring.boot.faceid.FaceInfo;
+import org.apache.shiro.spring.boot.faceid.exception.AuthenticationFaceIDNotFoundException;
+import org.apache.shiro.spring.boot.faceid.exception.AuthenticationOverloadException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 人脸识别微批处理：将并发到达的识别请求收集 maxWait 毫秒或 maxBatchSize 个后，合并为一次
+ * {@link BatchFaceRecognitionProvider#loadFaceInfos(List)} 调用，再将结果分发回各个等待中的请求。
+ * @author 		： <a href="https://github.com/hiwepy">wandl</a>
+ */
+public class BatchingFaceRecognitionProvider implements FaceRecognitionProvider, AsyncFaceRecognitionProvider, AutoCloseable {
+
+	private static final Logger LOG = LoggerFactory.getLogger(BatchingFaceRecognitionProvider.class);
+
+	private final BatchFaceRecognitionProvider delegate;
+	private final Executor executor;
+	private final BlockingQueue<Pending> queue;
+	private final int maxBatchSize;
+	private final long maxWaitNanos;
+	private final Thread dispatcher;
+	private final LongAdder batches = new LongAdder();
+	private final LongAdder items = new LongAdder();
+	private final LongAdder queuedNanos = new LongAdder();
+	private final LongAdder rejected = new LongAdder();
+	private volatile boolean running = true;
+	/**
+	 * 队列或线程池已满时建议客户端重试的等待秒数
+	 */
+	private int retryAfterSeconds = 1;
+
+	/**
+	 * @param delegate 批量识别服务
+	 * @param executor 执行批量识别调用的线程池
+	 * @param maxBatchSize 每批最大请求数
+	 * @param maxWaitMillis 首个请求进入后最长等待凑批的时间
+	 * @param queueCapacity 等待队列容量，队列满时立即拒绝
+	 */
+	public BatchingFaceRecognitionProvider(BatchFaceRecognitionProvider delegate, Executor executor, int maxBatchSize,
+			long maxWaitMillis, int queueCapacity) {
+		this.delegate = delegate;
+		this.executor = executor;
+		this.maxBatchSize = Math.max(1, maxBatchSize);
+		this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+		this.queue = new LinkedBlockingQueue<Pending>(queueCapacity);
+		this.dispatcher = new Thread(this::dispatchLoop, "faceid-batch-dispatcher");
+		this.dispatcher.setDaemon(true);
+		this.dispatcher.start();
+	}
+
+	@Override
+	public FaceInfo loadFaceInfo(AuthenticationToken token) {
+		try {
+			return loadFaceInfoAsync(token).join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new AuthenticationException("Face recognition failed.", e.getCause());
+		}
+	}
+
+	@Override
+	public CompletableFuture<FaceInfo> loadFaceInfoAsync(AuthenticationToken token) {
+		Pending pending = new Pending(token);
+		if (!running || !queue.offer(pending)) {
+			rejected.increment();
+			pending.future.completeExceptionally(new AuthenticationOverloadException(
+					running ? "Face recognition batch queue is full." : "Face recognition is shutting down.", retryAfterSeconds));
+		}
+		return pending.future;
+	}
+
+	private void dispatchLoop() {
+		while (running) {
+			try {
+				Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+				if (first == null) {
+					continue;
+				}
+				List<Pending> batch = new ArrayList<Pending>(maxBatchSize);
+				batch.add(first);
+				long deadline = first.enqueuedAt + maxWaitNanos;
+				while (batch.size() < maxBatchSize) {
+					// 先取走已到达的请求，不够再等待到截止时间
+					if (queue.drainTo(batch, maxBatchSize - batch.size()) > 0) {
+						continue;
+					}
+					long remaining = deadline - System.nanoTime();
+					if (remaining <= 0) {
+						break;
+					}
+					Pending next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+					if (next == null) {
+						break;
+					}
+					batch.add(next);
+				}
+				submit(batch);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+		// 关闭时拒绝尚未处理的请求
+		Pending pending;
+		while ((pending = queue.poll()) != null) {
+			pending.future.completeExceptionally(new AuthenticationException("Face recognition is shutting down."));
+		}
+	}
+
+	private void submit(List<Pending> batch) {
+		long now = System.nanoTime();
+		for (Pending pending : batch) {
+			queuedNanos.add(now - pending.enqueuedAt);
+		}
+		batches.increment();
+		items.add(batch.size());
+		try {
+			executor.execute(() -> execute(batch));
+		} catch (RejectedExecutionException e) {
+			for (Pending pending : batch) {
+				rejected.increment();
+				pending.future.completeExceptionally(new AuthenticationOverloadException(
+						"Face recognition batch executor is saturated.", retryAfterSeconds, e));
+			}
+		}
+	}
+
+	private void execute(List<Pending> batch) {
+		List<AuthenticationToken> tokens = new ArrayList<AuthenticationToken>(batch.size());
+		for (Pending pending : batch) {
+			tokens.add(pending.token);
+		}
+		try {
+			List<FaceInfo> results = delegate.loadFaceInfos(tokens);
+			for (int i = 0; i < batch.size(); i++) {
+				FaceInfo faceInfo = results != null && i < results.size() ? results.get(i) : null;
+				if (faceInfo == null) {
+					batch.get(i).future.completeExceptionally(
+							new AuthenticationFaceIDNotFoundException("No enrolled face matches the submitted image."));
+				} else {
+					batch.get(i).future.complete(faceInfo);
+				}
+			}
+		} catch (Throwable e) {
+			LOG.debug("Batch face recognition failed.", e);
+			for (Pending pending : batch) {
+				pending.future.completeExceptionally(e);
+			}
+		}
+	}
+
+	/**
+	 * 停止分发线程；线程池为 ExecutorService 时一并关闭
+	 */
+	@Override
+	public void close() {
+		running = false;
+		dispatcher.interrupt();
+		if (executor instanceof ExecutorService) {
+			((ExecutorService) executor).shutdown();
+		}
+	}
+
+	/**
+	 * @return 已分发的批次数
+	 */
+	public long getBatchCount() {
+		return batches.sum();
+	}
+
+	/**
+	 * @return 已分发的请求数
+	 */
+	public long getItemCount() {
+		return items.sum();
+	}
+
+	/**
+	 * @return 因队列或线程池已满被拒绝的请求数
+	 */
+	public long getRejectedCount() {
+		return rejected.sum();
+	}
+
+	/**
+	 * @return 批次填充率：平均批大小 / 最大批大小
+	 */
+	public double getFillRate() {
+		long count = batches.sum();
+		return count == 0 ? 0d : (double) items.sum() / count / maxBatchSize;
+	}
+
+	/**
+	 * @return 凑批引入的平均额外延迟（毫秒）
+	 */
+	public double getAverageQueueMillis() {
+		long count = items.sum();
+		return count == 0 ? 0d : queuedNanos.sum() / (double) count / TimeUnit.MILLISECONDS.toNanos(1);
+	}
+
+	public int getQueueSize() {
+		return queue.size();
+	}
+
+	public int getMaxBatchSize() {
+		return maxBatchSize;
+	}
+
+	public int getRetryAfterSeconds() {
+		return retryAfterSeconds;
+	}
+
+	public void setRetryAfterSeconds(int retryAfterSeconds) {
+		this.retryAfterSeconds = retryAfterSeconds;
+	}
+
+	private static final class Pending {
+
+		private final AuthenticationToken token;
+		private final CompletableFuture<FaceInfo> future = new CompletableFuture<FaceInfo>();
+		private final long enqueuedAt = System.nanoTime();
+
+		Pending(AuthenticationToken token) {
+			this.token = token;
+		}
+
+	}
+
+}
@@ -0,0 +1,334 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.authc;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.shiro.authc.AuthenticationToken;
+import org.apache.shiro.spring.boot.faceid.FaceInfo;
+import org.apache.shiro.spring.boot.faceid.image.FaceImagePayload;
+import org.apache.shiro.spring.boot.faceid.token.FaceIDLoginToken;
+import org.springframework.util.StringUtils;
+
+/**
+ * 识别结果缓存：客户端因网络抖动重发同一帧图片、或重复提交同一 faceToken 时，直接返回缓存的识别结果，不再重复识别。
+ * <ul>
+ * <li>图片按解码后字节的 xxHash64（进程内随机种子）+ 长度作为键；提交了图片时只按图片查找，图片未命中即重新识别</li>
+ * <li>识别结果的 faceToken 与发起识别的客户端地址一起作为第二个键，仅在未提交图片时使用，
+ * 其他客户端提交同一 faceToken 不会命中（faceToken 由客户端提供，不能单独作为登录凭据）</li>
+ * <li>条目在 TTL 后过期；超过容量时按写入顺序淘汰最早的条目</li>
+ * <li>只缓存成功的识别结果，失败总是重新识别</li>
+ * </ul>
+ * @author 		： <a href="https://github.com/hiwepy">wandl</a>
+ */
+public class CachingFaceRecognitionProvider implements FaceRecognitionProvider, AsyncFaceRecognitionProvider {
+
+	private final FaceRecognitionProvider delegate;
+	/**
+	 * 异步模式下的实际识别服务；为空时使用 delegate（需本身支持异步，否则在调用线程上同步识别）
+	 */
+	private AsyncFaceRecognitionProvider asyncDelegate;
+	private final int maxSize;
+	private final long ttlNanos;
+	private final long seed = ThreadLocalRandom.current().nextLong();
+	private final ConcurrentHashMap<Object, Entry> entries = new ConcurrentHashMap<Object, Entry>();
+	private final Queue<Entry> insertionOrder = new ConcurrentLinkedQueue<Entry>();
+	private final AtomicInteger insertionOrderSize = new AtomicInteger();
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	private final LongAdder expirations = new LongAdder();
+
+	/**
+	 * @param delegate 实际的识别服务
+	 * @param maxSize 最大缓存条目数
+	 * @param ttlMillis 条目存活时间
+	 */
+	public CachingFaceRecognitionProvider(FaceRecognitionProvider delegate, int maxSize, long ttlMillis) {
+		this.delegate = delegate;
+		this.maxSize = Math.max(1, maxSize);
+		this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+	}
+
+	@Override
+	public FaceInfo loadFaceInfo(AuthenticationToken token) {
+		Object imageKey = imageKey(token);
+		FaceInfo cached = lookup(imageKey, token);
+		if (cached != null) {
+			return cached;
+		}
+		FaceInfo faceInfo = delegate.loadFaceInfo(token);
+		store(imageKey, token, faceInfo);
+		return faceInfo;
+	}
+
+	@Override
+	public CompletableFuture<FaceInfo> loadFaceInfoAsync(AuthenticationToken token) {
+		Object imageKey = imageKey(token);
+		FaceInfo cached = lookup(imageKey, token);
+		if (cached != null) {
+			return CompletableFuture.completedFuture(cached);
+		}
+		CompletableFuture<FaceInfo> future;
+		if (asyncDelegate != null) {
+			future = asyncDelegate.loadFaceInfoAsync(token);
+		} else if (delegate instanceof AsyncFaceRecognitionProvider) {
+			future = ((AsyncFaceRecognitionProvider) delegate).loadFaceInfoAsync(token);
+		} else {
+			future = new CompletableFuture<FaceInfo>();
+			try {
+				future.complete(delegate.loadFaceInfo(token));
+			} catch (RuntimeException e) {
+				future.completeExceptionally(e);
+			}
+		}
+		return future.thenApply(faceInfo -> {
+			store(imageKey, token, faceInfo);
+			return faceInfo;
+		});
+	}
+
+	/**
+	 * 哈希须在识别之前计算：识别完成后图片缓冲区可能已被归还
+	 */
+	private Object imageKey(AuthenticationToken token) {
+		if (token instanceof FaceIDLoginToken) {
+			FaceImagePayload payload = ((FaceIDLoginToken) token).getPayload();
+			if (payload != null && !payload.isReleased()) {
+				return new ImageKey(payload.hash(seed), payload.length());
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * 客户端提供的 faceToken 只在未提交图片时使用：否则任意图片配合他人的 faceToken 即可冒用其识别结果
+	 */
+	private FaceInfo lookup(Object imageKey, AuthenticationToken token) {
+		FaceInfo faceInfo = null;
+		if (imageKey != null) {
+			faceInfo = get(imageKey);
+		} else if (token instanceof FaceIDLoginToken) {
+			FaceIDLoginToken loginToken = (FaceIDLoginToken) token;
+			Object faceTokenKey = faceTokenKey(loginToken.getFaceToken(), loginToken.getHost());
+			if (faceTokenKey != null) {
+				faceInfo = get(faceTokenKey);
+			}
+		}
+		if (faceInfo == null) {
+			misses.increment();
+			return null;
+		}
+		hits.increment();
+		return faceInfo;
+	}
+
+	private FaceInfo get(Object key) {
+		Entry entry = entries.get(key);
+		if (entry == null) {
+			return null;
+		}
+		if (System.nanoTime() - entry.createdAt > ttlNanos) {
+			if (entries.remove(key, entry)) {
+				expirations.increment();
+			}
+			return null;
+		}
+		return copyOf(entry.faceInfo);
+	}
+
+	private void store(Object imageKey, AuthenticationToken token, FaceInfo faceInfo) {
+		if (faceInfo == null) {
+			return;
+		}
+		// 缓存副本不持有图片数据，调用方修改返回值也不影响缓存
+		FaceInfo snapshot = copyOf(faceInfo);
+		if (imageKey != null) {
+			put(imageKey, snapshot);
+		}
+		Object faceTokenKey = token instanceof FaceIDLoginToken
+				? faceTokenKey(faceInfo.getFaceToken(), ((FaceIDLoginToken) token).getHost())
+				: null;
+		if (faceTokenKey != null) {
+			put(faceTokenKey, snapshot);
+		}
+	}
+
+	/**
+	 * faceToken 键绑定客户端地址；缺少任一项时不缓存也不查找
+	 */
+	private static Object faceTokenKey(String faceToken, String host) {
+		return StringUtils.hasText(faceToken) && StringUtils.hasText(host) ? new FaceTokenKey(faceToken, host) : null;
+	}
+
+	private void put(Object key, FaceInfo faceInfo) {
+		Entry entry = new Entry(key, faceInfo);
+		entries.put(key, entry);
+		insertionOrder.offer(entry);
+		insertionOrderSize.incrementAndGet();
+		while (entries.size() > maxSize) {
+			Entry eldest = insertionOrder.poll();
+			if (eldest == null) {
+				break;
+			}
+			insertionOrderSize.decrementAndGet();
+			// 队列中的条目可能已被覆盖或过期移除，只淘汰仍在缓存中的那一个
+			if (entries.remove(eldest.key, eldest)) {
+				evictions.increment();
+			}
+		}
+		// 被覆盖或过期移除的条目残留在队列中，队列过长时清理
+		if (insertionOrderSize.get() > maxSize * 2) {
+			insertionOrder.removeIf(e -> entries.get(e.key) != e);
+			insertionOrderSize.set(insertionOrder.size());
+		}
+	}
+
+	private static FaceInfo copyOf(FaceInfo source) {
+		FaceInfo copy = new FaceInfo();
+		copy.setFaceId(source.getFaceId());
+		copy.setFaceType(source.getFaceType());
+		copy.setFaceToken(source.getFaceToken());
+		copy.setScore(source.getScore());
+		return copy;
+	}
+
+	/**
+	 * 清空缓存（如人脸库变更后）
+	 */
+	public void invalidateAll() {
+		entries.clear();
+		insertionOrder.clear();
+		insertionOrderSize.set(0);
+	}
+
+	public FaceRecognitionProvider getDelegate() {
+		return delegate;
+	}
+
+	public AsyncFaceRecognitionProvider getAsyncDelegate() {
+		return asyncDelegate;
+	}
+
+	public void setAsyncDelegate(AsyncFaceRecognitionProvider asyncDelegate) {
+		this.asyncDelegate = asyncDelegate;
+	}
+
+	public long getHitCount() {
+		return hits.sum();
+	}
+
+	public long getMissCount() {
+		return misses.sum();
+	}
+
+	/**
+	 * @return 因容量超限被淘汰的条目数
+	 */
+	public long getEvictionCount() {
+		return evictions.sum();
+	}
+
+	/**
+	 * @return 因过期被移除的条目数
+	 */
+	public long getExpirationCount() {
+		return expirations.sum();
+	}
+
+	public double getHitRate() {
+		long hit = hits.sum();
+		long total = hit + misses.sum();
+		return total == 0 ? 0d : (double) hit / total;
+	}
+
+	public int getSize() {
+		return entries.size();
+	}
+
+	private static final class ImageKey {
+
+		private final long hash;
+		private final int length;
+
+		ImageKey(long hash, int length) {
+			this.hash = hash;
+			this.length = length;
+		}
+
+		@Override
+		public int hashCode() {
+			return (int) (hash ^ (hash >>> 32)) * 31 + length;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof ImageKey)) {
+				return false;
+			}
+			ImageKey other = (ImageKey) obj;
+			return hash == other.hash && length == other.length;
+		}
+
+	}
+
+	private static final class FaceTokenKey {
+
+		private final String faceToken;
+		private final String host;
+
+		FaceTokenKey(String faceToken, String host) {
+			this.faceToken = faceToken;
+			this.host = host;
+		}
+
+		@Override
+		public int hashCode() {
+			return faceToken.hashCode() * 31 + host.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof FaceTokenKey)) {
+				return false;
+			}
+			FaceTokenKey other = (FaceTokenKey) obj;
+			return faceToken.equals(other.faceToken) && host.equals(other.host);
+		}
+
+	}
+
+	private static final class Entry {
+
+		private final Object key;
+		private final FaceInfo faceInfo;
+		private final long createdAt = System.nanoTime();
+
+		Entry(Object key, FaceInfo faceInfo) {
+			this.key = key;
+			this.faceInfo = faceInfo;
+		}
+
+	}
+
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.authc;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import org.apache.shiro.authc.AuthenticationToken;
+import org.apache.shiro.spring.boot.faceid.FaceInfo;
+
+/**
+ * 将同步的 {@link FaceRecognitionProvider} 适配为异步接口：识别调用在独立的线程池上执行，释放 Servlet 容器线程
+ * @author 		： <a href="https://github.com/hiwepy">wandl</a>
+ */
+public class ExecutorAsyncFaceRecognitionProvider implements AsyncFaceRecognitionProvider, FaceRecognitionProvider {
+
+	private final FaceRecognitionProvider delegate;
+	private final Executor executor;
+
+	public ExecutorAsyncFaceRecognitionProvider(FaceRecognitionProvider delegate, Executor executor) {
+		this.delegate = delegate;
+		this.executor = executor;
+	}
+
+	@Override
+	public FaceInfo loadFaceInfo(AuthenticationToken token) {
+		return delegate.loadFaceInfo(token);
+	}
+
+	@Override
+	public CompletableFuture<FaceInfo> loadFaceInfoAsync(AuthenticationToken token) {
+		return CompletableFuture.supplyAsync(() -> delegate.loadFaceInfo(token), executor);
+	}
+
+	public FaceRecognitionProvider getDelegate() {
+		return delegate;
+	}
+
+	public Executor getExecutor() {
+		return executor;
+	}
+
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.authc;
+
+import org.apache.shiro.authc.AuthenticationToken;
+
+/**
+ * 人脸特征提取：从认证请求携带的人脸图片中提取特征向量，供本地 1:N 检索使用
+ * @author 		： <a href="https://github.com/hiwepy">wandl</a>
+ */
+public interface FaceFeatureExtractor {
+
+	/**
+	 * 提取人脸特征
+	 * @param token 认证Token
+	 * @return 人脸特征向量；未检测到人脸时返回 null
+	 */
+	float[] extract(AuthenticationToken token);
+
+}
@@ -15,21 +15,49 @@
  */
 package org.apache.shiro.spring.boot.faceid.authc;
 
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletException;
 import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.Part;
 
 import org.apache.shiro.authc.AuthenticationException;
 import org.apache.shiro.authc.AuthenticationToken;
 import org.apache.shiro.biz.authc.AuthcResponse;
+import org.apache.shiro.biz.authz.principal.ShiroPrincipal;
 import org.apache.shiro.biz.utils.WebUtils;
 import org.apache.shiro.biz.web.filter.authc.AbstractTrustableAuthenticatingFilter;
 import org.apache.shiro.biz.web.servlet.http.HttpStatus;
+import org.apache.shiro.spring.boot.faceid.FaceInfo;
+import org.apache.shiro.spring.boot.faceid.exception.AuthenticationFaceIDNotFoundException;
+import org.apache.shiro.spring.boot.faceid.exception.AuthenticationOverloadException;
+import org.apache.shiro.spring.boot.faceid.image.FaceImageBufferPool;
+import org.apache.shiro.spring.boot.faceid.image.FaceImagePayload;
+import org.apache.shiro.spring.boot.faceid.metrics.FaceIDLoginMetrics;
+import org.apache.shiro.spring.boot.faceid.throttle.FaceIDLoginThrottle;
+import org.apache.shiro.spring.boot.faceid.token.FaceIDLoginToken;
+import org.apache.shiro.spring.boot.faceid.token.FaceIDSessionTokenCodec;
+import org.apache.shiro.subject.SimplePrincipalCollection;
 import org.apache.shiro.subject.Subject;
+import org.apache.shiro.util.ThreadContext;
+import org.apache.shiro.web.subject.WebSubject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.MediaType;
+import org.springframework.util.ClassUtils;
 
 import com.alibaba.fastjson.JSONObject;
 
@@ -40,16 +68,171 @@ import com.alibaba.fastjson.JSONObject;
 public class FaceIDAuthenticatingFilter extends AbstractTrustableAuthenticatingFilter {
 
 	private static final Logger LOG = LoggerFactory.getLogger(FaceIDAuthenticatingFilter.class);
+	public static final String DEFAULT_FACE_PARAM = "face";
+	public static final String DEFAULT_FACE_TYPE_PARAM = "faceType";
+	public static final String DEFAULT_FACE_TOKEN_PARAM = "faceToken";
+	public static final String DEFAULT_TENANT_PARAM = "tenant";
+	/**
+	 * 默认携带会话令牌的请求头
+	 */
+	public static final String DEFAULT_SESSION_TOKEN_HEADER = "X-Authorization";
+	/**
+	 * 由会话令牌恢复的身份所属的 Realm 名称
+	 */
+	public static final String SESSION_TOKEN_REALM = "FaceIDSessionToken";
+	private static final String BEARER_PREFIX = "Bearer ";
+	/**
+	 * 标记本次请求已被限流拒绝，避免 isAccessAllowed 与 onAccessDenied 重复计数和重复响应
+	 */
+	private static final String THROTTLED_ATTRIBUTE = FaceIDAuthenticatingFilter.class.getName() + ".THROTTLED";
+	/**
+	 * 异步登录成功后重新派发的请求所携带的已认证 Subject；无状态模式下派发请求无法从会话恢复身份，据此放行而不再次登录
+	 */
+	private static final String ASYNC_LOGIN_SUBJECT_ATTRIBUTE = FaceIDAuthenticatingFilter.class.getName() + ".ASYNC_LOGIN_SUBJECT";
+	/**
+	 * 默认允许的最大人脸图片字节数：2MB
+	 */
+	public static final int DEFAULT_MAX_IMAGE_BYTES = 2 * 1024 * 1024;
+	/**
+	 * 默认异步登录超时时间：30秒
+	 */
+	public static final long DEFAULT_ASYNC_TIMEOUT = 30000L;
+	/**
+	 * 默认识别线程池拒绝任务时建议客户端重试的等待秒数
+	 */
+	public static final int DEFAULT_REJECTED_RETRY_AFTER = 1;
+	/**
+	 * 未认证的 Ajax 请求：响应内容固定，预先序列化，避免在请求风暴时逐次反射构建 JSON
+	 */
+	private static final byte[] UNAUTHENTICATED_BODY = toJSONBytes(AuthcResponse.fail(HttpStatus.SC_UNAUTHORIZED,
+			"Attempting to access a path which requires authentication. "));
+	/**
+	 * 识别服务过载或请求过于频繁：同样为固定响应，在拒绝风暴中不产生额外开销
+	 */
+	private static final byte[] OVERLOADED_BODY = toJSONBytes(AuthcResponse.fail(AuthenticationOverloadException.SC_SERVICE_UNAVAILABLE,
+			"Face recognition is busy, please retry later."));
+	private static final byte[] THROTTLED_BODY = toJSONBytes(AuthcResponse.fail(AuthenticationOverloadException.SC_TOO_MANY_REQUESTS,
+			"Too many face login attempts, please retry later."));
+	
 	private FaceRecognitionProvider faceRecognitionProvider;
+	private AsyncFaceRecognitionProvider asyncFaceRecognitionProvider;
+	private String asyncProviderName = FaceIDLoginMetrics.NO_PROVIDER;
+	/**
+	 * 是否启用异步登录：人脸识别期间释放 Servlet 容器线程，识别完成后再恢复 Shiro 登录
+	 */
+	private boolean asyncEnabled = false;
+	private long asyncTimeout = DEFAULT_ASYNC_TIMEOUT;
+	private int rejectedRetryAfter = DEFAULT_REJECTED_RETRY_AFTER;
+	private FaceImageBufferPool bufferPool = new FaceImageBufferPool();
+	private String faceParam = DEFAULT_FACE_PARAM;
+	private String faceTypeParam = DEFAULT_FACE_TYPE_PARAM;
+	private String faceTokenParam = DEFAULT_FACE_TOKEN_PARAM;
+	private String tenantParam = DEFAULT_TENANT_PARAM;
+	private int maxImageBytes = DEFAULT_MAX_IMAGE_BYTES;
+	/**
+	 * 会话令牌校验器；设置后无状态模式下优先校验请求携带的令牌，人脸识别仅在登录时进行
+	 */
+	private FaceIDSessionTokenCodec sessionTokenCodec;
+	private String sessionTokenHeader = DEFAULT_SESSION_TOKEN_HEADER;
+	/**
+	 * 登录地址的非 POST 请求响应，内容仅随登录地址变化，首次使用时序列化
+	 */
+	private volatile byte[] loginMethodNotAllowedBody;
+	/**
+	 * 登录各环节的耗时记录；默认不记录
+	 */
+	private FaceIDLoginMetrics loginMetrics = FaceIDLoginMetrics.NONE;
+	/**
+	 * 登录尝试限流；为空时不限流
+	 */
+	private FaceIDLoginThrottle loginThrottle;
+	/**
+	 * 作为按人脸限流键的请求参数，默认与 faceToken 参数相同
+	 */
+	private String throttleKeyParam = DEFAULT_FACE_TOKEN_PARAM;
 	
 	public FaceIDAuthenticatingFilter() {
 		super();
 	}
 	
+	@Override
+	protected AuthenticationToken createToken(ServletRequest request, ServletResponse response) {
+		FaceIDLoginMetrics metrics = getLoginMetrics();
+		long start = metrics.start();
+		FaceIDLoginToken token = new FaceIDLoginToken();
+		token.setHost(getHost(request));
+		token.setRememberMe(isRememberMe(request));
+		token.setFaceType(WebUtils.getCleanParam(request, getFaceTypeParam()));
+		token.setFaceToken(WebUtils.getCleanParam(request, getFaceTokenParam()));
+		token.setTenant(WebUtils.getCleanParam(request, getTenantParam()));
+		long decodeStart = metrics.start();
+		Throwable decodeError = null;
+		try {
+			token.setPayload(resolvePayload(WebUtils.toHttp(request)));
+		} catch (IOException | ServletException | IllegalStateException e) {
+			// 图片读取失败时不中断流程，由识别环节统一抛出 AuthenticationFaceNotFoundException
+			LOG.debug("Unable to read face image from request.", e);
+			decodeError = e;
+		}
+		metrics.record(FaceIDLoginMetrics.STAGE_DECODE, FaceIDLoginMetrics.NO_PROVIDER, decodeStart, decodeError);
+		metrics.record(FaceIDLoginMetrics.STAGE_TOKEN, FaceIDLoginMetrics.NO_PROVIDER, start, null);
+		return token;
+	}
+	
+	/**
+	 * 解析请求中的人脸图片：multipart 文件与 image/* 请求体直接读取二进制，其余情况按 base64 增量解码
+	 */
+	protected FaceImagePayload resolvePayload(HttpServletRequest request) throws IOException, ServletException {
+		String contentType = request.getContentType();
+		if (contentType != null) {
+			String mediaType = contentType.toLowerCase();
+			if (mediaType.startsWith("multipart/")) {
+				Part part = request.getPart(getFaceParam());
+				if (part != null) {
+					return FaceImagePayload.read(part.getInputStream(), part.getContentType(), part.getSize(),
+							getMaxImageBytes(), getBufferPool());
+				}
+			} else if (mediaType.startsWith("image/")) {
+				return FaceImagePayload.read(request.getInputStream(), contentType, request.getContentLengthLong(),
+						getMaxImageBytes(), getBufferPool());
+			} else if (mediaType.startsWith("text/plain")) {
+				return FaceImagePayload.decode(request.getInputStream(), request.getContentLengthLong(),
+						getMaxImageBytes(), getBufferPool());
+			}
+		}
+		String face = request.getParameter(getFaceParam());
+		return face == null || face.isEmpty() ? null : FaceImagePayload.decode(face, getMaxImageBytes(), getBufferPool());
+	}
+	
 	@Override
 	protected boolean isAccessAllowed(ServletRequest request, ServletResponse response, Object mappedValue) {
+		// 异步登录已成功并重新派发的请求：直接放行，避免再次发起异步登录
+		Object loginSubject = request.getAttribute(ASYNC_LOGIN_SUBJECT_ATTRIBUTE);
+		if (loginSubject instanceof Subject) {
+			ThreadContext.bind((Subject) loginSubject);
+			return true;
+		}
 		// 判断是否无状态
 		if (isSessionStateless()) {
+			if (getSessionTokenCodec() != null) {
+				// 登录请求交由 onAccessDenied 完成人脸识别并签发令牌
+				if (isLoginRequest(request, response)) {
+					return false;
+				}
+				// 已签发的会话令牌：验签即可恢复身份，无需再次人脸识别
+				ShiroPrincipal principal = getSessionTokenCodec().verify(resolveSessionToken(WebUtils.toHttp(request)));
+				if (principal != null) {
+					// Subject.Builder 的链式方法返回父类型，需保留 WebSubject.Builder 引用以构建 WebSubject
+					WebSubject.Builder builder = new WebSubject.Builder(request, response);
+					builder.principals(new SimplePrincipalCollection(principal, SESSION_TOKEN_REALM))
+							.authenticated(true)
+							.sessionCreationEnabled(false)
+							.host(getHost(request));
+					WebSubject subject = builder.buildWebSubject();
+					ThreadContext.bind(subject);
+					return true;
+				}
+			}
 			// 获取当前请求 Kisso Token
 	       // SSOToken ssoToken = SSOHelper.getSSOToken(WebUtils.toHttp(request));
 			// 判断是否认证请求  
@@ -58,6 +241,9 @@ public class FaceIDAuthenticatingFilter extends AbstractTrustableAuthenticatingF
 				 * 正常请求，request 设置 token 减少二次解密
 				 */
                 //request.setAttribute(SSOConstants.SSO_TOKEN_ATTR, ssoToken);
+				if (isThrottled(request, response)) {
+					return false;
+				}
 				// Step 1、生成Shiro Token 
 				AuthenticationToken token = createToken(request, response);
 				try {
@@ -77,9 +263,26 @@ public class FaceIDAuthenticatingFilter extends AbstractTrustableAuthenticatingF
 		return super.isAccessAllowed(request, response, mappedValue);
 	}
 	
+	/**
+	 * 从请求头读取会话令牌，兼容 {@code Authorization: Bearer <token>}
+	 */
+	protected String resolveSessionToken(HttpServletRequest request) {
+		String token = request.getHeader(getSessionTokenHeader());
+		if (token == null) {
+			token = request.getHeader("Authorization");
+		}
+		if (token != null && token.startsWith(BEARER_PREFIX)) {
+			token = token.substring(BEARER_PREFIX.length());
+		}
+		return token == null || token.isEmpty() ? null : token;
+	}
+	
 	@Override
 	protected boolean onAccessDenied(ServletRequest request, ServletResponse response) throws Exception {
 		
+		if (request.getAttribute(THROTTLED_ATTRIBUTE) != null) {
+			return false;
+		}
 		// 1、判断是否登录请求 
 		if (isLoginRequest(request, response)) {
 			
@@ -87,19 +290,26 @@ public class FaceIDAuthenticatingFilter extends AbstractTrustableAuthenticatingF
 				if (LOG.isTraceEnabled()) {
 					LOG.trace("Login submission detected.  Attempting to execute login.");
 				}
+				if (isThrottled(request, response)) {
+					return false;
+				}
+				if (isAsyncEnabled() && getAsyncFaceRecognitionProvider() != null && request.isAsyncSupported()) {
+					return executeLoginAsync(request, response);
+				}
 				return executeLogin(request, response);
 			} else {
-				String mString = "Authentication url [" + getLoginUrl() + "] Not Http Post request.";
 				if (LOG.isTraceEnabled()) {
-					LOG.trace(mString);
+					LOG.trace("Authentication url [" + getLoginUrl() + "] Not Http Post request.");
 				}
 				
-				WebUtils.toHttp(response).setStatus(HttpStatus.SC_OK);
-				response.setContentType(MediaType.APPLICATION_JSON_VALUE);
-				response.setCharacterEncoding(StandardCharsets.UTF_8.name());
-				
+				byte[] body = loginMethodNotAllowedBody;
+				if (body == null) {
+					body = toJSONBytes(AuthcResponse.fail(HttpStatus.SC_BAD_REQUEST,
+							"Authentication url [" + getLoginUrl() + "] Not Http Post request."));
+					loginMethodNotAllowedBody = body;
+				}
 				// Response Authentication status information
-				JSONObject.writeJSONString(response.getWriter(), AuthcResponse.fail(HttpStatus.SC_BAD_REQUEST, mString));
+				writeJSONBody(response, body);
 				
 				return false;
 			}
@@ -107,20 +317,15 @@ public class FaceIDAuthenticatingFilter extends AbstractTrustableAuthenticatingF
 		// 2、未授权情况
 		else {
 			
-			String mString = "Attempting to access a path which requires authentication. ";
 			if (LOG.isTraceEnabled()) { 
-				LOG.trace(mString);
+				LOG.trace("Attempting to access a path which requires authentication. ");
 			}
 			
 			// Ajax 请求：响应json数据对象
 			if (WebUtils.isAjaxRequest(request)) {
 				
-				WebUtils.toHttp(response).setStatus(HttpStatus.SC_OK);
-				response.setContentType(MediaType.APPLICATION_JSON_VALUE);
-				response.setCharacterEncoding(StandardCharsets.UTF_8.name());
-				
 				// Response Authentication status information
-				JSONObject.writeJSONString(response.getWriter(), AuthcResponse.fail(HttpStatus.SC_UNAUTHORIZED, mString));
+				writeJSONBody(response, UNAUTHENTICATED_BODY);
 				
 				return false;
 			}
@@ -129,5 +334,367 @@ public class FaceIDAuthenticatingFilter extends AbstractTrustableAuthenticatingF
 			return false;
 		}
 	}
+
+	/**
+	 * 登录尝试限流：在读取图片之前按客户端 IP 与目标人脸取令牌，超限时直接响应 429。
+	 * 目标人脸只从查询字符串读取，不触发表单或 multipart 请求体的解析
+	 */
+	protected boolean isThrottled(ServletRequest request, ServletResponse response) {
+		FaceIDLoginThrottle throttle = getLoginThrottle();
+		if (throttle == null) {
+			return false;
+		}
+		int retryAfterSeconds = throttle.tryAcquire(getHost(request), getQueryParam(request, getThrottleKeyParam()));
+		if (retryAfterSeconds == 0) {
+			return false;
+		}
+		request.setAttribute(THROTTLED_ATTRIBUTE, Boolean.TRUE);
+		onOverload(new AuthenticationOverloadException("Too many face login attempts.",
+				AuthenticationOverloadException.SC_TOO_MANY_REQUESTS, retryAfterSeconds), response);
+		return true;
+	}
+
+	/**
+	 * 从查询字符串读取参数，去除首尾空白，空字符串视为 null；{@link ServletRequest#getParameter} 会先解析整个请求体
+	 */
+	protected String getQueryParam(ServletRequest request, String name) {
+		String query = WebUtils.toHttp(request).getQueryString();
+		if (query == null || name == null) {
+			return null;
+		}
+		try {
+			for (String pair : query.split("&")) {
+				int eq = pair.indexOf('=');
+				String key = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8.name());
+				if (name.equals(key)) {
+					String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8.name()).trim();
+					return value.isEmpty() ? null : value;
+				}
+			}
+		} catch (UnsupportedEncodingException | IllegalArgumentException e) {
+			LOG.debug("Malformed query string.", e);
+		}
+		return null;
+	}
+
+	/**
+	 * 直接写出预先序列化的 UTF-8 JSON 响应体，并设置 Content-Length
+	 */
+	protected void writeJSONBody(ServletResponse response, byte[] body) throws IOException {
+		writeJSONBody(response, HttpStatus.SC_OK, body);
+	}
+	
+	protected void writeJSONBody(ServletResponse response, int status, byte[] body) throws IOException {
+		HttpServletResponse httpResponse = WebUtils.toHttp(response);
+		httpResponse.setStatus(status);
+		httpResponse.setContentType(MediaType.APPLICATION_JSON_VALUE);
+		httpResponse.setCharacterEncoding(StandardCharsets.UTF_8.name());
+		httpResponse.setContentLength(body.length);
+		httpResponse.getOutputStream().write(body);
+	}
+	
+	private static byte[] toJSONBytes(Object authcResponse) {
+		return JSONObject.toJSONString(authcResponse).getBytes(StandardCharsets.UTF_8);
+	}
+	
+	/**
+	 * 异步登录：开启 Servlet 异步处理后立即返回，人脸识别在 {@link AsyncFaceRecognitionProvider} 中进行；
+	 * 识别完成后在容器线程上（绑定原 Subject 的 Shiro 上下文）执行登录及成功/失败处理。
+	 */
+	protected boolean executeLoginAsync(ServletRequest request, ServletResponse response) {
+		
+		final FaceIDLoginToken token = (FaceIDLoginToken) createToken(request, response);
+		final Subject subject = getSubject(request, response);
+		final AsyncContext asyncContext = request.startAsync(request, response);
+		final AtomicBoolean finished = new AtomicBoolean(false);
+		asyncContext.setTimeout(getAsyncTimeout());
+		
+		final FaceIDLoginMetrics metrics = getLoginMetrics();
+		final long start = metrics.start();
+		CompletableFuture<FaceInfo> future;
+		try {
+			future = getAsyncFaceRecognitionProvider().loadFaceInfoAsync(token);
+		} catch (RuntimeException e) {
+			future = new CompletableFuture<FaceInfo>();
+			future.completeExceptionally(e);
+		}
+		asyncContext.addListener(new AsyncListener() {
+			
+			@Override
+			public void onTimeout(AsyncEvent event) throws IOException {
+				// 不取消识别任务：图片缓冲区需等识别真正结束后再归还
+				if (finished.compareAndSet(false, true)) {
+					subject.associateWith(() -> {
+						onLoginFailure(token, new AuthenticationException("Face recognition timed out."), request, response);
+					}).run();
+					asyncContext.complete();
+				}
+			}
+			
+			@Override
+			public void onError(AsyncEvent event) throws IOException {
+				finished.set(true);
+			}
+			
+			@Override
+			public void onComplete(AsyncEvent event) throws IOException {
+			}
+			
+			@Override
+			public void onStartAsync(AsyncEvent event) throws IOException {
+			}
+			
+		});
+		
+		future.whenComplete((faceInfo, ex) -> {
+			metrics.record(FaceIDLoginMetrics.STAGE_RECOGNITION, asyncProviderName, start, ex);
+			token.releasePayload();
+			if (finished.get()) {
+				return;
+			}
+			asyncContext.start(subject.associateWith(() -> resumeLogin(token, faceInfo, ex, subject, asyncContext, finished)));
+		});
+		return false;
+	}
+	
+	private void resumeLogin(FaceIDLoginToken token, FaceInfo faceInfo, Throwable ex, Subject subject,
+			AsyncContext asyncContext, AtomicBoolean finished) {
+		if (!finished.compareAndSet(false, true)) {
+			return;
+		}
+		ServletRequest request = asyncContext.getRequest();
+		ServletResponse response = asyncContext.getResponse();
+		boolean continueChain = false;
+		try {
+			Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+			if (cause instanceof AuthenticationException) {
+				throw (AuthenticationException) cause;
+			}
+			if (cause instanceof RejectedExecutionException) {
+				// 识别线程池已满：按过载响应 503，而不是当作人脸不匹配
+				throw new AuthenticationOverloadException("Face recognition executor is saturated.", getRejectedRetryAfter());
+			}
+			if (cause != null) {
+				throw new AuthenticationException("Face recognition failed.", cause);
+			}
+			if (faceInfo == null) {
+				// 图片缓冲区已归还，不能交给 Realm 在容器线程上重新识别
+				throw new AuthenticationFaceIDNotFoundException("No matching face found.");
+			}
+			token.setFaceInfo(faceInfo);
+			subject.login(token);
+			continueChain = onLoginSuccess(token, subject, request, response);
+		} catch (AuthenticationException e) {
+			onLoginFailure(token, e, request, response);
+		} catch (Exception e) {
+			LOG.error("Asynchronous face login failed.", e);
+			WebUtils.toHttp(response).setStatus(HttpStatus.SC_INTERNAL_SERVER_ERROR);
+		} finally {
+			if (continueChain) {
+				// 重新派发请求并标记登录已完成，过滤链将直接放行（无状态模式下派发请求无法从会话恢复认证状态）
+				request.setAttribute(ASYNC_LOGIN_SUBJECT_ATTRIBUTE, subject);
+				asyncContext.dispatch();
+			} else {
+				asyncContext.complete();
+			}
+		}
+	}
+
+	@Override
+	protected boolean onLoginSuccess(AuthenticationToken token, Subject subject, ServletRequest request,
+			ServletResponse response) throws Exception {
+		FaceIDLoginMetrics metrics = getLoginMetrics();
+		long start = metrics.start();
+		Throwable error = null;
+		try {
+			return dispatchLoginSuccess(token, subject, request, response);
+		} catch (Exception e) {
+			error = e;
+			throw e;
+		} finally {
+			metrics.record(FaceIDLoginMetrics.STAGE_SUCCESS, FaceIDLoginMetrics.NO_PROVIDER, start, error);
+		}
+	}
+
+	/**
+	 * 登录成功后的处理，默认交由 shiro-biz 分发给已注册的成功处理器
+	 */
+	protected boolean dispatchLoginSuccess(AuthenticationToken token, Subject subject, ServletRequest request,
+			ServletResponse response) throws Exception {
+		return super.onLoginSuccess(token, subject, request, response);
+	}
+	
+	@Override
+	protected boolean onAccessFailure(AuthenticationToken token, AuthenticationException e, ServletRequest request,
+			ServletResponse response) {
+		if (e instanceof AuthenticationOverloadException) {
+			return onOverload((AuthenticationOverloadException) e, response);
+		}
+		return super.onAccessFailure(token, e, request, response);
+	}
+	
+	@Override
+	protected boolean onLoginFailure(AuthenticationToken token, AuthenticationException e, ServletRequest request,
+			ServletResponse response) {
+		if (e instanceof AuthenticationOverloadException) {
+			return onOverload((AuthenticationOverloadException) e, response);
+		}
+		return super.onLoginFailure(token, e, request, response);
+	}
+	
+	/**
+	 * 过载拒绝：以 503/429 及 Retry-After 响应，客户端据此退避重试，而不是当作人脸不匹配
+	 */
+	protected boolean onOverload(AuthenticationOverloadException e, ServletResponse response) {
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("Face login rejected: {}", e.getMessage());
+		}
+		try {
+			if (e.getRetryAfterSeconds() > 0) {
+				WebUtils.toHttp(response).setHeader("Retry-After", String.valueOf(e.getRetryAfterSeconds()));
+			}
+			writeJSONBody(response, e.getStatus(),
+					e.getStatus() == AuthenticationOverloadException.SC_TOO_MANY_REQUESTS ? THROTTLED_BODY : OVERLOADED_BODY);
+		} catch (IOException ex) {
+			LOG.debug("Unable to write overload response.", ex);
+		}
+		return false;
+	}
+	
+	@Override
+	public void setLoginUrl(String loginUrl) {
+		super.setLoginUrl(loginUrl);
+		this.loginMethodNotAllowedBody = null;
+	}
+	
+	public FaceRecognitionProvider getFaceRecognitionProvider() {
+		return faceRecognitionProvider;
+	}
+
+	public void setFaceRecognitionProvider(FaceRecognitionProvider faceRecognitionProvider) {
+		this.faceRecognitionProvider = faceRecognitionProvider;
+	}
+
+	public AsyncFaceRecognitionProvider getAsyncFaceRecognitionProvider() {
+		return asyncFaceRecognitionProvider;
+	}
+
+	public void setAsyncFaceRecognitionProvider(AsyncFaceRecognitionProvider asyncFaceRecognitionProvider) {
+		this.asyncFaceRecognitionProvider = asyncFaceRecognitionProvider;
+		this.asyncProviderName = asyncFaceRecognitionProvider == null ? FaceIDLoginMetrics.NO_PROVIDER
+				: ClassUtils.getShortName(ClassUtils.getUserClass(asyncFaceRecognitionProvider));
+	}
+
+	public boolean isAsyncEnabled() {
+		return asyncEnabled;
+	}
+
+	public void setAsyncEnabled(boolean asyncEnabled) {
+		this.asyncEnabled = asyncEnabled;
+	}
+
+	public long getAsyncTimeout() {
+		return asyncTimeout;
+	}
+
+	public void setAsyncTimeout(long asyncTimeout) {
+		this.asyncTimeout = asyncTimeout;
+	}
+
+	public int getRejectedRetryAfter() {
+		return rejectedRetryAfter;
+	}
+
+	public void setRejectedRetryAfter(int rejectedRetryAfter) {
+		this.rejectedRetryAfter = rejectedRetryAfter;
+	}
+
+	public FaceImageBufferPool getBufferPool() {
+		return bufferPool;
+	}
+
+	public void setBufferPool(FaceImageBufferPool bufferPool) {
+		this.bufferPool = bufferPool;
+	}
+
+	public String getFaceParam() {
+		return faceParam;
+	}
+
+	public void setFaceParam(String faceParam) {
+		this.faceParam = faceParam;
+	}
+
+	public String getFaceTypeParam() {
+		return faceTypeParam;
+	}
+
+	public void setFaceTypeParam(String faceTypeParam) {
+		this.faceTypeParam = faceTypeParam;
+	}
+
+	public String getFaceTokenParam() {
+		return faceTokenParam;
+	}
+
+	public void setFaceTokenParam(String faceTokenParam) {
+		this.faceTokenParam = faceTokenParam;
+	}
+
+	public String getTenantParam() {
+		return tenantParam;
+	}
+
+	public void setTenantParam(String tenantParam) {
+		this.tenantParam = tenantParam;
+	}
+
+	public int getMaxImageBytes() {
+		return maxImageBytes;
+	}
+
+	public void setMaxImageBytes(int maxImageBytes) {
+		this.maxImageBytes = maxImageBytes;
+	}
 	 
+	public FaceIDSessionTokenCodec getSessionTokenCodec() {
+		return sessionTokenCodec;
+	}
+
+	public void setSessionTokenCodec(FaceIDSessionTokenCodec sessionTokenCodec) {
+		this.sessionTokenCodec = sessionTokenCodec;
+	}
+
+	public String getSessionTokenHeader() {
+		return sessionTokenHeader;
+	}
+
+	public void setSessionTokenHeader(String sessionTokenHeader) {
+		this.sessionTokenHeader = sessionTokenHeader;
+	}
+
+	public FaceIDLoginMetrics getLoginMetrics() {
+		return loginMetrics;
+	}
+
+	public void setLoginMetrics(FaceIDLoginMetrics loginMetrics) {
+		this.loginMetrics = loginMetrics == null ? FaceIDLoginMetrics.NONE : loginMetrics;
+	}
+
+	public FaceIDLoginThrottle getLoginThrottle() {
+		return loginThrottle;
+	}
+
+	public void setLoginThrottle(FaceIDLoginThrottle loginThrottle) {
+		this.loginThrottle = loginThrottle;
+	}
+
+	public String getThrottleKeyParam() {
+		return throttleKeyParam;
+	}
+
+	public void setThrottleKeyParam(String throttleKeyParam) {
+		this.throttleKeyParam = throttleKeyParam;
+	}
+
 }
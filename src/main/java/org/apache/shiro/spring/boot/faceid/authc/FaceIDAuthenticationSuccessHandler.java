@@ -15,27 +15,49 @@
  */
 package org.apache.shiro.spring.boot.faceid.authc;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
 
 import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
-import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.apache.shiro.authc.AuthenticationToken;
+import org.apache.shiro.biz.authc.AuthcResponse;
 import org.apache.shiro.biz.authc.AuthenticationSuccessHandler;
 import org.apache.shiro.biz.authz.principal.ShiroPrincipal;
 import org.apache.shiro.biz.utils.SubjectUtils;
 import org.apache.shiro.biz.utils.WebUtils;
+import org.apache.shiro.biz.web.servlet.http.HttpStatus;
 import org.apache.shiro.spring.boot.faceid.token.FaceIDLoginToken;
+import org.apache.shiro.spring.boot.faceid.token.FaceIDSessionTokenCodec;
 import org.apache.shiro.subject.Subject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
 
+import com.alibaba.fastjson.JSONObject;
 import com.google.common.collect.Maps;
 
+/**
+ * 人脸登录成功处理：响应当前用户信息；配置了 {@link FaceIDSessionTokenCodec} 时同时签发会话令牌，
+ * 令牌通过响应头和响应体返回，之后的无状态请求携带该令牌即可完成认证，不再重复人脸识别。
+ * @author 		： <a href="https://github.com/hiwepy">wandl</a>
+ */
 public class FaceIDAuthenticationSuccessHandler implements AuthenticationSuccessHandler {
 
+	private static final Logger LOG = LoggerFactory.getLogger(FaceIDAuthenticationSuccessHandler.class);
+	
+	private FaceIDSessionTokenCodec sessionTokenCodec;
+	private String sessionTokenHeader = FaceIDAuthenticatingFilter.DEFAULT_SESSION_TOKEN_HEADER;
+
 	public FaceIDAuthenticationSuccessHandler() {
 	}
+	
+	public FaceIDAuthenticationSuccessHandler(FaceIDSessionTokenCodec sessionTokenCodec) {
+		this.sessionTokenCodec = sessionTokenCodec;
+	}
 	 
 	@Override
 	public boolean supports(AuthenticationToken token) {
@@ -46,7 +68,6 @@ public class FaceIDAuthenticationSuccessHandler implements AuthenticationSuccess
 	public void onAuthenticationSuccess(AuthenticationToken token, ServletRequest request, ServletResponse response,
 			Subject subject) {
 		
-		HttpServletRequest httpRequest = WebUtils.toHttp(request);
 		HttpServletResponse httpResponse = WebUtils.toHttp(response);
 
 		ShiroPrincipal principal = (ShiroPrincipal) subject.getPrincipal();
@@ -56,8 +77,22 @@ public class FaceIDAuthenticationSuccessHandler implements AuthenticationSuccess
 		map.put("userkey", principal.getUserkey());
 		map.put("username", principal.getUsername());
 		map.put("roles", principal.getRoles());
-		map.put("perms", principal.getRoles());
-
+		map.put("perms", principal.getPerms());
+		if (sessionTokenCodec != null) {
+			String sessionToken = sessionTokenCodec.issue(principal);
+			map.put("token", sessionToken);
+			map.put("expires_in", sessionTokenCodec.getTtlSeconds());
+			httpResponse.setHeader(getSessionTokenHeader(), sessionToken);
+		}
+		
+		try {
+			httpResponse.setStatus(HttpStatus.SC_OK);
+			httpResponse.setContentType(MediaType.APPLICATION_JSON_VALUE);
+			httpResponse.setCharacterEncoding(StandardCharsets.UTF_8.name());
+			JSONObject.writeJSONString(httpResponse.getWriter(), AuthcResponse.success("Authentication Success.", map));
+		} catch (IOException e) {
+			LOG.error("Failed to write face login response.", e);
+		}
 
 	}
 
@@ -65,5 +100,21 @@ public class FaceIDAuthenticationSuccessHandler implements AuthenticationSuccess
 	public int getOrder() {
 		return Integer.MAX_VALUE - 2;
 	}
+
+	public FaceIDSessionTokenCodec getSessionTokenCodec() {
+		return sessionTokenCodec;
+	}
+
+	public void setSessionTokenCodec(FaceIDSessionTokenCodec sessionTokenCodec) {
+		this.sessionTokenCodec = sessionTokenCodec;
+	}
+
+	public String getSessionTokenHeader() {
+		return sessionTokenHeader;
+	}
+
+	public void setSessionTokenHeader(String sessionTokenHeader) {
+		this.sessionTokenHeader = sessionTokenHeader;
+	}
 	
 }
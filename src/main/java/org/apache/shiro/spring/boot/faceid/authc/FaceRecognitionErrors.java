@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.authc;
+
+import java.util.concurrent.CompletionException;
+
+import org.apache.shiro.authc.AuthenticationException;
+import org.apache.shiro.spring.boot.faceid.exception.AuthenticationOverloadException;
+
+/**
+ * 识别异常分类：区分后端故障/过载与普通认证失败（人脸不匹配、图片无效等），并发限制与多后端路由共用同一口径
+ * @author 		： <a href="https://github.com/hiwepy">wandl</a>
+ */
+final class FaceRecognitionErrors {
+
+	private FaceRecognitionErrors() {
+	}
+
+	static Throwable unwrap(Throwable ex) {
+		return ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+	}
+
+	/**
+	 * 后端错误：过载拒绝、被包装为认证异常的后端异常、以及非认证异常；普通认证失败不是
+	 */
+	static boolean isBackendError(Throwable error) {
+		Throwable cause = unwrap(error);
+		if (cause == null) {
+			return false;
+		}
+		if (cause instanceof AuthenticationOverloadException) {
+			return true;
+		}
+		if (cause instanceof AuthenticationException) {
+			return cause.getCause() != null && !(cause.getCause() instanceof AuthenticationException);
+		}
+		return true;
+	}
+
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.authc;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.shiro.mgt.SecurityManager;
+import org.apache.shiro.subject.Subject;
+import org.apache.shiro.util.ThreadContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 异步登录的识别线程池：阻塞的识别调用（HTTP 接口、JNI 引擎）在这里执行，不占用 Servlet 容器线程。
+ * <ul>
+ * <li>{@link FaceRecognitionExecutorType#PLATFORM}：固定大小的平台线程池，队列已满时拒绝</li>
+ * <li>{@link FaceRecognitionExecutorType#VIRTUAL}：每个任务一个虚拟线程，上千个在途识别不再需要上千个平台线程；
+ * 以在途任务数上限代替线程数限制，超出时拒绝</li>
+ * </ul>
+ * 任务执行前绑定提交线程的 Shiro {@link Subject} 与 {@link SecurityManager}，结束后清除 {@link ThreadContext}，
+ * 池化线程上不会残留上一次登录（或创建线程时继承）的上下文。被拒绝时抛出 {@link RejectedExecutionException}，由过滤器按过载响应。
+ * <p>
+ * 虚拟线程通过反射创建，本组件仍可在 JDK 8 上编译和运行。
+ * @author 		： <a href="https://github.com/hiwepy">wandl</a>
+ */
+public class FaceRecognitionExecutor implements Executor, AutoCloseable {
+
+	private static final Logger LOG = LoggerFactory.getLogger(FaceRecognitionExecutor.class);
+
+	private final ExecutorService delegate;
+	private final FaceRecognitionExecutorType type;
+	private final int maxConcurrency;
+	private final AtomicInteger inflight = new AtomicInteger();
+	private final LongAdder rejectedCount = new LongAdder();
+
+	/**
+	 * @param delegate 实际执行任务的线程池
+	 * @param type 线程类型
+	 * @param maxConcurrency 在途任务数上限，小于等于0时不限制（由线程池自身的队列决定）
+	 */
+	public FaceRecognitionExecutor(ExecutorService delegate, FaceRecognitionExecutorType type, int maxConcurrency) {
+		this.delegate = delegate;
+		this.type = type;
+		this.maxConcurrency = maxConcurrency;
+	}
+
+	/**
+	 * @param poolSize 线程数
+	 * @param queueCapacity 等待队列长度，0 表示不排队
+	 * @param threadFactory 线程工厂
+	 */
+	public static FaceRecognitionExecutor platform(int poolSize, int queueCapacity, ThreadFactory threadFactory) {
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(poolSize, poolSize, 60L, TimeUnit.SECONDS,
+				queueCapacity > 0 ? new LinkedBlockingQueue<Runnable>(queueCapacity) : new SynchronousQueue<Runnable>(),
+				threadFactory);
+		return new FaceRecognitionExecutor(executor, FaceRecognitionExecutorType.PLATFORM, 0);
+	}
+
+	/**
+	 * @param threadNamePrefix 虚拟线程名前缀
+	 * @param maxConcurrency 在途任务数上限
+	 * @return 当前 JDK 不支持虚拟线程时为 null
+	 */
+	public static FaceRecognitionExecutor virtual(String threadNamePrefix, int maxConcurrency) {
+		ExecutorService executor = newVirtualThreadPerTaskExecutor(threadNamePrefix);
+		return executor == null ? null : new FaceRecognitionExecutor(executor, FaceRecognitionExecutorType.VIRTUAL, maxConcurrency);
+	}
+
+	/**
+	 * 等价于 {@code Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(prefix, 0).factory())}
+	 */
+	static ExecutorService newVirtualThreadPerTaskExecutor(String threadNamePrefix) {
+		try {
+			Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+			Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+			builder = builderType.getMethod("name", String.class, long.class).invoke(builder, threadNamePrefix, 0L);
+			ThreadFactory threadFactory = (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+			return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+					.invoke(null, threadFactory);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			// JDK 21 之前没有这些方法；JDK 19/20 未开启预览特性时抛出 UnsupportedOperationException
+			LOG.debug("Virtual threads are not available on this JVM.", e);
+			return null;
+		}
+	}
+
+	@Override
+	public void execute(Runnable task) {
+		Runnable contextual = withShiroContext(task);
+		int current = inflight.incrementAndGet();
+		if (maxConcurrency > 0 && current > maxConcurrency) {
+			inflight.decrementAndGet();
+			rejectedCount.increment();
+			throw new RejectedExecutionException("Face recognition executor reached " + maxConcurrency + " in-flight tasks.");
+		}
+		try {
+			delegate.execute(() -> {
+				try {
+					contextual.run();
+				} finally {
+					inflight.decrementAndGet();
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			inflight.decrementAndGet();
+			rejectedCount.increment();
+			throw e;
+		}
+	}
+
+	/**
+	 * 在提交线程上捕获 Shiro 上下文，在执行线程上重新绑定；不经 SecurityUtils.getSubject()，避免为未登录线程创建 Subject
+	 */
+	static Runnable withShiroContext(Runnable task) {
+		final Subject subject = ThreadContext.getSubject();
+		final SecurityManager securityManager = ThreadContext.getSecurityManager();
+		return () -> {
+			// 先清除线程上已有的上下文：池化线程可能残留上一次任务的，新线程可能从创建它的请求线程继承
+			ThreadContext.remove();
+			if (securityManager != null) {
+				ThreadContext.bind(securityManager);
+			}
+			if (subject != null) {
+				ThreadContext.bind(subject);
+			}
+			try {
+				task.run();
+			} finally {
+				ThreadContext.remove();
+			}
+		};
+	}
+
+	public FaceRecognitionExecutorType getType() {
+		return type;
+	}
+
+	/**
+	 * @return 已提交尚未完成（排队与执行中）的任务数
+	 */
+	public int getInflight() {
+		return inflight.get();
+	}
+
+	public long getRejectedCount() {
+		return rejectedCount.sum();
+	}
+
+	public int getMaxConcurrency() {
+		return maxConcurrency;
+	}
+
+	/**
+	 * 停止接收新任务，已提交的识别继续执行完毕
+	 */
+	@Override
+	public void close() {
+		delegate.shutdown();
+	}
+
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.authc;
+
+/**
+ * 异步登录时执行阻塞识别调用的线程类型
+ * @author 		： <a href="https://github.com/hiwepy">wandl</a>
+ */
+public enum FaceRecognitionExecutorType {
+
+	/**
+	 * 固定大小的平台线程池加有界队列
+	 */
+	PLATFORM,
+	/**
+	 * 每个识别任务一个虚拟线程（JDK 21+），阻塞在 HTTP 调用上的识别不再占用平台线程；
+	 * 当前 JDK 不支持时退回 {@link #PLATFORM}
+	 */
+	VIRTUAL;
+
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.authc;
+
+import java.util.List;
+
+import org.apache.shiro.authc.AuthenticationToken;
+import org.apache.shiro.spring.boot.faceid.FaceInfo;
+import org.apache.shiro.spring.boot.faceid.exception.AuthenticationFaceIDNotFoundException;
+import org.apache.shiro.spring.boot.faceid.exception.AuthenticationFaceNotFoundException;
+import org.apache.shiro.spring.boot.faceid.gallery.FaceGallery;
+import org.apache.shiro.spring.boot.faceid.gallery.FaceMatch;
+import org.apache.shiro.spring.boot.faceid.token.FaceIDLoginToken;
+
+/**
+ * 基于本地人脸特征库的人脸识别：提取特征后在进程内完成 1:N 检索，无需远程调用识别服务
+ * @author 		： <a href="https://github.com/hiwepy">wandl</a>
+ */
+public class GalleryFaceRecognitionProvider implements FaceRecognitionProvider {
+
+	private final FaceFeatureExtractor featureExtractor;
+	private final FaceGallery gallery;
+	/**
+	 * 判定为同一人的最低相似度得分
+	 */
+	private float threshold;
+
+	public GalleryFaceRecognitionProvider(FaceFeatureExtractor featureExtractor, FaceGallery gallery, float threshold) {
+		this.featureExtractor = featureExtractor;
+		this.gallery = gallery;
+		this.threshold = threshold;
+	}
+
+	@Override
+	public FaceInfo loadFaceInfo(AuthenticationToken token) {
+		float[] feature = featureExtractor.extract(token);
+		if (feature == null) {
+			throw new AuthenticationFaceNotFoundException("No face detected in the submitted image.");
+		}
+		if (!isFinite(feature)) {
+			throw new AuthenticationFaceNotFoundException("Face feature extraction produced a non-finite value.");
+		}
+		// 登录请求携带租户提示时，分片特征库只检索该租户的分片
+		String tenant = token instanceof FaceIDLoginToken ? ((FaceIDLoginToken) token).getTenant() : null;
+		List<FaceMatch> matches = gallery.search(feature, 1, tenant);
+		FaceMatch match = matches.isEmpty() ? null : matches.get(0);
+		// NaN 得分与任何阈值比较均为 false，须写成“不满足 >=”才能拒绝
+		if (match == null || !(match.getScore() >= threshold)) {
+			throw new AuthenticationFaceIDNotFoundException("No enrolled face matches the submitted image.");
+		}
+		FaceInfo faceInfo = new FaceInfo();
+		faceInfo.setFaceId(match.getFaceId());
+		faceInfo.setScore(match.getScore());
+		return faceInfo;
+	}
+
+	private static boolean isFinite(float[] feature) {
+		for (float v : feature) {
+			if (Float.isNaN(v) || Float.isInfinite(v)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public FaceFeatureExtractor getFeatureExtractor() {
+		return featureExtractor;
+	}
+
+	public FaceGallery getGallery() {
+		return gallery;
+	}
+
+	public float getThreshold() {
+		return threshold;
+	}
+
+	public void setThreshold(float threshold) {
+		this.threshold = threshold;
+	}
+
+}
@@ -0,0 +1,360 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.authc;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.shiro.authc.AuthenticationException;
+import org.apache.shiro.authc.AuthenticationToken;
+import org.apache.shiro.spring.boot.faceid.FaceInfo;
+import org.apache.shiro.spring.boot.faceid.exception.AuthenticationOverloadException;
+
+/**
+ * 识别服务并发限制（AIMD）：并发数达到当前上限后请求进入有界等待队列，队列已满或等待超时立即以
+ * {@link AuthenticationOverloadException} 拒绝，避免请求堆积在阻塞线程上直至全部超时。
+ * <p>
+ * 上限随后端表现自适应调整：请求成功且并发接近上限时每次增加 1/limit，后端出错或耗时超过阈值时按比例收缩；
+ * 计数与上限均基于 CAS，不加锁。识别结果为“未匹配”等普通认证失败不视为过载信号。
+ * @author 		： <a href="https://github.com/hiwepy">wandl</a>
+ */
+public class LimitingFaceRecognitionProvider implements FaceRecognitionProvider, AsyncFaceRecognitionProvider, AutoCloseable {
+
+	/**
+	 * 并发上限以定点数保存，保留三位小数以累积加性增长
+	 */
+	private static final long SCALE = 1000L;
+
+	private final FaceRecognitionProvider delegate;
+	/**
+	 * 异步等待超时的定时器；为空时异步请求在队列中一直等待至获得许可
+	 */
+	private final ScheduledExecutorService scheduler;
+	private final AtomicInteger inflight = new AtomicInteger();
+	private final AtomicLong limit;
+	private final ConcurrentLinkedQueue<CompletableFuture<Void>> waiters = new ConcurrentLinkedQueue<CompletableFuture<Void>>();
+	private final AtomicInteger queued = new AtomicInteger();
+	private final LongAdder rejectedCount = new LongAdder();
+	private final LongAdder dropCount = new LongAdder();
+	private final int minLimit;
+	private final int maxLimit;
+	/**
+	 * 出现过载信号时上限的收缩比例
+	 */
+	private double backoffRatio = 0.9d;
+	/**
+	 * 超过该耗时的成功请求同样视为过载信号；小于等于0时仅以错误判断
+	 */
+	private long latencyThresholdMillis = 0L;
+	private int maxQueueSize = 100;
+	private long maxWaitMillis = 1000L;
+	private int retryAfterSeconds = 1;
+	/**
+	 * 异步模式下执行同步识别服务的线程池；为空时在获得许可的线程上执行
+	 */
+	private Executor executor;
+
+	public LimitingFaceRecognitionProvider(FaceRecognitionProvider delegate, int initialLimit, int minLimit, int maxLimit,
+			ScheduledExecutorService scheduler) {
+		if (minLimit < 1 || maxLimit < minLimit) {
+			throw new IllegalArgumentException("Concurrency limits must satisfy 1 <= minLimit <= maxLimit.");
+		}
+		this.delegate = delegate;
+		this.minLimit = minLimit;
+		this.maxLimit = maxLimit;
+		this.limit = new AtomicLong(Math.min(maxLimit, Math.max(minLimit, initialLimit)) * SCALE);
+		this.scheduler = scheduler;
+	}
+
+	@Override
+	public FaceInfo loadFaceInfo(AuthenticationToken token) {
+		acquire();
+		long start = System.nanoTime();
+		Throwable error = null;
+		try {
+			return delegate.loadFaceInfo(token);
+		} catch (RuntimeException e) {
+			error = e;
+			throw e;
+		} finally {
+			release(start, error);
+		}
+	}
+
+	@Override
+	public CompletableFuture<FaceInfo> loadFaceInfoAsync(AuthenticationToken token) {
+		if (tryAcquire()) {
+			return invokeAsync(token);
+		}
+		CompletableFuture<Void> permit;
+		try {
+			permit = enqueue();
+		} catch (RuntimeException e) {
+			return failed(e);
+		}
+		if (scheduler != null && !permit.isDone()) {
+			ScheduledFuture<?> timeout = scheduler.schedule(() -> abandon(permit), maxWaitMillis, TimeUnit.MILLISECONDS);
+			permit.whenComplete((v, ex) -> timeout.cancel(false));
+		}
+		return permit.handle((v, ex) -> ex == null).thenCompose(granted -> granted ? invokeAsync(token)
+				: failed(overloaded("Timed out waiting for face recognition capacity.")));
+	}
+
+	private CompletableFuture<FaceInfo> invokeAsync(AuthenticationToken token) {
+		long start = System.nanoTime();
+		CompletableFuture<FaceInfo> future;
+		try {
+			future = delegateAsync(token);
+		} catch (RuntimeException e) {
+			future = failed(e);
+		}
+		return future.whenComplete((faceInfo, ex) -> release(start, ex));
+	}
+
+	private CompletableFuture<FaceInfo> delegateAsync(AuthenticationToken token) {
+		if (delegate instanceof AsyncFaceRecognitionProvider) {
+			return ((AsyncFaceRecognitionProvider) delegate).loadFaceInfoAsync(token);
+		}
+		if (executor != null) {
+			return CompletableFuture.supplyAsync(() -> delegate.loadFaceInfo(token), executor);
+		}
+		return CompletableFuture.completedFuture(delegate.loadFaceInfo(token));
+	}
+
+	/**
+	 * 同步获取许可：并发已满时在队列中最多等待 maxWaitMillis
+	 */
+	private void acquire() {
+		if (tryAcquire()) {
+			return;
+		}
+		CompletableFuture<Void> permit = enqueue();
+		try {
+			permit.get(maxWaitMillis, TimeUnit.MILLISECONDS);
+		} catch (TimeoutException e) {
+			// 取消失败说明许可已在超时瞬间交付，继续执行
+			if (abandon(permit)) {
+				throw overloaded("Timed out waiting for face recognition capacity.");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			if (!abandon(permit)) {
+				releasePermit();
+			}
+			throw overloaded("Interrupted while waiting for face recognition capacity.");
+		} catch (ExecutionException | CancellationException e) {
+			throw overloaded("Timed out waiting for face recognition capacity.");
+		}
+	}
+
+	private boolean tryAcquire() {
+		int current = currentLimit();
+		for (;;) {
+			int n = inflight.get();
+			if (n >= current) {
+				return false;
+			}
+			if (inflight.compareAndSet(n, n + 1)) {
+				return true;
+			}
+		}
+	}
+
+	private CompletableFuture<Void> enqueue() {
+		if (queued.incrementAndGet() > maxQueueSize) {
+			queued.decrementAndGet();
+			rejectedCount.increment();
+			throw overloaded("Face recognition is at capacity.");
+		}
+		CompletableFuture<Void> permit = new CompletableFuture<Void>();
+		waiters.offer(permit);
+		// 入队前可能恰好有请求释放了许可
+		drain();
+		return permit;
+	}
+
+	/**
+	 * 放弃排队：仅在许可尚未交付时成功。取消会同步触发调用方的失败回调，计数须在取消之前更新，未能取消时再回退
+	 */
+	private boolean abandon(CompletableFuture<Void> permit) {
+		if (permit.isDone()) {
+			return false;
+		}
+		queued.decrementAndGet();
+		rejectedCount.increment();
+		if (permit.cancel(false)) {
+			return true;
+		}
+		queued.incrementAndGet();
+		rejectedCount.decrement();
+		return false;
+	}
+
+	/**
+	 * 有空闲许可时交付给队首的等待者；已取消的等待者归还许可后继续
+	 */
+	private void drain() {
+		while (!waiters.isEmpty() && tryAcquire()) {
+			CompletableFuture<Void> waiter = waiters.poll();
+			if (waiter != null && waiter.complete(null)) {
+				queued.decrementAndGet();
+				continue;
+			}
+			inflight.decrementAndGet();
+			if (waiter == null) {
+				return;
+			}
+		}
+	}
+
+	private void release(long start, Throwable error) {
+		long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		if (isDropped(error) || (latencyThresholdMillis > 0 && elapsedMillis > latencyThresholdMillis)) {
+			dropCount.increment();
+			long floor = minLimit * SCALE;
+			limit.updateAndGet(current -> Math.max(floor, (long) (current * backoffRatio)));
+		} else if (error == null && inflight.get() * 2 * SCALE >= limit.get()) {
+			// 并发接近上限才增长，空闲时不虚增上限
+			long ceiling = maxLimit * SCALE;
+			limit.updateAndGet(current -> Math.min(ceiling, current + SCALE * SCALE / current));
+		}
+		releasePermit();
+	}
+
+	private void releasePermit() {
+		inflight.decrementAndGet();
+		drain();
+	}
+
+	/**
+	 * 后端错误视为过载信号，下游的过载拒绝（引擎池、批量队列等）同样收缩上限；普通认证失败不是。
+	 * 本实例自身的排队拒绝发生在获得许可之前，不经过这里
+	 */
+	private static boolean isDropped(Throwable error) {
+		return FaceRecognitionErrors.isBackendError(error);
+	}
+
+	private AuthenticationOverloadException overloaded(String message) {
+		return new AuthenticationOverloadException(message, retryAfterSeconds);
+	}
+
+	private static <T> CompletableFuture<T> failed(Throwable ex) {
+		CompletableFuture<T> future = new CompletableFuture<T>();
+		future.completeExceptionally(ex);
+		return future;
+	}
+
+	@Override
+	public void close() {
+		if (scheduler != null) {
+			scheduler.shutdownNow();
+		}
+	}
+
+	public FaceRecognitionProvider getDelegate() {
+		return delegate;
+	}
+
+	/**
+	 * 当前并发上限
+	 */
+	public int currentLimit() {
+		return (int) Math.max(minLimit, limit.get() / SCALE);
+	}
+
+	public int getInflight() {
+		return inflight.get();
+	}
+
+	public int getQueueSize() {
+		return queued.get();
+	}
+
+	public long getRejectedCount() {
+		return rejectedCount.sum();
+	}
+
+	public long getDropCount() {
+		return dropCount.sum();
+	}
+
+	public int getMinLimit() {
+		return minLimit;
+	}
+
+	public int getMaxLimit() {
+		return maxLimit;
+	}
+
+	public double getBackoffRatio() {
+		return backoffRatio;
+	}
+
+	public void setBackoffRatio(double backoffRatio) {
+		this.backoffRatio = backoffRatio;
+	}
+
+	public long getLatencyThresholdMillis() {
+		return latencyThresholdMillis;
+	}
+
+	public void setLatencyThresholdMillis(long latencyThresholdMillis) {
+		this.latencyThresholdMillis = latencyThresholdMillis;
+	}
+
+	public int getMaxQueueSize() {
+		return maxQueueSize;
+	}
+
+	public void setMaxQueueSize(int maxQueueSize) {
+		this.maxQueueSize = maxQueueSize;
+	}
+
+	public long getMaxWaitMillis() {
+		return maxWaitMillis;
+	}
+
+	public void setMaxWaitMillis(long maxWaitMillis) {
+		this.maxWaitMillis = maxWaitMillis;
+	}
+
+	public int getRetryAfterSeconds() {
+		return retryAfterSeconds;
+	}
+
+	public void setRetryAfterSeconds(int retryAfterSeconds) {
+		this.retryAfterSeconds = retryAfterSeconds;
+	}
+
+	public Executor getExecutor() {
+		return executor;
+	}
+
+	public void setExecutor(Executor executor) {
+		this.executor = executor;
+	}
+
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.authc;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import org.apache.shiro.authc.AuthenticationException;
+import org.apache.shiro.authc.AuthenticationToken;
+import org.apache.shiro.spring.boot.faceid.FaceInfo;
+import org.apache.shiro.spring.boot.faceid.metrics.FaceIDLoginMetrics;
+
+/**
+ * 记录识别服务每次调用的耗时与结果，按 provider 名称区分
+ * @author 		： <a href="https://github.com/hiwepy">wandl</a>
+ */
+public class MeteredFaceRecognitionProvider implements FaceRecognitionProvider, AsyncFaceRecognitionProvider {
+
+	private final AsyncFaceRecognitionProvider delegate;
+	private final String name;
+	private final String stage;
+	private final FaceIDLoginMetrics metrics;
+
+	/**
+	 * @param delegate 识别服务
+	 * @param name provider 标签值
+	 * @param stage 环节名称，如 {@link FaceIDLoginMetrics#STAGE_BACKEND}
+	 * @param metrics 指标记录
+	 */
+	public MeteredFaceRecognitionProvider(AsyncFaceRecognitionProvider delegate, String name, String stage,
+			FaceIDLoginMetrics metrics) {
+		this.delegate = delegate;
+		this.name = name;
+		this.stage = stage;
+		this.metrics = metrics;
+	}
+
+	@Override
+	public FaceInfo loadFaceInfo(AuthenticationToken token) {
+		if (!(delegate instanceof FaceRecognitionProvider)) {
+			try {
+				return loadFaceInfoAsync(token).join();
+			} catch (CompletionException e) {
+				if (e.getCause() instanceof RuntimeException) {
+					throw (RuntimeException) e.getCause();
+				}
+				throw new AuthenticationException("Face recognition failed.", e.getCause());
+			}
+		}
+		long start = metrics.start();
+		Throwable error = null;
+		try {
+			return ((FaceRecognitionProvider) delegate).loadFaceInfo(token);
+		} catch (RuntimeException e) {
+			error = e;
+			throw e;
+		} finally {
+			metrics.record(stage, name, start, error);
+		}
+	}
+
+	@Override
+	public CompletableFuture<FaceInfo> loadFaceInfoAsync(AuthenticationToken token) {
+		long start = metrics.start();
+		CompletableFuture<FaceInfo> future;
+		try {
+			future = delegate.loadFaceInfoAsync(token);
+		} catch (RuntimeException e) {
+			metrics.record(stage, name, start, e);
+			throw e;
+		}
+		future.whenComplete((faceInfo, ex) -> metrics.record(stage, name, start, ex));
+		return future;
+	}
+
+	public AsyncFaceRecognitionProvider getDelegate() {
+		return delegate;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+}
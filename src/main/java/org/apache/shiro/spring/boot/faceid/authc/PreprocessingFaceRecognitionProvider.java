@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.authc;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.shiro.authc.AuthenticationException;
+import org.apache.shiro.authc.AuthenticationToken;
+import org.apache.shiro.spring.boot.faceid.FaceInfo;
+import org.apache.shiro.spring.boot.faceid.image.FaceImagePayload;
+import org.apache.shiro.spring.boot.faceid.image.FaceImagePreprocessor;
+import org.apache.shiro.spring.boot.faceid.token.FaceIDLoginToken;
+
+/**
+ * 在调用识别服务之前执行 {@link FaceImagePreprocessor}，将原图替换为裁剪、缩放后的小图，
+ * 原图缓冲区随即归还缓冲池。只提交 faceToken、不携带图片的请求不做处理。
+ * @author 		： <a href="https://github.com/hiwepy">wandl</a>
+ */
+public class PreprocessingFaceRecognitionProvider implements FaceRecognitionProvider, AsyncFaceRecognitionProvider {
+
+	private final FaceRecognitionProvider delegate;
+	private final FaceImagePreprocessor preprocessor;
+	private final LongAdder processed = new LongAdder();
+	private final LongAdder bytesIn = new LongAdder();
+	private final LongAdder bytesOut = new LongAdder();
+	private final LongAdder processNanos = new LongAdder();
+	/**
+	 * 异步模式下执行预处理（及同步识别服务）的线程池；为空时在调用线程上处理
+	 */
+	private Executor executor;
+
+	public PreprocessingFaceRecognitionProvider(FaceRecognitionProvider delegate, FaceImagePreprocessor preprocessor) {
+		this.delegate = delegate;
+		this.preprocessor = preprocessor;
+	}
+
+	@Override
+	public FaceInfo loadFaceInfo(AuthenticationToken token) {
+		preprocess(token);
+		return delegate.loadFaceInfo(token);
+	}
+
+	@Override
+	public CompletableFuture<FaceInfo> loadFaceInfoAsync(AuthenticationToken token) {
+		if (executor == null) {
+			try {
+				preprocess(token);
+			} catch (RuntimeException e) {
+				CompletableFuture<FaceInfo> future = new CompletableFuture<FaceInfo>();
+				future.completeExceptionally(e);
+				return future;
+			}
+			return delegateAsync(token);
+		}
+		return CompletableFuture.runAsync(() -> preprocess(token), executor).thenCompose(v -> delegateAsync(token));
+	}
+
+	private CompletableFuture<FaceInfo> delegateAsync(AuthenticationToken token) {
+		if (delegate instanceof AsyncFaceRecognitionProvider) {
+			return ((AsyncFaceRecognitionProvider) delegate).loadFaceInfoAsync(token);
+		}
+		if (executor != null) {
+			return CompletableFuture.supplyAsync(() -> delegate.loadFaceInfo(token), executor);
+		}
+		CompletableFuture<FaceInfo> future = new CompletableFuture<FaceInfo>();
+		try {
+			future.complete(delegate.loadFaceInfo(token));
+		} catch (RuntimeException e) {
+			future.completeExceptionally(e);
+		}
+		return future;
+	}
+
+	private void preprocess(AuthenticationToken token) {
+		if (!(token instanceof FaceIDLoginToken)) {
+			return;
+		}
+		FaceIDLoginToken faceToken = (FaceIDLoginToken) token;
+		FaceImagePayload payload = faceToken.getPayload();
+		if (payload == null) {
+			return;
+		}
+		long start = System.nanoTime();
+		FaceImagePayload result;
+		try {
+			result = preprocessor.process(payload);
+		} catch (IOException e) {
+			throw new AuthenticationException("Face image could not be decoded.", e);
+		}
+		if (result != payload) {
+			processed.increment();
+			bytesIn.add(payload.length());
+			bytesOut.add(result.length());
+			// 释放原图缓冲区，后续环节只持有缩小后的图片
+			faceToken.releasePayload();
+			faceToken.setPayload(result);
+		}
+		processNanos.add(System.nanoTime() - start);
+	}
+
+	/**
+	 * @return 被裁剪或缩放的图片数
+	 */
+	public long getProcessedCount() {
+		return processed.sum();
+	}
+
+	/**
+	 * @return 预处理后图片字节数与原图字节数之比
+	 */
+	public double getCompressionRatio() {
+		long in = bytesIn.sum();
+		return in == 0 ? 1d : (double) bytesOut.sum() / in;
+	}
+
+	/**
+	 * @return 预处理累计耗时（毫秒）
+	 */
+	public double getTotalProcessMillis() {
+		return processNanos.sum() / (double) TimeUnit.MILLISECONDS.toNanos(1);
+	}
+
+	public FaceRecognitionProvider getDelegate() {
+		return delegate;
+	}
+
+	public FaceImagePreprocessor getPreprocessor() {
+		return preprocessor;
+	}
+
+	public Executor getExecutor() {
+		return executor;
+	}
+
+	public void setExecutor(Executor executor) {
+		this.executor = executor;
+	}
+
+}
@@ -0,0 +1,360 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.authc;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.shiro.authc.AuthenticationException;
+import org.apache.shiro.authc.AuthenticationToken;
+import org.apache.shiro.spring.boot.faceid.FaceInfo;
+import org.apache.shiro.spring.boot.faceid.exception.AuthenticationOverloadException;
+import org.apache.shiro.spring.boot.faceid.image.FaceImagePayload;
+import org.apache.shiro.spring.boot.faceid.token.FaceIDLoginToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 多后端人脸识别路由：按各后端成功调用的延迟 EWMA 加上错误率惩罚选择首选后端；首选后端在 p95 估计的截止时间内未返回时，
+ * 向次优后端发送一次对冲请求，取先返回的结果；后端出错时立即切换到下一个后端。
+ * 整个过程由回调和定时器驱动，不阻塞请求线程。
+ * <p>{@link AuthenticationException}（如未检测到人脸、未匹配到人脸）视为后端给出的确定结论，直接返回，不做切换；
+ * 过载拒绝（{@link AuthenticationOverloadException}）与包装了后端异常的认证异常按后端错误处理。</p>
+ * @author 		： <a href="https://github.com/hiwepy">wandl</a>
+ */
+public class RoutingFaceRecognitionProvider implements FaceRecognitionProvider, AsyncFaceRecognitionProvider, AutoCloseable {
+
+	private static final Logger LOG = LoggerFactory.getLogger(RoutingFaceRecognitionProvider.class);
+
+	private final Backend[] backends;
+	private final ScheduledExecutorService scheduler;
+	private final LongAdder hedged = new LongAdder();
+	private final LongAdder failovers = new LongAdder();
+	/**
+	 * 是否启用对冲请求
+	 */
+	private boolean hedgeEnabled = true;
+	/**
+	 * 对冲请求的最小等待时间（纳秒），避免延迟统计尚未稳定时过早对冲
+	 */
+	private long minHedgeDelayNanos = TimeUnit.MILLISECONDS.toNanos(50);
+	/**
+	 * 错误率惩罚（纳秒）：选路得分 = 成功延迟 EWMA + errorPenalty × 错误率 EWMA。
+	 * 采用加法而非乘法，快速失败的后端不会因延迟低而排在健康后端之前
+	 */
+	private long errorPenaltyNanos = TimeUnit.SECONDS.toNanos(1);
+
+	/**
+	 * @param backends 参与路由的后端
+	 * @param scheduler 触发对冲请求的定时器
+	 */
+	public RoutingFaceRecognitionProvider(List<Backend> backends, ScheduledExecutorService scheduler) {
+		if (backends == null || backends.isEmpty()) {
+			throw new IllegalArgumentException("At least one face recognition backend is required.");
+		}
+		this.backends = backends.toArray(new Backend[0]);
+		this.scheduler = scheduler;
+	}
+
+	@Override
+	public FaceInfo loadFaceInfo(AuthenticationToken token) {
+		try {
+			return loadFaceInfoAsync(token).join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new AuthenticationException("Face recognition failed.", e.getCause());
+		}
+	}
+
+	@Override
+	public CompletableFuture<FaceInfo> loadFaceInfoAsync(AuthenticationToken token) {
+		Attempt attempt = new Attempt(token, rank());
+		if (!attempt.launchNext()) {
+			attempt.result.completeExceptionally(new AuthenticationException("No face recognition backend is available."));
+			return attempt.result;
+		}
+		if (hedgeEnabled && attempt.ranked.length > 1) {
+			long delay = Math.max(minHedgeDelayNanos, attempt.ranked[0].getP95Nanos());
+			scheduler.schedule(() -> {
+				if (!attempt.result.isDone() && attempt.launchNext()) {
+					hedged.increment();
+				}
+			}, delay, TimeUnit.NANOSECONDS);
+		}
+		return attempt.result;
+	}
+
+	/**
+	 * 按选路得分从低到高排序后端；尚无统计数据的后端得分为 0，会优先被探测
+	 */
+	private Backend[] rank() {
+		Backend[] ranked = backends.clone();
+		double[] scores = new double[ranked.length];
+		for (int i = 0; i < ranked.length; i++) {
+			scores[i] = ranked[i].score(errorPenaltyNanos);
+		}
+		// 后端数量很少，插入排序即可
+		for (int i = 1; i < ranked.length; i++) {
+			Backend backend = ranked[i];
+			double score = scores[i];
+			int j = i;
+			while (j > 0 && scores[j - 1] > score) {
+				ranked[j] = ranked[j - 1];
+				scores[j] = scores[j - 1];
+				j--;
+			}
+			ranked[j] = backend;
+			scores[j] = score;
+		}
+		return ranked;
+	}
+
+	/**
+	 * 关闭对冲定时器
+	 */
+	@Override
+	public void close() {
+		scheduler.shutdownNow();
+	}
+
+	/**
+	 * @return 参与路由的后端及其实时统计
+	 */
+	public List<Backend> getBackends() {
+		return Collections.unmodifiableList(Arrays.asList(backends));
+	}
+
+	/**
+	 * @return 已发出的对冲请求数
+	 */
+	public long getHedgedCount() {
+		return hedged.sum();
+	}
+
+	/**
+	 * @return 因后端出错而切换的次数
+	 */
+	public long getFailoverCount() {
+		return failovers.sum();
+	}
+
+	public boolean isHedgeEnabled() {
+		return hedgeEnabled;
+	}
+
+	public void setHedgeEnabled(boolean hedgeEnabled) {
+		this.hedgeEnabled = hedgeEnabled;
+	}
+
+	public long getMinHedgeDelayMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(minHedgeDelayNanos);
+	}
+
+	public void setMinHedgeDelayMillis(long minHedgeDelayMillis) {
+		this.minHedgeDelayNanos = TimeUnit.MILLISECONDS.toNanos(minHedgeDelayMillis);
+	}
+
+	public long getErrorPenaltyMillis() {
+		return TimeUnit.NANOSECONDS.toMillis(errorPenaltyNanos);
+	}
+
+	public void setErrorPenaltyMillis(long errorPenaltyMillis) {
+		this.errorPenaltyNanos = TimeUnit.MILLISECONDS.toNanos(errorPenaltyMillis);
+	}
+
+	/**
+	 * 一次识别请求的路由状态：按排序依次启动后端调用，任一调用成功或给出确定结论即结束
+	 */
+	private final class Attempt {
+
+		private final AuthenticationToken token;
+		private final Backend[] ranked;
+		private final CompletableFuture<FaceInfo> result = new CompletableFuture<FaceInfo>();
+		private final AtomicInteger next = new AtomicInteger();
+		private final AtomicInteger inflight = new AtomicInteger();
+		private volatile Throwable lastError;
+
+		Attempt(AuthenticationToken token, Backend[] ranked) {
+			this.token = token;
+			this.ranked = ranked;
+		}
+
+		/**
+		 * 启动下一个后端调用
+		 * @return 是否成功启动
+		 */
+		boolean launchNext() {
+			int index = next.getAndIncrement();
+			if (index >= ranked.length || result.isDone()) {
+				return false;
+			}
+			// 并发的后端调用共享同一图片缓冲区，各自持有一次引用，避免先返回的一方归还缓冲区后另一方仍在读取
+			FaceImagePayload payload = token instanceof FaceIDLoginToken ? ((FaceIDLoginToken) token).getPayload() : null;
+			if (payload != null) {
+				try {
+					payload.retain();
+				} catch (IllegalStateException e) {
+					// 结果已返回且载荷已被释放
+					return false;
+				}
+			}
+			Backend backend = ranked[index];
+			inflight.incrementAndGet();
+			long start = System.nanoTime();
+			CompletableFuture<FaceInfo> future;
+			try {
+				future = backend.provider.loadFaceInfoAsync(token);
+			} catch (RuntimeException e) {
+				future = new CompletableFuture<FaceInfo>();
+				future.completeExceptionally(e);
+			}
+			future.whenComplete((faceInfo, ex) -> {
+				if (payload != null) {
+					payload.close();
+				}
+				Throwable cause = ex == null ? null : FaceRecognitionErrors.unwrap(ex);
+				// 过载与后端故障切换到下一个后端，普通认证失败（人脸不匹配）直接返回
+				boolean backendError = FaceRecognitionErrors.isBackendError(cause);
+				backend.record(System.nanoTime() - start, backendError);
+				if (cause == null) {
+					result.complete(faceInfo);
+				} else if (!backendError) {
+					result.completeExceptionally(cause);
+				} else {
+					LOG.debug("Face recognition backend [{}] failed.", backend.name, cause);
+					lastError = cause;
+					int remaining = inflight.decrementAndGet();
+					if (launchNext()) {
+						failovers.increment();
+					} else if (remaining == 0) {
+						// 全部后端过载时保留过载异常，客户端按 Retry-After 退避
+						result.completeExceptionally(lastError instanceof AuthenticationOverloadException ? lastError
+								: new AuthenticationException("All face recognition backends failed.", lastError));
+					}
+				}
+			});
+			return true;
+		}
+
+	}
+
+	/**
+	 * 路由后端及其延迟、错误率统计。
+	 * <p>延迟的 p95 以 EWMA 均值 + 2 × EWMA 平均绝对偏差 估计，无需保存样本。
+	 * 延迟只统计成功（含确定结论）的调用，快速失败的调用只计入错误率，不会拉低延迟估计。</p>
+	 */
+	public static final class Backend {
+
+		private final String name;
+		private final AsyncFaceRecognitionProvider provider;
+		private final double alpha;
+		private final LongAdder requests = new LongAdder();
+		private final LongAdder errors = new LongAdder();
+		private double latencyEwma;
+		private double deviationEwma;
+		private double errorEwma;
+		private boolean latencySampled;
+		private boolean errorSampled;
+
+		/**
+		 * @param name 后端名称
+		 * @param provider 异步识别服务
+		 * @param alpha EWMA 平滑系数，(0, 1]，越大对最新样本越敏感
+		 */
+		public Backend(String name, AsyncFaceRecognitionProvider provider, double alpha) {
+			this.name = name;
+			this.provider = provider;
+			this.alpha = alpha;
+		}
+
+		synchronized void record(long nanos, boolean error) {
+			requests.increment();
+			if (error) {
+				errors.increment();
+			}
+			if (!errorSampled) {
+				errorEwma = error ? 1d : 0d;
+				errorSampled = true;
+			} else {
+				errorEwma += alpha * ((error ? 1d : 0d) - errorEwma);
+			}
+			if (error) {
+				return;
+			}
+			if (!latencySampled) {
+				latencyEwma = nanos;
+				deviationEwma = nanos / 2d;
+				latencySampled = true;
+				return;
+			}
+			deviationEwma += alpha * (Math.abs(nanos - latencyEwma) - deviationEwma);
+			latencyEwma += alpha * (nanos - latencyEwma);
+		}
+
+		synchronized double score(long errorPenaltyNanos) {
+			return latencyEwma + errorPenaltyNanos * errorEwma;
+		}
+
+		synchronized long getP95Nanos() {
+			return (long) (latencyEwma + 2d * deviationEwma);
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public AsyncFaceRecognitionProvider getProvider() {
+			return provider;
+		}
+
+		public synchronized double getLatencyMillis() {
+			return latencyEwma / TimeUnit.MILLISECONDS.toNanos(1);
+		}
+
+		public double getP95Millis() {
+			return getP95Nanos() / (double) TimeUnit.MILLISECONDS.toNanos(1);
+		}
+
+		public synchronized double getErrorRate() {
+			return errorEwma;
+		}
+
+		public long getRequestCount() {
+			return requests.sum();
+		}
+
+		public long getErrorCount() {
+			return errors.sum();
+		}
+
+		@Override
+		public String toString() {
+			return "Backend [name=" + name + ", latencyMillis=" + getLatencyMillis() + ", p95Millis=" + getP95Millis()
+					+ ", errorRate=" + getErrorRate() + "]";
+		}
+
+	}
+
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.authc;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import org.apache.shiro.authc.AuthenticationToken;
+import org.apache.shiro.spring.boot.faceid.FaceInfo;
+import org.apache.shiro.spring.boot.faceid.screening.FaceImageScreening;
+import org.apache.shiro.spring.boot.faceid.token.FaceIDLoginToken;
+
+/**
+ * 在调用识别服务之前执行 {@link FaceImageScreening}，不可用的图片在本地即被拒绝。
+ * 只提交 faceToken、不携带图片的请求不做检查。
+ * @author 		： <a href="https://github.com/hiwepy">wandl</a>
+ */
+public class ScreeningFaceRecognitionProvider implements FaceRecognitionProvider, AsyncFaceRecognitionProvider {
+
+	private final FaceRecognitionProvider delegate;
+	private final FaceImageScreening screening;
+	/**
+	 * 异步模式下执行检查（及同步识别服务）的线程池；为空时在调用线程上检查
+	 */
+	private Executor executor;
+
+	public ScreeningFaceRecognitionProvider(FaceRecognitionProvider delegate, FaceImageScreening screening) {
+		this.delegate = delegate;
+		this.screening = screening;
+	}
+
+	@Override
+	public FaceInfo loadFaceInfo(AuthenticationToken token) {
+		screen(token);
+		return delegate.loadFaceInfo(token);
+	}
+
+	@Override
+	public CompletableFuture<FaceInfo> loadFaceInfoAsync(AuthenticationToken token) {
+		if (executor == null) {
+			try {
+				screen(token);
+			} catch (RuntimeException e) {
+				CompletableFuture<FaceInfo> future = new CompletableFuture<FaceInfo>();
+				future.completeExceptionally(e);
+				return future;
+			}
+			return delegateAsync(token);
+		}
+		return CompletableFuture.runAsync(() -> screen(token), executor).thenCompose(v -> delegateAsync(token));
+	}
+
+	private CompletableFuture<FaceInfo> delegateAsync(AuthenticationToken token) {
+		if (delegate instanceof AsyncFaceRecognitionProvider) {
+			return ((AsyncFaceRecognitionProvider) delegate).loadFaceInfoAsync(token);
+		}
+		if (executor != null) {
+			return CompletableFuture.supplyAsync(() -> delegate.loadFaceInfo(token), executor);
+		}
+		CompletableFuture<FaceInfo> future = new CompletableFuture<FaceInfo>();
+		try {
+			future.complete(delegate.loadFaceInfo(token));
+		} catch (RuntimeException e) {
+			future.completeExceptionally(e);
+		}
+		return future;
+	}
+
+	private void screen(AuthenticationToken token) {
+		if (token instanceof FaceIDLoginToken) {
+			FaceIDLoginToken faceToken = (FaceIDLoginToken) token;
+			if (faceToken.getPayload() != null || faceToken.getFaceToken() == null) {
+				screening.screen(faceToken.getPayload());
+			}
+		}
+	}
+
+	public FaceRecognitionProvider getDelegate() {
+		return delegate;
+	}
+
+	public FaceImageScreening getScreening() {
+		return screening;
+	}
+
+	public Executor getExecutor() {
+		return executor;
+	}
+
+	public void setExecutor(Executor executor) {
+		this.executor = executor;
+	}
+
+}
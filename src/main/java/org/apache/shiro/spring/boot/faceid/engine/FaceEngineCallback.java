@@ -0,0 +1,29 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.engine;
+
+/**
+ * 借用引擎执行的操作
+ * @param <E> 引擎类型
+ * @param <R> 返回值类型
+ * @author 		： <a href="https://github.com/hiwepy">wandl</a>
+ */
+@FunctionalInterface
+public interface FaceEngineCallback<E, R> {
+
+	R doWithEngine(E engine) throws Exception;
+
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.engine;
+
+import org.apache.shiro.spring.boot.faceid.image.FaceImagePayload;
+
+/**
+ * 人脸引擎工厂：负责原生识别引擎（如 ArcFace）的创建、预热、健康检查与销毁，由 {@link FaceEnginePool} 调用。
+ * 引擎实例非线程安全，同一时刻只会被一个线程使用。
+ * @param <E> 引擎类型
+ * @author 		： <a href="https://github.com/hiwepy">wandl</a>
+ */
+public interface FaceEngineFactory<E> {
+
+	/**
+	 * 创建并初始化一个引擎实例（通常耗时较长）
+	 * @return 引擎实例
+	 * @throws Exception 初始化失败
+	 */
+	E create() throws Exception;
+
+	/**
+	 * 使用合成图片执行一次完整的检测/提取流程，使模型加载、内存分配等一次性开销发生在启动阶段而不是首次登录时
+	 * @param engine 引擎实例
+	 * @param image 合成图片
+	 * @throws Exception 预热失败，引擎将被丢弃
+	 */
+	default void warmUp(E engine, FaceImagePayload image) throws Exception {
+	}
+
+	/**
+	 * 健康检查
+	 * @param engine 引擎实例
+	 * @return 引擎是否仍可用
+	 */
+	default boolean validate(E engine) {
+		return true;
+	}
+
+	/**
+	 * 释放引擎占用的原生资源
+	 * @param engine 引擎实例
+	 */
+	void destroy(E engine);
+
+}
@@ -0,0 +1,390 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.engine;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.imageio.ImageIO;
+
+import org.apache.shiro.authc.AuthenticationException;
+import org.apache.shiro.spring.boot.faceid.exception.AuthenticationOverloadException;
+import org.apache.shiro.spring.boot.faceid.image.FaceImagePayload;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+/**
+ * 原生人脸引擎池：引擎实例初始化昂贵且非线程安全，按 CPU 核数创建固定数量的实例，启动时用合成图片预热，
+ * 每次识别借用一个实例独占使用。
+ * <ul>
+ * <li>借用超时：在 borrowTimeout 内没有空闲引擎时快速失败，避免请求无限堆积</li>
+ * <li>故障替换：使用过程中抛出非认证类异常的引擎视为损坏，立即销毁并在后台重建</li>
+ * <li>健康检查：后台定期对空闲引擎执行 {@link FaceEngineFactory#validate(Object)}，不健康的实例被替换</li>
+ * </ul>
+ * 用法示例：
+ * <pre>
+ * FaceFeatureExtractor extractor = token -&gt; pool.execute(engine -&gt; engine.extract(...));
+ * </pre>
+ * @param <E> 引擎类型
+ * @author 		： <a href="https://github.com/hiwepy">wandl</a>
+ */
+public class FaceEnginePool<E> implements Closeable {
+
+	private static final Logger LOG = LoggerFactory.getLogger(FaceEnginePool.class);
+
+	private final FaceEngineFactory<E> factory;
+	private final int size;
+	private final long borrowTimeoutNanos;
+	private final BlockingQueue<E> idle;
+	private final ScheduledExecutorService maintainer;
+	private final AtomicInteger live = new AtomicInteger();
+	private final AtomicInteger active = new AtomicInteger();
+	private final LongAdder borrows = new LongAdder();
+	private final LongAdder timeouts = new LongAdder();
+	private final LongAdder recreated = new LongAdder();
+	private final LongAdder waitNanos = new LongAdder();
+	private final LongAdder busyNanos = new LongAdder();
+	private final long startedAt = System.nanoTime();
+	/**
+	 * 是否在创建引擎后使用合成图片预热
+	 */
+	private boolean warmUp = true;
+	/**
+	 * 空闲引擎健康检查间隔（毫秒），小于等于 0 表示不检查
+	 */
+	private long healthCheckIntervalMillis = 60000;
+	/**
+	 * 引擎创建失败后的重试间隔（毫秒）
+	 */
+	private long retryDelayMillis = 1000;
+	/**
+	 * 等待引擎超时时建议客户端重试的等待秒数
+	 */
+	private int retryAfterSeconds = 1;
+	private volatile boolean closed;
+
+	/**
+	 * @param factory 引擎工厂
+	 * @param size 引擎数量，通常等于 CPU 核数
+	 * @param borrowTimeoutMillis 借用引擎的最长等待时间
+	 */
+	public FaceEnginePool(FaceEngineFactory<E> factory, int size, long borrowTimeoutMillis) {
+		this.factory = factory;
+		this.size = Math.max(1, size);
+		this.borrowTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(borrowTimeoutMillis);
+		this.idle = new ArrayBlockingQueue<E>(this.size);
+		this.maintainer = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("faceid-engine-"));
+	}
+
+	/**
+	 * 创建并预热全部引擎；创建失败的实例在后台重试，不阻止应用启动
+	 */
+	public void start() {
+		FaceImagePayload image = warmUp ? syntheticImage() : null;
+		for (int i = 0; i < size; i++) {
+			try {
+				idle.offer(newEngine(image));
+			} catch (Exception e) {
+				LOG.warn("Failed to create face engine, retrying in background.", e);
+				maintainer.schedule(this::replenish, retryDelayMillis, TimeUnit.MILLISECONDS);
+			}
+		}
+		if (healthCheckIntervalMillis > 0) {
+			maintainer.scheduleWithFixedDelay(this::healthCheck, healthCheckIntervalMillis, healthCheckIntervalMillis,
+					TimeUnit.MILLISECONDS);
+		}
+		LOG.info("Face engine pool started with {}/{} engines.", live.get(), size);
+	}
+
+	/**
+	 * 借用一个引擎执行操作，完成后自动归还
+	 * @param callback 引擎操作
+	 * @return 操作结果
+	 * @throws AuthenticationOverloadException 等待引擎超时
+	 * @throws AuthenticationException 引擎执行失败
+	 */
+	public <R> R execute(FaceEngineCallback<E, R> callback) {
+		E engine = borrow();
+		boolean broken = false;
+		long start = System.nanoTime();
+		try {
+			return callback.doWithEngine(engine);
+		} catch (AuthenticationException e) {
+			throw e;
+		} catch (RuntimeException e) {
+			broken = true;
+			throw e;
+		} catch (Error e) {
+			broken = true;
+			throw e;
+		} catch (Exception e) {
+			broken = true;
+			throw new AuthenticationException("Face engine failed.", e);
+		} finally {
+			busyNanos.add(System.nanoTime() - start);
+			active.decrementAndGet();
+			if (broken || closed) {
+				discard(engine);
+			} else {
+				idle.offer(engine);
+			}
+		}
+	}
+
+	private E borrow() {
+		long start = System.nanoTime();
+		E engine;
+		try {
+			engine = idle.poll(borrowTimeoutNanos, TimeUnit.NANOSECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new AuthenticationException("Interrupted while waiting for a face engine.", e);
+		}
+		waitNanos.add(System.nanoTime() - start);
+		if (engine == null) {
+			timeouts.increment();
+			throw new AuthenticationOverloadException("No face engine available within "
+					+ TimeUnit.NANOSECONDS.toMillis(borrowTimeoutNanos) + "ms.", retryAfterSeconds);
+		}
+		borrows.increment();
+		active.incrementAndGet();
+		return engine;
+	}
+
+	private E newEngine(FaceImagePayload image) throws Exception {
+		E engine = factory.create();
+		if (image != null) {
+			try {
+				factory.warmUp(engine, image);
+			} catch (Exception e) {
+				destroy(engine);
+				throw e;
+			}
+		}
+		live.incrementAndGet();
+		return engine;
+	}
+
+	/**
+	 * 销毁引擎并在后台补充新实例
+	 */
+	private void discard(E engine) {
+		live.decrementAndGet();
+		destroy(engine);
+		if (!closed) {
+			recreated.increment();
+			maintainer.execute(this::replenish);
+		}
+	}
+
+	private void destroy(E engine) {
+		try {
+			factory.destroy(engine);
+		} catch (Exception e) {
+			LOG.warn("Failed to destroy face engine.", e);
+		}
+	}
+
+	private void replenish() {
+		if (closed || live.get() >= size) {
+			return;
+		}
+		try {
+			idle.offer(newEngine(warmUp ? syntheticImage() : null));
+		} catch (Exception e) {
+			LOG.warn("Failed to re-create face engine, retrying in {}ms.", retryDelayMillis, e);
+			if (!closed) {
+				maintainer.schedule(this::replenish, retryDelayMillis, TimeUnit.MILLISECONDS);
+			}
+		}
+	}
+
+	/**
+	 * 逐个取出当前空闲的引擎做健康检查；检查期间该引擎暂不可借用
+	 */
+	private void healthCheck() {
+		for (int i = idle.size(); i > 0 && !closed; i--) {
+			E engine = idle.poll();
+			if (engine == null) {
+				return;
+			}
+			boolean healthy;
+			try {
+				healthy = factory.validate(engine);
+			} catch (Exception e) {
+				healthy = false;
+			}
+			if (healthy) {
+				idle.offer(engine);
+			} else {
+				LOG.warn("Face engine failed health check, re-creating.");
+				discard(engine);
+			}
+		}
+	}
+
+	/**
+	 * 生成用于预热的合成图片：灰色背景上的椭圆“脸部”轮廓，足以驱动一次完整的检测流程
+	 */
+	static FaceImagePayload syntheticImage() {
+		BufferedImage image = new BufferedImage(256, 256, BufferedImage.TYPE_3BYTE_BGR);
+		Graphics2D g = image.createGraphics();
+		try {
+			g.setColor(Color.GRAY);
+			g.fillRect(0, 0, 256, 256);
+			g.setColor(new Color(224, 172, 140));
+			g.fillOval(68, 40, 120, 160);
+			g.setColor(Color.DARK_GRAY);
+			g.fillOval(98, 100, 16, 10);
+			g.fillOval(142, 100, 16, 10);
+			g.fillRect(112, 160, 32, 6);
+		} finally {
+			g.dispose();
+		}
+		ByteArrayOutputStream out = new ByteArrayOutputStream(16 * 1024);
+		try {
+			ImageIO.write(image, "jpg", out);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		return FaceImagePayload.wrap(out.toByteArray(), "image/jpeg");
+	}
+
+	/**
+	 * 停止后台维护并销毁所有空闲引擎；借出中的引擎在归还时销毁
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		maintainer.shutdownNow();
+		E engine;
+		while ((engine = idle.poll()) != null) {
+			live.decrementAndGet();
+			destroy(engine);
+		}
+	}
+
+	/**
+	 * @return 配置的引擎数量
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * @return 当前存活（空闲 + 借出）的引擎数量
+	 */
+	public int getLiveCount() {
+		return live.get();
+	}
+
+	/**
+	 * @return 当前借出中的引擎数量
+	 */
+	public int getActiveCount() {
+		return active.get();
+	}
+
+	public int getIdleCount() {
+		return idle.size();
+	}
+
+	/**
+	 * @return 瞬时利用率：借出中的引擎数 / 引擎数量
+	 */
+	public double getUtilization() {
+		return (double) active.get() / size;
+	}
+
+	/**
+	 * @return 启动以来的平均利用率：引擎累计忙碌时间 / (运行时间 × 引擎数量)
+	 */
+	public double getAverageUtilization() {
+		long elapsed = System.nanoTime() - startedAt;
+		return elapsed <= 0 ? 0d : busyNanos.sum() / ((double) elapsed * size);
+	}
+
+	public long getBorrowCount() {
+		return borrows.sum();
+	}
+
+	/**
+	 * @return 等待引擎超时的次数
+	 */
+	public long getTimeoutCount() {
+		return timeouts.sum();
+	}
+
+	/**
+	 * @return 因损坏或健康检查失败而重建的引擎数量
+	 */
+	public long getRecreatedCount() {
+		return recreated.sum();
+	}
+
+	/**
+	 * @return 借用引擎的平均等待时间（毫秒）
+	 */
+	public double getAverageWaitMillis() {
+		long count = borrows.sum() + timeouts.sum();
+		return count == 0 ? 0d : waitNanos.sum() / (double) count / TimeUnit.MILLISECONDS.toNanos(1);
+	}
+
+	public boolean isWarmUp() {
+		return warmUp;
+	}
+
+	public void setWarmUp(boolean warmUp) {
+		this.warmUp = warmUp;
+	}
+
+	public long getHealthCheckIntervalMillis() {
+		return healthCheckIntervalMillis;
+	}
+
+	public void setHealthCheckIntervalMillis(long healthCheckIntervalMillis) {
+		this.healthCheckIntervalMillis = healthCheckIntervalMillis;
+	}
+
+	public long getRetryDelayMillis() {
+		return retryDelayMillis;
+	}
+
+	public void setRetryDelayMillis(long retryDelayMillis) {
+		this.retryDelayMillis = retryDelayMillis;
+	}
+
+	public int getRetryAfterSeconds() {
+		return retryAfterSeconds;
+	}
+
+	public void setRetryAfterSeconds(int retryAfterSeconds) {
+		this.retryAfterSeconds = retryAfterSeconds;
+	}
+
+}
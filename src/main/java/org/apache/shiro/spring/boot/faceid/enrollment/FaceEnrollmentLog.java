@@ -0,0 +1,336 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.enrollment;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 人脸注册预写日志（WAL）：注册、替换、注销按顺序追加为带 CRC 校验的记录，写入后才应用到内存索引。
+ * <p>
+ * 文件格式：16 字节文件头（魔数、版本、维度、保留），之后为连续的变长记录：
+ * [int 载荷长度][int CRC32][byte 操作][short faceId 长度][faceId UTF-8 字节][float × dimension，仅注册]。
+ * 重放时遇到延伸到文件末尾的不完整或校验失败的记录，认为是崩溃时未写完的尾部，截断后继续使用；
+ * 损坏的记录之后仍有数据时拒绝重放，不截断其后的有效记录。
+ * @author ： <a href="https://github.com/hiwepy">wandl</a>
+ */
+public class FaceEnrollmentLog implements Closeable {
+
+	private static final Logger LOG = LoggerFactory.getLogger(FaceEnrollmentLog.class);
+	private static final int MAGIC = 0x46574C47; // "FWLG"
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 16;
+	private static final byte OP_ENROLL = 1;
+	private static final byte OP_REVOKE = 2;
+
+	private final File file;
+	private final int dimension;
+	/**
+	 * 每次追加后是否强制刷盘；关闭时依赖操作系统回写，进程崩溃不丢数据，断电可能丢失最近的记录
+	 */
+	private final boolean sync;
+	private final int maxPayloadSize;
+	private FileChannel channel;
+	private long records;
+
+	public FaceEnrollmentLog(File file, int dimension, boolean sync) throws IOException {
+		if (dimension <= 0) {
+			throw new IllegalArgumentException("dimension must be positive");
+		}
+		this.file = file;
+		this.dimension = dimension;
+		this.sync = sync;
+		this.maxPayloadSize = 3 + Short.MAX_VALUE + dimension * 4;
+		if (file.getParentFile() != null && !file.getParentFile().exists()) {
+			file.getParentFile().mkdirs();
+		}
+		this.channel = open(file);
+	}
+
+	private FileChannel open(File target) throws IOException {
+		FileChannel opened = FileChannel.open(target.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		if (opened.size() < HEADER_SIZE) {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			header.putInt(MAGIC).putInt(VERSION).putInt(dimension).putInt(0).flip();
+			opened.truncate(0);
+			opened.write(header, 0);
+			opened.force(true);
+		} else {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			opened.read(header, 0);
+			header.flip();
+			if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+				opened.close();
+				throw new IOException("Not a face enrollment log: " + target);
+			}
+			int stored = header.getInt();
+			if (stored != dimension) {
+				opened.close();
+				throw new IOException("Face enrollment log " + target + " was created with dimension " + stored);
+			}
+		}
+		opened.position(opened.size());
+		return opened;
+	}
+
+	/**
+	 * 追加注册或替换记录
+	 */
+	public synchronized void appendEnroll(String faceId, float[] feature) throws IOException {
+		if (feature == null || feature.length != dimension) {
+			throw new IllegalArgumentException("Feature dimension mismatch, expected " + dimension);
+		}
+		append(OP_ENROLL, faceId, feature);
+	}
+
+	/**
+	 * 追加注销记录
+	 */
+	public synchronized void appendRevoke(String faceId) throws IOException {
+		append(OP_REVOKE, faceId, null);
+	}
+
+	private void append(byte op, String faceId, float[] feature) throws IOException {
+		byte[] id = faceId.getBytes(StandardCharsets.UTF_8);
+		if (id.length > Short.MAX_VALUE) {
+			throw new IllegalArgumentException("faceId too long: " + faceId);
+		}
+		int payloadSize = 3 + id.length + (feature == null ? 0 : feature.length * 4);
+		ByteBuffer buffer = ByteBuffer.allocate(8 + payloadSize);
+		buffer.position(8);
+		buffer.put(op).putShort((short) id.length).put(id);
+		if (feature != null) {
+			for (float v : feature) {
+				buffer.putFloat(v);
+			}
+		}
+		CRC32 crc = new CRC32();
+		crc.update(buffer.array(), 8, payloadSize);
+		buffer.putInt(0, payloadSize).putInt(4, (int) crc.getValue());
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		if (sync) {
+			channel.force(false);
+		}
+		records++;
+	}
+
+	/**
+	 * 按写入顺序重放全部记录；注销记录的特征为 null。不完整或损坏的尾部记录会被截断。
+	 * @param consumer 回调：(faceId, feature)
+	 * @return 有效记录数
+	 */
+	public synchronized long replay(BiConsumer<String, float[]> consumer) throws IOException {
+		long count = 0;
+		long valid = HEADER_SIZE;
+		long end = -1;
+		DataInputStream in = new DataInputStream(new BufferedInputStream(
+				Channels.newInputStream(channel.position(HEADER_SIZE)), 64 * 1024));
+		byte[] payload = new byte[0];
+		CRC32 crc = new CRC32();
+		try {
+			for (;;) {
+				end = -1;
+				int payloadSize;
+				try {
+					payloadSize = in.readInt();
+				} catch (EOFException e) {
+					break;
+				}
+				if (payloadSize < 3 || payloadSize > maxPayloadSize) {
+					throw new CorruptRecordException();
+				}
+				end = valid + 8 + payloadSize;
+				int checksum = in.readInt();
+				if (payload.length < payloadSize) {
+					payload = new byte[payloadSize];
+				}
+				in.readFully(payload, 0, payloadSize);
+				crc.reset();
+				crc.update(payload, 0, payloadSize);
+				if ((int) crc.getValue() != checksum) {
+					throw new CorruptRecordException();
+				}
+				ByteBuffer record = ByteBuffer.wrap(payload, 0, payloadSize);
+				byte op = record.get();
+				int idLength = record.getShort();
+				if (idLength < 0 || 3 + idLength > payloadSize) {
+					throw new CorruptRecordException();
+				}
+				String faceId = new String(payload, 3, idLength, StandardCharsets.UTF_8);
+				record.position(3 + idLength);
+				float[] feature = null;
+				if (op == OP_ENROLL) {
+					if (record.remaining() != dimension * 4) {
+						throw new CorruptRecordException();
+					}
+					feature = new float[dimension];
+					record.asFloatBuffer().get(feature);
+				} else if (op != OP_REVOKE) {
+					throw new CorruptRecordException();
+				}
+				consumer.accept(faceId, feature);
+				valid += 8 + payloadSize;
+				count++;
+			}
+		} catch (CorruptRecordException | EOFException e) {
+			long size = channel.size();
+			if (!(e instanceof EOFException) && end < size && !isZeroFilled(valid, size)) {
+				channel.position(channel.size());
+				throw new IOException("Face enrollment log " + file + " has a corrupt record at byte " + valid + " followed by "
+						+ (size - valid) + " bytes; refusing to truncate it, repair or remove the log before restarting.");
+			}
+			LOG.warn("Truncating face enrollment log {} at byte {} after an incomplete or corrupt record.", file, valid);
+			channel.truncate(valid);
+			channel.force(true);
+		}
+		channel.position(channel.size());
+		records = count;
+		return count;
+	}
+
+	/**
+	 * 崩溃时文件系统可能以零字节延长文件，这样的尾部同样视为未写完
+	 */
+	private boolean isZeroFilled(long from, long to) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(8192);
+		long position = from;
+		while (position < to) {
+			buffer.clear();
+			int read = channel.read(buffer, position);
+			if (read <= 0) {
+				break;
+			}
+			for (int i = 0; i < read; i++) {
+				if (buffer.get(i) != 0) {
+					return false;
+				}
+			}
+			position += read;
+		}
+		return true;
+	}
+
+	/**
+	 * 检查点：特征库已将全部变更刷盘后清空日志，此后重启只重放检查点之后的记录
+	 */
+	public synchronized void checkpoint() throws IOException {
+		channel.truncate(HEADER_SIZE);
+		channel.force(true);
+		channel.position(HEADER_SIZE);
+		records = 0;
+	}
+
+	/**
+	 * 压缩：只保留每个 faceId 最后一次注册且未被注销的记录，写入临时文件后原子替换。
+	 * 压缩期间追加被阻塞，内存中只保留 faceId → 记录位置，不加载特征数据。
+	 * @return 压缩后的记录数
+	 */
+	public synchronized long compact() throws IOException {
+		final Map<String, Long> latest = new HashMap<String, Long>();
+		final long[] position = { HEADER_SIZE };
+		replay((faceId, feature) -> {
+			long recordSize = 8 + 3 + faceId.getBytes(StandardCharsets.UTF_8).length + (feature == null ? 0 : dimension * 4);
+			if (feature == null) {
+				latest.remove(faceId);
+			} else {
+				latest.put(faceId, position[0]);
+			}
+			position[0] += recordSize;
+		});
+		File compacted = new File(file.getPath() + ".compact");
+		Files.deleteIfExists(compacted.toPath());
+		try (FileChannel target = open(compacted)) {
+			ByteBuffer lengthBuffer = ByteBuffer.allocate(4);
+			// 按原文件顺序复制，保持记录的相对次序
+			long[] offsets = new long[latest.size()];
+			int i = 0;
+			for (Long offset : latest.values()) {
+				offsets[i++] = offset;
+			}
+			Arrays.sort(offsets);
+			for (long offset : offsets) {
+				lengthBuffer.clear();
+				channel.read(lengthBuffer, offset);
+				long size = 8 + lengthBuffer.getInt(0);
+				long copied = 0;
+				while (copied < size) {
+					copied += channel.transferTo(offset + copied, size - copied, target);
+				}
+			}
+			target.force(true);
+		}
+		// 部分平台不能替换已打开的文件，替换前先关闭；替换失败时重新打开原日志，后续追加不受影响
+		channel.close();
+		try {
+			Files.move(compacted.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException | RuntimeException e) {
+			Files.deleteIfExists(compacted.toPath());
+			throw e;
+		} finally {
+			channel = open(file);
+		}
+		records = latest.size();
+		return records;
+	}
+
+	/**
+	 * @return 日志中的记录数（含已被替换或注销的历史记录）
+	 */
+	public synchronized long getRecords() {
+		return records;
+	}
+
+	public synchronized long getSizeInBytes() throws IOException {
+		return channel.size();
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		channel.close();
+	}
+
+	@SuppressWarnings("serial")
+	private static class CorruptRecordException extends IOException {
+	}
+
+}
@@ -0,0 +1,260 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.enrollment;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.apache.shiro.spring.boot.faceid.gallery.FaceGallery;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 人脸注册服务：注册、替换、注销先写入 {@link FaceEnrollmentLog}，再应用到在线的 {@link FaceGallery}，
+ * 新注册的人脸无需重新加载特征库即可登录。
+ * <p>
+ * 启动时重放日志恢复崩溃前的全部变更；日志中的历史记录远多于有效人脸时定期压缩。
+ * 特征库本身持久化（模板存储）时，日志只作为存储刷盘前的重做日志：定期将特征库刷盘后清空日志（检查点），
+ * 重启时只重放最近一次检查点之后的变更，模板不会在日志与存储中各保存一份，也不会在每次重启时重复写入存储。
+ * 特征库为 {@link org.apache.shiro.spring.boot.faceid.gallery.CopyOnWriteFaceGallery} 时，变更期间检索不被阻塞。
+ * @author ： <a href="https://github.com/hiwepy">wandl</a>
+ */
+public class FaceEnrollmentService implements Closeable {
+
+	private static final Logger LOG = LoggerFactory.getLogger(FaceEnrollmentService.class);
+
+	private final FaceGallery gallery;
+	private final FaceEnrollmentLog log;
+	/**
+	 * 保证日志顺序与应用到特征库的顺序一致
+	 */
+	private final Object writeLock = new Object();
+	private final List<Consumer<String>> listeners = new CopyOnWriteArrayList<Consumer<String>>();
+	private ScheduledExecutorService scheduler;
+	/**
+	 * 触发压缩的最少日志记录数
+	 */
+	private long compactionMinRecords = 10000L;
+	/**
+	 * 日志记录数超过有效人脸数的该倍数时压缩
+	 */
+	private double compactionRatio = 2d;
+
+	public FaceEnrollmentService(FaceGallery gallery, FaceEnrollmentLog log) {
+		this.gallery = gallery;
+		this.log = log;
+	}
+
+	/**
+	 * 重放日志恢复特征库
+	 * @return 恢复后的有效人脸数
+	 */
+	public int recover() throws IOException {
+		final Map<String, float[]> enrolled = new LinkedHashMap<String, float[]>();
+		final Set<String> revoked = new HashSet<String>();
+		long records;
+		synchronized (writeLock) {
+			records = log.replay((faceId, feature) -> {
+				if (feature == null) {
+					enrolled.remove(faceId);
+					revoked.add(faceId);
+				} else {
+					enrolled.put(faceId, feature);
+					revoked.remove(faceId);
+				}
+			});
+			// 特征库可能已从模板存储装载了旧数据，注销记录同样需要生效
+			for (String faceId : revoked) {
+				gallery.remove(faceId);
+			}
+			gallery.addAll(enrolled);
+			if (gallery.isPersistent()) {
+				gallery.flush();
+				log.checkpoint();
+			}
+		}
+		LOG.info("Recovered {} enrolled faces from {} log records in {}", enrolled.size(), records, log.getFile());
+		return enrolled.size();
+	}
+
+	/**
+	 * 注册或替换人脸特征，写入日志后立即生效
+	 */
+	public void enroll(String faceId, float[] feature) {
+		if (feature == null || feature.length != gallery.dimension()) {
+			throw new IllegalArgumentException("Feature dimension mismatch, expected " + gallery.dimension());
+		}
+		synchronized (writeLock) {
+			try {
+				log.appendEnroll(faceId, feature);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			gallery.add(faceId, feature);
+		}
+		fireChanged(faceId);
+	}
+
+	/**
+	 * 注销人脸，写入日志后立即生效
+	 * @return 特征库中是否存在该人脸
+	 */
+	public boolean revoke(String faceId) {
+		boolean removed;
+		synchronized (writeLock) {
+			try {
+				log.appendRevoke(faceId);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			removed = gallery.remove(faceId);
+		}
+		fireChanged(faceId);
+		return removed;
+	}
+
+	/**
+	 * 日志中的历史记录过多时压缩
+	 * @return 是否进行了压缩
+	 */
+	public boolean compactIfNecessary() throws IOException {
+		long records = log.getRecords();
+		if (records < compactionMinRecords || records <= compactionRatio * gallery.size()) {
+			return false;
+		}
+		compact();
+		return true;
+	}
+
+	/**
+	 * 持久化的特征库有新的日志记录时做检查点
+	 * @return 是否做了检查点
+	 */
+	public boolean checkpointIfNecessary() throws IOException {
+		if (!gallery.isPersistent() || log.getRecords() == 0) {
+			return false;
+		}
+		checkpoint();
+		return true;
+	}
+
+	/**
+	 * 检查点：先将特征库刷盘再清空日志
+	 */
+	public void checkpoint() throws IOException {
+		synchronized (writeLock) {
+			long records = log.getRecords();
+			gallery.flush();
+			log.checkpoint();
+			LOG.debug("Checkpointed {} face enrollment log records into the gallery store", records);
+		}
+	}
+
+	public void compact() throws IOException {
+		synchronized (writeLock) {
+			long before = log.getRecords();
+			long after = log.compact();
+			LOG.info("Compacted face enrollment log {} from {} to {} records", log.getFile(), before, after);
+		}
+	}
+
+	/**
+	 * 按固定间隔检查并压缩日志；特征库持久化时改为做检查点
+	 */
+	public void scheduleCompaction(ScheduledExecutorService scheduler, long intervalMillis) {
+		this.scheduler = scheduler;
+		scheduler.scheduleWithFixedDelay(() -> {
+			try {
+				if (gallery.isPersistent()) {
+					checkpointIfNecessary();
+				} else {
+					compactIfNecessary();
+				}
+			} catch (IOException | RuntimeException e) {
+				LOG.warn("Face enrollment log compaction failed.", e);
+			}
+		}, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * 注册变更监听：如清除识别结果缓存，避免已注销或已替换的人脸命中旧结果
+	 */
+	public void addChangeListener(Consumer<String> listener) {
+		listeners.add(listener);
+	}
+
+	private void fireChanged(String faceId) {
+		for (Consumer<String> listener : listeners) {
+			try {
+				listener.accept(faceId);
+			} catch (RuntimeException e) {
+				LOG.warn("Face enrollment listener failed.", e);
+			}
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (scheduler != null) {
+			scheduler.shutdownNow();
+		}
+		synchronized (writeLock) {
+			try {
+				if (gallery.isPersistent() && log.getRecords() > 0) {
+					gallery.flush();
+					log.checkpoint();
+				}
+			} finally {
+				log.close();
+			}
+		}
+	}
+
+	public FaceGallery getGallery() {
+		return gallery;
+	}
+
+	public FaceEnrollmentLog getLog() {
+		return log;
+	}
+
+	public long getCompactionMinRecords() {
+		return compactionMinRecords;
+	}
+
+	public void setCompactionMinRecords(long compactionMinRecords) {
+		this.compactionMinRecords = compactionMinRecords;
+	}
+
+	public double getCompactionRatio() {
+		return compactionRatio;
+	}
+
+	public void setCompactionRatio(double compactionRatio) {
+		this.compactionRatio = compactionRatio;
+	}
+
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.exception;
+
+
+import org.apache.shiro.authc.AuthenticationException;
+
+/**
+ * 识别服务容量已满或请求频率超限时快速拒绝登录；过滤器据此响应 503/429 及 Retry-After，而不是普通的认证失败
+ * @author 		： <a href="https://github.com/hiwepy">wandl</a>
+ */
+@SuppressWarnings("serial")
+public class AuthenticationOverloadException extends AuthenticationException {
+	
+	/**
+	 * 503 Service Unavailable：识别服务容量已满
+	 */
+	public static final int SC_SERVICE_UNAVAILABLE = 503;
+	/**
+	 * 429 Too Many Requests：客户端请求过于频繁
+	 */
+	public static final int SC_TOO_MANY_REQUESTS = 429;
+	
+	/**
+	 * 响应的 HTTP 状态码：服务过载为 503，客户端请求过于频繁为 429
+	 */
+	private final int status;
+	/**
+	 * 建议客户端重试前等待的秒数
+	 */
+	private final int retryAfterSeconds;
+	
+	// ~ Constructors
+	// ===================================================================================================
+
+	/**
+	 * Constructs an <code>AuthenticationOverloadException</code> with the
+	 * specified message, responding with 503 Service Unavailable.
+	 *
+	 * @param msg the detail message
+	 * @param retryAfterSeconds seconds the client should wait before retrying
+	 */
+	public AuthenticationOverloadException(String msg, int retryAfterSeconds) {
+		this(msg, SC_SERVICE_UNAVAILABLE, retryAfterSeconds);
+	}
+
+	/**
+	 * Constructs an <code>AuthenticationOverloadException</code> with the
+	 * specified message and HTTP status.
+	 *
+	 * @param msg the detail message
+	 * @param status the HTTP status of the response
+	 * @param retryAfterSeconds seconds the client should wait before retrying
+	 */
+	public AuthenticationOverloadException(String msg, int status, int retryAfterSeconds) {
+		super(msg);
+		this.status = status;
+		this.retryAfterSeconds = retryAfterSeconds;
+	}
+
+	/**
+	 * Constructs an <code>AuthenticationOverloadException</code> with the
+	 * specified message and root cause, responding with 503 Service Unavailable.
+	 *
+	 * @param msg the detail message
+	 * @param retryAfterSeconds seconds the client should wait before retrying
+	 * @param t root cause
+	 */
+	public AuthenticationOverloadException(String msg, int retryAfterSeconds, Throwable t) {
+		super(msg, t);
+		this.status = SC_SERVICE_UNAVAILABLE;
+		this.retryAfterSeconds = retryAfterSeconds;
+	}
+
+	public int getStatus() {
+		return status;
+	}
+
+	public int getRetryAfterSeconds() {
+		return retryAfterSeconds;
+	}
+	
+}
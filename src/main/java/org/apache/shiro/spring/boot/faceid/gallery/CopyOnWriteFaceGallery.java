@@ -0,0 +1,344 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.gallery;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * 写时复制的暴力检索人脸特征库：检索读取 volatile 发布的不可变快照，从不加锁，注册与移除不会阻塞检索。
+ * <p>
+ * 快照由两部分组成：连续存放的基础特征数组（带失效位图）与少量增量记录。注册与移除只复制位图与增量部分，
+ * 增量超过上限后在写线程上合并为新的基础数组，检索线程在合并期间继续使用旧快照。
+ * @author ： <a href="https://github.com/hiwepy">wandl</a>
+ */
+public class CopyOnWriteFaceGallery implements FaceGallery {
+
+	/**
+	 * 默认增量记录上限，超过后合并进基础数组
+	 */
+	public static final int DEFAULT_MAX_DELTA = 1024;
+
+	private final Object writeLock = new Object();
+	private final int dimension;
+	private final FaceMetric metric;
+	private final ForkJoinPool pool;
+	private int chunkSize = FlatFaceGallery.DEFAULT_CHUNK_SIZE;
+	private int maxDelta = DEFAULT_MAX_DELTA;
+	private volatile Snapshot snapshot;
+
+	public CopyOnWriteFaceGallery(int dimension, FaceMetric metric) {
+		this(dimension, metric, ForkJoinPool.commonPool());
+	}
+
+	public CopyOnWriteFaceGallery(int dimension, FaceMetric metric, ForkJoinPool pool) {
+		if (dimension <= 0) {
+			throw new IllegalArgumentException("dimension must be positive");
+		}
+		this.dimension = dimension;
+		this.metric = metric;
+		this.pool = pool;
+		this.snapshot = new Snapshot(new float[0], new String[0], Collections.<String, Integer>emptyMap(), new long[0], 0,
+				new float[0], new String[0]);
+	}
+
+	@Override
+	public int dimension() {
+		return dimension;
+	}
+
+	@Override
+	public int size() {
+		return snapshot.size();
+	}
+
+	@Override
+	public void add(String faceId, float[] feature) {
+		checkDimension(feature);
+		float[] prepared = metric.prepare(feature);
+		synchronized (writeLock) {
+			Snapshot current = snapshot;
+			long[] dead = current.dead;
+			int deadCount = current.deadCount;
+			Integer slot = current.baseIndex.get(faceId);
+			if (slot != null && !current.isDead(slot)) {
+				dead = markDead(dead, slot);
+				deadCount++;
+			}
+			String[] deltaIds;
+			float[] deltaFeatures;
+			int position = indexOf(current.deltaIds, faceId);
+			if (position >= 0) {
+				deltaIds = current.deltaIds;
+				deltaFeatures = current.deltaFeatures.clone();
+			} else {
+				position = current.deltaIds.length;
+				deltaIds = Arrays.copyOf(current.deltaIds, position + 1);
+				deltaIds[position] = faceId;
+				deltaFeatures = Arrays.copyOf(current.deltaFeatures, (position + 1) * dimension);
+			}
+			System.arraycopy(prepared, 0, deltaFeatures, position * dimension, dimension);
+			publish(new Snapshot(current.features, current.faceIds, current.baseIndex, dead, deadCount, deltaFeatures, deltaIds));
+		}
+	}
+
+	/**
+	 * 批量注册（如启动恢复）：一次性构建新的基础数组，避免逐条合并
+	 */
+	@Override
+	public void addAll(Map<String, float[]> features) {
+		if (features.isEmpty()) {
+			return;
+		}
+		Map<String, float[]> prepared = new HashMap<String, float[]>(features.size() * 2);
+		for (Map.Entry<String, float[]> entry : features.entrySet()) {
+			checkDimension(entry.getValue());
+			prepared.put(entry.getKey(), metric.prepare(entry.getValue()));
+		}
+		synchronized (writeLock) {
+			snapshot = merge(snapshot, prepared);
+		}
+	}
+
+	@Override
+	public boolean remove(String faceId) {
+		synchronized (writeLock) {
+			Snapshot current = snapshot;
+			boolean removed = false;
+			long[] dead = current.dead;
+			int deadCount = current.deadCount;
+			Integer slot = current.baseIndex.get(faceId);
+			if (slot != null && !current.isDead(slot)) {
+				dead = markDead(dead, slot);
+				deadCount++;
+				removed = true;
+			}
+			String[] deltaIds = current.deltaIds;
+			float[] deltaFeatures = current.deltaFeatures;
+			int position = indexOf(deltaIds, faceId);
+			if (position >= 0) {
+				int last = deltaIds.length - 1;
+				String[] ids = Arrays.copyOf(deltaIds, last);
+				float[] feats = Arrays.copyOf(deltaFeatures, last * dimension);
+				if (position != last) {
+					ids[position] = deltaIds[last];
+					System.arraycopy(deltaFeatures, last * dimension, feats, position * dimension, dimension);
+				}
+				deltaIds = ids;
+				deltaFeatures = feats;
+				removed = true;
+			}
+			if (removed) {
+				publish(new Snapshot(current.features, current.faceIds, current.baseIndex, dead, deadCount, deltaFeatures, deltaIds));
+			}
+			return removed;
+		}
+	}
+
+	@Override
+	public List<FaceMatch> search(float[] feature, int topK) {
+		checkDimension(feature);
+		float[] query = metric.prepare(feature);
+		Snapshot current = snapshot;
+		if (current.size() == 0 || topK <= 0) {
+			return Collections.emptyList();
+		}
+		int baseSize = current.faceIds.length;
+		TopK result = baseSize <= chunkSize ? scan(current, query, 0, baseSize, topK)
+				: pool.invoke(new ScanTask(current, query, 0, baseSize, topK));
+		for (int i = 0; i < current.deltaIds.length; i++) {
+			result.offer(baseSize + i, metric.score(query, current.deltaFeatures, i * dimension, dimension));
+		}
+		List<FaceMatch> matches = new ArrayList<FaceMatch>(result.size());
+		for (int i = 0; i < result.size(); i++) {
+			int slot = result.slot(i);
+			String faceId = slot < baseSize ? current.faceIds[slot] : current.deltaIds[slot - baseSize];
+			matches.add(new FaceMatch(faceId, result.score(i)));
+		}
+		return matches;
+	}
+
+	private TopK scan(Snapshot current, float[] query, int from, int to, int topK) {
+		TopK result = new TopK(topK);
+		boolean checkDead = current.deadCount > 0;
+		for (int slot = from, offset = from * dimension; slot < to; slot++, offset += dimension) {
+			if (checkDead && current.isDead(slot)) {
+				continue;
+			}
+			result.offer(slot, metric.score(query, current.features, offset, dimension));
+		}
+		return result;
+	}
+
+	/**
+	 * 增量或失效记录过多时先合并再发布；合并在写线程上进行，检索不受影响
+	 */
+	private void publish(Snapshot next) {
+		if (next.deltaIds.length > maxDelta || next.deadCount > Math.max(maxDelta, next.faceIds.length >> 2)) {
+			next = merge(next, Collections.<String, float[]>emptyMap());
+		}
+		snapshot = next;
+	}
+
+	/**
+	 * 将未失效的基础记录、增量记录及新增的（已预处理）特征合并为新的基础数组
+	 */
+	private Snapshot merge(Snapshot current, Map<String, float[]> additions) {
+		int capacity = current.size() + additions.size();
+		float[] features = new float[capacity * dimension];
+		String[] faceIds = new String[capacity];
+		Map<String, Integer> index = new HashMap<String, Integer>(capacity * 2);
+		int size = 0;
+		for (int slot = 0; slot < current.faceIds.length; slot++) {
+			String faceId = current.faceIds[slot];
+			if (!current.isDead(slot) && !additions.containsKey(faceId)) {
+				System.arraycopy(current.features, slot * dimension, features, size * dimension, dimension);
+				faceIds[size] = faceId;
+				index.put(faceId, size++);
+			}
+		}
+		for (int i = 0; i < current.deltaIds.length; i++) {
+			String faceId = current.deltaIds[i];
+			if (!additions.containsKey(faceId)) {
+				System.arraycopy(current.deltaFeatures, i * dimension, features, size * dimension, dimension);
+				faceIds[size] = faceId;
+				index.put(faceId, size++);
+			}
+		}
+		for (Map.Entry<String, float[]> entry : additions.entrySet()) {
+			System.arraycopy(entry.getValue(), 0, features, size * dimension, dimension);
+			faceIds[size] = entry.getKey();
+			index.put(entry.getKey(), size++);
+		}
+		return new Snapshot(Arrays.copyOf(features, size * dimension), Arrays.copyOf(faceIds, size),
+				Collections.unmodifiableMap(index), new long[(size + 63) >>> 6], 0, new float[0], new String[0]);
+	}
+
+	private static long[] markDead(long[] dead, int slot) {
+		long[] copy = dead.clone();
+		copy[slot >>> 6] |= 1L << slot;
+		return copy;
+	}
+
+	private static int indexOf(String[] ids, String faceId) {
+		for (int i = 0; i < ids.length; i++) {
+			if (ids[i].equals(faceId)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	protected void checkDimension(float[] feature) {
+		if (feature == null || feature.length != dimension) {
+			throw new IllegalArgumentException("Feature dimension mismatch, expected " + dimension);
+		}
+	}
+
+	public FaceMetric getMetric() {
+		return metric;
+	}
+
+	public int getChunkSize() {
+		return chunkSize;
+	}
+
+	public void setChunkSize(int chunkSize) {
+		this.chunkSize = Math.max(1, chunkSize);
+	}
+
+	public int getMaxDelta() {
+		return maxDelta;
+	}
+
+	public void setMaxDelta(int maxDelta) {
+		this.maxDelta = Math.max(1, maxDelta);
+	}
+
+	/**
+	 * 不可变快照：发布后任何字段及数组都不再修改
+	 */
+	private static final class Snapshot {
+
+		private final float[] features;
+		private final String[] faceIds;
+		private final Map<String, Integer> baseIndex;
+		private final long[] dead;
+		private final int deadCount;
+		private final float[] deltaFeatures;
+		private final String[] deltaIds;
+
+		Snapshot(float[] features, String[] faceIds, Map<String, Integer> baseIndex, long[] dead, int deadCount,
+				float[] deltaFeatures, String[] deltaIds) {
+			this.features = features;
+			this.faceIds = faceIds;
+			this.baseIndex = baseIndex;
+			this.dead = dead;
+			this.deadCount = deadCount;
+			this.deltaFeatures = deltaFeatures;
+			this.deltaIds = deltaIds;
+		}
+
+		boolean isDead(int slot) {
+			return (dead[slot >>> 6] & (1L << slot)) != 0;
+		}
+
+		int size() {
+			return faceIds.length - deadCount + deltaIds.length;
+		}
+
+	}
+
+	@SuppressWarnings("serial")
+	private class ScanTask extends RecursiveTask<TopK> {
+
+		private final Snapshot snapshot;
+		private final float[] query;
+		private final int from;
+		private final int to;
+		private final int topK;
+
+		ScanTask(Snapshot snapshot, float[] query, int from, int to, int topK) {
+			this.snapshot = snapshot;
+			this.query = query;
+			this.from = from;
+			this.to = to;
+			this.topK = topK;
+		}
+
+		@Override
+		protected TopK compute() {
+			if (to - from <= chunkSize) {
+				return scan(snapshot, query, from, to, topK);
+			}
+			int mid = (from + to) >>> 1;
+			ScanTask left = new ScanTask(snapshot, query, from, mid, topK);
+			left.fork();
+			TopK right = new ScanTask(snapshot, query, mid, to, topK).compute();
+			TopK merged = left.join();
+			merged.merge(right);
+			return merged;
+		}
+
+	}
+
+}
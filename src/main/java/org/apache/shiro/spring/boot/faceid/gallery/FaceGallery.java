@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.gallery;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 本地人脸特征库（底库），提供 1:N 人脸检索
+ * @author ： <a href="https://github.com/hiwepy">wandl</a>
+ */
+public interface FaceGallery {
+
+	/**
+	 * @return 特征维度
+	 */
+	int dimension();
+
+	/**
+	 * @return 已注册的人脸数量
+	 */
+	int size();
+
+	/**
+	 * 注册或替换人脸特征
+	 * @param faceId 人脸识别数据ID
+	 * @param feature 人脸特征向量
+	 */
+	void add(String faceId, float[] feature);
+
+	/**
+	 * 批量注册或替换人脸特征
+	 * @param features faceId → 人脸特征向量
+	 */
+	default void addAll(Map<String, float[]> features) {
+		for (Map.Entry<String, float[]> entry : features.entrySet()) {
+			add(entry.getKey(), entry.getValue());
+		}
+	}
+
+	/**
+	 * 移除人脸特征
+	 * @param faceId 人脸识别数据ID
+	 * @return 是否存在并已移除
+	 */
+	boolean remove(String faceId);
+
+	/**
+	 * 检索与查询特征最相似的人脸
+	 * @param feature 查询特征
+	 * @return 最相似的人脸；底库为空时返回 null
+	 */
+	default FaceMatch search(float[] feature) {
+		List<FaceMatch> matches = search(feature, 1);
+		return matches.isEmpty() ? null : matches.get(0);
+	}
+
+	/**
+	 * 检索与查询特征最相似的 topK 个人脸
+	 * @param feature 查询特征
+	 * @param topK 返回的最大数量
+	 * @return 按得分降序排列的命中结果
+	 */
+	List<FaceMatch> search(float[] feature, int topK);
+
+	/**
+	 * 按租户提示检索：分片的特征库只检索该租户所在的分片，其余特征库忽略租户提示
+	 * @param feature 查询特征
+	 * @param topK 返回的最大数量
+	 * @param tenant 租户（部门）提示，可为空
+	 * @return 按得分降序排列的命中结果
+	 */
+	default List<FaceMatch> search(float[] feature, int topK, String tenant) {
+		return search(feature, topK);
+	}
+
+	/**
+	 * @return 变更是否写入持久化存储，{@link #flush()} 之后重启仍然存在
+	 */
+	default boolean isPersistent() {
+		return false;
+	}
+
+	/**
+	 * 将已写入的数据刷到磁盘；非持久化的特征库忽略
+	 */
+	default void flush() {
+	}
+
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.gallery;
+
+/**
+ * 本地人脸特征库的分片方式
+ * @author ： <a href="https://github.com/hiwepy">wandl</a>
+ */
+public enum FaceGalleryPartition {
+
+	/**
+	 * 不分片：单一特征库
+	 */
+	NONE,
+	/**
+	 * 按人脸识别数据ID的哈希分到固定数量的分片，检索时并行扫描全部分片
+	 */
+	HASH,
+	/**
+	 * 按人脸识别数据ID中的租户（部门）前缀分片，携带租户提示的检索只扫描该租户的分片
+	 */
+	TENANT;
+
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.gallery;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 近似检索与精确检索的召回率 / 延迟对比报告，用于为认证场景挑选安全的 M、efSearch 等参数。
+ * <pre>
+ * FaceGalleryRecallReport report = FaceGalleryRecallReport.evaluate(flatGallery, hnswGallery, queries, 10);
+ * LOG.info(report.toString());
+ * </pre>
+ * @author ： <a href="https://github.com/hiwepy">wandl</a>
+ */
+public final class FaceGalleryRecallReport {
+
+	private final int queries;
+	private final int topK;
+	/**
+	 * 近似检索 topK 结果中命中精确 topK 结果的比例
+	 */
+	private final double recall;
+	/**
+	 * 近似检索 top1 与精确检索 top1 一致的比例（认证场景最关心的指标）
+	 */
+	private final double top1Agreement;
+	private final long[] exactNanos;
+	private final long[] approximateNanos;
+
+	private FaceGalleryRecallReport(int queries, int topK, double recall, double top1Agreement, long[] exactNanos,
+			long[] approximateNanos) {
+		this.queries = queries;
+		this.topK = topK;
+		this.recall = recall;
+		this.top1Agreement = top1Agreement;
+		this.exactNanos = exactNanos;
+		this.approximateNanos = approximateNanos;
+	}
+
+	/**
+	 * 使用相同的查询集分别检索精确特征库与近似特征库，并统计召回率与延迟分布
+	 * @param exact 精确检索特征库（通常为 {@link FlatFaceGallery}）
+	 * @param approximate 近似检索特征库（通常为 {@link HnswFaceGallery}）
+	 * @param queries 查询特征集合
+	 * @param topK 每次检索返回的数量
+	 * @return 对比报告
+	 */
+	public static FaceGalleryRecallReport evaluate(FaceGallery exact, FaceGallery approximate, List<float[]> queries,
+			int topK) {
+		int n = queries.size();
+		long[] exactNanos = new long[n];
+		long[] approximateNanos = new long[n];
+		long hits = 0;
+		long expected = 0;
+		int top1 = 0;
+		for (int i = 0; i < n; i++) {
+			float[] query = queries.get(i);
+
+			long start = System.nanoTime();
+			List<FaceMatch> truth = exact.search(query, topK);
+			exactNanos[i] = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			List<FaceMatch> found = approximate.search(query, topK);
+			approximateNanos[i] = System.nanoTime() - start;
+
+			Set<String> truthIds = new HashSet<String>(truth.size() * 2);
+			for (FaceMatch match : truth) {
+				truthIds.add(match.getFaceId());
+			}
+			for (FaceMatch match : found) {
+				if (truthIds.contains(match.getFaceId())) {
+					hits++;
+				}
+			}
+			expected += truth.size();
+			if (!truth.isEmpty() && !found.isEmpty()
+					&& truth.get(0).getFaceId().equals(found.get(0).getFaceId())) {
+				top1++;
+			}
+		}
+		Arrays.sort(exactNanos);
+		Arrays.sort(approximateNanos);
+		return new FaceGalleryRecallReport(n, topK, expected == 0 ? 1d : (double) hits / expected,
+				n == 0 ? 1d : (double) top1 / n, exactNanos, approximateNanos);
+	}
+
+	private static double percentileMicros(long[] sortedNanos, double percentile) {
+		if (sortedNanos.length == 0) {
+			return 0d;
+		}
+		int index = (int) Math.ceil(percentile / 100d * sortedNanos.length) - 1;
+		long nanos = sortedNanos[Math.max(0, Math.min(index, sortedNanos.length - 1))];
+		return nanos / (double) TimeUnit.MICROSECONDS.toNanos(1);
+	}
+
+	public int getQueries() {
+		return queries;
+	}
+
+	public int getTopK() {
+		return topK;
+	}
+
+	public double getRecall() {
+		return recall;
+	}
+
+	public double getTop1Agreement() {
+		return top1Agreement;
+	}
+
+	public double getExactLatencyMicros(double percentile) {
+		return percentileMicros(exactNanos, percentile);
+	}
+
+	public double getApproximateLatencyMicros(double percentile) {
+		return percentileMicros(approximateNanos, percentile);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("queries=%d, recall@%d=%.4f, top1=%.4f, exact p50/p99=%.1f/%.1fus, approximate p50/p99=%.1f/%.1fus",
+				queries, topK, recall, top1Agreement, getExactLatencyMicros(50), getExactLatencyMicros(99),
+				getApproximateLatencyMicros(50), getApproximateLatencyMicros(99));
+	}
+
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.gallery;
+
+/**
+ * 本地人脸特征库的检索方式
+ * @author ： <a href="https://github.com/hiwepy">wandl</a>
+ */
+public enum FaceGalleryType {
+
+	/**
+	 * 精确检索：并行暴力扫描全部特征，适用于数十万以内的底库
+	 */
+	FLAT,
+	/**
+	 * 近似检索：HNSW 图索引，适用于百万级以上的底库
+	 */
+	HNSW;
+
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.gallery;
+
+/**
+ * 1:N 检索命中结果
+ * @author ： <a href="https://github.com/hiwepy">wandl</a>
+ */
+public final class FaceMatch implements Comparable<FaceMatch> {
+
+	/**
+	 * 命中的人脸识别数据ID
+	 */
+	private final String faceId;
+	/**
+	 * 相似度得分，越大越相似
+	 */
+	private final float score;
+
+	public FaceMatch(String faceId, float score) {
+		this.faceId = faceId;
+		this.score = score;
+	}
+
+	public String getFaceId() {
+		return faceId;
+	}
+
+	public float getScore() {
+		return score;
+	}
+
+	/**
+	 * 按得分降序排列
+	 */
+	@Override
+	public int compareTo(FaceMatch o) {
+		return Float.compare(o.score, score);
+	}
+
+	@Override
+	public String toString() {
+		return "FaceMatch [faceId=" + faceId + ", score=" + score + "]";
+	}
+
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.gallery;
+
+import java.nio.FloatBuffer;
+
+/**
+ * 人脸特征向量的相似度度量方式；得分越大表示越相似
+ * @author ： <a href="https://github.com/hiwepy">wandl</a>
+ */
+public enum FaceMetric {
+
+	/**
+	 * 余弦相似度：特征在入库与查询时均做 L2 归一化，得分即为内积，取值范围 [-1, 1]
+	 */
+	COSINE {
+
+		@Override
+		public float score(float[] query, float[] features, int offset, int dimension) {
+			float dot = 0f;
+			for (int i = 0; i < dimension; i++) {
+				dot += query[i] * features[offset + i];
+			}
+			return dot;
+		}
+
+		@Override
+		public float score(float[] query, FloatBuffer features, int offset, int dimension) {
+			float dot = 0f;
+			for (int i = 0; i < dimension; i++) {
+				dot += query[i] * features.get(offset + i);
+			}
+			return dot;
+		}
+
+		@Override
+		public boolean isNormalized() {
+			return true;
+		}
+
+		@Override
+		public float defaultThreshold() {
+			return 0.6f;
+		}
+
+		@Override
+		public boolean isValidThreshold(float threshold) {
+			return threshold >= -1f && threshold <= 1f;
+		}
+
+	},
+	/**
+	 * 欧氏距离：得分为负的欧氏距离平方，取值范围 (-∞, 0]
+	 */
+	EUCLIDEAN {
+
+		@Override
+		public float score(float[] query, float[] features, int offset, int dimension) {
+			float sum = 0f;
+			for (int i = 0; i < dimension; i++) {
+				float diff = query[i] - features[offset + i];
+				sum += diff * diff;
+			}
+			return -sum;
+		}
+
+		@Override
+		public float score(float[] query, FloatBuffer features, int offset, int dimension) {
+			float sum = 0f;
+			for (int i = 0; i < dimension; i++) {
+				float diff = query[i] - features.get(offset + i);
+				sum += diff * diff;
+			}
+			return -sum;
+		}
+
+		@Override
+		public boolean isNormalized() {
+			return false;
+		}
+
+		/**
+		 * 与 L2 归一化特征上余弦相似度 0.6 等价的距离：|a - b|² = 2 - 2cos
+		 */
+		@Override
+		public float defaultThreshold() {
+			return -0.8f;
+		}
+
+		@Override
+		public boolean isValidThreshold(float threshold) {
+			return threshold <= 0f;
+		}
+
+	};
+
+	/**
+	 * 计算查询特征与 features[offset, offset + dimension) 之间的相似度得分
+	 * @param query 查询特征
+	 * @param features 连续存放的特征数组
+	 * @param offset 目标特征在数组中的起始位置
+	 * @param dimension 特征维度
+	 * @return 相似度得分，越大越相似
+	 */
+	public abstract float score(float[] query, float[] features, int offset, int dimension);
+
+	/**
+	 * 计算查询特征与（堆外）缓冲区 features[offset, offset + dimension) 之间的相似度得分，仅使用绝对位置读取，可并发调用
+	 * @param query 查询特征
+	 * @param features 连续存放的特征缓冲区
+	 * @param offset 目标特征在缓冲区中的起始下标
+	 * @param dimension 特征维度
+	 * @return 相似度得分，越大越相似
+	 */
+	public abstract float score(float[] query, FloatBuffer features, int offset, int dimension);
+
+	/**
+	 * @return 是否要求特征在入库和查询前做 L2 归一化
+	 */
+	public abstract boolean isNormalized();
+
+	/**
+	 * @return 未配置时使用的匹配阈值，与当前度量方式的得分范围一致
+	 */
+	public abstract float defaultThreshold();
+
+	/**
+	 * @param threshold 匹配阈值
+	 * @return 阈值是否落在当前度量方式的得分范围内；超出范围的阈值会拒绝（或放行）所有匹配
+	 */
+	public abstract boolean isValidThreshold(float threshold);
+
+	/**
+	 * 按当前度量方式返回可直接参与计算的特征副本
+	 * @param feature 原始特征
+	 * @return 归一化（如需要）后的特征副本
+	 */
+	public float[] prepare(float[] feature) {
+		float[] copy = feature.clone();
+		if (isNormalized()) {
+			double norm = 0d;
+			for (float v : copy) {
+				norm += v * v;
+			}
+			if (norm > 0d) {
+				float inv = (float) (1d / Math.sqrt(norm));
+				for (int i = 0; i < copy.length; i++) {
+					copy[i] *= inv;
+				}
+			}
+		}
+		return copy;
+	}
+
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.gallery;
+
+/**
+ * 人脸特征在内存中的量化方式
+ * @author ： <a href="https://github.com/hiwepy">wandl</a>
+ */
+public enum FaceQuantization {
+
+	/**
+	 * 不量化：保存 float32 原始特征
+	 */
+	NONE,
+	/**
+	 * int8 标量量化：内存为原始特征的 1/4
+	 */
+	INT8,
+	/**
+	 * 乘积量化：每个子空间 1 字节，内存为原始特征的 4 × 子空间维度 分之一
+	 */
+	PQ;
+
+}
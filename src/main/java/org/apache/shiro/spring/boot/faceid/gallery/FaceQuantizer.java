@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.gallery;
+
+/**
+ * 人脸特征量化器：将 float 特征压缩为定长字节编码，以较小的精度损失换取数倍的内存节省
+ * @author ： <a href="https://github.com/hiwepy">wandl</a>
+ */
+public interface FaceQuantizer {
+
+	/**
+	 * @return 原始特征维度
+	 */
+	int dimension();
+
+	/**
+	 * @return 单个特征编码后的字节数
+	 */
+	int codeSize();
+
+	/**
+	 * 编码特征（特征需已按 {@link FaceMetric#prepare(float[])} 处理）
+	 * @param feature 特征向量
+	 * @param codes 输出编码数组
+	 * @param offset 输出位置
+	 */
+	void encode(float[] feature, byte[] codes, int offset);
+
+	/**
+	 * 为一次查询构造打分器；查询相关的预计算只做一次，逐条打分过程中不再分配对象
+	 * @param query 已归一化（如需要）的查询特征
+	 * @return 打分器
+	 */
+	Scorer scorer(float[] query);
+
+	interface Scorer {
+
+		/**
+		 * @param codes 编码数组
+		 * @param offset 目标编码在数组中的起始位置
+		 * @return 与 {@link FaceMetric} 同尺度的近似相似度得分，越大越相似
+		 */
+		float score(byte[] codes, int offset);
+
+	}
+
+}
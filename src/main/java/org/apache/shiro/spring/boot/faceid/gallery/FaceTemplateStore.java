@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.gallery;
+
+import java.util.function.BiConsumer;
+
+/**
+ * 可持久化的人脸特征模板存储；本身即可作为 {@link FaceGallery} 提供精确检索，也可用于启动时装载内存索引
+ * @author ： <a href="https://github.com/hiwepy">wandl</a>
+ */
+public interface FaceTemplateStore extends FaceGallery {
+
+	/**
+	 * 读取人脸特征模板
+	 * @param faceId 人脸识别数据ID
+	 * @return 特征向量副本；不存在时返回 null
+	 */
+	float[] get(String faceId);
+
+	/**
+	 * 遍历全部有效的人脸特征模板
+	 * @param consumer 回调：(faceId, feature)
+	 */
+	void forEach(BiConsumer<String, float[]> consumer);
+
+	@Override
+	default boolean isPersistent() {
+		return true;
+	}
+
+	/**
+	 * 将已写入的数据刷到磁盘
+	 */
+	@Override
+	void flush();
+
+}
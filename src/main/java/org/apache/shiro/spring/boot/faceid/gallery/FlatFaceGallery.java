@@ -0,0 +1,208 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.gallery;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 暴力检索（精确 1:N）人脸特征库：全部特征按行连续存放在一个 float[] 中，检索时按区间切分后在 ForkJoinPool 上并行扫描
+ * @author ： <a href="https://github.com/hiwepy">wandl</a>
+ */
+public class FlatFaceGallery implements FaceGallery {
+
+	/**
+	 * 默认每个并行任务扫描的特征数量
+	 */
+	public static final int DEFAULT_CHUNK_SIZE = 4096;
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	private final Map<String, Integer> index = new HashMap<String, Integer>();
+	private final int dimension;
+	private final FaceMetric metric;
+	private final ForkJoinPool pool;
+	private int chunkSize = DEFAULT_CHUNK_SIZE;
+	private float[] features;
+	private String[] faceIds;
+	private int size;
+
+	public FlatFaceGallery(int dimension, FaceMetric metric) {
+		this(dimension, metric, 1024, ForkJoinPool.commonPool());
+	}
+
+	public FlatFaceGallery(int dimension, FaceMetric metric, int initialCapacity, ForkJoinPool pool) {
+		if (dimension <= 0) {
+			throw new IllegalArgumentException("dimension must be positive");
+		}
+		this.dimension = dimension;
+		this.metric = metric;
+		this.pool = pool;
+		int capacity = Math.max(16, initialCapacity);
+		this.features = new float[capacity * dimension];
+		this.faceIds = new String[capacity];
+	}
+
+	@Override
+	public int dimension() {
+		return dimension;
+	}
+
+	@Override
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return size;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public void add(String faceId, float[] feature) {
+		checkDimension(feature);
+		float[] prepared = metric.prepare(feature);
+		lock.writeLock().lock();
+		try {
+			Integer slot = index.get(faceId);
+			if (slot == null) {
+				ensureCapacity(size + 1);
+				slot = size++;
+				faceIds[slot] = faceId;
+				index.put(faceId, slot);
+			}
+			System.arraycopy(prepared, 0, features, slot * dimension, dimension);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public boolean remove(String faceId) {
+		lock.writeLock().lock();
+		try {
+			Integer slot = index.remove(faceId);
+			if (slot == null) {
+				return false;
+			}
+			// 用最后一条记录填补空位，保持数组连续
+			int last = --size;
+			if (slot != last) {
+				System.arraycopy(features, last * dimension, features, slot * dimension, dimension);
+				faceIds[slot] = faceIds[last];
+				index.put(faceIds[slot], slot);
+			}
+			faceIds[last] = null;
+			return true;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public List<FaceMatch> search(float[] feature, int topK) {
+		checkDimension(feature);
+		float[] query = metric.prepare(feature);
+		lock.readLock().lock();
+		try {
+			if (size == 0 || topK <= 0) {
+				return Collections.emptyList();
+			}
+			TopK result = size <= chunkSize ? scan(query, 0, size, topK)
+					: pool.invoke(new ScanTask(query, 0, size, topK));
+			List<FaceMatch> matches = new ArrayList<FaceMatch>(result.size());
+			for (int i = 0; i < result.size(); i++) {
+				matches.add(new FaceMatch(faceIds[result.slot(i)], result.score(i)));
+			}
+			return matches;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	private TopK scan(float[] query, int from, int to, int topK) {
+		TopK result = new TopK(topK);
+		for (int slot = from, offset = from * dimension; slot < to; slot++, offset += dimension) {
+			result.offer(slot, metric.score(query, features, offset, dimension));
+		}
+		return result;
+	}
+
+	protected void checkDimension(float[] feature) {
+		if (feature == null || feature.length != dimension) {
+			throw new IllegalArgumentException("Feature dimension mismatch, expected " + dimension);
+		}
+	}
+
+	private void ensureCapacity(int required) {
+		if (required > faceIds.length) {
+			int capacity = Math.max(required, faceIds.length << 1);
+			features = Arrays.copyOf(features, capacity * dimension);
+			faceIds = Arrays.copyOf(faceIds, capacity);
+		}
+	}
+
+	public FaceMetric getMetric() {
+		return metric;
+	}
+
+	public int getChunkSize() {
+		return chunkSize;
+	}
+
+	public void setChunkSize(int chunkSize) {
+		this.chunkSize = Math.max(1, chunkSize);
+	}
+
+	@SuppressWarnings("serial")
+	private class ScanTask extends RecursiveTask<TopK> {
+
+		private final float[] query;
+		private final int from;
+		private final int to;
+		private final int topK;
+
+		ScanTask(float[] query, int from, int to, int topK) {
+			this.query = query;
+			this.from = from;
+			this.to = to;
+			this.topK = topK;
+		}
+
+		@Override
+		protected TopK compute() {
+			if (to - from <= chunkSize) {
+				return scan(query, from, to, topK);
+			}
+			int mid = (from + to) >>> 1;
+			ScanTask left = new ScanTask(query, from, mid, topK);
+			left.fork();
+			TopK right = new ScanTask(query, mid, to, topK).compute();
+			TopK merged = left.join();
+			merged.merge(right);
+			return merged;
+		}
+
+	}
+
+}
@@ -0,0 +1,606 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.gallery;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 基于 HNSW（Hierarchical Navigable Small World）图的近似最近邻人脸特征库，适用于百万级以上底库的 1:N 检索。
+ * <ul>
+ * <li>M：每个节点在非底层保留的邻居数量（底层为 2M），越大召回率越高、内存与构建耗时越高</li>
+ * <li>efConstruction：构建时的候选集大小，影响图的质量</li>
+ * <li>efSearch：检索时的候选集大小，可在运行时调整以权衡召回率与延迟</li>
+ * </ul>
+ * 删除采用墓碑标记：被删除的节点仍参与图的导航，但不会出现在检索结果中；检索时按墓碑占比放大候选集，
+ * 墓碑数量超过存活节点的 {@link #setMaxDeletedRatio(double) 一定比例} 后在后台按存活节点重建整个图：
+ * 重建基于快照进行，期间的注册与注销照常生效并记录下来，重建完成后补放这些变更再切换，检索与写入只在切换时短暂等待。
+ * @author ： <a href="https://github.com/hiwepy">wandl</a>
+ */
+public class HnswFaceGallery implements FaceGallery {
+
+	public static final int DEFAULT_M = 16;
+	public static final int DEFAULT_EF_CONSTRUCTION = 200;
+	public static final int DEFAULT_EF_SEARCH = 64;
+	public static final double DEFAULT_MAX_DELETED_RATIO = 0.25d;
+	/**
+	 * 墓碑数量低于该值时不重建，避免小底库频繁重建
+	 */
+	private static final int MIN_COMPACTION_DELETED = 1024;
+	private static final int MAX_LEVEL = 16;
+	/**
+	 * 复用的访问标记数量上限；超出的并发检索临时分配，用完丢弃
+	 */
+	private static final int MAX_POOLED_VISITED = 64;
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	/**
+	 * 访问标记池：按检索借用而非按线程持有，虚拟线程下不会每个任务都分配一份与底库等长的数组
+	 */
+	private final ConcurrentLinkedQueue<Visited> visitedPool = new ConcurrentLinkedQueue<Visited>();
+	private final AtomicInteger pooledVisited = new AtomicInteger();
+	private final AtomicBoolean compacting = new AtomicBoolean();
+	private final Random random = new Random(42);
+	private final int dimension;
+	private final FaceMetric metric;
+	private final int m;
+	private final int maxM0;
+	private final int efConstruction;
+	private final double levelMultiplier;
+	private volatile int efSearch;
+	private volatile double maxDeletedRatio = DEFAULT_MAX_DELETED_RATIO;
+	/**
+	 * 执行自动重建的线程池，默认每次重建使用一个守护线程
+	 */
+	private Executor compactionExecutor = command -> {
+		Thread thread = new Thread(command, "faceid-hnsw-compaction");
+		thread.setDaemon(true);
+		thread.start();
+	};
+	/**
+	 * 重建期间发生的变更（faceId, 预处理后的特征；注销为 null），重建完成后补放到新图；不在重建时为 null
+	 */
+	private List<Object[]> pendingChanges;
+	private Map<String, Integer> index = new HashMap<String, Integer>();
+	private float[] features;
+	private String[] faceIds;
+	private boolean[] deleted;
+	private int[][][] links;
+	private int count;
+	private int size;
+	private int entryPoint = -1;
+	private int maxLevel = -1;
+
+	public HnswFaceGallery(int dimension, FaceMetric metric) {
+		this(dimension, metric, DEFAULT_M, DEFAULT_EF_CONSTRUCTION, DEFAULT_EF_SEARCH, 1024);
+	}
+
+	public HnswFaceGallery(int dimension, FaceMetric metric, int m, int efConstruction, int efSearch,
+			int initialCapacity) {
+		if (dimension <= 0) {
+			throw new IllegalArgumentException("dimension must be positive");
+		}
+		if (m < 2) {
+			throw new IllegalArgumentException("M must be at least 2");
+		}
+		this.dimension = dimension;
+		this.metric = metric;
+		this.m = m;
+		this.maxM0 = m << 1;
+		this.efConstruction = Math.max(efConstruction, m);
+		this.efSearch = Math.max(1, efSearch);
+		this.levelMultiplier = 1d / Math.log(m);
+		int capacity = Math.max(16, initialCapacity);
+		this.features = new float[capacity * dimension];
+		this.faceIds = new String[capacity];
+		this.deleted = new boolean[capacity];
+		this.links = new int[capacity][][];
+	}
+
+	@Override
+	public int dimension() {
+		return dimension;
+	}
+
+	@Override
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return size;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return 已删除但仍保留在图中的节点数量
+	 */
+	public int deletedCount() {
+		lock.readLock().lock();
+		try {
+			return count - size;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public void add(String faceId, float[] feature) {
+		checkDimension(feature);
+		float[] prepared = metric.prepare(feature);
+		lock.writeLock().lock();
+		try {
+			put(faceId, prepared);
+			if (pendingChanges != null) {
+				pendingChanges.add(new Object[] { faceId, prepared });
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+		compactIfNecessary();
+	}
+
+	/**
+	 * 替换已存在的特征：旧节点打墓碑，新特征作为新节点插入；调用方持有写锁或独占该实例
+	 */
+	private void put(String faceId, float[] prepared) {
+		Integer previous = index.remove(faceId);
+		if (previous != null) {
+			deleted[previous] = true;
+			size--;
+		}
+		int node = insert(prepared);
+		faceIds[node] = faceId;
+		index.put(faceId, node);
+		size++;
+	}
+
+	private boolean delete(String faceId) {
+		Integer node = index.remove(faceId);
+		if (node == null) {
+			return false;
+		}
+		deleted[node] = true;
+		size--;
+		return true;
+	}
+
+	@Override
+	public boolean remove(String faceId) {
+		boolean removed;
+		lock.writeLock().lock();
+		try {
+			removed = delete(faceId);
+			if (removed && pendingChanges != null) {
+				pendingChanges.add(new Object[] { faceId, null });
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+		if (removed) {
+			compactIfNecessary();
+		}
+		return removed;
+	}
+
+	@Override
+	public List<FaceMatch> search(float[] feature, int topK) {
+		checkDimension(feature);
+		float[] query = metric.prepare(feature);
+		lock.readLock().lock();
+		try {
+			if (size == 0 || topK <= 0) {
+				return Collections.emptyList();
+			}
+			int ep = entryPoint;
+			for (int level = maxLevel; level > 0; level--) {
+				ep = greedy(query, ep, level);
+			}
+			float epScore = score(query, ep);
+			// 墓碑同样占用候选集：按墓碑占比放大候选集，过滤后仍不足 topK 时继续加倍
+			int ef = (int) Math.min(count, (long) Math.max(efSearch, topK) * count / size);
+			int expected = Math.min(topK, size);
+			TopK result;
+			while (true) {
+				ScoredHeap candidates = searchLayer(query, ep, epScore, ef, 0);
+				result = new TopK(topK);
+				while (!candidates.isEmpty()) {
+					float score = candidates.peekScore();
+					int node = candidates.pop();
+					if (!deleted[node]) {
+						result.offer(node, score);
+					}
+				}
+				if (result.size() >= expected || ef >= count) {
+					break;
+				}
+				ef = (int) Math.min(count, (long) ef << 1);
+			}
+			List<FaceMatch> matches = new ArrayList<FaceMatch>(result.size());
+			for (int i = 0; i < result.size(); i++) {
+				matches.add(new FaceMatch(faceIds[result.slot(i)], result.score(i)));
+			}
+			return matches;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * 按存活节点重建整个图，回收墓碑占用的内存并恢复图的连通质量。
+	 * 重建在调用线程上基于快照进行，不阻塞检索与写入；已有重建在进行时直接返回
+	 * @return 是否进行了重建
+	 */
+	public boolean compact() {
+		if (!compacting.compareAndSet(false, true)) {
+			return false;
+		}
+		try {
+			return rebuild();
+		} finally {
+			compacting.set(false);
+		}
+	}
+
+	/**
+	 * 墓碑过多时提交后台重建，写入线程不等待重建完成
+	 */
+	private void compactIfNecessary() {
+		if (compacting.get()) {
+			return;
+		}
+		boolean necessary;
+		lock.readLock().lock();
+		try {
+			int deletedCount = count - size;
+			necessary = deletedCount >= MIN_COMPACTION_DELETED && deletedCount > size * maxDeletedRatio;
+		} finally {
+			lock.readLock().unlock();
+		}
+		if (necessary && compacting.compareAndSet(false, true)) {
+			try {
+				compactionExecutor.execute(() -> {
+					try {
+						rebuild();
+					} finally {
+						compacting.set(false);
+					}
+				});
+			} catch (RuntimeException e) {
+				compacting.set(false);
+				throw e;
+			}
+		}
+	}
+
+	private boolean rebuild() {
+		// 已写入的节点不会被改写，特征与 faceId 数组可直接引用；墓碑标记会变化，需要复制
+		float[] snapshotFeatures;
+		String[] snapshotFaceIds;
+		boolean[] snapshotDeleted;
+		int snapshotCount;
+		int snapshotSize;
+		lock.writeLock().lock();
+		try {
+			if (count == size) {
+				return false;
+			}
+			snapshotFeatures = features;
+			snapshotFaceIds = faceIds;
+			snapshotDeleted = Arrays.copyOf(deleted, count);
+			snapshotCount = count;
+			snapshotSize = size;
+			pendingChanges = new ArrayList<Object[]>();
+		} finally {
+			lock.writeLock().unlock();
+		}
+		HnswFaceGallery rebuilt;
+		try {
+			rebuilt = new HnswFaceGallery(dimension, metric, m, efConstruction, efSearch, snapshotSize);
+			float[] vector = new float[dimension];
+			for (int old = 0; old < snapshotCount; old++) {
+				if (snapshotDeleted[old]) {
+					continue;
+				}
+				System.arraycopy(snapshotFeatures, old * dimension, vector, 0, dimension);
+				rebuilt.put(snapshotFaceIds[old], vector);
+			}
+		} catch (RuntimeException | Error e) {
+			lock.writeLock().lock();
+			try {
+				pendingChanges = null;
+			} finally {
+				lock.writeLock().unlock();
+			}
+			throw e;
+		}
+		lock.writeLock().lock();
+		try {
+			for (Object[] change : pendingChanges) {
+				if (change[1] == null) {
+					rebuilt.delete((String) change[0]);
+				} else {
+					rebuilt.put((String) change[0], (float[]) change[1]);
+				}
+			}
+			pendingChanges = null;
+			features = rebuilt.features;
+			faceIds = rebuilt.faceIds;
+			deleted = rebuilt.deleted;
+			links = rebuilt.links;
+			index = rebuilt.index;
+			count = rebuilt.count;
+			size = rebuilt.size;
+			entryPoint = rebuilt.entryPoint;
+			maxLevel = rebuilt.maxLevel;
+			return true;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	private int insert(float[] vector) {
+		ensureCapacity(count + 1);
+		int node = count++;
+		System.arraycopy(vector, 0, features, node * dimension, dimension);
+		int level = randomLevel();
+		int[][] nodeLinks = new int[level + 1][];
+		for (int l = 0; l <= level; l++) {
+			nodeLinks[l] = new int[(l == 0 ? maxM0 : m) + 1];
+		}
+		links[node] = nodeLinks;
+		if (entryPoint < 0) {
+			entryPoint = node;
+			maxLevel = level;
+			return node;
+		}
+		int ep = entryPoint;
+		for (int l = maxLevel; l > level; l--) {
+			ep = greedy(vector, ep, l);
+		}
+		float epScore = score(vector, ep);
+		for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+			ScoredHeap found = searchLayer(vector, ep, epScore, efConstruction, l);
+			int n = found.size();
+			int[] ids = new int[n];
+			float[] scores = new float[n];
+			// 小顶堆依次弹出得分最低的元素，倒序填充后 ids[0] 为最相似节点
+			for (int i = n - 1; i >= 0; i--) {
+				scores[i] = found.peekScore();
+				ids[i] = found.pop();
+			}
+			for (int i = 0, take = Math.min(m, n); i < take; i++) {
+				connect(node, ids[i], l);
+				connect(ids[i], node, l);
+			}
+			ep = ids[0];
+			epScore = scores[0];
+		}
+		if (level > maxLevel) {
+			entryPoint = node;
+			maxLevel = level;
+		}
+		return node;
+	}
+
+	/**
+	 * 在指定层上添加 from -> to 的有向边；邻居已满时仅保留与 from 最相似的节点
+	 */
+	private void connect(int from, int to, int level) {
+		int[] neighbors = links[from][level];
+		int n = neighbors[0];
+		if (n < neighbors.length - 1) {
+			neighbors[++n] = to;
+			neighbors[0] = n;
+			return;
+		}
+		float[] base = Arrays.copyOfRange(features, from * dimension, (from + 1) * dimension);
+		TopK keep = new TopK(neighbors.length - 1);
+		for (int i = 1; i <= n; i++) {
+			keep.offer(neighbors[i], score(base, neighbors[i]));
+		}
+		keep.offer(to, score(base, to));
+		for (int i = 0; i < keep.size(); i++) {
+			neighbors[i + 1] = keep.slot(i);
+		}
+		neighbors[0] = keep.size();
+	}
+
+	private int greedy(float[] query, int ep, int level) {
+		int current = ep;
+		float currentScore = score(query, current);
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			int[] neighbors = links[current][level];
+			for (int i = 1, n = neighbors[0]; i <= n; i++) {
+				float score = score(query, neighbors[i]);
+				if (score > currentScore) {
+					currentScore = score;
+					current = neighbors[i];
+					changed = true;
+				}
+			}
+		}
+		return current;
+	}
+
+	private ScoredHeap searchLayer(float[] query, int ep, float epScore, int ef, int level) {
+		Visited visited = acquireVisited();
+		try {
+			return searchLayer(query, ep, epScore, ef, level, visited);
+		} finally {
+			releaseVisited(visited);
+		}
+	}
+
+	private ScoredHeap searchLayer(float[] query, int ep, float epScore, int ef, int level, Visited visited) {
+		visited.reset(count);
+		ScoredHeap candidates = new ScoredHeap(true, ef);
+		ScoredHeap results = new ScoredHeap(false, ef + 1);
+		visited.visit(ep);
+		candidates.push(ep, epScore);
+		results.push(ep, epScore);
+		while (!candidates.isEmpty()) {
+			float candidateScore = candidates.peekScore();
+			int candidate = candidates.pop();
+			if (results.size() >= ef && candidateScore < results.peekScore()) {
+				break;
+			}
+			int[][] candidateLinks = links[candidate];
+			if (level >= candidateLinks.length) {
+				continue;
+			}
+			int[] neighbors = candidateLinks[level];
+			for (int i = 1, n = neighbors[0]; i <= n; i++) {
+				int neighbor = neighbors[i];
+				if (!visited.visit(neighbor)) {
+					continue;
+				}
+				float score = score(query, neighbor);
+				if (results.size() < ef || score > results.peekScore()) {
+					candidates.push(neighbor, score);
+					results.push(neighbor, score);
+					if (results.size() > ef) {
+						results.pop();
+					}
+				}
+			}
+		}
+		return results;
+	}
+
+	private Visited acquireVisited() {
+		Visited visited = visitedPool.poll();
+		if (visited == null) {
+			return new Visited();
+		}
+		pooledVisited.decrementAndGet();
+		return visited;
+	}
+
+	private void releaseVisited(Visited visited) {
+		if (pooledVisited.incrementAndGet() <= MAX_POOLED_VISITED) {
+			visitedPool.offer(visited);
+		} else {
+			pooledVisited.decrementAndGet();
+		}
+	}
+
+	private float score(float[] query, int node) {
+		return metric.score(query, features, node * dimension, dimension);
+	}
+
+	private int randomLevel() {
+		double r = 1d - random.nextDouble();
+		return Math.min(MAX_LEVEL, (int) (-Math.log(r) * levelMultiplier));
+	}
+
+	private void ensureCapacity(int required) {
+		if (required > faceIds.length) {
+			int capacity = Math.max(required, faceIds.length << 1);
+			features = Arrays.copyOf(features, capacity * dimension);
+			faceIds = Arrays.copyOf(faceIds, capacity);
+			deleted = Arrays.copyOf(deleted, capacity);
+			links = Arrays.copyOf(links, capacity);
+		}
+	}
+
+	protected void checkDimension(float[] feature) {
+		if (feature == null || feature.length != dimension) {
+			throw new IllegalArgumentException("Feature dimension mismatch, expected " + dimension);
+		}
+	}
+
+	public int getM() {
+		return m;
+	}
+
+	public int getEfConstruction() {
+		return efConstruction;
+	}
+
+	public int getEfSearch() {
+		return efSearch;
+	}
+
+	public void setEfSearch(int efSearch) {
+		this.efSearch = Math.max(1, efSearch);
+	}
+
+	public double getMaxDeletedRatio() {
+		return maxDeletedRatio;
+	}
+
+	/**
+	 * @param maxDeletedRatio 墓碑数量与存活节点数量之比超过该值时自动重建；不大于 0 时不自动重建
+	 */
+	public void setMaxDeletedRatio(double maxDeletedRatio) {
+		this.maxDeletedRatio = maxDeletedRatio > 0d ? maxDeletedRatio : Double.POSITIVE_INFINITY;
+	}
+
+	public Executor getCompactionExecutor() {
+		return compactionExecutor;
+	}
+
+	/**
+	 * @param compactionExecutor 执行自动重建的线程池
+	 */
+	public void setCompactionExecutor(Executor compactionExecutor) {
+		this.compactionExecutor = compactionExecutor;
+	}
+
+	/**
+	 * 可复用的访问标记，使用版本号避免每次检索清空数组；同一时刻只被一次检索使用
+	 */
+	private static final class Visited {
+
+		private int[] marks = new int[0];
+		private int stamp;
+
+		void reset(int capacity) {
+			if (marks.length < capacity) {
+				marks = new int[Math.max(capacity, marks.length << 1)];
+				stamp = 0;
+			}
+			if (++stamp == 0) {
+				Arrays.fill(marks, 0);
+				stamp = 1;
+			}
+		}
+
+		boolean visit(int node) {
+			if (marks[node] == stamp) {
+				return false;
+			}
+			marks[node] = stamp;
+			return true;
+		}
+
+	}
+
+}
@@ -0,0 +1,384 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.gallery;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+
+/**
+ * 基于内存映射文件的人脸特征模板存储：
+ * <ul>
+ * <li>文件只追加写入：新增/替换均追加新记录，删除与被替换的旧记录仅将状态位置为无效</li>
+ * <li>记录定长，按固定大小的分段映射到内存，特征数据保存在 Java 堆外，由操作系统页缓存管理</li>
+ * <li>启动时只需映射文件并扫描记录头重建 faceId → 记录序号 的紧凑索引，无需反序列化特征数据</li>
+ * </ul>
+ * 文件格式：64 字节文件头（魔数、版本、维度、faceId 最大字节数、记录数），之后为连续的定长记录：
+ * [int 状态][int faceId 长度][faceId UTF-8 字节，按 4 字节对齐][float × dimension]。
+ * @author ： <a href="https://github.com/hiwepy">wandl</a>
+ */
+public class MappedFaceTemplateStore implements FaceTemplateStore, Closeable {
+
+	/**
+	 * 默认每个映射分段的大小：256MB
+	 */
+	public static final long DEFAULT_SEGMENT_SIZE = 256L * 1024 * 1024;
+	/**
+	 * 默认 faceId 最大字节数
+	 */
+	public static final int DEFAULT_MAX_FACE_ID_BYTES = 64;
+
+	private static final int MAGIC = 0x46414345; // "FACE"
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 64;
+	private static final int COUNT_OFFSET = 16;
+	private static final int STATUS_LIVE = 1;
+	private static final int STATUS_DELETED = 0;
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	private final Map<String, Integer> index = new HashMap<String, Integer>();
+	private final List<MappedByteBuffer> segments = new ArrayList<MappedByteBuffer>();
+	private final List<FloatBuffer> featureViews = new ArrayList<FloatBuffer>();
+	private final FileChannel channel;
+	private final MappedByteBuffer header;
+	private final int dimension;
+	private final FaceMetric metric;
+	private final ForkJoinPool pool;
+	private final int maxFaceIdBytes;
+	private final int recordSize;
+	private final int recordsPerSegment;
+	private int chunkSize = FlatFaceGallery.DEFAULT_CHUNK_SIZE;
+	private int count;
+
+	public MappedFaceTemplateStore(File file, int dimension, FaceMetric metric) throws IOException {
+		this(file, dimension, metric, DEFAULT_MAX_FACE_ID_BYTES, DEFAULT_SEGMENT_SIZE, ForkJoinPool.commonPool());
+	}
+
+	public MappedFaceTemplateStore(File file, int dimension, FaceMetric metric, int maxFaceIdBytes, long segmentSize,
+			ForkJoinPool pool) throws IOException {
+		if (dimension <= 0) {
+			throw new IllegalArgumentException("dimension must be positive");
+		}
+		this.dimension = dimension;
+		this.metric = metric;
+		this.pool = pool;
+		this.maxFaceIdBytes = align4(maxFaceIdBytes);
+		this.recordSize = 8 + this.maxFaceIdBytes + dimension * 4;
+		this.recordsPerSegment = (int) Math.max(1, Math.min(Integer.MAX_VALUE / recordSize, segmentSize / recordSize));
+		if (file.getParentFile() != null && !file.getParentFile().exists()) {
+			file.getParentFile().mkdirs();
+		}
+		boolean created = !file.exists() || file.length() < HEADER_SIZE;
+		this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		this.header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+		this.header.order(ByteOrder.LITTLE_ENDIAN);
+		if (created) {
+			header.putInt(0, MAGIC);
+			header.putInt(4, VERSION);
+			header.putInt(8, dimension);
+			header.putInt(12, this.maxFaceIdBytes);
+			header.putInt(COUNT_OFFSET, 0);
+		} else {
+			verifyHeader(file);
+		}
+		load();
+	}
+
+	private void verifyHeader(File file) throws IOException {
+		if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+			throw new IOException("Not a face template store: " + file);
+		}
+		if (header.getInt(8) != dimension || header.getInt(12) != maxFaceIdBytes) {
+			throw new IOException("Face template store " + file + " was created with dimension "
+					+ header.getInt(8) + " and faceId size " + header.getInt(12));
+		}
+	}
+
+	/**
+	 * 映射已有记录并重建索引；文件头中的记录数在记录落盘之后才更新，因此未完成的追加会被忽略。
+	 * 替换在更新记录数之后才作废旧记录，中途崩溃会留下同一 faceId 的多条有效记录，以最后一条为准，其余在此作废
+	 */
+	private void load() throws IOException {
+		count = header.getInt(COUNT_OFFSET);
+		ensureSegments(count);
+		byte[] buffer = new byte[maxFaceIdBytes];
+		for (int slot = 0; slot < count; slot++) {
+			MappedByteBuffer segment = segments.get(slot / recordsPerSegment);
+			int offset = (slot % recordsPerSegment) * recordSize;
+			if (segment.getInt(offset) == STATUS_LIVE) {
+				Integer previous = index.put(readFaceId(segment, offset, buffer), slot);
+				if (previous != null) {
+					markDeleted(previous);
+				}
+			}
+		}
+	}
+
+	@Override
+	public int dimension() {
+		return dimension;
+	}
+
+	@Override
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return index.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public void add(String faceId, float[] feature) {
+		checkDimension(feature);
+		byte[] id = faceId.getBytes(StandardCharsets.UTF_8);
+		if (id.length > maxFaceIdBytes) {
+			throw new IllegalArgumentException("faceId exceeds " + maxFaceIdBytes + " bytes: " + faceId);
+		}
+		float[] prepared = metric.prepare(feature);
+		lock.writeLock().lock();
+		try {
+			int slot = count;
+			ensureSegments(slot + 1);
+			MappedByteBuffer segment = segments.get(slot / recordsPerSegment);
+			FloatBuffer features = featureViews.get(slot / recordsPerSegment);
+			int offset = (slot % recordsPerSegment) * recordSize;
+			segment.putInt(offset + 4, id.length);
+			for (int i = 0; i < id.length; i++) {
+				segment.put(offset + 8 + i, id[i]);
+			}
+			int featureIndex = (offset + 8 + maxFaceIdBytes) >> 2;
+			for (int i = 0; i < dimension; i++) {
+				features.put(featureIndex + i, prepared[i]);
+			}
+			segment.putInt(offset, STATUS_LIVE);
+			// 记录落盘后再发布记录数，记录数落盘后再作废旧记录，任一步崩溃都不会丢失或损坏已有数据
+			segment.force();
+			count = slot + 1;
+			header.putInt(COUNT_OFFSET, count);
+			header.force();
+			Integer previous = index.put(faceId, slot);
+			if (previous != null) {
+				markDeleted(previous);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public boolean remove(String faceId) {
+		lock.writeLock().lock();
+		try {
+			Integer slot = index.remove(faceId);
+			if (slot == null) {
+				return false;
+			}
+			markDeleted(slot);
+			return true;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public float[] get(String faceId) {
+		lock.readLock().lock();
+		try {
+			Integer slot = index.get(faceId);
+			return slot == null ? null : readFeature(slot);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public void forEach(BiConsumer<String, float[]> consumer) {
+		lock.readLock().lock();
+		try {
+			for (Map.Entry<String, Integer> entry : index.entrySet()) {
+				consumer.accept(entry.getKey(), readFeature(entry.getValue()));
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public List<FaceMatch> search(float[] feature, int topK) {
+		checkDimension(feature);
+		float[] query = metric.prepare(feature);
+		lock.readLock().lock();
+		try {
+			if (index.isEmpty() || topK <= 0) {
+				return Collections.emptyList();
+			}
+			TopK result = count <= chunkSize ? scan(query, 0, count, topK)
+					: pool.invoke(new ScanTask(query, 0, count, topK));
+			List<FaceMatch> matches = new ArrayList<FaceMatch>(result.size());
+			byte[] buffer = new byte[maxFaceIdBytes];
+			for (int i = 0; i < result.size(); i++) {
+				int slot = result.slot(i);
+				String faceId = readFaceId(segments.get(slot / recordsPerSegment),
+						(slot % recordsPerSegment) * recordSize, buffer);
+				matches.add(new FaceMatch(faceId, result.score(i)));
+			}
+			return matches;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public void flush() {
+		lock.writeLock().lock();
+		try {
+			for (MappedByteBuffer segment : segments) {
+				segment.force();
+			}
+			header.force();
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		flush();
+		channel.close();
+	}
+
+	private TopK scan(float[] query, int from, int to, int topK) {
+		TopK result = new TopK(topK);
+		int slot = from;
+		while (slot < to) {
+			int segmentIndex = slot / recordsPerSegment;
+			MappedByteBuffer segment = segments.get(segmentIndex);
+			FloatBuffer features = featureViews.get(segmentIndex);
+			int end = Math.min(to, (segmentIndex + 1) * recordsPerSegment);
+			for (int offset = (slot % recordsPerSegment) * recordSize; slot < end; slot++, offset += recordSize) {
+				if (segment.getInt(offset) == STATUS_LIVE) {
+					result.offer(slot, metric.score(query, features, (offset + 8 + maxFaceIdBytes) >> 2, dimension));
+				}
+			}
+		}
+		return result;
+	}
+
+	private float[] readFeature(int slot) {
+		FloatBuffer features = featureViews.get(slot / recordsPerSegment);
+		int featureIndex = ((slot % recordsPerSegment) * recordSize + 8 + maxFaceIdBytes) >> 2;
+		float[] feature = new float[dimension];
+		for (int i = 0; i < dimension; i++) {
+			feature[i] = features.get(featureIndex + i);
+		}
+		return feature;
+	}
+
+	private String readFaceId(MappedByteBuffer segment, int offset, byte[] buffer) {
+		int length = segment.getInt(offset + 4);
+		for (int i = 0; i < length; i++) {
+			buffer[i] = segment.get(offset + 8 + i);
+		}
+		return new String(buffer, 0, length, StandardCharsets.UTF_8);
+	}
+
+	private void markDeleted(int slot) {
+		segments.get(slot / recordsPerSegment).putInt((slot % recordsPerSegment) * recordSize, STATUS_DELETED);
+	}
+
+	private void ensureSegments(int records) throws IOException {
+		long segmentBytes = (long) recordsPerSegment * recordSize;
+		while ((long) segments.size() * recordsPerSegment < records) {
+			long position = HEADER_SIZE + segments.size() * segmentBytes;
+			MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_WRITE, position, segmentBytes);
+			segment.order(ByteOrder.LITTLE_ENDIAN);
+			segments.add(segment);
+			featureViews.add(segment.asFloatBuffer());
+		}
+	}
+
+	private void checkDimension(float[] feature) {
+		if (feature == null || feature.length != dimension) {
+			throw new IllegalArgumentException("Feature dimension mismatch, expected " + dimension);
+		}
+	}
+
+	private static int align4(int value) {
+		return (value + 3) & ~3;
+	}
+
+	public int getChunkSize() {
+		return chunkSize;
+	}
+
+	public void setChunkSize(int chunkSize) {
+		this.chunkSize = Math.max(1, chunkSize);
+	}
+
+	@SuppressWarnings("serial")
+	private class ScanTask extends RecursiveTask<TopK> {
+
+		private final float[] query;
+		private final int from;
+		private final int to;
+		private final int topK;
+
+		ScanTask(float[] query, int from, int to, int topK) {
+			this.query = query;
+			this.from = from;
+			this.to = to;
+			this.topK = topK;
+		}
+
+		@Override
+		protected TopK compute() {
+			if (to - from <= chunkSize) {
+				return scan(query, from, to, topK);
+			}
+			int mid = (from + to) >>> 1;
+			ScanTask left = new ScanTask(query, from, mid, topK);
+			left.fork();
+			TopK right = new ScanTask(query, mid, to, topK).compute();
+			TopK merged = left.join();
+			merged.merge(right);
+			return merged;
+		}
+
+	}
+
+}
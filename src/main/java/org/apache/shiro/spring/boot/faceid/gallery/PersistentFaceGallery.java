@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.gallery;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * 持久化特征库：写操作先落到 {@link FaceTemplateStore}，再同步到内存索引；检索只走内存索引。
+ * 启动时从存储中装载全部模板构建索引，适用于 HNSW 等需要常驻内存结构的检索方式。
+ * @author ： <a href="https://github.com/hiwepy">wandl</a>
+ */
+public class PersistentFaceGallery implements FaceGallery, Closeable {
+
+	private final FaceTemplateStore store;
+	private final FaceGallery index;
+
+	public PersistentFaceGallery(FaceTemplateStore store, FaceGallery index) {
+		if (store.dimension() != index.dimension()) {
+			throw new IllegalArgumentException("Store and index dimension mismatch");
+		}
+		this.store = store;
+		this.index = index;
+		store.forEach(index::add);
+	}
+
+	@Override
+	public int dimension() {
+		return index.dimension();
+	}
+
+	@Override
+	public int size() {
+		return index.size();
+	}
+
+	@Override
+	public void add(String faceId, float[] feature) {
+		store.add(faceId, feature);
+		index.add(faceId, feature);
+	}
+
+	@Override
+	public boolean remove(String faceId) {
+		boolean removed = store.remove(faceId);
+		return index.remove(faceId) || removed;
+	}
+
+	@Override
+	public List<FaceMatch> search(float[] feature, int topK) {
+		return index.search(feature, topK);
+	}
+
+	@Override
+	public boolean isPersistent() {
+		return true;
+	}
+
+	@Override
+	public void flush() {
+		store.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (store instanceof Closeable) {
+			((Closeable) store).close();
+		}
+	}
+
+	public FaceTemplateStore getStore() {
+		return store;
+	}
+
+	public FaceGallery getIndex() {
+		return index;
+	}
+
+}
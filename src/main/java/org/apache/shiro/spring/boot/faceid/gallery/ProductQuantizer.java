@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.gallery;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 乘积量化（PQ）：将特征切分为若干子空间，每个子空间用 256 个聚类中心之一的编号（1 字节）表示。
+ * 512 维特征切分为 64 个子空间时，每个特征仅占 64 字节，为 float32 的 1/32；
+ * 查询时预先计算查询子向量与各聚类中心的得分表，逐条打分只需查表累加。
+ * @author ： <a href="https://github.com/hiwepy">wandl</a>
+ */
+public class ProductQuantizer implements FaceQuantizer {
+
+	public static final int CENTROIDS = 256;
+
+	private final int dimension;
+	private final FaceMetric metric;
+	private final int subspaces;
+	private final int subDimension;
+	/**
+	 * 聚类中心：centroids[j] 为第 j 个子空间的 256 个中心，按行连续存放
+	 */
+	private final float[][] centroids;
+
+	public ProductQuantizer(int dimension, FaceMetric metric, int subspaces, float[][] centroids) {
+		if (dimension % subspaces != 0) {
+			throw new IllegalArgumentException("dimension must be a multiple of subspaces");
+		}
+		this.dimension = dimension;
+		this.metric = metric;
+		this.subspaces = subspaces;
+		this.subDimension = dimension / subspaces;
+		this.centroids = centroids;
+	}
+
+	/**
+	 * 使用 k-means 在样本上训练聚类中心
+	 * @param samples 训练样本（已按 metric 归一化或原始特征均可）
+	 * @param dimension 特征维度
+	 * @param metric 相似度度量方式
+	 * @param subspaces 子空间数量，需整除 dimension
+	 * @param iterations k-means 迭代次数
+	 * @param seed 随机种子
+	 * @return 训练好的量化器
+	 */
+	public static ProductQuantizer train(List<float[]> samples, int dimension, FaceMetric metric, int subspaces,
+			int iterations, long seed) {
+		if (samples.isEmpty()) {
+			throw new IllegalArgumentException("Product quantizer requires training samples");
+		}
+		if (dimension % subspaces != 0) {
+			throw new IllegalArgumentException("dimension must be a multiple of subspaces");
+		}
+		int subDimension = dimension / subspaces;
+		int n = samples.size();
+		float[][] prepared = new float[n][];
+		for (int i = 0; i < n; i++) {
+			prepared[i] = metric.prepare(samples.get(i));
+		}
+		Random random = new Random(seed);
+		float[][] centroids = new float[subspaces][CENTROIDS * subDimension];
+		int[] assignment = new int[n];
+		for (int j = 0; j < subspaces; j++) {
+			int base = j * subDimension;
+			float[] center = centroids[j];
+			for (int c = 0; c < CENTROIDS; c++) {
+				System.arraycopy(prepared[random.nextInt(n)], base, center, c * subDimension, subDimension);
+			}
+			for (int iteration = 0; iteration < iterations; iteration++) {
+				for (int i = 0; i < n; i++) {
+					assignment[i] = nearest(prepared[i], base, center, subDimension);
+				}
+				float[] sums = new float[CENTROIDS * subDimension];
+				int[] counts = new int[CENTROIDS];
+				for (int i = 0; i < n; i++) {
+					int c = assignment[i];
+					counts[c]++;
+					for (int d = 0; d < subDimension; d++) {
+						sums[c * subDimension + d] += prepared[i][base + d];
+					}
+				}
+				for (int c = 0; c < CENTROIDS; c++) {
+					if (counts[c] == 0) {
+						// 空簇重新随机选取样本，避免中心浪费
+						System.arraycopy(prepared[random.nextInt(n)], base, center, c * subDimension, subDimension);
+						continue;
+					}
+					for (int d = 0; d < subDimension; d++) {
+						center[c * subDimension + d] = sums[c * subDimension + d] / counts[c];
+					}
+				}
+			}
+		}
+		return new ProductQuantizer(dimension, metric, subspaces, centroids);
+	}
+
+	private static int nearest(float[] feature, int base, float[] center, int subDimension) {
+		int best = 0;
+		float bestDistance = Float.MAX_VALUE;
+		for (int c = 0, offset = 0; c < CENTROIDS; c++, offset += subDimension) {
+			float distance = 0f;
+			for (int d = 0; d < subDimension; d++) {
+				float diff = feature[base + d] - center[offset + d];
+				distance += diff * diff;
+			}
+			if (distance < bestDistance) {
+				bestDistance = distance;
+				best = c;
+			}
+		}
+		return best;
+	}
+
+	@Override
+	public int dimension() {
+		return dimension;
+	}
+
+	@Override
+	public int codeSize() {
+		return subspaces;
+	}
+
+	@Override
+	public void encode(float[] feature, byte[] codes, int offset) {
+		for (int j = 0; j < subspaces; j++) {
+			codes[offset + j] = (byte) nearest(feature, j * subDimension, centroids[j], subDimension);
+		}
+	}
+
+	@Override
+	public Scorer scorer(float[] query) {
+		final float[] table = new float[subspaces * CENTROIDS];
+		boolean innerProduct = FaceMetric.COSINE.equals(metric);
+		for (int j = 0; j < subspaces; j++) {
+			float[] center = centroids[j];
+			int base = j * subDimension;
+			for (int c = 0, offset = 0; c < CENTROIDS; c++, offset += subDimension) {
+				float score = 0f;
+				for (int d = 0; d < subDimension; d++) {
+					if (innerProduct) {
+						score += query[base + d] * center[offset + d];
+					} else {
+						float diff = query[base + d] - center[offset + d];
+						score -= diff * diff;
+					}
+				}
+				table[j * CENTROIDS + c] = score;
+			}
+		}
+		return new Scorer() {
+
+			@Override
+			public float score(byte[] codes, int offset) {
+				float sum = 0f;
+				for (int j = 0, t = 0; j < subspaces; j++, t += CENTROIDS) {
+					sum += table[t + (codes[offset + j] & 0xFF)];
+				}
+				return sum;
+			}
+
+		};
+	}
+
+	public int getSubspaces() {
+		return subspaces;
+	}
+
+}
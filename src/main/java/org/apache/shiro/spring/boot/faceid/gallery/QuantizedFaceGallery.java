@@ -0,0 +1,249 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.gallery;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 量化人脸特征库：内存中只保存量化编码（int8 或 PQ），并行扫描编码完成粗排；
+ * 配置了精确特征存储时，对粗排的 topK × rerankFactor 个候选按原始特征重新打分（精排）
+ * @author ： <a href="https://github.com/hiwepy">wandl</a>
+ */
+public class QuantizedFaceGallery implements FaceGallery {
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	private final Map<String, Integer> index = new HashMap<String, Integer>();
+	private final FaceQuantizer quantizer;
+	private final FaceMetric metric;
+	private final ForkJoinPool pool;
+	private final int codeSize;
+	private FaceTemplateStore exactStore;
+	private int rerankFactor = 4;
+	private int chunkSize = FlatFaceGallery.DEFAULT_CHUNK_SIZE;
+	private byte[] codes;
+	private String[] faceIds;
+	private int size;
+
+	public QuantizedFaceGallery(FaceQuantizer quantizer, FaceMetric metric) {
+		this(quantizer, metric, 1024, ForkJoinPool.commonPool());
+	}
+
+	public QuantizedFaceGallery(FaceQuantizer quantizer, FaceMetric metric, int initialCapacity, ForkJoinPool pool) {
+		this.quantizer = quantizer;
+		this.metric = metric;
+		this.pool = pool;
+		this.codeSize = quantizer.codeSize();
+		int capacity = Math.max(16, initialCapacity);
+		this.codes = new byte[capacity * codeSize];
+		this.faceIds = new String[capacity];
+	}
+
+	@Override
+	public int dimension() {
+		return quantizer.dimension();
+	}
+
+	@Override
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return size;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public void add(String faceId, float[] feature) {
+		checkDimension(feature);
+		byte[] encoded = new byte[codeSize];
+		quantizer.encode(metric.prepare(feature), encoded, 0);
+		lock.writeLock().lock();
+		try {
+			Integer slot = index.get(faceId);
+			if (slot == null) {
+				ensureCapacity(size + 1);
+				slot = size++;
+				faceIds[slot] = faceId;
+				index.put(faceId, slot);
+			}
+			System.arraycopy(encoded, 0, codes, slot * codeSize, codeSize);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public boolean remove(String faceId) {
+		lock.writeLock().lock();
+		try {
+			Integer slot = index.remove(faceId);
+			if (slot == null) {
+				return false;
+			}
+			int last = --size;
+			if (slot != last) {
+				System.arraycopy(codes, last * codeSize, codes, slot * codeSize, codeSize);
+				faceIds[slot] = faceIds[last];
+				index.put(faceIds[slot], slot);
+			}
+			faceIds[last] = null;
+			return true;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	@Override
+	public List<FaceMatch> search(float[] feature, int topK) {
+		checkDimension(feature);
+		float[] query = metric.prepare(feature);
+		boolean rerank = exactStore != null && rerankFactor > 1;
+		int candidates = rerank ? topK * rerankFactor : topK;
+		FaceQuantizer.Scorer scorer = quantizer.scorer(query);
+		String[] candidateIds;
+		float[] candidateScores;
+		lock.readLock().lock();
+		try {
+			if (size == 0 || topK <= 0) {
+				return Collections.emptyList();
+			}
+			TopK result = size <= chunkSize ? scan(scorer, 0, size, candidates)
+					: pool.invoke(new ScanTask(scorer, 0, size, candidates));
+			candidateIds = new String[result.size()];
+			candidateScores = new float[result.size()];
+			for (int i = 0; i < result.size(); i++) {
+				candidateIds[i] = faceIds[result.slot(i)];
+				candidateScores[i] = result.score(i);
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+		if (rerank) {
+			TopK exact = new TopK(topK);
+			for (int i = 0; i < candidateIds.length; i++) {
+				float[] template = exactStore.get(candidateIds[i]);
+				if (template != null) {
+					exact.offer(i, metric.score(query, template, 0, template.length));
+				}
+			}
+			List<FaceMatch> matches = new ArrayList<FaceMatch>(exact.size());
+			for (int i = 0; i < exact.size(); i++) {
+				matches.add(new FaceMatch(candidateIds[exact.slot(i)], exact.score(i)));
+			}
+			return matches;
+		}
+		List<FaceMatch> matches = new ArrayList<FaceMatch>(candidateIds.length);
+		for (int i = 0; i < candidateIds.length; i++) {
+			matches.add(new FaceMatch(candidateIds[i], candidateScores[i]));
+		}
+		return matches;
+	}
+
+	private TopK scan(FaceQuantizer.Scorer scorer, int from, int to, int topK) {
+		TopK result = new TopK(topK);
+		for (int slot = from, offset = from * codeSize; slot < to; slot++, offset += codeSize) {
+			result.offer(slot, scorer.score(codes, offset));
+		}
+		return result;
+	}
+
+	private void checkDimension(float[] feature) {
+		if (feature == null || feature.length != quantizer.dimension()) {
+			throw new IllegalArgumentException("Feature dimension mismatch, expected " + quantizer.dimension());
+		}
+	}
+
+	private void ensureCapacity(int required) {
+		if (required > faceIds.length) {
+			int capacity = Math.max(required, faceIds.length << 1);
+			codes = Arrays.copyOf(codes, capacity * codeSize);
+			faceIds = Arrays.copyOf(faceIds, capacity);
+		}
+	}
+
+	public FaceQuantizer getQuantizer() {
+		return quantizer;
+	}
+
+	public FaceTemplateStore getExactStore() {
+		return exactStore;
+	}
+
+	/**
+	 * 设置用于精排的原始特征存储；为 null 时直接返回量化得分
+	 */
+	public void setExactStore(FaceTemplateStore exactStore) {
+		this.exactStore = exactStore;
+	}
+
+	public int getRerankFactor() {
+		return rerankFactor;
+	}
+
+	public void setRerankFactor(int rerankFactor) {
+		this.rerankFactor = Math.max(1, rerankFactor);
+	}
+
+	public int getChunkSize() {
+		return chunkSize;
+	}
+
+	public void setChunkSize(int chunkSize) {
+		this.chunkSize = Math.max(1, chunkSize);
+	}
+
+	@SuppressWarnings("serial")
+	private class ScanTask extends RecursiveTask<TopK> {
+
+		private final FaceQuantizer.Scorer scorer;
+		private final int from;
+		private final int to;
+		private final int topK;
+
+		ScanTask(FaceQuantizer.Scorer scorer, int from, int to, int topK) {
+			this.scorer = scorer;
+			this.from = from;
+			this.to = to;
+			this.topK = topK;
+		}
+
+		@Override
+		protected TopK compute() {
+			if (to - from <= chunkSize) {
+				return scan(scorer, from, to, topK);
+			}
+			int mid = (from + to) >>> 1;
+			ScanTask left = new ScanTask(scorer, from, mid, topK);
+			left.fork();
+			TopK right = new ScanTask(scorer, mid, to, topK).compute();
+			TopK merged = left.join();
+			merged.merge(right);
+			return merged;
+		}
+
+	}
+
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.gallery;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * int8 标量量化：每个分量按各自的量化范围线性映射到 [-127, 127]，内存为 float32 的 1/4；
+ * 打分采用非对称方式（查询保持 float 精度，仅底库量化）。
+ * <p>量化范围决定精度：512 维归一化特征的分量通常只有 ±0.05 左右，若统一按 ±1 量化，每个分量仅剩约 5 个有效等级，
+ * 不足以支撑认证排序。因此应通过 {@link #train(List, int, FaceMetric)} 按维度从已有模板中校准量化范围。</p>
+ * @author ： <a href="https://github.com/hiwepy">wandl</a>
+ */
+public class ScalarQuantizer implements FaceQuantizer {
+
+	/**
+	 * 校准时在观测到的最大绝对值之上预留的余量，容纳后续注册的模板
+	 */
+	private static final float CALIBRATION_HEADROOM = 1.1f;
+
+	private final int dimension;
+	private final FaceMetric metric;
+	/**
+	 * 各维度的量化步长：该维度分量绝对值上限 / 127
+	 */
+	private final float[] scales;
+
+	/**
+	 * @param dimension 特征维度
+	 * @param metric 相似度度量方式
+	 * @param maxAbs 所有维度共用的分量绝对值上限，超出部分截断；应取实际特征分量的最大绝对值，而不是其理论上限
+	 */
+	public ScalarQuantizer(int dimension, FaceMetric metric, float maxAbs) {
+		this(dimension, metric, uniform(dimension, maxAbs));
+	}
+
+	/**
+	 * @param dimension 特征维度
+	 * @param metric 相似度度量方式
+	 * @param maxAbs 各维度的分量绝对值上限，超出部分截断
+	 */
+	public ScalarQuantizer(int dimension, FaceMetric metric, float[] maxAbs) {
+		if (maxAbs.length != dimension) {
+			throw new IllegalArgumentException("maxAbs must have one value per dimension");
+		}
+		this.dimension = dimension;
+		this.metric = metric;
+		this.scales = new float[dimension];
+		for (int i = 0; i < dimension; i++) {
+			if (!(maxAbs[i] > 0f)) {
+				throw new IllegalArgumentException("maxAbs must be positive");
+			}
+			this.scales[i] = maxAbs[i] / 127f;
+		}
+	}
+
+	/**
+	 * 按维度校准量化范围：取样本在每个维度上的最大绝对值（并预留少量余量）
+	 * @param samples 训练样本（通常为已注册的模板）
+	 * @param dimension 特征维度
+	 * @param metric 相似度度量方式
+	 * @return 校准后的量化器
+	 */
+	public static ScalarQuantizer train(List<float[]> samples, int dimension, FaceMetric metric) {
+		if (samples.isEmpty()) {
+			throw new IllegalArgumentException("At least one training sample is required");
+		}
+		float[] maxAbs = new float[dimension];
+		for (float[] sample : samples) {
+			sample = metric.prepare(sample);
+			for (int i = 0; i < dimension; i++) {
+				maxAbs[i] = Math.max(maxAbs[i], Math.abs(sample[i]));
+			}
+		}
+		float overall = 0f;
+		for (float v : maxAbs) {
+			overall = Math.max(overall, v);
+		}
+		for (int i = 0; i < dimension; i++) {
+			// 样本中恒为 0 的维度退化为全局范围，避免步长为 0
+			maxAbs[i] = (maxAbs[i] > 0f ? maxAbs[i] : Math.max(overall, Float.MIN_NORMAL)) * CALIBRATION_HEADROOM;
+		}
+		return new ScalarQuantizer(dimension, metric, maxAbs);
+	}
+
+	/**
+	 * 没有训练样本时 L2 归一化特征的默认量化范围：随机单位向量的分量近似服从 N(0, 1/d)，取 4 个标准差
+	 * @param dimension 特征维度
+	 * @return 各维度共用的分量绝对值上限
+	 */
+	public static float normalizedMaxAbs(int dimension) {
+		return (float) Math.min(1d, 4d / Math.sqrt(dimension));
+	}
+
+	private static float[] uniform(int dimension, float maxAbs) {
+		float[] values = new float[dimension];
+		Arrays.fill(values, maxAbs);
+		return values;
+	}
+
+	@Override
+	public int dimension() {
+		return dimension;
+	}
+
+	@Override
+	public int codeSize() {
+		return dimension;
+	}
+
+	@Override
+	public void encode(float[] feature, byte[] codes, int offset) {
+		for (int i = 0; i < dimension; i++) {
+			int q = Math.round(feature[i] / scales[i]);
+			codes[offset + i] = (byte) Math.max(-127, Math.min(127, q));
+		}
+	}
+
+	@Override
+	public Scorer scorer(float[] query) {
+		if (FaceMetric.COSINE.equals(metric)) {
+			final float[] scaled = new float[dimension];
+			for (int i = 0; i < dimension; i++) {
+				scaled[i] = query[i] * scales[i];
+			}
+			return new Scorer() {
+
+				@Override
+				public float score(byte[] codes, int offset) {
+					float dot = 0f;
+					for (int i = 0; i < dimension; i++) {
+						dot += scaled[i] * codes[offset + i];
+					}
+					return dot;
+				}
+
+			};
+		}
+		final float[] target = query.clone();
+		return new Scorer() {
+
+			@Override
+			public float score(byte[] codes, int offset) {
+				float sum = 0f;
+				for (int i = 0; i < dimension; i++) {
+					float diff = target[i] - codes[offset + i] * scales[i];
+					sum += diff * diff;
+				}
+				return -sum;
+			}
+
+		};
+	}
+
+}
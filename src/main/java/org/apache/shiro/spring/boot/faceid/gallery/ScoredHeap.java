@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.gallery;
+
+import java.util.Arrays;
+
+/**
+ * 基于原始类型数组的 (得分, 节点) 二叉堆，用于图检索时维护候选集与结果集，避免装箱
+ * @author ： <a href="https://github.com/hiwepy">wandl</a>
+ */
+final class ScoredHeap {
+
+	private final boolean maxHeap;
+	private float[] scores;
+	private int[] nodes;
+	private int size;
+
+	/**
+	 * @param maxHeap true：堆顶为得分最高的元素；false：堆顶为得分最低的元素
+	 * @param capacity 初始容量
+	 */
+	ScoredHeap(boolean maxHeap, int capacity) {
+		this.maxHeap = maxHeap;
+		this.scores = new float[Math.max(4, capacity)];
+		this.nodes = new int[scores.length];
+	}
+
+	void clear() {
+		size = 0;
+	}
+
+	int size() {
+		return size;
+	}
+
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	float peekScore() {
+		return scores[0];
+	}
+
+	int peekNode() {
+		return nodes[0];
+	}
+
+	void push(int node, float score) {
+		if (size == scores.length) {
+			scores = Arrays.copyOf(scores, size << 1);
+			nodes = Arrays.copyOf(nodes, size << 1);
+		}
+		int i = size++;
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			if (!before(score, scores[parent])) {
+				break;
+			}
+			scores[i] = scores[parent];
+			nodes[i] = nodes[parent];
+			i = parent;
+		}
+		scores[i] = score;
+		nodes[i] = node;
+	}
+
+	/**
+	 * 移除堆顶元素，返回其节点编号
+	 */
+	int pop() {
+		int top = nodes[0];
+		int last = --size;
+		if (last > 0) {
+			float score = scores[last];
+			int node = nodes[last];
+			int i = 0;
+			while (true) {
+				int child = (i << 1) + 1;
+				if (child >= last) {
+					break;
+				}
+				if (child + 1 < last && before(scores[child + 1], scores[child])) {
+					child++;
+				}
+				if (!before(scores[child], score)) {
+					break;
+				}
+				scores[i] = scores[child];
+				nodes[i] = nodes[child];
+				i = child;
+			}
+			scores[i] = score;
+			nodes[i] = node;
+		}
+		return top;
+	}
+
+	private boolean before(float a, float b) {
+		return maxHeap ? a > b : a < b;
+	}
+
+}
@@ -0,0 +1,299 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.gallery;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Function;
+
+/**
+ * 分片人脸特征库：特征按人脸识别数据ID的哈希或租户前缀分布到多个独立的特征库，
+ * 检索时在 ForkJoinPool 上并行检索各分片，各任务返回各自的 topK 结果并在汇合时归并，不共享可变状态。
+ * <p>
+ * 分片之间互不加锁，注册与移除只影响所在分片；租户分片模式下，携带租户提示的检索只访问该租户的分片。
+ * @author ： <a href="https://github.com/hiwepy">wandl</a>
+ */
+public class ShardedFaceGallery implements FaceGallery, Closeable {
+
+	/**
+	 * 默认的租户前缀分隔符，如 {@code dept01:10086}
+	 */
+	public static final String DEFAULT_TENANT_SEPARATOR = ":";
+	/**
+	 * 未携带租户前缀的人脸所在的分片
+	 */
+	public static final String DEFAULT_TENANT = "";
+
+	private final int dimension;
+	private final FaceGalleryPartition partition;
+	private final int shardCount;
+	private final String tenantSeparator;
+	private final Function<String, FaceGallery> shardFactory;
+	private final ForkJoinPool pool;
+	private final ConcurrentHashMap<String, FaceGallery> shardsByKey = new ConcurrentHashMap<String, FaceGallery>();
+	/**
+	 * 全部分片的快照，新增分片时整体替换，检索时无需加锁
+	 */
+	private volatile FaceGallery[] shards = new FaceGallery[0];
+
+	/**
+	 * @param dimension 特征维度
+	 * @param partition 分片方式：HASH 在创建时即建立全部分片，TENANT 在租户的第一个人脸注册时创建其分片
+	 * @param shardCount 哈希分片的数量，按租户分片时忽略
+	 * @param tenantSeparator 人脸识别数据ID中租户前缀的分隔符，按哈希分片时忽略
+	 * @param shardFactory 按分片键（哈希分片为编号 "0".."n-1"，租户分片为租户名）创建分片
+	 * @param pool 并行检索的线程池
+	 */
+	public ShardedFaceGallery(int dimension, FaceGalleryPartition partition, int shardCount, String tenantSeparator,
+			Function<String, FaceGallery> shardFactory, ForkJoinPool pool) {
+		if (dimension <= 0) {
+			throw new IllegalArgumentException("dimension must be positive");
+		}
+		if (FaceGalleryPartition.HASH.equals(partition) && shardCount < 1) {
+			throw new IllegalArgumentException("shardCount must be positive");
+		}
+		if (FaceGalleryPartition.NONE.equals(partition)) {
+			throw new IllegalArgumentException("A sharded gallery requires the HASH or TENANT partition");
+		}
+		this.dimension = dimension;
+		this.partition = partition;
+		this.shardCount = shardCount;
+		this.tenantSeparator = tenantSeparator == null ? DEFAULT_TENANT_SEPARATOR : tenantSeparator;
+		this.shardFactory = shardFactory;
+		this.pool = pool;
+		if (FaceGalleryPartition.HASH.equals(partition)) {
+			for (int i = 0; i < shardCount; i++) {
+				shard(String.valueOf(i));
+			}
+		}
+	}
+
+	@Override
+	public int dimension() {
+		return dimension;
+	}
+
+	@Override
+	public int size() {
+		int size = 0;
+		for (FaceGallery shard : shards) {
+			size += shard.size();
+		}
+		return size;
+	}
+
+	@Override
+	public void add(String faceId, float[] feature) {
+		shard(shardKey(faceId)).add(faceId, feature);
+	}
+
+	/**
+	 * 按分片分组后批量注册，各分片可一次性构建索引
+	 */
+	@Override
+	public void addAll(Map<String, float[]> features) {
+		Map<String, Map<String, float[]>> grouped = new HashMap<String, Map<String, float[]>>();
+		for (Map.Entry<String, float[]> entry : features.entrySet()) {
+			grouped.computeIfAbsent(shardKey(entry.getKey()), k -> new LinkedHashMap<String, float[]>())
+					.put(entry.getKey(), entry.getValue());
+		}
+		for (Map.Entry<String, Map<String, float[]>> entry : grouped.entrySet()) {
+			shard(entry.getKey()).addAll(entry.getValue());
+		}
+	}
+
+	@Override
+	public boolean remove(String faceId) {
+		FaceGallery shard = shardsByKey.get(shardKey(faceId));
+		return shard != null && shard.remove(faceId);
+	}
+
+	@Override
+	public List<FaceMatch> search(float[] feature, int topK) {
+		FaceGallery[] snapshot = shards;
+		if (snapshot.length == 0 || topK <= 0) {
+			return Collections.emptyList();
+		}
+		if (snapshot.length == 1) {
+			return snapshot[0].search(feature, topK);
+		}
+		return pool.invoke(new SearchTask(snapshot, feature, topK, 0, snapshot.length));
+	}
+
+	/**
+	 * 租户分片模式下只检索租户提示对应的分片；其余情况检索全部分片
+	 */
+	@Override
+	public List<FaceMatch> search(float[] feature, int topK, String tenant) {
+		if (tenant == null || !FaceGalleryPartition.TENANT.equals(partition)) {
+			return search(feature, topK);
+		}
+		FaceGallery shard = shardsByKey.get(tenant);
+		return shard == null ? Collections.<FaceMatch>emptyList() : shard.search(feature, topK);
+	}
+
+	/**
+	 * @return 人脸所在分片的键：哈希分片为分片编号，租户分片为租户名
+	 */
+	protected String shardKey(String faceId) {
+		if (FaceGalleryPartition.TENANT.equals(partition)) {
+			int index = faceId.indexOf(tenantSeparator);
+			return index > 0 ? faceId.substring(0, index) : DEFAULT_TENANT;
+		}
+		int h = faceId.hashCode();
+		return String.valueOf(Math.floorMod(h ^ (h >>> 16), shardCount));
+	}
+
+	private FaceGallery shard(String key) {
+		FaceGallery shard = shardsByKey.get(key);
+		if (shard != null) {
+			return shard;
+		}
+		synchronized (shardsByKey) {
+			shard = shardsByKey.get(key);
+			if (shard == null) {
+				shard = shardFactory.apply(key);
+				if (shard.dimension() != dimension) {
+					throw new IllegalStateException("Shard dimension mismatch, expected " + dimension);
+				}
+				FaceGallery[] snapshot = Arrays.copyOf(shards, shards.length + 1);
+				snapshot[snapshot.length - 1] = shard;
+				shardsByKey.put(key, shard);
+				shards = snapshot;
+			}
+			return shard;
+		}
+	}
+
+	/**
+	 * 归并两个按得分降序排列的结果，最多保留 topK 个
+	 */
+	static List<FaceMatch> merge(List<FaceMatch> left, List<FaceMatch> right, int topK) {
+		if (left.isEmpty()) {
+			return right;
+		}
+		if (right.isEmpty()) {
+			return left;
+		}
+		int size = Math.min(topK, left.size() + right.size());
+		List<FaceMatch> merged = new ArrayList<FaceMatch>(size);
+		int i = 0;
+		int j = 0;
+		while (merged.size() < size) {
+			if (j >= right.size() || (i < left.size() && left.get(i).getScore() >= right.get(j).getScore())) {
+				merged.add(left.get(i++));
+			} else {
+				merged.add(right.get(j++));
+			}
+		}
+		return merged;
+	}
+
+	/**
+	 * 全部分片都持久化时才视为持久化；按租户分片时新租户的分片尚未创建，不参与判断
+	 */
+	@Override
+	public boolean isPersistent() {
+		FaceGallery[] snapshot = shards;
+		for (FaceGallery shard : snapshot) {
+			if (!shard.isPersistent()) {
+				return false;
+			}
+		}
+		return snapshot.length > 0;
+	}
+
+	@Override
+	public void flush() {
+		for (FaceGallery shard : shards) {
+			shard.flush();
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		IOException error = null;
+		for (FaceGallery shard : shards) {
+			if (shard instanceof Closeable) {
+				try {
+					((Closeable) shard).close();
+				} catch (IOException e) {
+					error = e;
+				}
+			}
+		}
+		if (error != null) {
+			throw error;
+		}
+	}
+
+	public FaceGalleryPartition getPartition() {
+		return partition;
+	}
+
+	/**
+	 * @return 当前的分片数量
+	 */
+	public int getShardCount() {
+		return shards.length;
+	}
+
+	public ForkJoinPool getPool() {
+		return pool;
+	}
+
+	@SuppressWarnings("serial")
+	private static class SearchTask extends RecursiveTask<List<FaceMatch>> {
+
+		private final FaceGallery[] shards;
+		private final float[] feature;
+		private final int topK;
+		private final int from;
+		private final int to;
+
+		SearchTask(FaceGallery[] shards, float[] feature, int topK, int from, int to) {
+			this.shards = shards;
+			this.feature = feature;
+			this.topK = topK;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected List<FaceMatch> compute() {
+			if (to - from == 1) {
+				return shards[from].search(feature, topK);
+			}
+			int mid = (from + to) >>> 1;
+			SearchTask left = new SearchTask(shards, feature, topK, from, mid);
+			left.fork();
+			List<FaceMatch> right = new SearchTask(shards, feature, topK, mid, to).compute();
+			return merge(left.join(), right, topK);
+		}
+
+	}
+
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.gallery;
+
+/**
+ * 基于原始类型数组的定长 topK 收集器，扫描过程中不产生对象分配；k 通常很小，插入排序即可
+ * @author ： <a href="https://github.com/hiwepy">wandl</a>
+ */
+final class TopK {
+
+	private final int[] slots;
+	private final float[] scores;
+	private int size;
+
+	TopK(int k) {
+		this.slots = new int[k];
+		this.scores = new float[k];
+	}
+
+	/**
+	 * @return 当前收集结果中的最低得分；未满时返回负无穷
+	 */
+	float threshold() {
+		return size < scores.length ? Float.NEGATIVE_INFINITY : scores[size - 1];
+	}
+
+	/**
+	 * NaN 得分直接丢弃，否则会因比较恒为 false 而排在首位
+	 */
+	void offer(int slot, float score) {
+		if (!(score > threshold())) {
+			return;
+		}
+		int i = size < scores.length ? size++ : size - 1;
+		while (i > 0 && scores[i - 1] < score) {
+			scores[i] = scores[i - 1];
+			slots[i] = slots[i - 1];
+			i--;
+		}
+		scores[i] = score;
+		slots[i] = slot;
+	}
+
+	void merge(TopK other) {
+		for (int i = 0; i < other.size; i++) {
+			offer(other.slots[i], other.scores[i]);
+		}
+	}
+
+	int size() {
+		return size;
+	}
+
+	int slot(int i) {
+		return slots[i];
+	}
+
+	float score(int i) {
+		return scores[i];
+	}
+
+}
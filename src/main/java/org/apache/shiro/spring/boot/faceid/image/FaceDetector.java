@@ -0,0 +1,35 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.image;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+/**
+ * 人脸检测 SPI：仅定位人脸区域，不做识别，供提交前的人脸数量检查与人脸区域裁剪使用
+ * @author 		： <a href="https://github.com/hiwepy">wandl</a>
+ */
+public interface FaceDetector {
+
+	/**
+	 * 检测图片中的人脸
+	 * @param image 待检测图片
+	 * @return 人脸区域（图片坐标），未检测到时返回空列表
+	 */
+	List<Rectangle> detect(BufferedImage image);
+
+}
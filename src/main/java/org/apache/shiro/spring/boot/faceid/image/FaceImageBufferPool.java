@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.image;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 人脸图片缓冲区池：按 2 的幂分档缓存堆内 ByteBuffer，避免突发登录时每个请求重复分配数百 KB 的图片缓冲。
+ * 未归还的缓冲区由 GC 正常回收，不会造成泄漏。
+ * @author ： <a href="https://github.com/hiwepy">wandl</a>
+ */
+public class FaceImageBufferPool {
+
+	/**
+	 * 最小分档：16KB
+	 */
+	private static final int MIN_SHIFT = 14;
+	/**
+	 * 最大分档：16MB，超出的缓冲区不入池
+	 */
+	private static final int MAX_SHIFT = 24;
+
+	private final ConcurrentLinkedQueue<ByteBuffer>[] buckets;
+	private final AtomicInteger[] counts;
+	private final int maxPerBucket;
+
+	public FaceImageBufferPool() {
+		this(16);
+	}
+
+	@SuppressWarnings("unchecked")
+	public FaceImageBufferPool(int maxPerBucket) {
+		this.maxPerBucket = maxPerBucket;
+		this.buckets = new ConcurrentLinkedQueue[MAX_SHIFT - MIN_SHIFT + 1];
+		this.counts = new AtomicInteger[buckets.length];
+		for (int i = 0; i < buckets.length; i++) {
+			buckets[i] = new ConcurrentLinkedQueue<ByteBuffer>();
+			counts[i] = new AtomicInteger();
+		}
+	}
+
+	/**
+	 * 获取容量不小于 capacity 的缓冲区（position 为 0，limit 为容量）
+	 */
+	public ByteBuffer acquire(int capacity) {
+		int bucket = bucket(capacity);
+		if (bucket < 0) {
+			return ByteBuffer.allocate(capacity);
+		}
+		ByteBuffer buffer = buckets[bucket].poll();
+		if (buffer == null) {
+			return ByteBuffer.allocate(1 << (bucket + MIN_SHIFT));
+		}
+		counts[bucket].decrementAndGet();
+		buffer.clear();
+		return buffer;
+	}
+
+	/**
+	 * 归还缓冲区；非池中分档大小或分档已满时直接丢弃
+	 */
+	public void release(ByteBuffer buffer) {
+		if (buffer == null || !buffer.hasArray()) {
+			return;
+		}
+		int capacity = buffer.capacity();
+		int bucket = bucket(capacity);
+		if (bucket < 0 || capacity != 1 << (bucket + MIN_SHIFT)) {
+			return;
+		}
+		if (counts[bucket].incrementAndGet() > maxPerBucket) {
+			counts[bucket].decrementAndGet();
+			return;
+		}
+		buckets[bucket].offer(buffer);
+	}
+
+	private static int bucket(int capacity) {
+		int shift = Math.max(MIN_SHIFT, 32 - Integer.numberOfLeadingZeros(Math.max(1, capacity) - 1));
+		return shift > MAX_SHIFT ? -1 : shift - MIN_SHIFT;
+	}
+
+}
@@ -0,0 +1,596 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.image;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 人脸图片的二进制载荷：解码后的图片字节保存在池化的缓冲区中，按只读 ByteBuffer / InputStream 视图提供给识别服务，
+ * 避免 请求字节 → base64 字符串 → 解码字节 → 再编码字符串 的多次拷贝。
+ * <ul>
+ * <li>multipart 文件、image/* 原始请求体：直接读入缓冲区，不经过 base64</li>
+ * <li>base64 文本（表单参数或请求体）：逐字符增量解码到缓冲区，不生成中间字节数组</li>
+ * </ul>
+ * 使用完毕后调用 {@link #close()} 将缓冲区归还到池中；需要跨线程共享时（如对冲请求）先 {@link #retain()}，
+ * 每次 retain 对应一次 close，引用计数归零时才真正归还。
+ * @author ： <a href="https://github.com/hiwepy">wandl</a>
+ */
+public final class FaceImagePayload implements Closeable {
+
+	private static final int DEFAULT_INITIAL_CAPACITY = 64 * 1024;
+	private static final int[] DECODE_TABLE = new int[128];
+	private static final long PRIME64_1 = 0x9E3779B185EBCA87L;
+	private static final long PRIME64_2 = 0xC2B2AE3D27D4EB4FL;
+	private static final long PRIME64_3 = 0x165667B19E3779F9L;
+	private static final long PRIME64_4 = 0x85EBCA77C2B2AE63L;
+	private static final long PRIME64_5 = 0x27D4EB2F165667C5L;
+
+	static {
+		Arrays.fill(DECODE_TABLE, -1);
+		String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+		for (int i = 0; i < alphabet.length(); i++) {
+			DECODE_TABLE[alphabet.charAt(i)] = i;
+		}
+		// URL 安全字符集
+		DECODE_TABLE['-'] = 62;
+		DECODE_TABLE['_'] = 63;
+	}
+
+	private final AtomicInteger refCnt = new AtomicInteger(1);
+	private final ByteBuffer buffer;
+	private final String contentType;
+	private final FaceImageBufferPool pool;
+
+	private FaceImagePayload(ByteBuffer buffer, String contentType, FaceImageBufferPool pool) {
+		this.buffer = buffer;
+		this.contentType = contentType;
+		this.pool = pool;
+	}
+
+	/**
+	 * 包装已有的图片字节（不拷贝、不入池）
+	 */
+	public static FaceImagePayload wrap(byte[] image, String contentType) {
+		return new FaceImagePayload(ByteBuffer.wrap(image), contentType, null);
+	}
+
+	/**
+	 * 读取二进制图片流（multipart 文件或 image/* 请求体）
+	 * @param input 图片输入流
+	 * @param contentType 图片类型
+	 * @param lengthHint 预估长度（如 Content-Length），未知时传 -1
+	 * @param maxBytes 允许的最大字节数
+	 * @param pool 缓冲区池
+	 * @return 图片载荷
+	 * @throws IOException 读取失败或超出大小限制
+	 */
+	public static FaceImagePayload read(InputStream input, String contentType, long lengthHint, int maxBytes,
+			FaceImageBufferPool pool) throws IOException {
+		if (lengthHint > maxBytes) {
+			throw new IOException("Face image exceeds " + maxBytes + " bytes");
+		}
+		ByteBuffer buffer = pool.acquire(lengthHint > 0 ? (int) lengthHint : DEFAULT_INITIAL_CAPACITY);
+		try {
+			while (true) {
+				if (!buffer.hasRemaining()) {
+					buffer = grow(buffer, maxBytes, pool);
+				}
+				int read = input.read(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+				if (read < 0) {
+					break;
+				}
+				buffer.position(buffer.position() + read);
+				if (buffer.position() > maxBytes) {
+					throw new IOException("Face image exceeds " + maxBytes + " bytes");
+				}
+			}
+		} catch (IOException e) {
+			pool.release(buffer);
+			throw e;
+		}
+		buffer.flip();
+		return new FaceImagePayload(buffer, contentType, pool);
+	}
+
+	/**
+	 * 增量解码 base64 文本（支持 data:image/...;base64, 前缀、换行及 URL 安全字符集）
+	 * @param base64 base64 文本
+	 * @param maxBytes 允许的最大字节数
+	 * @param pool 缓冲区池
+	 * @return 图片载荷
+	 * @throws IOException 非法 base64 或超出大小限制
+	 */
+	public static FaceImagePayload decode(CharSequence base64, int maxBytes, FaceImageBufferPool pool)
+			throws IOException {
+		int start = 0;
+		if (base64.length() > 5 && "data:".contentEquals(base64.subSequence(0, 5))) {
+			while (start < base64.length() && base64.charAt(start) != ',') {
+				start++;
+			}
+			start++;
+		}
+		long estimated = (long) (base64.length() - start) * 3 / 4;
+		if (estimated > (long) maxBytes + 3) {
+			throw new IOException("Face image exceeds " + maxBytes + " bytes");
+		}
+		ByteBuffer buffer = pool.acquire((int) Math.max(1, estimated));
+		Base64Decoder decoder = new Base64Decoder();
+		try {
+			for (int i = start, n = base64.length(); i < n && !decoder.finished; i++) {
+				if (buffer.remaining() < 3) {
+					buffer = grow(buffer, maxBytes, pool);
+				}
+				decoder.accept(base64.charAt(i), buffer);
+			}
+			if (buffer.remaining() < 3) {
+				buffer = grow(buffer, maxBytes, pool);
+			}
+			decoder.finish(buffer);
+			if (buffer.position() > maxBytes) {
+				throw new IOException("Face image exceeds " + maxBytes + " bytes");
+			}
+		} catch (IOException e) {
+			pool.release(buffer);
+			throw e;
+		}
+		buffer.flip();
+		return new FaceImagePayload(buffer, null, pool);
+	}
+
+	/**
+	 * 增量解码 base64 文本流（如 text/plain 请求体），按块读取，不在堆上生成完整的字符串
+	 */
+	public static FaceImagePayload decode(InputStream input, long lengthHint, int maxBytes, FaceImageBufferPool pool)
+			throws IOException {
+		Base64PayloadDecoder decoder = newBase64Decoder(lengthHint, maxBytes, pool);
+		ByteBuffer chunk = pool.acquire(8192);
+		byte[] bytes = chunk.array();
+		try {
+			int read;
+			while (!decoder.isFinished() && (read = input.read(bytes, 0, bytes.length)) > 0) {
+				chunk.clear();
+				chunk.limit(read);
+				decoder.write(chunk);
+			}
+			return decoder.toPayload();
+		} finally {
+			decoder.close();
+			pool.release(chunk);
+		}
+	}
+
+	/**
+	 * 创建按块输入的 base64 解码器，用于请求体以多个缓冲区分段到达的场景（如 WebFlux 的 DataBuffer 流）
+	 * @param lengthHint 预估的 base64 文本长度（如 Content-Length），未知时传 -1
+	 * @param maxBytes 允许的最大字节数
+	 * @param pool 缓冲区池
+	 * @return 解码器，写完后调用 {@link Base64PayloadDecoder#toPayload()}
+	 */
+	public static Base64PayloadDecoder newBase64Decoder(long lengthHint, int maxBytes, FaceImageBufferPool pool) {
+		return new Base64PayloadDecoder(pool.acquire(lengthHint > 0 ? (int) Math.min(maxBytes, lengthHint * 3 / 4 + 3)
+				: DEFAULT_INITIAL_CAPACITY), maxBytes, pool);
+	}
+
+	/**
+	 * 创建写入池化缓冲区的输出流，用于重新编码后的图片（如裁剪、缩放后）
+	 * @param initialCapacity 初始容量
+	 * @param maxBytes 允许的最大字节数
+	 * @param pool 缓冲区池
+	 * @return 输出流，写完后调用 {@link PayloadOutputStream#toPayload(String)}
+	 */
+	public static PayloadOutputStream newOutputStream(int initialCapacity, int maxBytes, FaceImageBufferPool pool) {
+		return new PayloadOutputStream(pool.acquire(initialCapacity), maxBytes, pool);
+	}
+
+	private static ByteBuffer grow(ByteBuffer buffer, int maxBytes, FaceImageBufferPool pool) throws IOException {
+		if (buffer.position() >= maxBytes) {
+			throw new IOException("Face image exceeds " + maxBytes + " bytes");
+		}
+		ByteBuffer larger = pool.acquire((int) Math.min((long) maxBytes + 3, (long) buffer.capacity() << 1));
+		buffer.flip();
+		larger.put(buffer);
+		pool.release(buffer);
+		return larger;
+	}
+
+	/**
+	 * @return 图片字节数
+	 */
+	public int length() {
+		return buffer.limit();
+	}
+
+	public String getContentType() {
+		return contentType;
+	}
+
+	/**
+	 * @return 图片字节的只读视图（position 为 0，limit 为图片长度）
+	 */
+	public ByteBuffer asByteBuffer() {
+		checkReleased();
+		return buffer.asReadOnlyBuffer();
+	}
+
+	/**
+	 * @return 读取图片字节的输入流，不拷贝数据
+	 */
+	public InputStream asInputStream() {
+		checkReleased();
+		return new ByteArrayInputStream(buffer.array(), buffer.arrayOffset(), buffer.limit());
+	}
+
+	/**
+	 * @return 图片字节的副本，供只接受 byte[] 的识别接口使用
+	 */
+	public byte[] toByteArray() {
+		checkReleased();
+		return Arrays.copyOfRange(buffer.array(), buffer.arrayOffset(), buffer.arrayOffset() + buffer.limit());
+	}
+
+	/**
+	 * 计算图片字节的 64 位非加密哈希（xxHash64），用于识别结果缓存等场景的快速去重
+	 * @param seed 哈希种子；进程内随机选取可避免构造碰撞
+	 * @return 哈希值
+	 */
+	public long hash(long seed) {
+		checkReleased();
+		ByteBuffer buf = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		buf.position(0);
+		int len = buf.remaining();
+		long h;
+		if (len >= 32) {
+			long v1 = seed + PRIME64_1 + PRIME64_2;
+			long v2 = seed + PRIME64_2;
+			long v3 = seed;
+			long v4 = seed - PRIME64_1;
+			do {
+				v1 = round(v1, buf.getLong());
+				v2 = round(v2, buf.getLong());
+				v3 = round(v3, buf.getLong());
+				v4 = round(v4, buf.getLong());
+			} while (buf.remaining() >= 32);
+			h = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+			h = mergeRound(h, v1);
+			h = mergeRound(h, v2);
+			h = mergeRound(h, v3);
+			h = mergeRound(h, v4);
+		} else {
+			h = seed + PRIME64_5;
+		}
+		h += len;
+		while (buf.remaining() >= 8) {
+			h ^= round(0, buf.getLong());
+			h = Long.rotateLeft(h, 27) * PRIME64_1 + PRIME64_4;
+		}
+		if (buf.remaining() >= 4) {
+			h ^= (buf.getInt() & 0xFFFFFFFFL) * PRIME64_1;
+			h = Long.rotateLeft(h, 23) * PRIME64_2 + PRIME64_3;
+		}
+		while (buf.hasRemaining()) {
+			h ^= (buf.get() & 0xFFL) * PRIME64_5;
+			h = Long.rotateLeft(h, 11) * PRIME64_1;
+		}
+		h ^= h >>> 33;
+		h *= PRIME64_2;
+		h ^= h >>> 29;
+		h *= PRIME64_3;
+		h ^= h >>> 32;
+		return h;
+	}
+
+	private static long round(long acc, long input) {
+		acc += input * PRIME64_2;
+		acc = Long.rotateLeft(acc, 31);
+		return acc * PRIME64_1;
+	}
+
+	private static long mergeRound(long acc, long val) {
+		acc ^= round(0, val);
+		return acc * PRIME64_1 + PRIME64_4;
+	}
+
+	/**
+	 * @return base64 编码的图片，仅供只接受 base64 的远程接口使用
+	 */
+	public String toBase64() {
+		checkReleased();
+		ByteBuffer encoded = Base64.getEncoder().encode(buffer.duplicate());
+		return new String(encoded.array(), 0, encoded.limit(), StandardCharsets.ISO_8859_1);
+	}
+
+	public boolean isReleased() {
+		return refCnt.get() <= 0;
+	}
+
+	/**
+	 * 增加一次引用，供额外的持有者（如并发的对冲请求）在使用期间防止缓冲区被归还
+	 * @return 当前载荷
+	 */
+	public FaceImagePayload retain() {
+		for (;;) {
+			int cnt = refCnt.get();
+			if (cnt <= 0) {
+				throw new IllegalStateException("Face image payload has already been released");
+			}
+			if (refCnt.compareAndSet(cnt, cnt + 1)) {
+				return this;
+			}
+		}
+	}
+
+	/**
+	 * 释放一次引用，引用计数归零时归还缓冲区；多余的调用无副作用
+	 */
+	@Override
+	public void close() {
+		for (;;) {
+			int cnt = refCnt.get();
+			if (cnt <= 0) {
+				return;
+			}
+			if (refCnt.compareAndSet(cnt, cnt - 1)) {
+				if (cnt == 1 && pool != null) {
+					pool.release(buffer);
+				}
+				return;
+			}
+		}
+	}
+
+	private void checkReleased() {
+		if (isReleased()) {
+			throw new IllegalStateException("Face image payload has already been released");
+		}
+	}
+
+	/**
+	 * 写入池化缓冲区的输出流：容量不足时按 2 倍从池中换取更大的缓冲区；
+	 * 未转换为载荷即关闭时归还缓冲区
+	 */
+	public static final class PayloadOutputStream extends OutputStream {
+
+		private final int maxBytes;
+		private final FaceImageBufferPool pool;
+		private ByteBuffer buffer;
+
+		PayloadOutputStream(ByteBuffer buffer, int maxBytes, FaceImageBufferPool pool) {
+			this.buffer = buffer;
+			this.maxBytes = maxBytes;
+			this.pool = pool;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			ensureOpen();
+			if (!buffer.hasRemaining()) {
+				buffer = grow(buffer, maxBytes, pool);
+			}
+			buffer.put((byte) b);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			ensureOpen();
+			while (len > 0) {
+				if (!buffer.hasRemaining()) {
+					buffer = grow(buffer, maxBytes, pool);
+				}
+				int n = Math.min(len, buffer.remaining());
+				buffer.put(b, off, n);
+				off += n;
+				len -= n;
+			}
+			if (buffer.position() > maxBytes) {
+				throw new IOException("Face image exceeds " + maxBytes + " bytes");
+			}
+		}
+
+		/**
+		 * 写入缓冲区中剩余的字节（如请求体的一个分段），堆外缓冲区同样直接拷贝，不经过中间数组
+		 */
+		public void write(ByteBuffer src) throws IOException {
+			ensureOpen();
+			while (src.hasRemaining()) {
+				if (!buffer.hasRemaining()) {
+					buffer = grow(buffer, maxBytes, pool);
+				}
+				if (src.remaining() <= buffer.remaining()) {
+					buffer.put(src);
+				} else {
+					ByteBuffer slice = src.duplicate();
+					slice.limit(slice.position() + buffer.remaining());
+					buffer.put(slice);
+					src.position(slice.position());
+				}
+			}
+			if (buffer.position() > maxBytes) {
+				throw new IOException("Face image exceeds " + maxBytes + " bytes");
+			}
+		}
+
+		/**
+		 * 将已写入的字节转换为图片载荷，缓冲区所有权随之转移
+		 * @param contentType 图片类型
+		 * @return 图片载荷
+		 */
+		public FaceImagePayload toPayload(String contentType) {
+			ensureOpen();
+			ByteBuffer written = buffer;
+			buffer = null;
+			written.flip();
+			return new FaceImagePayload(written, contentType, pool);
+		}
+
+		@Override
+		public void close() {
+			if (buffer != null) {
+				pool.release(buffer);
+				buffer = null;
+			}
+		}
+
+		private void ensureOpen() {
+			if (buffer == null) {
+				throw new IllegalStateException("Payload output stream is closed");
+			}
+		}
+
+	}
+
+	/**
+	 * 按块输入的 base64 解码器：每个分段逐字符解码到池化缓冲区，首个分段可带 data:image/...;base64, 前缀；
+	 * 未转换为载荷即关闭时归还缓冲区
+	 */
+	public static final class Base64PayloadDecoder implements Closeable {
+
+		private final int maxBytes;
+		private final FaceImageBufferPool pool;
+		private final Base64Decoder decoder = new Base64Decoder();
+		private ByteBuffer buffer;
+		private boolean prefix = true;
+
+		Base64PayloadDecoder(ByteBuffer buffer, int maxBytes, FaceImageBufferPool pool) {
+			this.buffer = buffer;
+			this.maxBytes = maxBytes;
+			this.pool = pool;
+		}
+
+		/**
+		 * 解码缓冲区中剩余的 base64 字符，读取后 position 移至 limit
+		 */
+		public void write(ByteBuffer chunk) throws IOException {
+			ensureOpen();
+			int i = chunk.position();
+			int limit = chunk.limit();
+			if (prefix) {
+				prefix = false;
+				if (limit - i > 5 && chunk.get(i) == 'd' && chunk.get(i + 1) == 'a' && chunk.get(i + 2) == 't'
+						&& chunk.get(i + 3) == 'a' && chunk.get(i + 4) == ':') {
+					while (i < limit && chunk.get(i) != ',') {
+						i++;
+					}
+					i++;
+				}
+			}
+			for (; i < limit && !decoder.finished; i++) {
+				if (buffer.remaining() < 3) {
+					buffer = grow(buffer, maxBytes, pool);
+				}
+				decoder.accept((char) (chunk.get(i) & 0xFF), buffer);
+			}
+			chunk.position(limit);
+		}
+
+		/**
+		 * @return 是否已读到填充符，之后的输入将被忽略
+		 */
+		public boolean isFinished() {
+			return decoder.finished;
+		}
+
+		/**
+		 * 结束解码并转换为图片载荷，缓冲区所有权随之转移
+		 * @return 图片载荷
+		 * @throws IOException base64 被截断或超出大小限制
+		 */
+		public FaceImagePayload toPayload() throws IOException {
+			ensureOpen();
+			if (buffer.remaining() < 3) {
+				buffer = grow(buffer, maxBytes, pool);
+			}
+			decoder.finish(buffer);
+			if (buffer.position() > maxBytes) {
+				throw new IOException("Face image exceeds " + maxBytes + " bytes");
+			}
+			ByteBuffer written = buffer;
+			buffer = null;
+			written.flip();
+			return new FaceImagePayload(written, null, pool);
+		}
+
+		@Override
+		public void close() {
+			if (buffer != null) {
+				pool.release(buffer);
+				buffer = null;
+			}
+		}
+
+		private void ensureOpen() {
+			if (buffer == null) {
+				throw new IllegalStateException("Base64 payload decoder is closed");
+			}
+		}
+
+	}
+
+	/**
+	 * base64 增量解码状态机：每累计 4 个字符输出 3 个字节，忽略空白字符，遇到填充符结束
+	 */
+	private static final class Base64Decoder {
+
+		private int bits;
+		private int count;
+		private boolean finished;
+
+		void accept(char c, ByteBuffer out) throws IOException {
+			if (c == '=') {
+				finished = true;
+				return;
+			}
+			if (c == '\r' || c == '\n' || c == ' ' || c == '\t') {
+				return;
+			}
+			int value = c < 128 ? DECODE_TABLE[c] : -1;
+			if (value < 0) {
+				throw new IOException("Illegal base64 character: " + c);
+			}
+			bits = (bits << 6) | value;
+			if (++count == 4) {
+				out.put((byte) (bits >> 16));
+				out.put((byte) (bits >> 8));
+				out.put((byte) bits);
+				bits = 0;
+				count = 0;
+			}
+		}
+
+		void finish(ByteBuffer out) throws IOException {
+			if (count == 2) {
+				out.put((byte) (bits >> 4));
+			} else if (count == 3) {
+				out.put((byte) (bits >> 10));
+				out.put((byte) (bits >> 2));
+			} else if (count == 1) {
+				throw new IOException("Truncated base64 image data");
+			}
+			count = 0;
+		}
+
+	}
+
+}
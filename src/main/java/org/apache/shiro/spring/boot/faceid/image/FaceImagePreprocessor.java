@@ -0,0 +1,387 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.image;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+
+/**
+ * 识别前的图片预处理：将手机上传的大图裁剪到人脸区域并缩放到识别所需的尺寸（默认最长边 400px），
+ * 以有限的 JPEG 质量重新编码到池化缓冲区，减少发往远程接口的流量和本地引擎的特征提取时间。
+ * <ol>
+ * <li>读取 JPEG 的 EXIF 方向（手机照片常以横向存储、由 Orientation 标记旋转显示）</li>
+ * <li>降采样解码一张分析图，按 EXIF 方向摆正后交由 {@link FaceDetector}（如有）定位人脸</li>
+ * <li>按人脸框（外扩 margin，换算回存储坐标）只解码该区域，并在解码时降采样到接近目标尺寸，不生成原尺寸位图</li>
+ * <li>按 EXIF 方向摆正，双线性缩放到目标尺寸后编码为 JPEG；重新编码不保留元数据，输出图片本身即为正向</li>
+ * </ol>
+ * 没有配置检测器或未检测到人脸时只做整体缩放；图片本身已足够小且无需旋转时原样返回。
+ * @author 		： <a href="https://github.com/hiwepy">wandl</a>
+ */
+public class FaceImagePreprocessor {
+
+	private final FaceImageBufferPool pool;
+	private FaceDetector detector;
+	/**
+	 * 输出图片的最长边（像素）
+	 */
+	private int targetSize = 400;
+	/**
+	 * 人脸检测用分析图的最长边（像素）
+	 */
+	private int analysisSize = 640;
+	/**
+	 * 人脸框向四周外扩的比例
+	 */
+	private float margin = 0.3f;
+	/**
+	 * JPEG 编码质量 (0, 1]
+	 */
+	private float quality = 0.85f;
+	/**
+	 * 输出图片允许的最大字节数
+	 */
+	private int maxBytes = 2 * 1024 * 1024;
+
+	public FaceImagePreprocessor(FaceImageBufferPool pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * @param payload 原始图片
+	 * @return 预处理后的图片；无需处理时返回原载荷
+	 * @throws IOException 图片无法解码或编码
+	 */
+	public FaceImagePayload process(FaceImagePayload payload) throws IOException {
+		int orientation;
+		try (InputStream input = payload.asInputStream()) {
+			orientation = readOrientation(input);
+		}
+		ImageReader reader = null;
+		try (InputStream input = payload.asInputStream(); ImageInputStream stream = ImageIO.createImageInputStream(input)) {
+			reader = reader(stream);
+			int width = reader.getWidth(0);
+			int height = reader.getHeight(0);
+			Rectangle region = new Rectangle(0, 0, width, height);
+			if (detector != null && Math.max(width, height) > targetSize) {
+				Rectangle face = detectFace(reader, width, height, orientation);
+				if (face != null) {
+					region = expand(face, width, height);
+				}
+			}
+			int longest = Math.max(region.width, region.height);
+			if (longest <= targetSize && region.width == width && region.height == height && orientation == 1) {
+				return payload;
+			}
+			ImageReadParam param = reader.getDefaultReadParam();
+			param.setSourceRegion(region);
+			int step = Math.max(1, longest / targetSize);
+			param.setSourceSubsampling(step, step, 0, 0);
+			BufferedImage image = scale(orient(reader.read(0, param), orientation), targetSize);
+			return encode(image);
+		} finally {
+			if (reader != null) {
+				reader.dispose();
+			}
+		}
+	}
+
+	/**
+	 * 在摆正的分析图上检测人脸
+	 * @return 人脸框（原图存储坐标），未检测到时为空
+	 */
+	private Rectangle detectFace(ImageReader reader, int width, int height, int orientation) throws IOException {
+		int step = Math.max(1, Math.max(width, height) / analysisSize);
+		ImageReadParam param = reader.getDefaultReadParam();
+		param.setSourceSubsampling(step, step, 0, 0);
+		BufferedImage analysis = orient(reader.read(0, param), orientation);
+		List<Rectangle> faces = detector.detect(analysis);
+		if (faces == null || faces.isEmpty()) {
+			return null;
+		}
+		// 取面积最大的人脸，换算回原图存储坐标
+		Rectangle largest = faces.get(0);
+		for (Rectangle face : faces) {
+			if ((long) face.width * face.height > (long) largest.width * largest.height) {
+				largest = face;
+			}
+		}
+		Rectangle stored = transform(inverse(orientation), analysis.getWidth(), analysis.getHeight())
+				.createTransformedShape(largest).getBounds();
+		return new Rectangle(stored.x * step, stored.y * step, stored.width * step, stored.height * step);
+	}
+
+	private Rectangle expand(Rectangle face, int width, int height) {
+		int dx = (int) (face.width * margin);
+		int dy = (int) (face.height * margin);
+		Rectangle region = new Rectangle(face.x - dx, face.y - dy, face.width + 2 * dx, face.height + 2 * dy);
+		return region.intersection(new Rectangle(0, 0, width, height));
+	}
+
+	/**
+	 * 按 EXIF 方向将存储的图片摆正
+	 */
+	public static BufferedImage orient(BufferedImage source, int orientation) {
+		if (orientation <= 1 || orientation > 8) {
+			return source;
+		}
+		int width = source.getWidth();
+		int height = source.getHeight();
+		boolean transposed = orientation >= 5;
+		BufferedImage target = new BufferedImage(transposed ? height : width, transposed ? width : height,
+				BufferedImage.TYPE_3BYTE_BGR);
+		Graphics2D g = target.createGraphics();
+		try {
+			g.drawImage(source, transform(orientation, width, height), null);
+		} finally {
+			g.dispose();
+		}
+		return target;
+	}
+
+	/**
+	 * 存储坐标到显示坐标的变换
+	 * @param orientation EXIF 方向 1-8
+	 * @param width 存储宽度
+	 * @param height 存储高度
+	 */
+	private static AffineTransform transform(int orientation, int width, int height) {
+		switch (orientation) {
+		case 2: // 水平翻转
+			return new AffineTransform(-1, 0, 0, 1, width, 0);
+		case 3: // 旋转 180°
+			return new AffineTransform(-1, 0, 0, -1, width, height);
+		case 4: // 垂直翻转
+			return new AffineTransform(1, 0, 0, -1, 0, height);
+		case 5: // 沿主对角线翻转
+			return new AffineTransform(0, 1, 1, 0, 0, 0);
+		case 6: // 顺时针旋转 90°
+			return new AffineTransform(0, 1, -1, 0, height, 0);
+		case 7: // 沿副对角线翻转
+			return new AffineTransform(0, -1, -1, 0, height, width);
+		case 8: // 逆时针旋转 90°
+			return new AffineTransform(0, -1, 1, 0, 0, width);
+		default:
+			return new AffineTransform();
+		}
+	}
+
+	/**
+	 * 显示坐标换算回存储坐标所用的方向：两个 90° 旋转互逆，其余变换自逆
+	 */
+	private static int inverse(int orientation) {
+		return orientation == 6 ? 8 : orientation == 8 ? 6 : orientation;
+	}
+
+	/**
+	 * 读取 JPEG APP1 段中 EXIF IFD0 的 Orientation（0x0112）标记，只扫描图片头，不解码像素
+	 * @return EXIF 方向 1-8；非 JPEG、没有 EXIF 或数据不完整时为 1
+	 */
+	public static int readOrientation(InputStream input) throws IOException {
+		DataInputStream data = new DataInputStream(input);
+		try {
+			if (data.readUnsignedShort() != 0xFFD8) {
+				return 1;
+			}
+			while (true) {
+				int marker = data.readUnsignedShort();
+				// 扫描到图像数据（SOS）或结束标记时不再有元数据段
+				if ((marker & 0xFF00) != 0xFF00 || marker == 0xFFDA || marker == 0xFFD9) {
+					return 1;
+				}
+				int length = data.readUnsignedShort() - 2;
+				if (length < 0) {
+					return 1;
+				}
+				if (marker == 0xFFE1) {
+					byte[] segment = new byte[length];
+					data.readFully(segment);
+					int orientation = exifOrientation(segment);
+					// APP1 也可能是 XMP，继续查找
+					if (orientation > 0) {
+						return orientation;
+					}
+				} else if (data.skipBytes(length) < length) {
+					return 1;
+				}
+			}
+		} catch (EOFException e) {
+			return 1;
+		}
+	}
+
+	/**
+	 * @return EXIF 方向，段内没有 EXIF 或方向标记时为 0
+	 */
+	private static int exifOrientation(byte[] segment) {
+		// "Exif\0\0" 之后为 TIFF 头：字节序、42、IFD0 偏移
+		if (segment.length < 14 || segment[0] != 'E' || segment[1] != 'x' || segment[2] != 'i' || segment[3] != 'f'
+				|| segment[4] != 0 || segment[5] != 0) {
+			return 0;
+		}
+		int tiff = 6;
+		boolean littleEndian = segment[tiff] == 'I' && segment[tiff + 1] == 'I';
+		if (!littleEndian && !(segment[tiff] == 'M' && segment[tiff + 1] == 'M')) {
+			return 0;
+		}
+		long ifd = readInt(segment, tiff + 4, littleEndian);
+		if (ifd < 8 || tiff + ifd + 2 > segment.length) {
+			return 0;
+		}
+		int entries = readShort(segment, tiff + (int) ifd, littleEndian);
+		for (int i = 0; i < entries; i++) {
+			int entry = tiff + (int) ifd + 2 + i * 12;
+			if (entry + 12 > segment.length) {
+				return 0;
+			}
+			if (readShort(segment, entry, littleEndian) == 0x0112) {
+				int orientation = readShort(segment, entry + 8, littleEndian);
+				return orientation >= 1 && orientation <= 8 ? orientation : 0;
+			}
+		}
+		return 0;
+	}
+
+	private static int readShort(byte[] bytes, int offset, boolean littleEndian) {
+		int b0 = bytes[offset] & 0xFF;
+		int b1 = bytes[offset + 1] & 0xFF;
+		return littleEndian ? b1 << 8 | b0 : b0 << 8 | b1;
+	}
+
+	private static long readInt(byte[] bytes, int offset, boolean littleEndian) {
+		int high = readShort(bytes, littleEndian ? offset + 2 : offset, littleEndian);
+		int low = readShort(bytes, littleEndian ? offset : offset + 2, littleEndian);
+		return (long) high << 16 | low;
+	}
+
+	private static BufferedImage scale(BufferedImage source, int targetSize) {
+		int longest = Math.max(source.getWidth(), source.getHeight());
+		if (longest <= targetSize && source.getType() == BufferedImage.TYPE_3BYTE_BGR) {
+			return source;
+		}
+		double ratio = Math.min(1d, (double) targetSize / longest);
+		int width = Math.max(1, (int) Math.round(source.getWidth() * ratio));
+		int height = Math.max(1, (int) Math.round(source.getHeight() * ratio));
+		// JPEG 不支持透明通道，统一绘制到 BGR 位图
+		BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+		Graphics2D g = target.createGraphics();
+		try {
+			g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+			g.drawImage(source, 0, 0, width, height, null);
+		} finally {
+			g.dispose();
+		}
+		return target;
+	}
+
+	private FaceImagePayload encode(BufferedImage image) throws IOException {
+		Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpeg");
+		if (!writers.hasNext()) {
+			throw new IOException("No JPEG encoder available");
+		}
+		ImageWriter writer = writers.next();
+		FaceImagePayload.PayloadOutputStream out = FaceImagePayload.newOutputStream(64 * 1024, maxBytes, pool);
+		try {
+			try (ImageOutputStream stream = ImageIO.createImageOutputStream(out)) {
+				writer.setOutput(stream);
+				ImageWriteParam param = writer.getDefaultWriteParam();
+				param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+				param.setCompressionQuality(quality);
+				writer.write(null, new IIOImage(image, null, null), param);
+			}
+			return out.toPayload("image/jpeg");
+		} finally {
+			writer.dispose();
+			out.close();
+		}
+	}
+
+	private static ImageReader reader(ImageInputStream stream) throws IOException {
+		Iterator<ImageReader> readers = stream == null ? null : ImageIO.getImageReaders(stream);
+		if (readers == null || !readers.hasNext()) {
+			throw new IOException("Unsupported face image format");
+		}
+		ImageReader reader = readers.next();
+		reader.setInput(stream, true, true);
+		return reader;
+	}
+
+	public FaceDetector getDetector() {
+		return detector;
+	}
+
+	public void setDetector(FaceDetector detector) {
+		this.detector = detector;
+	}
+
+	public int getTargetSize() {
+		return targetSize;
+	}
+
+	public void setTargetSize(int targetSize) {
+		this.targetSize = targetSize;
+	}
+
+	public int getAnalysisSize() {
+		return analysisSize;
+	}
+
+	public void setAnalysisSize(int analysisSize) {
+		this.analysisSize = analysisSize;
+	}
+
+	public float getMargin() {
+		return margin;
+	}
+
+	public void setMargin(float margin) {
+		this.margin = margin;
+	}
+
+	public float getQuality() {
+		return quality;
+	}
+
+	public void setQuality(float quality) {
+		this.quality = quality;
+	}
+
+	public int getMaxBytes() {
+		return maxBytes;
+	}
+
+	public void setMaxBytes(int maxBytes) {
+		this.maxBytes = maxBytes;
+	}
+
+}
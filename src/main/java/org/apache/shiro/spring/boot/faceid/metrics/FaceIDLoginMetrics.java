@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.metrics;
+
+/**
+ * 人脸登录各环节的耗时与结果记录；未配置 MeterRegistry 时使用 {@link #NONE}，不读取时钟也不产生对象
+ * <pre>
+ * long start = metrics.start();
+ * ...
+ * metrics.record(FaceIDLoginMetrics.STAGE_DECODE, provider, start, error);
+ * </pre>
+ * @author 		： <a href="https://github.com/hiwepy">wandl</a>
+ */
+public interface FaceIDLoginMetrics {
+
+	/**
+	 * 创建登录令牌（含图片读取）
+	 */
+	String STAGE_TOKEN = "token";
+	/**
+	 * 读取并解码人脸图片
+	 */
+	String STAGE_DECODE = "decode";
+	/**
+	 * 调用识别服务
+	 */
+	String STAGE_RECOGNITION = "recognition";
+	/**
+	 * 多后端路由中单个后端的调用
+	 */
+	String STAGE_BACKEND = "backend";
+	/**
+	 * Realm 加载账号认证信息
+	 */
+	String STAGE_LOGIN = "login";
+	/**
+	 * 登录成功处理（签发令牌、响应用户信息）
+	 */
+	String STAGE_SUCCESS = "success";
+	/**
+	 * 与识别服务无关的环节使用的 provider 标签值
+	 */
+	String NO_PROVIDER = "none";
+
+	/**
+	 * 不做任何记录
+	 */
+	FaceIDLoginMetrics NONE = new FaceIDLoginMetrics() {
+
+		@Override
+		public long start() {
+			return 0L;
+		}
+
+		@Override
+		public void record(String stage, String provider, long start, Throwable error) {
+		}
+
+	};
+
+	/**
+	 * @return 计时起点（纳秒）
+	 */
+	default long start() {
+		return System.nanoTime();
+	}
+
+	/**
+	 * 记录一次环节调用
+	 * @param stage 环节名称
+	 * @param provider 识别服务名称，无关环节使用 {@link #NO_PROVIDER}
+	 * @param start {@link #start()} 返回的计时起点
+	 * @param error 失败原因，成功时为 null
+	 */
+	void record(String stage, String provider, long start, Throwable error);
+
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.shiro.spring.boot.faceid.authc.BatchingFaceRecognitionProvider;
+import org.apache.shiro.spring.boot.faceid.authc.CachingFaceRecognitionProvider;
+import org.apache.shiro.spring.boot.faceid.authc.FaceRecognitionExecutor;
+import org.apache.shiro.spring.boot.faceid.authc.LimitingFaceRecognitionProvider;
+import org.apache.shiro.spring.boot.faceid.authc.PreprocessingFaceRecognitionProvider;
+import org.apache.shiro.spring.boot.faceid.authc.RoutingFaceRecognitionProvider;
+import org.apache.shiro.spring.boot.faceid.engine.FaceEnginePool;
+import org.apache.shiro.spring.boot.faceid.realm.FaceIDAuthorizationCache;
+import org.apache.shiro.spring.boot.faceid.realm.FaceIDStatefulAuthorizingRealm;
+import org.apache.shiro.spring.boot.faceid.screening.FaceImageScreening;
+import org.apache.shiro.spring.boot.faceid.throttle.FaceIDLoginThrottle;
+import org.apache.shiro.spring.boot.faceid.throttle.TokenBucketThrottle;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * 将已启用组件的内部统计导出为 Micrometer 指标（shiro.faceid.*）；未启用的组件不注册任何指标
+ * @author 		： <a href="https://github.com/hiwepy">wandl</a>
+ */
+public class FaceIDMeterBinder implements MeterBinder {
+
+	private RoutingFaceRecognitionProvider routingProvider;
+	private CachingFaceRecognitionProvider cachingProvider;
+	private BatchingFaceRecognitionProvider batchingProvider;
+	private PreprocessingFaceRecognitionProvider preprocessingProvider;
+	private LimitingFaceRecognitionProvider limitingProvider;
+	private FaceImageScreening screening;
+	private FaceIDLoginThrottle loginThrottle;
+	private FaceEnginePool<?> enginePool;
+	private FaceRecognitionExecutor recognitionExecutor;
+	private List<FaceIDStatefulAuthorizingRealm> realms = new ArrayList<FaceIDStatefulAuthorizingRealm>();
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		if (routingProvider != null) {
+			FunctionCounter.builder("shiro.faceid.routing.hedged", routingProvider, RoutingFaceRecognitionProvider::getHedgedCount)
+					.description("Hedged recognition requests").register(registry);
+			FunctionCounter.builder("shiro.faceid.routing.failover", routingProvider, RoutingFaceRecognitionProvider::getFailoverCount)
+					.description("Recognition requests retried on another backend").register(registry);
+			for (RoutingFaceRecognitionProvider.Backend backend : routingProvider.getBackends()) {
+				FunctionCounter.builder("shiro.faceid.routing.requests", backend, RoutingFaceRecognitionProvider.Backend::getRequestCount)
+						.tag("backend", backend.getName()).register(registry);
+				FunctionCounter.builder("shiro.faceid.routing.errors", backend, RoutingFaceRecognitionProvider.Backend::getErrorCount)
+						.tag("backend", backend.getName()).register(registry);
+			}
+		}
+		if (cachingProvider != null) {
+			FunctionCounter.builder("shiro.faceid.cache.requests", cachingProvider, CachingFaceRecognitionProvider::getHitCount)
+					.tag("result", "hit").register(registry);
+			FunctionCounter.builder("shiro.faceid.cache.requests", cachingProvider, CachingFaceRecognitionProvider::getMissCount)
+					.tag("result", "miss").register(registry);
+			FunctionCounter.builder("shiro.faceid.cache.evictions", cachingProvider, CachingFaceRecognitionProvider::getEvictionCount)
+					.register(registry);
+			Gauge.builder("shiro.faceid.cache.size", cachingProvider, CachingFaceRecognitionProvider::getSize).register(registry);
+		}
+		if (batchingProvider != null) {
+			FunctionCounter.builder("shiro.faceid.batch.batches", batchingProvider, BatchingFaceRecognitionProvider::getBatchCount)
+					.register(registry);
+			FunctionCounter.builder("shiro.faceid.batch.rejected", batchingProvider, BatchingFaceRecognitionProvider::getRejectedCount)
+					.register(registry);
+			Gauge.builder("shiro.faceid.batch.fill.rate", batchingProvider, BatchingFaceRecognitionProvider::getFillRate)
+					.register(registry);
+			Gauge.builder("shiro.faceid.batch.queue.size", batchingProvider, BatchingFaceRecognitionProvider::getQueueSize)
+					.register(registry);
+		}
+		if (preprocessingProvider != null) {
+			FunctionCounter.builder("shiro.faceid.preprocess.processed", preprocessingProvider,
+					PreprocessingFaceRecognitionProvider::getProcessedCount).register(registry);
+			Gauge.builder("shiro.faceid.preprocess.compression.ratio", preprocessingProvider,
+					PreprocessingFaceRecognitionProvider::getCompressionRatio).register(registry);
+		}
+		if (limitingProvider != null) {
+			Gauge.builder("shiro.faceid.limit.limit", limitingProvider, LimitingFaceRecognitionProvider::currentLimit)
+					.description("Adaptive concurrency limit of the recognition backends").register(registry);
+			Gauge.builder("shiro.faceid.limit.inflight", limitingProvider, LimitingFaceRecognitionProvider::getInflight)
+					.register(registry);
+			Gauge.builder("shiro.faceid.limit.queue.size", limitingProvider, LimitingFaceRecognitionProvider::getQueueSize)
+					.register(registry);
+			FunctionCounter.builder("shiro.faceid.limit.rejected", limitingProvider, LimitingFaceRecognitionProvider::getRejectedCount)
+					.description("Logins rejected because recognition was at capacity").register(registry);
+			FunctionCounter.builder("shiro.faceid.limit.drops", limitingProvider, LimitingFaceRecognitionProvider::getDropCount)
+					.description("Backend errors or slow calls that shrank the limit").register(registry);
+		}
+		if (screening != null) {
+			for (FaceImageScreening.Stage stage : screening.getStages()) {
+				FunctionCounter.builder("shiro.faceid.screening.rejected", stage, FaceImageScreening.Stage::getRejectedCount)
+						.tag("check", stage.getName()).register(registry);
+			}
+		}
+		if (loginThrottle != null) {
+			bindThrottle(registry, "ip", loginThrottle.getIpThrottle());
+			bindThrottle(registry, "face", loginThrottle.getFaceIdThrottle());
+		}
+		if (enginePool != null) {
+			Gauge.builder("shiro.faceid.engine.active", enginePool, FaceEnginePool::getActiveCount).register(registry);
+			Gauge.builder("shiro.faceid.engine.utilization", enginePool, FaceEnginePool::getUtilization).register(registry);
+			FunctionCounter.builder("shiro.faceid.engine.timeouts", enginePool, FaceEnginePool::getTimeoutCount).register(registry);
+			FunctionCounter.builder("shiro.faceid.engine.recreated", enginePool, FaceEnginePool::getRecreatedCount).register(registry);
+		}
+		if (recognitionExecutor != null) {
+			String type = recognitionExecutor.getType().name().toLowerCase();
+			Gauge.builder("shiro.faceid.executor.inflight", recognitionExecutor, FaceRecognitionExecutor::getInflight)
+					.tag("type", type).description("Recognitions submitted to the async executor and not yet finished").register(registry);
+			FunctionCounter.builder("shiro.faceid.executor.rejected", recognitionExecutor, FaceRecognitionExecutor::getRejectedCount)
+					.tag("type", type).register(registry);
+		}
+		for (FaceIDStatefulAuthorizingRealm realm : realms) {
+			if (realm.getAuthorizationCache() instanceof FaceIDAuthorizationCache) {
+				FaceIDAuthorizationCache<?, ?> cache = (FaceIDAuthorizationCache<?, ?>) realm.getAuthorizationCache();
+				FunctionCounter.builder("shiro.faceid.authz.cache.requests", cache, FaceIDAuthorizationCache::getHitCount)
+						.tag("realm", realm.getName()).tag("result", "hit").register(registry);
+				FunctionCounter.builder("shiro.faceid.authz.cache.requests", cache, FaceIDAuthorizationCache::getMissCount)
+						.tag("realm", realm.getName()).tag("result", "miss").register(registry);
+			}
+		}
+	}
+
+	private void bindThrottle(MeterRegistry registry, String dimension, TokenBucketThrottle throttle) {
+		if (throttle == null) {
+			return;
+		}
+		FunctionCounter.builder("shiro.faceid.throttle.rejected", throttle, TokenBucketThrottle::getRejectedCount)
+				.tag("key", dimension).description("Login attempts rejected by throttling").register(registry);
+		FunctionCounter.builder("shiro.faceid.throttle.evictions", throttle, TokenBucketThrottle::getEvictionCount)
+				.tag("key", dimension).register(registry);
+		FunctionCounter.builder("shiro.faceid.throttle.overflows", throttle, TokenBucketThrottle::getOverflowCount)
+				.tag("key", dimension).description("New keys limited by the shared overflow bucket because the key table was full")
+				.register(registry);
+		Gauge.builder("shiro.faceid.throttle.keys", throttle, TokenBucketThrottle::size).tag("key", dimension).register(registry);
+	}
+
+	public void setRoutingProvider(RoutingFaceRecognitionProvider routingProvider) {
+		this.routingProvider = routingProvider;
+	}
+
+	public void setCachingProvider(CachingFaceRecognitionProvider cachingProvider) {
+		this.cachingProvider = cachingProvider;
+	}
+
+	public void setBatchingProvider(BatchingFaceRecognitionProvider batchingProvider) {
+		this.batchingProvider = batchingProvider;
+	}
+
+	public void setPreprocessingProvider(PreprocessingFaceRecognitionProvider preprocessingProvider) {
+		this.preprocessingProvider = preprocessingProvider;
+	}
+
+	public void setLimitingProvider(LimitingFaceRecognitionProvider limitingProvider) {
+		this.limitingProvider = limitingProvider;
+	}
+
+	public void setScreening(FaceImageScreening screening) {
+		this.screening = screening;
+	}
+
+	public void setLoginThrottle(FaceIDLoginThrottle loginThrottle) {
+		this.loginThrottle = loginThrottle;
+	}
+
+	public void setEnginePool(FaceEnginePool<?> enginePool) {
+		this.enginePool = enginePool;
+	}
+
+	public void setRecognitionExecutor(FaceRecognitionExecutor recognitionExecutor) {
+		this.recognitionExecutor = recognitionExecutor;
+	}
+
+	public void setRealms(List<FaceIDStatefulAuthorizingRealm> realms) {
+		this.realms = realms;
+	}
+
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.metrics;
+
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * 基于 Micrometer 的人脸登录指标：每个环节记录到计时器 {@value #METRIC_NAME}，
+ * 标签为 stage、provider、outcome（success / failure）和 exception（异常类名，成功时为 none）。
+ * 计时器按标签组合缓存，热路径上不重复构建 Meter。
+ * @author 		： <a href="https://github.com/hiwepy">wandl</a>
+ */
+public class MicrometerFaceIDLoginMetrics implements FaceIDLoginMetrics {
+
+	public static final String METRIC_NAME = "shiro.faceid.login";
+
+	private final MeterRegistry registry;
+	private final ConcurrentMap<Key, Timer> timers = new ConcurrentHashMap<Key, Timer>();
+
+	public MicrometerFaceIDLoginMetrics(MeterRegistry registry) {
+		this.registry = registry;
+	}
+
+	@Override
+	public void record(String stage, String provider, long start, Throwable error) {
+		long elapsed = System.nanoTime() - start;
+		Class<?> errorType = unwrap(error);
+		Key key = new Key(stage, provider, errorType);
+		Timer timer = timers.get(key);
+		if (timer == null) {
+			timer = timers.computeIfAbsent(key, this::register);
+		}
+		timer.record(elapsed, TimeUnit.NANOSECONDS);
+	}
+
+	private Timer register(Key key) {
+		return Timer.builder(METRIC_NAME)
+				.description("Time spent in each stage of face login")
+				.tag("stage", key.stage)
+				.tag("provider", key.provider)
+				.tag("outcome", key.errorType == null ? "success" : "failure")
+				.tag("exception", key.errorType == null ? "none" : key.errorType.getSimpleName())
+				.register(registry);
+	}
+
+	private static Class<?> unwrap(Throwable error) {
+		Throwable cause = error;
+		while ((cause instanceof CompletionException || cause instanceof ExecutionException) && cause.getCause() != null) {
+			cause = cause.getCause();
+		}
+		return cause == null ? null : cause.getClass();
+	}
+
+	private static final class Key {
+
+		private final String stage;
+		private final String provider;
+		private final Class<?> errorType;
+		private final int hash;
+
+		Key(String stage, String provider, Class<?> errorType) {
+			this.stage = stage;
+			this.provider = provider == null ? NO_PROVIDER : provider;
+			this.errorType = errorType;
+			int h = stage.hashCode();
+			h = 31 * h + this.provider.hashCode();
+			this.hash = 31 * h + (errorType == null ? 0 : errorType.hashCode());
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return errorType == other.errorType && stage.equals(other.stage) && provider.equals(other.provider);
+		}
+
+	}
+
+}
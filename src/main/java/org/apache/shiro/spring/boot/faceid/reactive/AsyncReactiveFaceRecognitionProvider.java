@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.reactive;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import org.apache.shiro.authc.AuthenticationToken;
+import org.apache.shiro.spring.boot.faceid.FaceInfo;
+import org.apache.shiro.spring.boot.faceid.authc.AsyncFaceRecognitionProvider;
+import org.apache.shiro.spring.boot.faceid.authc.ExecutorAsyncFaceRecognitionProvider;
+import org.apache.shiro.spring.boot.faceid.token.FaceIDLoginToken;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * 将 {@link AsyncFaceRecognitionProvider} 适配为响应式接口；同步实现先经 {@link ExecutorAsyncFaceRecognitionProvider}
+ * 提交到识别线程池，事件循环线程只负责订阅与回调。
+ * <p>
+ * Mono 被取消时不取消识别任务：令牌的图片载荷在识别结束时才释放，缓冲区不会在读取中途被归还；
+ * 预处理替换的载荷同样由识别结束时释放，与 Servlet 异步登录一致。
+ * @author 		： <a href="https://github.com/hiwepy">wandl</a>
+ */
+public class AsyncReactiveFaceRecognitionProvider implements ReactiveFaceRecognitionProvider {
+
+	private final AsyncFaceRecognitionProvider delegate;
+
+	public AsyncReactiveFaceRecognitionProvider(AsyncFaceRecognitionProvider delegate) {
+		this.delegate = delegate;
+	}
+
+	@Override
+	public Mono<FaceInfo> loadFaceInfo(AuthenticationToken token) {
+		return Mono.create(sink -> {
+			CompletableFuture<FaceInfo> future;
+			try {
+				future = delegate.loadFaceInfoAsync(token);
+			} catch (RuntimeException e) {
+				// 如识别线程池拒绝任务
+				releasePayload(token);
+				sink.error(e);
+				return;
+			}
+			future.whenComplete((faceInfo, ex) -> {
+				releasePayload(token);
+				if (ex != null) {
+					sink.error(ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex);
+				} else if (faceInfo != null) {
+					sink.success(faceInfo);
+				} else {
+					sink.success();
+				}
+			});
+		});
+	}
+
+	private static void releasePayload(AuthenticationToken token) {
+		if (token instanceof FaceIDLoginToken) {
+			((FaceIDLoginToken) token).releasePayload();
+		}
+	}
+
+	public AsyncFaceRecognitionProvider getDelegate() {
+		return delegate;
+	}
+
+}
@@ -0,0 +1,690 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.reactive;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.shiro.authc.AuthenticationException;
+import org.apache.shiro.authc.AuthenticationInfo;
+import org.apache.shiro.biz.authc.AuthcResponse;
+import org.apache.shiro.biz.authz.principal.ShiroPrincipal;
+import org.apache.shiro.mgt.SecurityManager;
+import org.apache.shiro.spring.boot.faceid.FaceInfo;
+import org.apache.shiro.spring.boot.faceid.authc.FaceIDAuthenticatingFilter;
+import org.apache.shiro.spring.boot.faceid.exception.AuthenticationFaceIDNotFoundException;
+import org.apache.shiro.spring.boot.faceid.exception.AuthenticationOverloadException;
+import org.apache.shiro.spring.boot.faceid.image.FaceImageBufferPool;
+import org.apache.shiro.spring.boot.faceid.image.FaceImagePayload;
+import org.apache.shiro.spring.boot.faceid.image.FaceImagePayload.Base64PayloadDecoder;
+import org.apache.shiro.spring.boot.faceid.image.FaceImagePayload.PayloadOutputStream;
+import org.apache.shiro.spring.boot.faceid.metrics.FaceIDLoginMetrics;
+import org.apache.shiro.spring.boot.faceid.throttle.FaceIDLoginThrottle;
+import org.apache.shiro.spring.boot.faceid.token.FaceIDLoginToken;
+import org.apache.shiro.spring.boot.faceid.token.FaceIDSessionTokenCodec;
+import org.apache.shiro.subject.SimplePrincipalCollection;
+import org.apache.shiro.subject.Subject;
+import org.apache.shiro.subject.support.DelegatingSubject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.Ordered;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.multipart.FormFieldPart;
+import org.springframework.http.codec.multipart.Part;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.util.PathMatcher;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+
+import com.alibaba.fastjson.JSONObject;
+import com.google.common.collect.Maps;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * 人脸识别 认证 (authentication) 的 WebFlux 过滤器，{@link FaceIDAuthenticatingFilter} 的响应式版本：
+ * <ul>
+ * <li>登录地址的 POST 请求：请求体按 DataBuffer 分段写入池化缓冲区（image/* 与 multipart 文件直接拷贝，text/plain 按 base64 增量解码），
+ * 不在堆上拼接完整的请求体；识别通过 {@link ReactiveFaceRecognitionProvider} 进行，Realm 认证等阻塞调用在识别线程池上执行，
+ * 事件循环线程只负责读写与回调</li>
+ * <li>其余请求：校验 {@link FaceIDSessionTokenCodec} 签发的会话令牌，通过后将 {@link Subject} 放入请求属性与 Reactor Context，
+ * 由 {@link #currentSubject()} 或 {@link #getSubject(ServerWebExchange)} 获取</li>
+ * </ul>
+ * 登录只调用 {@link SecurityManager#authenticate(org.apache.shiro.authc.AuthenticationToken)}，不创建会话，也不依赖线程绑定的
+ * {@link org.apache.shiro.util.ThreadContext}；之后的请求以会话令牌认证。响应状态码与 JSON 中的 code 一致，客户端无需区分 Ajax 请求。
+ * @author 		： <a href="https://github.com/hiwepy">wandl</a>
+ */
+public class FaceIDAuthenticationWebFilter implements WebFilter, Ordered {
+
+	private static final Logger LOG = LoggerFactory.getLogger(FaceIDAuthenticationWebFilter.class);
+	/**
+	 * 已认证的 Subject 在请求属性中的名称
+	 */
+	public static final String SUBJECT_ATTRIBUTE = FaceIDAuthenticationWebFilter.class.getName() + ".SUBJECT";
+	public static final String DEFAULT_LOGIN_URL = "/login/faceid";
+	/**
+	 * 默认顺序，与 Spring Security 的 WebFilterChainProxy 相同
+	 */
+	public static final int DEFAULT_ORDER = -100;
+	private static final String BEARER_PREFIX = "Bearer ";
+	/**
+	 * 请求体长度未知时的初始缓冲区容量
+	 */
+	private static final int DEFAULT_INITIAL_CAPACITY = 64 * 1024;
+	private static final byte[] UNAUTHENTICATED_BODY = toJSONBytes(AuthcResponse.fail(HttpStatus.UNAUTHORIZED.value(),
+			"Attempting to access a path which requires authentication. "));
+	private static final byte[] LOGIN_FAILURE_BODY = toJSONBytes(AuthcResponse.fail(HttpStatus.UNAUTHORIZED.value(),
+			"Authentication Failure."));
+	private static final byte[] OVERLOADED_BODY = toJSONBytes(AuthcResponse.fail(AuthenticationOverloadException.SC_SERVICE_UNAVAILABLE,
+			"Face recognition is busy, please retry later."));
+	private static final byte[] THROTTLED_BODY = toJSONBytes(AuthcResponse.fail(AuthenticationOverloadException.SC_TOO_MANY_REQUESTS,
+			"Too many face login attempts, please retry later."));
+
+	private final SecurityManager securityManager;
+	private final ReactiveFaceRecognitionProvider faceRecognitionProvider;
+	private final String recognitionProviderName;
+	/**
+	 * 执行 Realm 认证等阻塞调用的调度器；默认 boundedElastic，自动配置中与识别共用识别线程池
+	 */
+	private Scheduler loginScheduler = Schedulers.boundedElastic();
+	private PathMatcher pathMatcher = new AntPathMatcher();
+	private String loginUrl = DEFAULT_LOGIN_URL;
+	private List<String> anonPaths = new ArrayList<String>();
+	private List<String> authcPaths = new ArrayList<String>();
+	private int order = DEFAULT_ORDER;
+	private long recognitionTimeout = FaceIDAuthenticatingFilter.DEFAULT_ASYNC_TIMEOUT;
+	private int rejectedRetryAfter = FaceIDAuthenticatingFilter.DEFAULT_REJECTED_RETRY_AFTER;
+	private FaceImageBufferPool bufferPool = new FaceImageBufferPool();
+	private String faceParam = FaceIDAuthenticatingFilter.DEFAULT_FACE_PARAM;
+	private String faceTypeParam = FaceIDAuthenticatingFilter.DEFAULT_FACE_TYPE_PARAM;
+	private String faceTokenParam = FaceIDAuthenticatingFilter.DEFAULT_FACE_TOKEN_PARAM;
+	private String tenantParam = FaceIDAuthenticatingFilter.DEFAULT_TENANT_PARAM;
+	private int maxImageBytes = FaceIDAuthenticatingFilter.DEFAULT_MAX_IMAGE_BYTES;
+	/**
+	 * 会话令牌签发与校验；为空时登录成功不签发令牌，其余请求均视为未认证
+	 */
+	private FaceIDSessionTokenCodec sessionTokenCodec;
+	private String sessionTokenHeader = FaceIDAuthenticatingFilter.DEFAULT_SESSION_TOKEN_HEADER;
+	/**
+	 * 登录地址的非 POST 请求响应，内容仅随登录地址变化，首次使用时序列化
+	 */
+	private volatile byte[] loginMethodNotAllowedBody;
+	private FaceIDLoginMetrics loginMetrics = FaceIDLoginMetrics.NONE;
+	private FaceIDLoginThrottle loginThrottle;
+	private String throttleKeyParam = FaceIDAuthenticatingFilter.DEFAULT_FACE_TOKEN_PARAM;
+
+	/**
+	 * @param securityManager 执行认证与授权的 SecurityManager
+	 * @param faceRecognitionProvider 响应式人脸识别
+	 */
+	public FaceIDAuthenticationWebFilter(SecurityManager securityManager,
+			ReactiveFaceRecognitionProvider faceRecognitionProvider) {
+		this.securityManager = securityManager;
+		this.faceRecognitionProvider = faceRecognitionProvider;
+		Object provider = faceRecognitionProvider instanceof AsyncReactiveFaceRecognitionProvider
+				? ((AsyncReactiveFaceRecognitionProvider) faceRecognitionProvider).getDelegate() : faceRecognitionProvider;
+		this.recognitionProviderName = provider == null ? FaceIDLoginMetrics.NO_PROVIDER
+				: ClassUtils.getShortName(ClassUtils.getUserClass(provider));
+		this.authcPaths.add("/**");
+	}
+
+	@Override
+	public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+		ServerHttpRequest request = exchange.getRequest();
+		String path = request.getPath().pathWithinApplication().value();
+		if (pathMatcher.match(getLoginUrl(), path)) {
+			if (request.getMethod() != HttpMethod.POST) {
+				if (LOG.isTraceEnabled()) {
+					LOG.trace("Authentication url [" + getLoginUrl() + "] Not Http Post request.");
+				}
+				byte[] body = loginMethodNotAllowedBody;
+				if (body == null) {
+					body = toJSONBytes(AuthcResponse.fail(HttpStatus.BAD_REQUEST.value(),
+							"Authentication url [" + getLoginUrl() + "] Not Http Post request."));
+					loginMethodNotAllowedBody = body;
+				}
+				return writeJSONBody(exchange, HttpStatus.BAD_REQUEST, body);
+			}
+			return executeLogin(exchange);
+		}
+		// 已签发的会话令牌：验签即可恢复身份，无需再次人脸识别
+		Subject subject = resolveSubject(request);
+		if (subject != null) {
+			exchange.getAttributes().put(SUBJECT_ATTRIBUTE, subject);
+			return chain.filter(exchange).subscriberContext(context -> context.put(Subject.class, subject));
+		}
+		if (!requiresAuthentication(path)) {
+			return chain.filter(exchange);
+		}
+		if (LOG.isTraceEnabled()) {
+			LOG.trace("Attempting to access a path which requires authentication. ");
+		}
+		return writeJSONBody(exchange, HttpStatus.UNAUTHORIZED, UNAUTHENTICATED_BODY);
+	}
+
+	/**
+	 * @return 当前请求已认证的 Subject，在下游处理器的响应式链中调用；未认证时为空
+	 */
+	public static Mono<Subject> currentSubject() {
+		return Mono.subscriberContext().filter(context -> context.hasKey(Subject.class))
+				.map(context -> context.get(Subject.class));
+	}
+
+	/**
+	 * @return 当前请求已认证的 Subject，未认证时为 null
+	 */
+	public static Subject getSubject(ServerWebExchange exchange) {
+		return exchange.getAttribute(SUBJECT_ATTRIBUTE);
+	}
+
+	protected boolean requiresAuthentication(String path) {
+		for (String pattern : getAnonPaths()) {
+			if (pathMatcher.match(pattern, path)) {
+				return false;
+			}
+		}
+		for (String pattern : getAuthcPaths()) {
+			if (pathMatcher.match(pattern, path)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * 校验请求携带的会话令牌，通过时构建已认证且不创建会话的 Subject
+	 */
+	protected Subject resolveSubject(ServerHttpRequest request) {
+		if (getSessionTokenCodec() == null) {
+			return null;
+		}
+		String token = resolveSessionToken(request);
+		ShiroPrincipal principal = token == null ? null : getSessionTokenCodec().verify(token);
+		if (principal == null) {
+			return null;
+		}
+		return new DelegatingSubject(new SimplePrincipalCollection(principal, FaceIDAuthenticatingFilter.SESSION_TOKEN_REALM),
+				true, getHost(request), null, false, getSecurityManager());
+	}
+
+	/**
+	 * 从请求头读取会话令牌，兼容 {@code Authorization: Bearer <token>}
+	 */
+	protected String resolveSessionToken(ServerHttpRequest request) {
+		String token = request.getHeaders().getFirst(getSessionTokenHeader());
+		if (token == null) {
+			token = request.getHeaders().getFirst("Authorization");
+		}
+		if (token != null && token.startsWith(BEARER_PREFIX)) {
+			token = token.substring(BEARER_PREFIX.length());
+		}
+		return token == null || token.isEmpty() ? null : token;
+	}
+
+	/**
+	 * 按请求类型解析人脸图片与登录参数：multipart 与表单由框架解析后再登录，image/* 与 text/plain 请求体在登录时按分段流式读取
+	 */
+	protected Mono<Void> executeLogin(ServerWebExchange exchange) {
+		ServerHttpRequest request = exchange.getRequest();
+		// 限流在解析请求体之前执行，目标人脸只从查询参数读取
+		FaceIDLoginThrottle throttle = getLoginThrottle();
+		if (throttle != null) {
+			int retryAfterSeconds = throttle.tryAcquire(getHost(request), getCleanParam(request, null, getThrottleKeyParam()));
+			if (retryAfterSeconds > 0) {
+				return onOverload(exchange, new AuthenticationOverloadException("Too many face login attempts.",
+						AuthenticationOverloadException.SC_TOO_MANY_REQUESTS, retryAfterSeconds));
+			}
+		}
+		MediaType contentType = request.getHeaders().getContentType();
+		if (contentType != null && MediaType.MULTIPART_FORM_DATA.isCompatibleWith(contentType)) {
+			return exchange.getMultipartData().flatMap(parts -> {
+				MultiValueMap<String, String> form = new LinkedMultiValueMap<String, String>();
+				for (Map.Entry<String, List<Part>> entry : parts.entrySet()) {
+					for (Part part : entry.getValue()) {
+						if (part instanceof FormFieldPart) {
+							form.add(entry.getKey(), ((FormFieldPart) part).value());
+						}
+					}
+				}
+				Part face = parts.getFirst(getFaceParam());
+				Mono<FaceImagePayload> payload;
+				if (face instanceof FormFieldPart) {
+					payload = decodePayload(((FormFieldPart) face).value());
+				} else if (face != null) {
+					MediaType partType = face.headers().getContentType();
+					payload = readPayload(face.content(), partType == null ? null : partType.toString(), -1);
+				} else {
+					payload = Mono.empty();
+				}
+				return login(exchange, form, payload);
+			});
+		}
+		if (contentType != null && MediaType.APPLICATION_FORM_URLENCODED.isCompatibleWith(contentType)) {
+			return exchange.getFormData().flatMap(form -> login(exchange, form, decodePayload(form.getFirst(getFaceParam()))));
+		}
+		long contentLength = request.getHeaders().getContentLength();
+		Mono<FaceImagePayload> payload;
+		if (contentType != null && "image".equalsIgnoreCase(contentType.getType())) {
+			payload = readPayload(request.getBody(), contentType.toString(), contentLength);
+		} else if (contentType != null && MediaType.TEXT_PLAIN.isCompatibleWith(contentType)) {
+			payload = decodePayload(request.getBody(), contentLength);
+		} else {
+			payload = decodePayload(request.getQueryParams().getFirst(getFaceParam()));
+		}
+		return login(exchange, null, payload);
+	}
+
+	/**
+	 * 登录：读取图片 → 识别 → 在登录调度器上认证 → 签发令牌并响应。限流已在 {@link #executeLogin} 解析请求体之前完成
+	 */
+	protected Mono<Void> login(ServerWebExchange exchange, MultiValueMap<String, String> form,
+			Mono<FaceImagePayload> payload) {
+		ServerHttpRequest request = exchange.getRequest();
+		String host = getHost(request);
+		FaceIDLoginToken token = new FaceIDLoginToken();
+		token.setHost(host);
+		token.setFaceType(getCleanParam(request, form, getFaceTypeParam()));
+		token.setFaceToken(getCleanParam(request, form, getFaceTokenParam()));
+		token.setTenant(getCleanParam(request, form, getTenantParam()));
+
+		FaceIDLoginMetrics metrics = getLoginMetrics();
+		long decodeStart = metrics.start();
+		// 开始识别后载荷由识别环节在真正结束时释放，超时或取消不能提前归还仍在读取的缓冲区
+		AtomicBoolean recognizing = new AtomicBoolean();
+		return payload
+				.doOnNext(token::setPayload)
+				.doOnSuccess(decoded -> metrics.record(FaceIDLoginMetrics.STAGE_DECODE, FaceIDLoginMetrics.NO_PROVIDER, decodeStart, null))
+				.onErrorResume(e -> {
+					// 图片读取失败时不中断流程，由识别环节统一抛出 AuthenticationFaceNotFoundException
+					LOG.debug("Unable to read face image from request.", e);
+					metrics.record(FaceIDLoginMetrics.STAGE_DECODE, FaceIDLoginMetrics.NO_PROVIDER, decodeStart, e);
+					return Mono.empty();
+				})
+				.then(Mono.defer(() -> {
+					recognizing.set(true);
+					return recognize(token);
+				}))
+				.flatMap(faceInfo -> authenticate(token, faceInfo))
+				.onErrorResume(e -> onLoginFailure(exchange, token, e).then(Mono.<Subject>empty()))
+				.flatMap(subject -> onLoginSuccess(exchange, token, subject))
+				.doFinally(signal -> {
+					if (!recognizing.get()) {
+						token.releasePayload();
+					}
+				});
+	}
+
+	protected Mono<FaceInfo> recognize(FaceIDLoginToken token) {
+		FaceIDLoginMetrics metrics = getLoginMetrics();
+		long start = metrics.start();
+		return getFaceRecognitionProvider().loadFaceInfo(token)
+				// 空结果不能交给 Realm，否则会在登录调度器上再同步识别一次
+				.switchIfEmpty(Mono.defer(() -> Mono.<FaceInfo>error(new AuthenticationFaceIDNotFoundException("No matching face found."))))
+				.timeout(Duration.ofMillis(getRecognitionTimeout()))
+				.doOnSuccess(faceInfo -> metrics.record(FaceIDLoginMetrics.STAGE_RECOGNITION, recognitionProviderName, start, null))
+				.doOnError(e -> metrics.record(FaceIDLoginMetrics.STAGE_RECOGNITION, recognitionProviderName, start, e));
+	}
+
+	/**
+	 * 在登录调度器上交由 Realm 认证（加载账号信息等可能阻塞），成功后构建不创建会话的 Subject
+	 */
+	protected Mono<Subject> authenticate(FaceIDLoginToken token, FaceInfo faceInfo) {
+		return Mono.fromCallable(() -> {
+			token.setFaceInfo(faceInfo);
+			AuthenticationInfo info = getSecurityManager().authenticate(token);
+			return (Subject) new DelegatingSubject(info.getPrincipals(), true, token.getHost(), null, false,
+					getSecurityManager());
+		}).subscribeOn(getLoginScheduler());
+	}
+
+	protected Mono<Void> onLoginSuccess(ServerWebExchange exchange, FaceIDLoginToken token, Subject subject) {
+		FaceIDLoginMetrics metrics = getLoginMetrics();
+		long start = metrics.start();
+		ShiroPrincipal principal = (ShiroPrincipal) subject.getPrincipal();
+
+		Map<String, Object> map = Maps.newHashMap();
+		map.put("userid", principal.getUserid());
+		map.put("userkey", principal.getUserkey());
+		map.put("username", principal.getUsername());
+		map.put("roles", principal.getRoles());
+		map.put("perms", principal.getPerms());
+		if (getSessionTokenCodec() != null) {
+			String sessionToken = getSessionTokenCodec().issue(principal);
+			map.put("token", sessionToken);
+			map.put("expires_in", getSessionTokenCodec().getTtlSeconds());
+			exchange.getResponse().getHeaders().set(getSessionTokenHeader(), sessionToken);
+		}
+		byte[] body = toJSONBytes(AuthcResponse.success("Authentication Success.", map));
+		metrics.record(FaceIDLoginMetrics.STAGE_SUCCESS, FaceIDLoginMetrics.NO_PROVIDER, start, null);
+		return writeJSONBody(exchange, HttpStatus.OK, body);
+	}
+
+	protected Mono<Void> onLoginFailure(ServerWebExchange exchange, FaceIDLoginToken token, Throwable ex) {
+		AuthenticationException e = toAuthenticationException(ex);
+		if (e instanceof AuthenticationOverloadException) {
+			return onOverload(exchange, (AuthenticationOverloadException) e);
+		}
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("Face login failed: {}", e.getMessage());
+		}
+		return writeJSONBody(exchange, HttpStatus.UNAUTHORIZED, LOGIN_FAILURE_BODY);
+	}
+
+	/**
+	 * 过载拒绝：以 503/429 及 Retry-After 响应，客户端据此退避重试，而不是当作人脸不匹配
+	 */
+	protected Mono<Void> onOverload(ServerWebExchange exchange, AuthenticationOverloadException e) {
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("Face login rejected: {}", e.getMessage());
+		}
+		if (e.getRetryAfterSeconds() > 0) {
+			exchange.getResponse().getHeaders().set("Retry-After", String.valueOf(e.getRetryAfterSeconds()));
+		}
+		return writeJSONBody(exchange, HttpStatus.valueOf(e.getStatus()),
+				e.getStatus() == AuthenticationOverloadException.SC_TOO_MANY_REQUESTS ? THROTTLED_BODY : OVERLOADED_BODY);
+	}
+
+	private AuthenticationException toAuthenticationException(Throwable e) {
+		if (e instanceof AuthenticationException) {
+			return (AuthenticationException) e;
+		}
+		if (e instanceof RejectedExecutionException) {
+			// 识别线程池已满：按过载响应 503，而不是当作人脸不匹配
+			return new AuthenticationOverloadException("Face recognition executor is saturated.", getRejectedRetryAfter());
+		}
+		if (e instanceof TimeoutException) {
+			return new AuthenticationException("Face recognition timed out.", e);
+		}
+		return new AuthenticationException("Face recognition failed.", e);
+	}
+
+	/**
+	 * 二进制图片（image/* 请求体或 multipart 文件）：每个分段拷贝进池化缓冲区后立即释放，超出大小限制时停止读取
+	 */
+	protected Mono<FaceImagePayload> readPayload(Flux<DataBuffer> body, String contentType, long contentLength) {
+		if (contentLength > getMaxImageBytes()) {
+			return Mono.error(new IOException("Face image exceeds " + getMaxImageBytes() + " bytes"));
+		}
+		return Mono.using(
+				() -> FaceImagePayload.newOutputStream(contentLength > 0 ? (int) contentLength : DEFAULT_INITIAL_CAPACITY,
+						getMaxImageBytes(), getBufferPool()),
+				output -> body.doOnNext(buffer -> write(output, buffer)).then(Mono.fromCallable(() -> output.toPayload(contentType))),
+				PayloadOutputStream::close);
+	}
+
+	/**
+	 * base64 文本请求体：逐段增量解码，不拼接完整的字符串
+	 */
+	protected Mono<FaceImagePayload> decodePayload(Flux<DataBuffer> body, long contentLength) {
+		if (contentLength > (long) getMaxImageBytes() * 4 / 3 + 4 + 256) {
+			// 允许 data:image/...;base64, 前缀与换行
+			return Mono.error(new IOException("Face image exceeds " + getMaxImageBytes() + " bytes"));
+		}
+		return Mono.using(
+				() -> FaceImagePayload.newBase64Decoder(contentLength, getMaxImageBytes(), getBufferPool()),
+				decoder -> body.doOnNext(buffer -> decode(decoder, buffer)).then(Mono.fromCallable(decoder::toPayload)),
+				Base64PayloadDecoder::close);
+	}
+
+	/**
+	 * 表单参数中的 base64 文本
+	 */
+	protected Mono<FaceImagePayload> decodePayload(String face) {
+		if (face == null || face.isEmpty()) {
+			return Mono.empty();
+		}
+		return Mono.fromCallable(() -> FaceImagePayload.decode(face, getMaxImageBytes(), getBufferPool()));
+	}
+
+	private static void write(PayloadOutputStream output, DataBuffer buffer) {
+		try {
+			output.write(buffer.asByteBuffer());
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			DataBufferUtils.release(buffer);
+		}
+	}
+
+	private static void decode(Base64PayloadDecoder decoder, DataBuffer buffer) {
+		try {
+			decoder.write(buffer.asByteBuffer());
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			DataBufferUtils.release(buffer);
+		}
+	}
+
+	/**
+	 * 依次从查询参数与表单字段中读取参数，去除首尾空白，空字符串视为 null
+	 */
+	protected String getCleanParam(ServerHttpRequest request, MultiValueMap<String, String> form, String name) {
+		String value = request.getQueryParams().getFirst(name);
+		if (value == null && form != null) {
+			value = form.getFirst(name);
+		}
+		if (value != null) {
+			value = value.trim();
+		}
+		return value == null || value.isEmpty() ? null : value;
+	}
+
+	protected String getHost(ServerHttpRequest request) {
+		InetSocketAddress address = request.getRemoteAddress();
+		return address == null || address.getAddress() == null ? null : address.getAddress().getHostAddress();
+	}
+
+	/**
+	 * 直接写出预先序列化的 UTF-8 JSON 响应体，并设置 Content-Length
+	 */
+	protected Mono<Void> writeJSONBody(ServerWebExchange exchange, HttpStatus status, byte[] body) {
+		ServerHttpResponse response = exchange.getResponse();
+		response.setStatusCode(status);
+		response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+		response.getHeaders().setContentLength(body.length);
+		return response.writeWith(Mono.just(response.bufferFactory().wrap(body)));
+	}
+
+	private static byte[] toJSONBytes(Object authcResponse) {
+		return JSONObject.toJSONString(authcResponse).getBytes(StandardCharsets.UTF_8);
+	}
+
+	@Override
+	public int getOrder() {
+		return order;
+	}
+
+	public void setOrder(int order) {
+		this.order = order;
+	}
+
+	public SecurityManager getSecurityManager() {
+		return securityManager;
+	}
+
+	public ReactiveFaceRecognitionProvider getFaceRecognitionProvider() {
+		return faceRecognitionProvider;
+	}
+
+	public Scheduler getLoginScheduler() {
+		return loginScheduler;
+	}
+
+	public void setLoginScheduler(Scheduler loginScheduler) {
+		this.loginScheduler = loginScheduler;
+	}
+
+	public PathMatcher getPathMatcher() {
+		return pathMatcher;
+	}
+
+	public void setPathMatcher(PathMatcher pathMatcher) {
+		this.pathMatcher = pathMatcher;
+	}
+
+	public String getLoginUrl() {
+		return loginUrl;
+	}
+
+	public void setLoginUrl(String loginUrl) {
+		this.loginUrl = loginUrl;
+		this.loginMethodNotAllowedBody = null;
+	}
+
+	public List<String> getAnonPaths() {
+		return anonPaths;
+	}
+
+	public void setAnonPaths(List<String> anonPaths) {
+		this.anonPaths = anonPaths;
+	}
+
+	public List<String> getAuthcPaths() {
+		return authcPaths;
+	}
+
+	public void setAuthcPaths(List<String> authcPaths) {
+		this.authcPaths = authcPaths;
+	}
+
+	public long getRecognitionTimeout() {
+		return recognitionTimeout;
+	}
+
+	public void setRecognitionTimeout(long recognitionTimeout) {
+		this.recognitionTimeout = recognitionTimeout;
+	}
+
+	public int getRejectedRetryAfter() {
+		return rejectedRetryAfter;
+	}
+
+	public void setRejectedRetryAfter(int rejectedRetryAfter) {
+		this.rejectedRetryAfter = rejectedRetryAfter;
+	}
+
+	public FaceImageBufferPool getBufferPool() {
+		return bufferPool;
+	}
+
+	public void setBufferPool(FaceImageBufferPool bufferPool) {
+		this.bufferPool = bufferPool;
+	}
+
+	public String getFaceParam() {
+		return faceParam;
+	}
+
+	public void setFaceParam(String faceParam) {
+		this.faceParam = faceParam;
+	}
+
+	public String getFaceTypeParam() {
+		return faceTypeParam;
+	}
+
+	public void setFaceTypeParam(String faceTypeParam) {
+		this.faceTypeParam = faceTypeParam;
+	}
+
+	public String getFaceTokenParam() {
+		return faceTokenParam;
+	}
+
+	public void setFaceTokenParam(String faceTokenParam) {
+		this.faceTokenParam = faceTokenParam;
+	}
+
+	public String getTenantParam() {
+		return tenantParam;
+	}
+
+	public void setTenantParam(String tenantParam) {
+		this.tenantParam = tenantParam;
+	}
+
+	public int getMaxImageBytes() {
+		return maxImageBytes;
+	}
+
+	public void setMaxImageBytes(int maxImageBytes) {
+		this.maxImageBytes = maxImageBytes;
+	}
+
+	public FaceIDSessionTokenCodec getSessionTokenCodec() {
+		return sessionTokenCodec;
+	}
+
+	public void setSessionTokenCodec(FaceIDSessionTokenCodec sessionTokenCodec) {
+		this.sessionTokenCodec = sessionTokenCodec;
+	}
+
+	public String getSessionTokenHeader() {
+		return sessionTokenHeader;
+	}
+
+	public void setSessionTokenHeader(String sessionTokenHeader) {
+		this.sessionTokenHeader = sessionTokenHeader;
+	}
+
+	public FaceIDLoginMetrics getLoginMetrics() {
+		return loginMetrics;
+	}
+
+	public void setLoginMetrics(FaceIDLoginMetrics loginMetrics) {
+		this.loginMetrics = loginMetrics == null ? FaceIDLoginMetrics.NONE : loginMetrics;
+	}
+
+	public FaceIDLoginThrottle getLoginThrottle() {
+		return loginThrottle;
+	}
+
+	public void setLoginThrottle(FaceIDLoginThrottle loginThrottle) {
+		this.loginThrottle = loginThrottle;
+	}
+
+	public String getThrottleKeyParam() {
+		return throttleKeyParam;
+	}
+
+	public void setThrottleKeyParam(String throttleKeyParam) {
+		this.throttleKeyParam = throttleKeyParam;
+	}
+
+}
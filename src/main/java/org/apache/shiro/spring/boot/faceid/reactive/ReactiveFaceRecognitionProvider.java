@@ -0,0 +1,35 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.reactive;
+
+import org.apache.shiro.authc.AuthenticationToken;
+import org.apache.shiro.spring.boot.faceid.FaceInfo;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * 响应式人脸识别：返回的 Mono 在识别完成时发出识别结果，识别失败时以 AuthenticationException 结束，不阻塞订阅线程。
+ * <p>
+ * 订阅方取消（如客户端断开、识别超时）时识别可能仍在进行。订阅后令牌的图片载荷归识别所有，调用方不再释放：
+ * 实现需在识别真正结束后调用 {@link org.apache.shiro.spring.boot.faceid.token.FaceIDLoginToken#releasePayload()}，
+ * 释放令牌当时持有的载荷（预处理可能已将其替换为新的缓冲区）。
+ * @author 		： <a href="https://github.com/hiwepy">wandl</a>
+ */
+public interface ReactiveFaceRecognitionProvider {
+
+	Mono<FaceInfo> loadFaceInfo(AuthenticationToken token);
+
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.realm;
+
+import java.util.function.Consumer;
+
+/**
+ * 授权缓存失效通知的发布/订阅钩子：多节点部署时，各节点的授权信息缓存作为本地近端缓存，
+ * 某个节点上用户角色/权限变更后，通过该钩子（如 Redis pub/sub、MQ 广播）通知其余节点移除对应条目。
+ * @author 		： <a href="https://github.com/hiwepy">wandl</a>
+ */
+public interface AuthorizationInvalidationBus {
+
+	/**
+	 * 表示清空全部授权缓存的消息
+	 */
+	String ALL = "*";
+
+	/**
+	 * 广播失效消息
+	 * @param key 失效的用户ID（缓存键），或 {@link #ALL}
+	 */
+	void publish(String key);
+
+	/**
+	 * 订阅其他节点广播的失效消息
+	 * @param listener 收到消息时的回调
+	 */
+	void subscribe(Consumer<String> listener);
+
+}
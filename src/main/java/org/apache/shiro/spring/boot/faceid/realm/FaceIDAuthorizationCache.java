@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.realm;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.shiro.cache.Cache;
+import org.apache.shiro.cache.CacheException;
+
+/**
+ * 有容量上限的并发缓存，用作 Realm 的授权信息缓存。
+ * <p>淘汰采用 second-chance（CLOCK）近似 LRU：读取只设置访问标记，不加锁、不移动节点；
+ * 容量超限时按写入顺序扫描，跳过并清除最近被访问过的条目，淘汰第一个未被访问的条目。</p>
+ * @author 		： <a href="https://github.com/hiwepy">wandl</a>
+ */
+public class FaceIDAuthorizationCache<K, V> implements Cache<K, V> {
+
+	/**
+	 * 默认最大条目数
+	 */
+	public static final int DEFAULT_MAX_SIZE = 10000;
+
+	private final int maxSize;
+	private final ConcurrentHashMap<K, Node<K, V>> entries = new ConcurrentHashMap<K, Node<K, V>>();
+	private final Queue<Node<K, V>> clock = new ConcurrentLinkedQueue<Node<K, V>>();
+	private final AtomicInteger clockSize = new AtomicInteger();
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	public FaceIDAuthorizationCache() {
+		this(DEFAULT_MAX_SIZE);
+	}
+
+	public FaceIDAuthorizationCache(int maxSize) {
+		this.maxSize = Math.max(1, maxSize);
+	}
+
+	@Override
+	public V get(K key) throws CacheException {
+		Node<K, V> node = key == null ? null : entries.get(key);
+		if (node == null) {
+			misses.increment();
+			return null;
+		}
+		hits.increment();
+		node.referenced = true;
+		return node.value;
+	}
+
+	@Override
+	public V put(K key, V value) throws CacheException {
+		Node<K, V> node = new Node<K, V>(key, value);
+		Node<K, V> previous = entries.put(key, node);
+		clock.offer(node);
+		clockSize.incrementAndGet();
+		evictIfNecessary();
+		return previous == null ? null : previous.value;
+	}
+
+	private void evictIfNecessary() {
+		// 每个条目最多获得一次“第二次机会”，扫描长度有上限
+		int budget = entries.size() * 2;
+		while (entries.size() > maxSize && budget-- > 0) {
+			Node<K, V> node = clock.poll();
+			if (node == null) {
+				return;
+			}
+			if (entries.get(node.key) != node) {
+				// 已被移除或覆盖的残留节点
+				clockSize.decrementAndGet();
+				continue;
+			}
+			if (node.referenced) {
+				node.referenced = false;
+				clock.offer(node);
+			} else {
+				clockSize.decrementAndGet();
+				if (entries.remove(node.key, node)) {
+					evictions.increment();
+				}
+			}
+		}
+		// 未触发淘汰时，移除/覆盖留下的残留节点在队列过长时统一清理
+		if (clockSize.get() > maxSize * 2) {
+			clock.removeIf(n -> entries.get(n.key) != n);
+			clockSize.set(clock.size());
+		}
+	}
+
+	@Override
+	public V remove(K key) throws CacheException {
+		Node<K, V> node = entries.remove(key);
+		return node == null ? null : node.value;
+	}
+
+	@Override
+	public void clear() throws CacheException {
+		entries.clear();
+		clock.clear();
+		clockSize.set(0);
+	}
+
+	@Override
+	public int size() {
+		return entries.size();
+	}
+
+	@Override
+	public Set<K> keys() {
+		return Collections.unmodifiableSet(new HashSet<K>(entries.keySet()));
+	}
+
+	@Override
+	public Collection<V> values() {
+		Collection<V> values = new ArrayList<V>(entries.size());
+		for (Node<K, V> node : entries.values()) {
+			values.add(node.value);
+		}
+		return Collections.unmodifiableCollection(values);
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	public long getHitCount() {
+		return hits.sum();
+	}
+
+	public long getMissCount() {
+		return misses.sum();
+	}
+
+	/**
+	 * @return 因容量超限被淘汰的条目数
+	 */
+	public long getEvictionCount() {
+		return evictions.sum();
+	}
+
+	private static final class Node<K, V> {
+
+		private final K key;
+		private final V value;
+		private volatile boolean referenced;
+
+		Node(K key, V value) {
+			this.key = key;
+			this.value = value;
+		}
+
+	}
+
+}
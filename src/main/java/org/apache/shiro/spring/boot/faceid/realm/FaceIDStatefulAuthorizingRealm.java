@@ -1,17 +1,188 @@
 package org.apache.shiro.spring.boot.faceid.realm;
 
+import org.apache.shiro.authc.AuthenticationException;
+import org.apache.shiro.authc.AuthenticationInfo;
+import org.apache.shiro.authc.AuthenticationToken;
+import org.apache.shiro.authz.AuthorizationInfo;
+import org.apache.shiro.biz.authz.principal.ShiroPrincipal;
 import org.apache.shiro.biz.realm.AbstractAuthorizingRealm;
+import org.apache.shiro.cache.Cache;
+import org.apache.shiro.spring.boot.faceid.FaceInfo;
+import org.apache.shiro.spring.boot.faceid.authc.FaceRecognitionProvider;
+import org.apache.shiro.spring.boot.faceid.metrics.FaceIDLoginMetrics;
 import org.apache.shiro.spring.boot.faceid.token.FaceIDLoginToken;
+import org.apache.shiro.subject.PrincipalCollection;
+import org.springframework.util.ClassUtils;
 
 /**
- * Kisso Stateful AuthorizingRealm
+ * FaceID Stateful AuthorizingRealm
+ * <p>默认启用授权信息缓存（{@link FaceIDAuthorizationCache}），以用户ID为键，避免每次权限判断都重新加载角色和权限；
+ * 用户角色变更后调用 {@link #invalidateAuthorization(String)} 定向失效，多节点部署时可通过
+ * {@link AuthorizationInvalidationBus} 广播到其余节点。配置了 CacheManager 时改用其提供的缓存。</p>
  * @author 		： <a href="https://github.com/hiwepy">hiwepy</a>
  */
 public class FaceIDStatefulAuthorizingRealm extends AbstractAuthorizingRealm {
 
+	private FaceRecognitionProvider faceRecognitionProvider;
+	private String faceRecognitionProviderName = FaceIDLoginMetrics.NO_PROVIDER;
+	private AuthorizationInvalidationBus invalidationBus;
+	private FaceIDLoginMetrics loginMetrics = FaceIDLoginMetrics.NONE;
+	private final FaceIDAuthorizationCache<Object, AuthorizationInfo> defaultAuthorizationCache;
+
+	public FaceIDStatefulAuthorizingRealm() {
+		this(FaceIDAuthorizationCache.DEFAULT_MAX_SIZE);
+	}
+
+	/**
+	 * @param authorizationCacheMaxSize 默认授权缓存的最大条目数
+	 */
+	public FaceIDStatefulAuthorizingRealm(int authorizationCacheMaxSize) {
+		super();
+		this.defaultAuthorizationCache = new FaceIDAuthorizationCache<Object, AuthorizationInfo>(authorizationCacheMaxSize);
+		setAuthorizationCachingEnabled(true);
+		setAuthorizationCache(defaultAuthorizationCache);
+	}
+
 	@Override
 	public Class<?> getAuthenticationTokenClass() {
-		return FaceIDLoginToken.class;// 此Realm只支持KissoLoginToken
+		return FaceIDLoginToken.class;// 此Realm只支持FaceIDLoginToken
+	}
+
+	@Override
+	protected AuthenticationInfo doGetAuthenticationInfo(AuthenticationToken token) throws AuthenticationException {
+		FaceIDLoginToken faceToken = (FaceIDLoginToken) token;
+		FaceIDLoginMetrics metrics = getLoginMetrics();
+		// 过滤器已完成识别（如异步模式）时不再重复识别
+		if (faceToken.getFaceInfo() == null && faceRecognitionProvider != null) {
+			long start = metrics.start();
+			Throwable error = null;
+			try {
+				faceToken.setFaceInfo(faceRecognitionProvider.loadFaceInfo(faceToken));
+			} catch (RuntimeException e) {
+				error = e;
+				throw e;
+			} finally {
+				metrics.record(FaceIDLoginMetrics.STAGE_RECOGNITION, faceRecognitionProviderName, start, error);
+				faceToken.releasePayload();
+			}
+		}
+		FaceInfo faceInfo = faceToken.getFaceInfo();
+		if (faceInfo != null) {
+			// 以识别出的人脸ID作为登录账号，交由账号仓库加载认证信息
+			faceToken.setUsername(faceInfo.getFaceId());
+		}
+		long start = metrics.start();
+		Throwable error = null;
+		try {
+			return loadAuthenticationInfo(faceToken);
+		} catch (RuntimeException e) {
+			error = e;
+			throw e;
+		} finally {
+			metrics.record(FaceIDLoginMetrics.STAGE_LOGIN, FaceIDLoginMetrics.NO_PROVIDER, start, error);
+		}
+	}
+
+	/**
+	 * 按识别出的人脸ID加载账号认证信息，默认交由账号仓库处理
+	 */
+	protected AuthenticationInfo loadAuthenticationInfo(FaceIDLoginToken token) throws AuthenticationException {
+		return super.doGetAuthenticationInfo(token);
+	}
+
+	/**
+	 * 配置了 CacheManager（如 Redis）时让位于 CacheManager 提供的授权缓存
+	 */
+	@Override
+	protected void afterCacheManagerSet() {
+		if (getCacheManager() != null && getAuthorizationCache() == defaultAuthorizationCache) {
+			setAuthorizationCache(null);
+		}
+		super.afterCacheManagerSet();
+	}
+
+	/**
+	 * 以用户ID（人脸ID）作为授权缓存键，便于按用户定向失效；键总是字符串，与 {@link #invalidateAuthorization(String)} 的参数一致
+	 */
+	@Override
+	protected Object getAuthorizationCacheKey(PrincipalCollection principals) {
+		return getAuthorizationUserid(principals.getPrimaryPrincipal());
+	}
+
+	/**
+	 * 主身份对应的用户ID：{@link ShiroPrincipal} 取其用户ID，其余类型取 {@code toString()}。
+	 * 使用其他身份类型且 {@code toString()} 不是用户ID时需覆盖此方法，否则按用户ID失效授权缓存无法命中
+	 */
+	protected String getAuthorizationUserid(Object principal) {
+		if (principal instanceof ShiroPrincipal && ((ShiroPrincipal) principal).getUserid() != null) {
+			return ((ShiroPrincipal) principal).getUserid();
+		}
+		return String.valueOf(principal);
+	}
+
+	/**
+	 * 用户角色或权限变更后失效其授权缓存，并通知其余节点
+	 * @param userid 用户ID
+	 */
+	public void invalidateAuthorization(String userid) {
+		evictAuthorization(userid);
+		if (invalidationBus != null) {
+			invalidationBus.publish(userid);
+		}
+	}
+
+	/**
+	 * 清空全部授权缓存，并通知其余节点
+	 */
+	public void invalidateAllAuthorization() {
+		evictAuthorization(AuthorizationInvalidationBus.ALL);
+		if (invalidationBus != null) {
+			invalidationBus.publish(AuthorizationInvalidationBus.ALL);
+		}
+	}
+
+	/**
+	 * 仅移除本节点缓存，不再广播（处理其他节点发来的失效消息）
+	 */
+	protected void evictAuthorization(String key) {
+		Cache<Object, AuthorizationInfo> cache = getAuthorizationCache();
+		if (cache == null || key == null) {
+			return;
+		}
+		if (AuthorizationInvalidationBus.ALL.equals(key)) {
+			cache.clear();
+		} else {
+			cache.remove(key);
+		}
+	}
+
+	public AuthorizationInvalidationBus getInvalidationBus() {
+		return invalidationBus;
+	}
+
+	public void setInvalidationBus(AuthorizationInvalidationBus invalidationBus) {
+		this.invalidationBus = invalidationBus;
+		if (invalidationBus != null) {
+			invalidationBus.subscribe(this::evictAuthorization);
+		}
+	}
+
+	public FaceRecognitionProvider getFaceRecognitionProvider() {
+		return faceRecognitionProvider;
+	}
+
+	public void setFaceRecognitionProvider(FaceRecognitionProvider faceRecognitionProvider) {
+		this.faceRecognitionProvider = faceRecognitionProvider;
+		this.faceRecognitionProviderName = faceRecognitionProvider == null ? FaceIDLoginMetrics.NO_PROVIDER
+				: ClassUtils.getShortName(ClassUtils.getUserClass(faceRecognitionProvider));
+	}
+
+	public FaceIDLoginMetrics getLoginMetrics() {
+		return loginMetrics;
+	}
+
+	public void setLoginMetrics(FaceIDLoginMetrics loginMetrics) {
+		this.loginMetrics = loginMetrics == null ? FaceIDLoginMetrics.NONE : loginMetrics;
 	}
 
 }
@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.screening;
+
+import org.apache.shiro.spring.boot.faceid.exception.AuthenticationFaceNotFoundException;
+
+/**
+ * 字节数检查：过小的图片不可能包含可识别的人脸，过大的图片浪费带宽和解码时间
+ * @author 		： <a href="https://github.com/hiwepy">wandl</a>
+ */
+public class ByteSizeCheck implements FaceImageCheck {
+
+	private final int minBytes;
+	private final int maxBytes;
+
+	public ByteSizeCheck(int minBytes, int maxBytes) {
+		this.minBytes = minBytes;
+		this.maxBytes = maxBytes;
+	}
+
+	@Override
+	public String getName() {
+		return "bytes";
+	}
+
+	@Override
+	public void check(FaceImageProbe probe) {
+		int length = probe.getPayload().length();
+		if (length < minBytes) {
+			throw new AuthenticationFaceNotFoundException("Face image is too small: " + length + " bytes.");
+		}
+		if (maxBytes > 0 && length > maxBytes) {
+			throw new AuthenticationFaceNotFoundException("Face image is too large: " + length + " bytes.");
+		}
+	}
+
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.screening;
+
+import org.apache.shiro.spring.boot.faceid.exception.AuthenticationFaceNotFoundException;
+
+/**
+ * 尺寸检查：只读取图片头中的宽高，不解码像素
+ * @author 		： <a href="https://github.com/hiwepy">wandl</a>
+ */
+public class DimensionCheck implements FaceImageCheck {
+
+	private final int minSide;
+	private final int maxSide;
+
+	/**
+	 * @param minSide 短边最小像素
+	 * @param maxSide 长边最大像素，小于等于 0 表示不限制
+	 */
+	public DimensionCheck(int minSide, int maxSide) {
+		this.minSide = minSide;
+		this.maxSide = maxSide;
+	}
+
+	@Override
+	public String getName() {
+		return "dimension";
+	}
+
+	@Override
+	public void check(FaceImageProbe probe) {
+		int width = probe.getWidth();
+		int height = probe.getHeight();
+		if (Math.min(width, height) < minSide) {
+			throw new AuthenticationFaceNotFoundException("Face image is too small: " + width + "x" + height + ".");
+		}
+		if (maxSide > 0 && Math.max(width, height) > maxSide) {
+			throw new AuthenticationFaceNotFoundException("Face image is too large: " + width + "x" + height + ".");
+		}
+	}
+
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.screening;
+
+import java.awt.Rectangle;
+import java.util.List;
+
+import org.apache.shiro.spring.boot.faceid.exception.AuthenticationFaceNotFoundException;
+import org.apache.shiro.spring.boot.faceid.image.FaceDetector;
+
+/**
+ * 人脸数量检查：在降采样图片上做人脸检测，没有人脸或人脸过多（可能是翻拍、合照）时拒绝
+ * @author 		： <a href="https://github.com/hiwepy">wandl</a>
+ */
+public class FaceCountCheck implements FaceImageCheck {
+
+	private final FaceDetector detector;
+	private final int minFaces;
+	private final int maxFaces;
+
+	public FaceCountCheck(FaceDetector detector, int minFaces, int maxFaces) {
+		this.detector = detector;
+		this.minFaces = minFaces;
+		this.maxFaces = maxFaces;
+	}
+
+	@Override
+	public String getName() {
+		return "faces";
+	}
+
+	@Override
+	public void check(FaceImageProbe probe) {
+		List<Rectangle> faces = detector.detect(probe.getImage());
+		int count = faces == null ? 0 : faces.size();
+		if (count < minFaces) {
+			throw new AuthenticationFaceNotFoundException("No face detected in the submitted image.");
+		}
+		if (maxFaces > 0 && count > maxFaces) {
+			throw new AuthenticationFaceNotFoundException("Too many faces detected in the submitted image: " + count + ".");
+		}
+	}
+
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.screening;
+
+import org.apache.shiro.spring.boot.faceid.exception.AuthenticationFaceNotFoundException;
+
+/**
+ * 识别前的廉价检查：按开销从低到高串联执行，任一检查不通过即拒绝提交，不再调用昂贵的识别服务
+ * @author 		： <a href="https://github.com/hiwepy">wandl</a>
+ */
+public interface FaceImageCheck {
+
+	/**
+	 * @return 检查名称，用于统计
+	 */
+	String getName();
+
+	/**
+	 * 执行检查
+	 * @param probe 图片探针，头信息与缩略图在各检查间共享、只解析一次
+	 * @throws AuthenticationFaceNotFoundException 图片不可用
+	 */
+	void check(FaceImageProbe probe) throws AuthenticationFaceNotFoundException;
+
+}
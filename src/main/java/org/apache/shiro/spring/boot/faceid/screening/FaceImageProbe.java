@@ -0,0 +1,206 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.screening;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Iterator;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+import org.apache.shiro.spring.boot.faceid.exception.AuthenticationFaceNotFoundException;
+import org.apache.shiro.spring.boot.faceid.image.FaceImagePayload;
+import org.apache.shiro.spring.boot.faceid.image.FaceImagePreprocessor;
+
+/**
+ * 图片探针：按需、只做一次地解析图片头（宽高）与降采样解码（分析用缩略图），供各检查共享。
+ * <p>JPEG、PNG、GIF、BMP 的宽高直接从文件头读取，不解码像素；其余格式退化为 ImageIO 只读头信息。
+ * 缩略图通过 {@link ImageReadParam#setSourceSubsampling} 在解码时降采样，不会生成原尺寸的位图。</p>
+ * @author 		： <a href="https://github.com/hiwepy">wandl</a>
+ */
+public final class FaceImageProbe {
+
+	private final FaceImagePayload payload;
+	private final int analysisSize;
+	private int width = -1;
+	private int height = -1;
+	private BufferedImage image;
+
+	/**
+	 * @param payload 图片载荷
+	 * @param analysisSize 分析用缩略图的最长边（像素）
+	 */
+	public FaceImageProbe(FaceImagePayload payload, int analysisSize) {
+		this.payload = payload;
+		this.analysisSize = analysisSize;
+	}
+
+	public FaceImagePayload getPayload() {
+		return payload;
+	}
+
+	public int getWidth() {
+		readHeader();
+		return width;
+	}
+
+	public int getHeight() {
+		readHeader();
+		return height;
+	}
+
+	/**
+	 * @return 最长边不超过 analysisSize 的降采样图片，已按 EXIF 方向摆正
+	 * @throws AuthenticationFaceNotFoundException 图片无法解码
+	 */
+	public BufferedImage getImage() {
+		if (image == null) {
+			image = decodeSubsampled();
+		}
+		return image;
+	}
+
+	private void readHeader() {
+		if (width >= 0) {
+			return;
+		}
+		ByteBuffer buf = payload.asByteBuffer();
+		if (!readJpeg(buf.duplicate()) && !readPng(buf.duplicate()) && !readGif(buf.duplicate()) && !readBmp(buf.duplicate())) {
+			readWithImageIO();
+		}
+	}
+
+	private boolean readJpeg(ByteBuffer buf) {
+		buf.order(ByteOrder.BIG_ENDIAN);
+		if (buf.remaining() < 4 || (buf.get() & 0xFF) != 0xFF || (buf.get() & 0xFF) != 0xD8) {
+			return false;
+		}
+		while (buf.remaining() >= 4) {
+			if ((buf.get() & 0xFF) != 0xFF) {
+				return false;
+			}
+			int marker = buf.get() & 0xFF;
+			// 填充字节或无长度的独立标记
+			if (marker == 0xFF) {
+				buf.position(buf.position() - 1);
+				continue;
+			}
+			if (marker == 0x01 || (marker >= 0xD0 && marker <= 0xD7)) {
+				continue;
+			}
+			int length = buf.getShort() & 0xFFFF;
+			// SOF0-SOF15，排除 DHT(C4)、JPG(C8)、DAC(CC)
+			if (marker >= 0xC0 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8 && marker != 0xCC) {
+				if (buf.remaining() < 5) {
+					return false;
+				}
+				buf.get();
+				height = buf.getShort() & 0xFFFF;
+				width = buf.getShort() & 0xFFFF;
+				return true;
+			}
+			if (length < 2 || buf.remaining() < length - 2) {
+				return false;
+			}
+			buf.position(buf.position() + length - 2);
+		}
+		return false;
+	}
+
+	private boolean readPng(ByteBuffer buf) {
+		buf.order(ByteOrder.BIG_ENDIAN);
+		if (buf.remaining() < 24 || buf.getLong(0) != 0x89504E470D0A1A0AL) {
+			return false;
+		}
+		width = buf.getInt(16);
+		height = buf.getInt(20);
+		return true;
+	}
+
+	private boolean readGif(ByteBuffer buf) {
+		buf.order(ByteOrder.LITTLE_ENDIAN);
+		if (buf.remaining() < 10 || buf.get(0) != 'G' || buf.get(1) != 'I' || buf.get(2) != 'F') {
+			return false;
+		}
+		width = buf.getShort(6) & 0xFFFF;
+		height = buf.getShort(8) & 0xFFFF;
+		return true;
+	}
+
+	private boolean readBmp(ByteBuffer buf) {
+		buf.order(ByteOrder.LITTLE_ENDIAN);
+		if (buf.remaining() < 26 || buf.get(0) != 'B' || buf.get(1) != 'M') {
+			return false;
+		}
+		width = Math.abs(buf.getInt(18));
+		height = Math.abs(buf.getInt(22));
+		return true;
+	}
+
+	private void readWithImageIO() {
+		ImageReader reader = null;
+		try (InputStream input = payload.asInputStream(); ImageInputStream stream = ImageIO.createImageInputStream(input)) {
+			reader = reader(stream);
+			width = reader.getWidth(0);
+			height = reader.getHeight(0);
+		} catch (IOException e) {
+			throw new AuthenticationFaceNotFoundException("Unreadable face image header.", e);
+		} finally {
+			if (reader != null) {
+				reader.dispose();
+			}
+		}
+	}
+
+	private BufferedImage decodeSubsampled() {
+		ImageReader reader = null;
+		try (InputStream input = payload.asInputStream(); ImageInputStream stream = ImageIO.createImageInputStream(input)) {
+			reader = reader(stream);
+			int longest = Math.max(reader.getWidth(0), reader.getHeight(0));
+			int step = Math.max(1, longest / analysisSize);
+			ImageReadParam param = reader.getDefaultReadParam();
+			param.setSourceSubsampling(step, step, 0, 0);
+			BufferedImage subsampled = reader.read(0, param);
+			try (InputStream header = payload.asInputStream()) {
+				// 人脸检测要求正向图片，手机照片常以横向存储
+				return FaceImagePreprocessor.orient(subsampled, FaceImagePreprocessor.readOrientation(header));
+			}
+		} catch (IOException | RuntimeException e) {
+			throw new AuthenticationFaceNotFoundException("Undecodable face image.", e);
+		} finally {
+			if (reader != null) {
+				reader.dispose();
+			}
+		}
+	}
+
+	private static ImageReader reader(ImageInputStream stream) throws IOException {
+		Iterator<ImageReader> readers = stream == null ? null : ImageIO.getImageReaders(stream);
+		if (readers == null || !readers.hasNext()) {
+			throw new AuthenticationFaceNotFoundException("Unsupported face image format.");
+		}
+		ImageReader reader = readers.next();
+		reader.setInput(stream, true, true);
+		return reader;
+	}
+
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.screening;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.shiro.spring.boot.faceid.exception.AuthenticationFaceNotFoundException;
+import org.apache.shiro.spring.boot.faceid.image.FaceImagePayload;
+
+/**
+ * 识别前的分级拒绝流水线：按顺序执行各项检查，首个失败的检查抛出 {@link AuthenticationFaceNotFoundException}。
+ * 各阶段的执行次数、拒绝次数与耗时单独统计，可据此评估节省的识别容量。
+ * @author 		： <a href="https://github.com/hiwepy">wandl</a>
+ */
+public class FaceImageScreening {
+
+	/**
+	 * 默认分析用缩略图的最长边
+	 */
+	public static final int DEFAULT_ANALYSIS_SIZE = 320;
+
+	private final List<Stage> stages;
+	private final int analysisSize;
+	private final LongAdder screened = new LongAdder();
+	private final LongAdder missing = new LongAdder();
+
+	public FaceImageScreening(List<FaceImageCheck> checks) {
+		this(checks, DEFAULT_ANALYSIS_SIZE);
+	}
+
+	/**
+	 * @param checks 按开销从低到高排列的检查
+	 * @param analysisSize 分析用缩略图的最长边（像素）
+	 */
+	public FaceImageScreening(List<FaceImageCheck> checks, int analysisSize) {
+		List<Stage> stages = new ArrayList<Stage>(checks.size());
+		for (FaceImageCheck check : checks) {
+			stages.add(new Stage(check));
+		}
+		this.stages = Collections.unmodifiableList(stages);
+		this.analysisSize = analysisSize;
+	}
+
+	/**
+	 * 执行全部检查
+	 * @param payload 图片载荷
+	 * @throws AuthenticationFaceNotFoundException 没有图片或任一检查不通过
+	 */
+	public void screen(FaceImagePayload payload) {
+		screened.increment();
+		if (payload == null) {
+			missing.increment();
+			throw new AuthenticationFaceNotFoundException("No face image submitted.");
+		}
+		FaceImageProbe probe = new FaceImageProbe(payload, analysisSize);
+		for (Stage stage : stages) {
+			long start = System.nanoTime();
+			try {
+				stage.check.check(probe);
+			} catch (AuthenticationFaceNotFoundException e) {
+				stage.rejected.increment();
+				throw e;
+			} finally {
+				stage.evaluated.increment();
+				stage.nanos.add(System.nanoTime() - start);
+			}
+		}
+	}
+
+	/**
+	 * @return 经过流水线的提交数
+	 */
+	public long getScreenedCount() {
+		return screened.sum();
+	}
+
+	/**
+	 * @return 没有携带图片而被拒绝的提交数
+	 */
+	public long getMissingCount() {
+		return missing.sum();
+	}
+
+	/**
+	 * @return 被任一阶段拒绝的提交数（含未携带图片）
+	 */
+	public long getRejectedCount() {
+		long rejected = missing.sum();
+		for (Stage stage : stages) {
+			rejected += stage.rejected.sum();
+		}
+		return rejected;
+	}
+
+	public List<Stage> getStages() {
+		return stages;
+	}
+
+	/**
+	 * 单个检查阶段及其统计
+	 */
+	public static final class Stage {
+
+		private final FaceImageCheck check;
+		private final LongAdder evaluated = new LongAdder();
+		private final LongAdder rejected = new LongAdder();
+		private final LongAdder nanos = new LongAdder();
+
+		Stage(FaceImageCheck check) {
+			this.check = check;
+		}
+
+		public String getName() {
+			return check.getName();
+		}
+
+		public FaceImageCheck getCheck() {
+			return check;
+		}
+
+		public long getEvaluatedCount() {
+			return evaluated.sum();
+		}
+
+		public long getRejectedCount() {
+			return rejected.sum();
+		}
+
+		public long getTotalNanos() {
+			return nanos.sum();
+		}
+
+		public double getAverageMillis() {
+			long count = evaluated.sum();
+			return count == 0 ? 0d : nanos.sum() / (double) count / TimeUnit.MILLISECONDS.toNanos(1);
+		}
+
+		@Override
+		public String toString() {
+			return "Stage [name=" + getName() + ", evaluated=" + getEvaluatedCount() + ", rejected=" + getRejectedCount()
+					+ ", averageMillis=" + getAverageMillis() + "]";
+		}
+
+	}
+
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.screening;
+
+import java.awt.image.BufferedImage;
+
+import org.apache.shiro.spring.boot.faceid.exception.AuthenticationFaceNotFoundException;
+
+/**
+ * 画质检查：在降采样后的灰度图上估计亮度（均值）与清晰度（拉普拉斯算子响应的方差），过暗、过曝或模糊的图片直接拒绝
+ * @author 		： <a href="https://github.com/hiwepy">wandl</a>
+ */
+public class QualityCheck implements FaceImageCheck {
+
+	private final double minBrightness;
+	private final double maxBrightness;
+	private final double minSharpness;
+
+	/**
+	 * @param minBrightness 最低平均亮度 [0, 255]
+	 * @param maxBrightness 最高平均亮度 [0, 255]
+	 * @param minSharpness 最低清晰度（拉普拉斯方差）
+	 */
+	public QualityCheck(double minBrightness, double maxBrightness, double minSharpness) {
+		this.minBrightness = minBrightness;
+		this.maxBrightness = maxBrightness;
+		this.minSharpness = minSharpness;
+	}
+
+	@Override
+	public String getName() {
+		return "quality";
+	}
+
+	@Override
+	public void check(FaceImageProbe probe) {
+		BufferedImage image = probe.getImage();
+		int width = image.getWidth();
+		int height = image.getHeight();
+		int[] rgb = image.getRGB(0, 0, width, height, null, 0, width);
+		float[] luma = new float[rgb.length];
+		double sum = 0d;
+		for (int i = 0; i < rgb.length; i++) {
+			int p = rgb[i];
+			luma[i] = 0.299f * ((p >> 16) & 0xFF) + 0.587f * ((p >> 8) & 0xFF) + 0.114f * (p & 0xFF);
+			sum += luma[i];
+		}
+		double brightness = sum / luma.length;
+		if (brightness < minBrightness || brightness > maxBrightness) {
+			throw new AuthenticationFaceNotFoundException("Face image exposure is unusable, brightness " + (int) brightness + ".");
+		}
+		if (width < 3 || height < 3) {
+			return;
+		}
+		double lapSum = 0d;
+		double lapSquares = 0d;
+		int n = 0;
+		for (int y = 1; y < height - 1; y++) {
+			int row = y * width;
+			for (int x = 1; x < width - 1; x++) {
+				int i = row + x;
+				double lap = luma[i - 1] + luma[i + 1] + luma[i - width] + luma[i + width] - 4 * luma[i];
+				lapSum += lap;
+				lapSquares += lap * lap;
+				n++;
+			}
+		}
+		double mean = lapSum / n;
+		double sharpness = lapSquares / n - mean * mean;
+		if (sharpness < minSharpness) {
+			throw new AuthenticationFaceNotFoundException("Face image is too blurry, sharpness " + (int) sharpness + ".");
+		}
+	}
+
+}
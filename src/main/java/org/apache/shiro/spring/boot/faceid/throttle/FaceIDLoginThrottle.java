@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.throttle;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 人脸登录尝试限流：按客户端 IP 与目标人脸（faceId）分别计数，任一维度超限即拒绝。
+ * 在读取图片之前执行，被拒绝的尝试不产生解码与识别开销。
+ * <p>目标人脸键由客户端提供，只是建议性的：它能限制针对同一人脸的反复尝试，但不断变换该键即可绕过，
+ * 真正的上限由客户端 IP 维度保证。</p>
+ * @author 		： <a href="https://github.com/hiwepy">wandl</a>
+ */
+public class FaceIDLoginThrottle {
+
+	private final TokenBucketThrottle ipThrottle;
+	private final TokenBucketThrottle faceIdThrottle;
+
+	/**
+	 * @param ipThrottle 按客户端 IP 限流；为空时不限
+	 * @param faceIdThrottle 按目标人脸限流；为空时不限
+	 */
+	public FaceIDLoginThrottle(TokenBucketThrottle ipThrottle, TokenBucketThrottle faceIdThrottle) {
+		this.ipThrottle = ipThrottle;
+		this.faceIdThrottle = faceIdThrottle;
+	}
+
+	/**
+	 * @param ip 客户端 IP
+	 * @param faceId 本次尝试针对的人脸标识，未提供时为空
+	 * @return 0 表示放行；否则为建议客户端等待的秒数（至少为1）
+	 */
+	public int tryAcquire(String ip, String faceId) {
+		long waitNanos = ipThrottle == null ? 0L : ipThrottle.tryAcquire(ip);
+		if (waitNanos == 0L && faceIdThrottle != null) {
+			waitNanos = faceIdThrottle.tryAcquire(faceId);
+		}
+		if (waitNanos == 0L) {
+			return 0;
+		}
+		return (int) Math.max(1L, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+	}
+
+	public TokenBucketThrottle getIpThrottle() {
+		return ipThrottle;
+	}
+
+	public TokenBucketThrottle getFaceIdThrottle() {
+		return faceIdThrottle;
+	}
+
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.throttle;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按键限流的令牌桶：每个键只保存一个 long（下一令牌的理论到达时间，GCRA 形式），取令牌为单次 CAS，不加锁。
+ * <p>
+ * 键按哈希分散到多个分段，每个分段容量固定；分段已满时只淘汰已回满的桶（与不存在等价），
+ * 仍在计数的桶从不淘汰，大量新键无法借此重置他人的桶。淘汰后仍无空间时，新键共用该分段的溢出桶（降级为整体限流），
+ * 海量不同键下内存保持恒定。
+ * @author 		： <a href="https://github.com/hiwepy">wandl</a>
+ */
+public class TokenBucketThrottle {
+
+	/**
+	 * 默认分段数
+	 */
+	public static final int DEFAULT_STRIPES = 64;
+
+	private final Segment[] segments;
+	private final int mask;
+	/**
+	 * 产生一个令牌的间隔（纳秒）
+	 */
+	private final long intervalNanos;
+	/**
+	 * 桶满时可连续通过的时间跨度：burst * intervalNanos
+	 */
+	private final long burstNanos;
+	private final LongAdder rejected = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	private final LongAdder overflows = new LongAdder();
+
+	public TokenBucketThrottle(double permitsPerSecond, int burst, int maxKeys) {
+		this(permitsPerSecond, burst, maxKeys, DEFAULT_STRIPES);
+	}
+
+	/**
+	 * @param permitsPerSecond 每个键每秒补充的令牌数
+	 * @param burst 桶容量，即空闲后允许的连续请求数
+	 * @param maxKeys 同时跟踪的最大键数
+	 * @param stripes 分段数，向上取整为2的幂
+	 */
+	public TokenBucketThrottle(double permitsPerSecond, int burst, int maxKeys, int stripes) {
+		if (permitsPerSecond <= 0 || burst < 1 || maxKeys < 1) {
+			throw new IllegalArgumentException("Throttle rate, burst and maxKeys must be positive.");
+		}
+		int n = 1;
+		while (n < stripes && n < maxKeys) {
+			n <<= 1;
+		}
+		this.segments = new Segment[n];
+		int capacity = Math.max(1, maxKeys / n);
+		for (int i = 0; i < n; i++) {
+			segments[i] = new Segment(capacity);
+		}
+		this.mask = n - 1;
+		this.intervalNanos = Math.max(1L, (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond));
+		this.burstNanos = intervalNanos * burst;
+	}
+
+	/**
+	 * 为指定键取一个令牌
+	 * @param key 限流键，为空时不限流
+	 * @return 0 表示放行；否则为需要等待的纳秒数
+	 */
+	public long tryAcquire(String key) {
+		if (key == null) {
+			return 0L;
+		}
+		long now = System.nanoTime();
+		AtomicLong bucket = segmentFor(key).bucket(key, now);
+		for (;;) {
+			long tat = bucket.get();
+			long base = tat - now > 0 ? tat : now;
+			long next = base + intervalNanos;
+			long excess = next - now - burstNanos;
+			if (excess > 0) {
+				rejected.increment();
+				return excess;
+			}
+			if (bucket.compareAndSet(tat, next)) {
+				return 0L;
+			}
+		}
+	}
+
+	private Segment segmentFor(String key) {
+		int h = key.hashCode();
+		return segments[(h ^ (h >>> 16)) & mask];
+	}
+
+	/**
+	 * 当前跟踪的键数
+	 */
+	public int size() {
+		int size = 0;
+		for (Segment segment : segments) {
+			size += segment.buckets.size();
+		}
+		return size;
+	}
+
+	public long getRejectedCount() {
+		return rejected.sum();
+	}
+
+	public long getEvictionCount() {
+		return evictions.sum();
+	}
+
+	/**
+	 * @return 分段已满、新键改用溢出桶的次数
+	 */
+	public long getOverflowCount() {
+		return overflows.sum();
+	}
+
+	private final class Segment {
+
+		private final ConcurrentHashMap<String, AtomicLong> buckets;
+		private final int capacity;
+		/**
+		 * 分段已满时新键共用的桶
+		 */
+		private final AtomicLong overflow = new AtomicLong(System.nanoTime());
+		private final AtomicBoolean evicting = new AtomicBoolean();
+		/**
+		 * 最早有桶回满的时间，此前扫描不会腾出空间
+		 */
+		private volatile long nextRefillNanos = System.nanoTime();
+
+		Segment(int capacity) {
+			this.capacity = capacity;
+			this.buckets = new ConcurrentHashMap<String, AtomicLong>(Math.min(capacity, 1024));
+		}
+
+		AtomicLong bucket(String key, long now) {
+			AtomicLong bucket = buckets.get(key);
+			if (bucket != null) {
+				return bucket;
+			}
+			if (buckets.size() >= capacity) {
+				evictRefilled(now);
+				if (buckets.size() >= capacity) {
+					overflows.increment();
+					return overflow;
+				}
+			}
+			// 新桶为满桶：理论到达时间即当前时间
+			return buckets.computeIfAbsent(key, k -> new AtomicLong(now));
+		}
+
+		/**
+		 * 淘汰已回满的桶，并记下剩余桶中最早回满的时间，在此之前不再扫描。
+		 * 同一时刻只有一个线程淘汰，其余线程直接插入或改用溢出桶，分段最多短暂超出容量
+		 */
+		private void evictRefilled(long now) {
+			if (now - nextRefillNanos < 0 || !evicting.compareAndSet(false, true)) {
+				return;
+			}
+			try {
+				// 任一桶都在 burstNanos 内回满
+				long next = now + burstNanos;
+				Iterator<Map.Entry<String, AtomicLong>> it = buckets.entrySet().iterator();
+				while (it.hasNext()) {
+					long tat = it.next().getValue().get();
+					if (tat - now <= 0) {
+						it.remove();
+						evictions.increment();
+					} else if (tat - next < 0) {
+						next = tat;
+					}
+				}
+				nextRefillNanos = next;
+			} finally {
+				evicting.set(false);
+			}
+		}
+
+	}
+
+}
@@ -16,6 +16,8 @@
 package org.apache.shiro.spring.boot.faceid.token;
 
 import org.apache.shiro.biz.authc.token.DefaultAuthenticationToken;
+import org.apache.shiro.spring.boot.faceid.FaceInfo;
+import org.apache.shiro.spring.boot.faceid.image.FaceImagePayload;
 
 /**
  * KISSO Login Token
@@ -24,5 +26,76 @@ import org.apache.shiro.biz.authc.token.DefaultAuthenticationToken;
 @SuppressWarnings("serial")
 public class FaceIDLoginToken extends DefaultAuthenticationToken {
 
-	
+	/**
+	 * 人脸的类型
+	 */
+	protected String faceType;
+	/**
+	 * 人脸图片的唯一标识
+	 */
+	protected String faceToken;
+	/**
+	 * 租户（部门）提示，用于缩小 1:N 检索范围
+	 */
+	protected String tenant;
+	/**
+	 * 人脸图片载荷（解码后的图片字节，池化缓冲区）
+	 */
+	protected transient FaceImagePayload payload;
+	/**
+	 * 人脸识别结果
+	 */
+	protected transient FaceInfo faceInfo;
+
+	public String getFaceType() {
+		return faceType;
+	}
+
+	public void setFaceType(String faceType) {
+		this.faceType = faceType;
+	}
+
+	public String getFaceToken() {
+		return faceToken;
+	}
+
+	public void setFaceToken(String faceToken) {
+		this.faceToken = faceToken;
+	}
+
+	public String getTenant() {
+		return tenant;
+	}
+
+	public void setTenant(String tenant) {
+		this.tenant = tenant;
+	}
+
+	public FaceImagePayload getPayload() {
+		return payload;
+	}
+
+	public void setPayload(FaceImagePayload payload) {
+		this.payload = payload;
+	}
+
+	public FaceInfo getFaceInfo() {
+		return faceInfo;
+	}
+
+	public void setFaceInfo(FaceInfo faceInfo) {
+		this.faceInfo = faceInfo;
+	}
+
+	/**
+	 * 释放令牌对图片载荷的引用，识别完成后归还图片缓冲区；重复调用无副作用
+	 */
+	public synchronized void releasePayload() {
+		FaceImagePayload released = this.payload;
+		this.payload = null;
+		if (released != null) {
+			released.close();
+		}
+	}
+
 }
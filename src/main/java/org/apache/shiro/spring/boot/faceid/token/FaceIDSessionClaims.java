@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.token;
+
+import java.util.Set;
+
+/**
+ * 人脸登录会话令牌的声明（JWT payload），字段名沿用 JWT 的简写以保持令牌紧凑
+ * @author 		： <a href="https://github.com/hiwepy">wandl</a>
+ */
+public class FaceIDSessionClaims {
+
+	/**
+	 * 用户ID
+	 */
+	private String sub;
+	/**
+	 * 用户唯一Key
+	 */
+	private String uky;
+	/**
+	 * 用户名
+	 */
+	private String name;
+	/**
+	 * 角色
+	 */
+	private Set<String> roles;
+	/**
+	 * 权限
+	 */
+	private Set<String> perms;
+	/**
+	 * 签发时间（秒）
+	 */
+	private long iat;
+	/**
+	 * 过期时间（秒）
+	 */
+	private long exp;
+
+	public String getSub() {
+		return sub;
+	}
+
+	public void setSub(String sub) {
+		this.sub = sub;
+	}
+
+	public String getUky() {
+		return uky;
+	}
+
+	public void setUky(String uky) {
+		this.uky = uky;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	public Set<String> getRoles() {
+		return roles;
+	}
+
+	public void setRoles(Set<String> roles) {
+		this.roles = roles;
+	}
+
+	public Set<String> getPerms() {
+		return perms;
+	}
+
+	public void setPerms(Set<String> perms) {
+		this.perms = perms;
+	}
+
+	public long getIat() {
+		return iat;
+	}
+
+	public void setIat(long iat) {
+		this.iat = iat;
+	}
+
+	public long getExp() {
+		return exp;
+	}
+
+	public void setExp(long exp) {
+		this.exp = exp;
+	}
+
+}
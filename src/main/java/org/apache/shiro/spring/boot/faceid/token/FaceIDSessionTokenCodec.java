@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.token;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.apache.shiro.biz.authz.principal.ShiroPrincipal;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.alibaba.fastjson.JSONObject;
+
+/**
+ * 人脸登录会话令牌的签发与校验：HS256 签名的紧凑 JWT（header.payload.signature）。
+ * <p>人脸识别成功后签发一次，之后的无状态请求只需校验签名（微秒级），不再调用人脸识别。</p>
+ * <ul>
+ * <li>每个密钥的 header 预先编码，校验时以 header 段直接定位密钥，无需解析 header JSON</li>
+ * <li>{@link Mac} 实例按线程、按密钥缓存，避免每次校验都查找算法提供者</li>
+ * <li>支持密钥轮换：使用当前密钥签发，当前及历史密钥均可校验</li>
+ * </ul>
+ * @author 		： <a href="https://github.com/hiwepy">wandl</a>
+ */
+public class FaceIDSessionTokenCodec {
+
+	private static final Logger LOG = LoggerFactory.getLogger(FaceIDSessionTokenCodec.class);
+	private static final String ALGORITHM = "HmacSHA256";
+	private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+	private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+	private final SigningKey signingKey;
+	private final Map<String, SigningKey> keysByHeader = new HashMap<String, SigningKey>();
+	private final long ttlSeconds;
+
+	/**
+	 * @param keyId 当前签发密钥的ID
+	 * @param secrets 密钥ID → 密钥字节，须包含 keyId；其余密钥仅用于校验轮换前签发的令牌
+	 * @param ttlMillis 令牌有效期
+	 */
+	public FaceIDSessionTokenCodec(String keyId, Map<String, byte[]> secrets, long ttlMillis) {
+		SigningKey current = null;
+		for (Map.Entry<String, byte[]> entry : secrets.entrySet()) {
+			SigningKey key = new SigningKey(entry.getKey(), entry.getValue());
+			keysByHeader.put(key.header, key);
+			if (entry.getKey().equals(keyId)) {
+				current = key;
+			}
+		}
+		if (current == null) {
+			throw new IllegalArgumentException("No secret configured for signing key '" + keyId + "'.");
+		}
+		this.signingKey = current;
+		this.ttlSeconds = TimeUnit.MILLISECONDS.toSeconds(ttlMillis);
+	}
+
+	/**
+	 * 为已认证的用户签发会话令牌
+	 * @param principal 认证成功的用户
+	 * @return 紧凑格式的令牌
+	 */
+	public String issue(ShiroPrincipal principal) {
+		long now = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+		FaceIDSessionClaims claims = new FaceIDSessionClaims();
+		claims.setSub(principal.getUserid());
+		claims.setUky(principal.getUserkey());
+		claims.setName(principal.getUsername());
+		claims.setRoles(principal.getRoles());
+		claims.setPerms(principal.getPerms());
+		claims.setIat(now);
+		claims.setExp(now + ttlSeconds);
+		String signingInput = signingKey.header + "." + ENCODER.encodeToString(JSONObject.toJSONBytes(claims));
+		return signingInput + "." + ENCODER.encodeToString(signingKey.sign(signingInput));
+	}
+
+	/**
+	 * 校验会话令牌的签名与有效期
+	 * @param token 令牌
+	 * @return 令牌中的用户信息；令牌无效或已过期时返回 null
+	 */
+	public ShiroPrincipal verify(String token) {
+		if (token == null) {
+			return null;
+		}
+		int first = token.indexOf('.');
+		int second = first < 0 ? -1 : token.indexOf('.', first + 1);
+		if (second < 0 || token.indexOf('.', second + 1) >= 0) {
+			return null;
+		}
+		SigningKey key = keysByHeader.get(token.substring(0, first));
+		if (key == null) {
+			return null;
+		}
+		try {
+			byte[] expected = key.sign(token.substring(0, second));
+			byte[] actual = DECODER.decode(token.substring(second + 1));
+			// 常量时间比较，避免通过响应时间推测签名
+			if (!MessageDigest.isEqual(expected, actual)) {
+				return null;
+			}
+			FaceIDSessionClaims claims = JSONObject.parseObject(DECODER.decode(token.substring(first + 1, second)),
+					FaceIDSessionClaims.class);
+			if (claims == null || claims.getExp() < TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis())) {
+				return null;
+			}
+			ShiroPrincipal principal = new ShiroPrincipal();
+			principal.setUserid(claims.getSub());
+			principal.setUserkey(claims.getUky());
+			principal.setUsername(claims.getName());
+			principal.setRoles(claims.getRoles());
+			principal.setPerms(claims.getPerms());
+			return principal;
+		} catch (RuntimeException e) {
+			LOG.debug("Malformed face session token.", e);
+			return null;
+		}
+	}
+
+	public long getTtlSeconds() {
+		return ttlSeconds;
+	}
+
+	private static final class SigningKey {
+
+		private final String header;
+		private final SecretKeySpec secret;
+		private final ThreadLocal<Mac> mac;
+
+		SigningKey(String keyId, byte[] secret) {
+			this.header = ENCODER.encodeToString(("{\"alg\":\"HS256\",\"typ\":\"JWT\",\"kid\":\"" + keyId + "\"}")
+					.getBytes(StandardCharsets.UTF_8));
+			this.secret = new SecretKeySpec(secret, ALGORITHM);
+			this.mac = ThreadLocal.withInitial(this::newMac);
+		}
+
+		private Mac newMac() {
+			try {
+				Mac instance = Mac.getInstance(ALGORITHM);
+				instance.init(secret);
+				return instance;
+			} catch (GeneralSecurityException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+
+		byte[] sign(String signingInput) {
+			// doFinal 会重置 Mac 状态，可直接复用
+			return mac.get().doFinal(signingInput.getBytes(StandardCharsets.US_ASCII));
+		}
+
+	}
+
+}
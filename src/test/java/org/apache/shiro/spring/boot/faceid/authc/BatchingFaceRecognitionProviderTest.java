@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.authc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.shiro.authc.AuthenticationToken;
+import org.apache.shiro.spring.boot.faceid.FaceInfo;
+import org.apache.shiro.spring.boot.faceid.exception.AuthenticationFaceIDNotFoundException;
+import org.apache.shiro.spring.boot.faceid.exception.AuthenticationOverloadException;
+import org.junit.jupiter.api.Test;
+
+public class BatchingFaceRecognitionProviderTest {
+
+	@Test
+	public void concurrentRequestsShareOneBatchAndGetTheirOwnResult() throws Exception {
+		List<Integer> batchSizes = new CopyOnWriteArrayList<Integer>();
+		BatchingFaceRecognitionProvider batching = new BatchingFaceRecognitionProvider(tokens -> {
+			batchSizes.add(tokens.size());
+			List<FaceInfo> results = new ArrayList<FaceInfo>();
+			for (AuthenticationToken token : tokens) {
+				results.add(faceInfo((String) token.getPrincipal()));
+			}
+			return results;
+		}, Runnable::run, 4, 1000L, 16);
+		try {
+			List<CompletableFuture<FaceInfo>> futures = new ArrayList<CompletableFuture<FaceInfo>>();
+			for (int i = 0; i < 4; i++) {
+				futures.add(batching.loadFaceInfoAsync(token("face-" + i)));
+			}
+			for (int i = 0; i < 4; i++) {
+				assertEquals("face-" + i, futures.get(i).get(1, TimeUnit.SECONDS).getFaceId());
+			}
+			// 凑满一批立即分发，不等待 maxWait
+			assertEquals(Arrays.asList(4), batchSizes);
+			assertEquals(1L, batching.getBatchCount());
+			assertEquals(4L, batching.getItemCount());
+			assertEquals(1d, batching.getFillRate());
+		} finally {
+			batching.close();
+		}
+	}
+
+	@Test
+	public void missingResultsFailOnlyTheirOwnRequests() throws Exception {
+		BatchingFaceRecognitionProvider batching = new BatchingFaceRecognitionProvider(
+				tokens -> Arrays.asList(faceInfo("face-0"), null), Runnable::run, 3, 1000L, 16);
+		try {
+			CompletableFuture<FaceInfo> matched = batching.loadFaceInfoAsync(token("face-0"));
+			CompletableFuture<FaceInfo> unmatched = batching.loadFaceInfoAsync(token("face-1"));
+			CompletableFuture<FaceInfo> missing = batching.loadFaceInfoAsync(token("face-2"));
+			assertEquals("face-0", matched.get(1, TimeUnit.SECONDS).getFaceId());
+			assertCause(AuthenticationFaceIDNotFoundException.class, unmatched);
+			assertCause(AuthenticationFaceIDNotFoundException.class, missing);
+		} finally {
+			batching.close();
+		}
+	}
+
+	@Test
+	public void failedBatchFailsEveryRequestInIt() throws Exception {
+		BatchingFaceRecognitionProvider batching = new BatchingFaceRecognitionProvider(tokens -> {
+			throw new IllegalStateException("backend down");
+		}, Runnable::run, 2, 1000L, 16);
+		try {
+			CompletableFuture<FaceInfo> first = batching.loadFaceInfoAsync(token("face-0"));
+			CompletableFuture<FaceInfo> second = batching.loadFaceInfoAsync(token("face-1"));
+			assertCause(IllegalStateException.class, first);
+			assertCause(IllegalStateException.class, second);
+		} finally {
+			batching.close();
+		}
+	}
+
+	@Test
+	public void fullQueueIsRejectedAsOverload() throws Exception {
+		CountDownLatch entered = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		// 同步执行的批次阻塞分发线程，后续请求只能留在队列中
+		BatchingFaceRecognitionProvider batching = new BatchingFaceRecognitionProvider(tokens -> {
+			entered.countDown();
+			await(release);
+			return Arrays.asList(faceInfo((String) tokens.get(0).getPrincipal()));
+		}, Runnable::run, 1, 0L, 1);
+		batching.setRetryAfterSeconds(2);
+		try {
+			CompletableFuture<FaceInfo> running = batching.loadFaceInfoAsync(token("face-0"));
+			assertTrue(entered.await(1, TimeUnit.SECONDS));
+			CompletableFuture<FaceInfo> queued = batching.loadFaceInfoAsync(token("face-1"));
+			CompletableFuture<FaceInfo> rejected = batching.loadFaceInfoAsync(token("face-2"));
+			AuthenticationOverloadException e = assertCause(AuthenticationOverloadException.class, rejected);
+			assertEquals(2, e.getRetryAfterSeconds());
+			assertEquals(1L, batching.getRejectedCount());
+
+			release.countDown();
+			assertEquals("face-0", running.get(1, TimeUnit.SECONDS).getFaceId());
+			assertEquals("face-1", queued.get(1, TimeUnit.SECONDS).getFaceId());
+		} finally {
+			release.countDown();
+			batching.close();
+		}
+	}
+
+	@Test
+	public void rejectedBatchIsAnOverload() throws Exception {
+		BatchingFaceRecognitionProvider batching = new BatchingFaceRecognitionProvider(tokens -> {
+			throw new AssertionError("batch must not run");
+		}, command -> {
+			throw new RejectedExecutionException("saturated");
+		}, 1, 0L, 16);
+		try {
+			AuthenticationOverloadException e = assertCause(AuthenticationOverloadException.class,
+					batching.loadFaceInfoAsync(token("face-0")));
+			assertTrue(e.getCause() instanceof RejectedExecutionException);
+			assertThrows(AuthenticationOverloadException.class, () -> batching.loadFaceInfo(token("face-1")));
+			assertEquals(2L, batching.getRejectedCount());
+		} finally {
+			batching.close();
+		}
+	}
+
+	private static <T extends Throwable> T assertCause(Class<T> type, CompletableFuture<FaceInfo> future) {
+		ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(1, TimeUnit.SECONDS));
+		assertTrue(type.isInstance(e.getCause()), String.valueOf(e.getCause()));
+		return type.cast(e.getCause());
+	}
+
+	private static FaceInfo faceInfo(String faceId) {
+		FaceInfo faceInfo = new FaceInfo();
+		faceInfo.setFaceId(faceId);
+		return faceInfo;
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static AuthenticationToken token(String principal) {
+		return new AuthenticationToken() {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public Object getPrincipal() {
+				return principal;
+			}
+
+			@Override
+			public Object getCredentials() {
+				return null;
+			}
+
+		};
+	}
+
+}
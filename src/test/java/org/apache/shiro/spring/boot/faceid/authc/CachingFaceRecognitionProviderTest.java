@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.authc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.shiro.authc.AuthenticationException;
+import org.apache.shiro.spring.boot.faceid.FaceInfo;
+import org.apache.shiro.spring.boot.faceid.image.FaceImagePayload;
+import org.apache.shiro.spring.boot.faceid.token.FaceIDLoginToken;
+import org.junit.jupiter.api.Test;
+
+public class CachingFaceRecognitionProviderTest {
+
+	private final AtomicInteger calls = new AtomicInteger();
+
+	/**
+	 * 只认识图片 alice，识别结果携带 faceToken t-alice
+	 */
+	private final FaceRecognitionProvider delegate = token -> {
+		calls.incrementAndGet();
+		FaceImagePayload payload = ((FaceIDLoginToken) token).getPayload();
+		if (payload == null || !"alice".equals(new String(payload.toByteArray(), StandardCharsets.UTF_8))) {
+			throw new AuthenticationException("No matching face.");
+		}
+		FaceInfo faceInfo = new FaceInfo();
+		faceInfo.setFaceId("alice");
+		faceInfo.setFaceToken("t-alice");
+		return faceInfo;
+	};
+
+	private final CachingFaceRecognitionProvider provider = new CachingFaceRecognitionProvider(delegate, 100, 60000);
+
+	@Test
+	public void sameImageIsServedFromCache() {
+		assertEquals("alice", provider.loadFaceInfo(token("alice", null, "10.0.0.1")).getFaceId());
+		assertEquals("alice", provider.loadFaceInfo(token("alice", null, "10.0.0.2")).getFaceId());
+		assertEquals(1, calls.get());
+		assertEquals(1, provider.getHitCount());
+	}
+
+	@Test
+	public void submittedImageMustMatchEvenWithKnownFaceToken() {
+		provider.loadFaceInfo(token("alice", null, "10.0.0.1"));
+		assertThrows(AuthenticationException.class, () -> provider.loadFaceInfo(token("mallory", "t-alice", "10.0.0.1")));
+		assertEquals(2, calls.get());
+	}
+
+	@Test
+	public void faceTokenWithoutImageIsBoundToTheClient() {
+		provider.loadFaceInfo(token("alice", null, "10.0.0.1"));
+		assertEquals("alice", provider.loadFaceInfo(token(null, "t-alice", "10.0.0.1")).getFaceId());
+		assertEquals(1, calls.get());
+		assertThrows(AuthenticationException.class, () -> provider.loadFaceInfo(token(null, "t-alice", "10.0.0.2")));
+		assertThrows(AuthenticationException.class, () -> provider.loadFaceInfo(token(null, "t-alice", null)));
+		assertEquals(3, calls.get());
+	}
+
+	@Test
+	public void failuresAreNotCached() {
+		assertThrows(AuthenticationException.class, () -> provider.loadFaceInfo(token("mallory", null, "10.0.0.1")));
+		assertThrows(AuthenticationException.class, () -> provider.loadFaceInfo(token("mallory", null, "10.0.0.1")));
+		assertEquals(2, calls.get());
+		assertEquals(0, provider.getSize());
+	}
+
+	@Test
+	public void invalidateAllDropsEveryEntry() {
+		provider.loadFaceInfo(token("alice", null, "10.0.0.1"));
+		provider.invalidateAll();
+		provider.loadFaceInfo(token("alice", null, "10.0.0.1"));
+		assertEquals(2, calls.get());
+	}
+
+	private static FaceIDLoginToken token(String image, String faceToken, String host) {
+		FaceIDLoginToken token = new FaceIDLoginToken();
+		token.setHost(host);
+		token.setFaceToken(faceToken);
+		if (image != null) {
+			token.setPayload(FaceImagePayload.wrap(image.getBytes(StandardCharsets.UTF_8), "image/jpeg"));
+		}
+		return token;
+	}
+
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.authc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.shiro.spring.boot.faceid.exception.AuthenticationFaceIDNotFoundException;
+import org.apache.shiro.spring.boot.faceid.exception.AuthenticationFaceNotFoundException;
+import org.apache.shiro.spring.boot.faceid.gallery.FaceGallery;
+import org.apache.shiro.spring.boot.faceid.gallery.FaceMatch;
+import org.apache.shiro.spring.boot.faceid.gallery.FaceMetric;
+import org.apache.shiro.spring.boot.faceid.gallery.FlatFaceGallery;
+import org.apache.shiro.spring.boot.faceid.token.FaceIDLoginToken;
+import org.junit.jupiter.api.Test;
+
+public class GalleryFaceRecognitionProviderTest {
+
+	@Test
+	public void matchAboveThresholdIsAccepted() {
+		FlatFaceGallery gallery = new FlatFaceGallery(4, FaceMetric.COSINE);
+		gallery.add("alice", new float[] { 1f, 0f, 0f, 0f });
+		GalleryFaceRecognitionProvider provider = new GalleryFaceRecognitionProvider(
+				token -> new float[] { 1f, 0.1f, 0f, 0f }, gallery, 0.6f);
+		assertEquals("alice", provider.loadFaceInfo(new FaceIDLoginToken()).getFaceId());
+
+		GalleryFaceRecognitionProvider stranger = new GalleryFaceRecognitionProvider(
+				token -> new float[] { 0f, 1f, 0f, 0f }, gallery, 0.6f);
+		assertThrows(AuthenticationFaceIDNotFoundException.class, () -> stranger.loadFaceInfo(new FaceIDLoginToken()));
+	}
+
+	@Test
+	public void nonFiniteFeatureIsRejectedBeforeSearch() {
+		FlatFaceGallery gallery = new FlatFaceGallery(4, FaceMetric.COSINE);
+		gallery.add("alice", new float[] { 1f, 0f, 0f, 0f });
+		for (float bad : new float[] { Float.NaN, Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY }) {
+			GalleryFaceRecognitionProvider provider = new GalleryFaceRecognitionProvider(
+					token -> new float[] { bad, 0f, 0f, 0f }, gallery, 0.6f);
+			assertThrows(AuthenticationFaceNotFoundException.class, () -> provider.loadFaceInfo(new FaceIDLoginToken()));
+		}
+	}
+
+	@Test
+	public void nanScoreNeverPassesTheThreshold() {
+		FaceGallery gallery = new FlatFaceGallery(4, FaceMetric.COSINE) {
+
+			@Override
+			public List<FaceMatch> search(float[] feature, int topK) {
+				return Collections.singletonList(new FaceMatch("alice", Float.NaN));
+			}
+
+		};
+		GalleryFaceRecognitionProvider provider = new GalleryFaceRecognitionProvider(
+				token -> new float[] { 1f, 0f, 0f, 0f }, gallery, 0.6f);
+		assertThrows(AuthenticationFaceIDNotFoundException.class, () -> provider.loadFaceInfo(new FaceIDLoginToken()));
+	}
+
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.authc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.shiro.authc.AuthenticationException;
+import org.apache.shiro.authc.AuthenticationToken;
+import org.apache.shiro.spring.boot.faceid.FaceInfo;
+import org.apache.shiro.spring.boot.faceid.exception.AuthenticationOverloadException;
+import org.junit.jupiter.api.Test;
+
+public class LimitingFaceRecognitionProviderTest {
+
+	@Test
+	public void limitGrowsOnSuccessAndShrinksOnBackendErrors() {
+		boolean[] failing = { false };
+		FaceRecognitionProvider delegate = token -> {
+			if (failing[0]) {
+				throw new IllegalStateException("backend down");
+			}
+			return new FaceInfo();
+		};
+		LimitingFaceRecognitionProvider limiting = new LimitingFaceRecognitionProvider(delegate, 1, 1, 4, null);
+		for (int i = 0; i < 20; i++) {
+			limiting.loadFaceInfo(token());
+		}
+		// 串行请求只占用一个许可，上限增长到并发的两倍后停止，不会虚增到最大值
+		assertEquals(2, limiting.currentLimit());
+
+		failing[0] = true;
+		for (int i = 0; i < 50; i++) {
+			assertThrows(IllegalStateException.class, () -> limiting.loadFaceInfo(token()));
+		}
+		assertEquals(1, limiting.currentLimit());
+		assertEquals(50L, limiting.getDropCount());
+		assertEquals(0, limiting.getInflight());
+	}
+
+	@Test
+	public void unmatchedFaceIsNotAnOverloadSignal() {
+		LimitingFaceRecognitionProvider limiting = new LimitingFaceRecognitionProvider(token -> {
+			throw new AuthenticationException("No matching face.");
+		}, 4, 1, 4, null);
+		for (int i = 0; i < 10; i++) {
+			assertThrows(AuthenticationException.class, () -> limiting.loadFaceInfo(token()));
+		}
+		assertEquals(4, limiting.currentLimit());
+		assertEquals(0L, limiting.getDropCount());
+	}
+
+	@Test
+	public void downstreamOverloadShrinksTheLimit() {
+		LimitingFaceRecognitionProvider limiting = new LimitingFaceRecognitionProvider(token -> {
+			throw new AuthenticationOverloadException("No face engine available.", 1);
+		}, 4, 1, 4, null);
+		for (int i = 0; i < 10; i++) {
+			assertThrows(AuthenticationOverloadException.class, () -> limiting.loadFaceInfo(token()));
+		}
+		assertEquals(1, limiting.currentLimit());
+		assertEquals(10L, limiting.getDropCount());
+	}
+
+	@Test
+	public void queuedRequestRunsWhenCapacityFrees() throws Exception {
+		List<CompletableFuture<FaceInfo>> calls = new CopyOnWriteArrayList<CompletableFuture<FaceInfo>>();
+		LimitingFaceRecognitionProvider limiting = new LimitingFaceRecognitionProvider(pending(calls), 1, 1, 1, null);
+		limiting.setMaxQueueSize(1);
+
+		CompletableFuture<FaceInfo> first = limiting.loadFaceInfoAsync(token());
+		CompletableFuture<FaceInfo> second = limiting.loadFaceInfoAsync(token());
+		CompletableFuture<FaceInfo> third = limiting.loadFaceInfoAsync(token());
+		assertEquals(1, calls.size());
+		assertEquals(1, limiting.getQueueSize());
+		ExecutionException rejected = assertThrows(ExecutionException.class, () -> third.get(1, TimeUnit.SECONDS));
+		assertTrue(rejected.getCause() instanceof AuthenticationOverloadException);
+		assertEquals(1L, limiting.getRejectedCount());
+
+		calls.get(0).complete(new FaceInfo());
+		assertTrue(first.isDone());
+		assertEquals(2, calls.size());
+		assertEquals(0, limiting.getQueueSize());
+		assertFalse(second.isDone());
+		calls.get(1).complete(new FaceInfo());
+		second.get(1, TimeUnit.SECONDS);
+		assertEquals(0, limiting.getInflight());
+	}
+
+	@Test
+	public void queuedRequestTimesOut() throws Exception {
+		List<CompletableFuture<FaceInfo>> calls = new CopyOnWriteArrayList<CompletableFuture<FaceInfo>>();
+		LimitingFaceRecognitionProvider limiting = new LimitingFaceRecognitionProvider(pending(calls), 1, 1, 1,
+				Executors.newSingleThreadScheduledExecutor());
+		limiting.setMaxWaitMillis(20L);
+		try {
+			limiting.loadFaceInfoAsync(token());
+			CompletableFuture<FaceInfo> waiting = limiting.loadFaceInfoAsync(token());
+			ExecutionException timedOut = assertThrows(ExecutionException.class, () -> waiting.get(1, TimeUnit.SECONDS));
+			assertTrue(timedOut.getCause() instanceof AuthenticationOverloadException);
+			assertEquals(0, limiting.getQueueSize());
+			assertEquals(1L, limiting.getRejectedCount());
+
+			// 超时的等待者不占用许可，释放后下一个请求可以立即执行
+			calls.get(0).complete(new FaceInfo());
+			assertEquals(0, limiting.getInflight());
+			limiting.loadFaceInfoAsync(token());
+			assertEquals(2, calls.size());
+		} finally {
+			limiting.close();
+		}
+	}
+
+	@Test
+	public void synchronousCallerIsRejectedAfterWaiting() {
+		List<CompletableFuture<FaceInfo>> calls = new CopyOnWriteArrayList<CompletableFuture<FaceInfo>>();
+		LimitingFaceRecognitionProvider limiting = new LimitingFaceRecognitionProvider(pending(calls), 1, 1, 1, null);
+		limiting.setMaxWaitMillis(20L);
+		limiting.loadFaceInfoAsync(token());
+		assertThrows(AuthenticationOverloadException.class, () -> limiting.loadFaceInfo(token()));
+		assertEquals(0, limiting.getQueueSize());
+	}
+
+	/**
+	 * 每次调用返回一个未完成的 future，由测试决定何时完成
+	 */
+	private static PendingProvider pending(List<CompletableFuture<FaceInfo>> calls) {
+		return new PendingProvider(calls);
+	}
+
+	private static AuthenticationToken token() {
+		return new AuthenticationToken() {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public Object getPrincipal() {
+				return null;
+			}
+
+			@Override
+			public Object getCredentials() {
+				return null;
+			}
+
+		};
+	}
+
+	private static final class PendingProvider implements FaceRecognitionProvider, AsyncFaceRecognitionProvider {
+
+		private final List<CompletableFuture<FaceInfo>> calls;
+
+		PendingProvider(List<CompletableFuture<FaceInfo>> calls) {
+			this.calls = calls;
+		}
+
+		@Override
+		public CompletableFuture<FaceInfo> loadFaceInfoAsync(AuthenticationToken token) {
+			CompletableFuture<FaceInfo> future = new CompletableFuture<FaceInfo>();
+			calls.add(future);
+			return future;
+		}
+
+		@Override
+		public FaceInfo loadFaceInfo(AuthenticationToken token) {
+			return loadFaceInfoAsync(token).join();
+		}
+
+	}
+
+}
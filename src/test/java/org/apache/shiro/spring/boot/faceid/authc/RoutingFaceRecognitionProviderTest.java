@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.authc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.shiro.authc.AuthenticationException;
+import org.apache.shiro.authc.AuthenticationToken;
+import org.apache.shiro.spring.boot.faceid.FaceInfo;
+import org.apache.shiro.spring.boot.faceid.exception.AuthenticationFaceIDNotFoundException;
+import org.apache.shiro.spring.boot.faceid.exception.AuthenticationOverloadException;
+import org.junit.jupiter.api.Test;
+
+public class RoutingFaceRecognitionProviderTest {
+
+	@Test
+	public void fastFailingBackendRanksBelowHealthyOne() {
+		AtomicInteger failingCalls = new AtomicInteger();
+		AsyncFaceRecognitionProvider failing = token -> {
+			failingCalls.incrementAndGet();
+			CompletableFuture<FaceInfo> future = new CompletableFuture<FaceInfo>();
+			future.completeExceptionally(new IllegalStateException("backend down"));
+			return future;
+		};
+		AsyncFaceRecognitionProvider healthy = token -> CompletableFuture.supplyAsync(() -> {
+			sleep(5);
+			FaceInfo faceInfo = new FaceInfo();
+			faceInfo.setFaceId("alice");
+			return faceInfo;
+		});
+		RoutingFaceRecognitionProvider.Backend failingBackend = new RoutingFaceRecognitionProvider.Backend("failing", failing, 0.2d);
+		RoutingFaceRecognitionProvider.Backend healthyBackend = new RoutingFaceRecognitionProvider.Backend("healthy", healthy, 0.2d);
+		RoutingFaceRecognitionProvider routing = new RoutingFaceRecognitionProvider(
+				Arrays.asList(failingBackend, healthyBackend), Executors.newSingleThreadScheduledExecutor());
+		routing.setHedgeEnabled(false);
+		try {
+			for (int i = 0; i < 5; i++) {
+				assertEquals("alice", routing.loadFaceInfo(token()).getFaceId());
+			}
+			int warmUpCalls = failingCalls.get();
+			for (int i = 0; i < 20; i++) {
+				assertEquals("alice", routing.loadFaceInfo(token()).getFaceId());
+			}
+			assertEquals(warmUpCalls, failingCalls.get());
+			// 失败调用不计入延迟
+			assertEquals(0d, failingBackend.getLatencyMillis());
+			assertTrue(failingBackend.getErrorRate() > 0.99d);
+		} finally {
+			routing.close();
+		}
+	}
+
+	@Test
+	public void overloadAndWrappedBackendErrorsFailOver() {
+		AtomicInteger healthyCalls = new AtomicInteger();
+		AsyncFaceRecognitionProvider overloaded = token -> failed(new AuthenticationOverloadException("busy", 2));
+		AsyncFaceRecognitionProvider wrapped = token -> failed(
+				new AuthenticationException("Face recognition failed.", new IllegalStateException("backend down")));
+		AsyncFaceRecognitionProvider healthy = token -> {
+			healthyCalls.incrementAndGet();
+			FaceInfo faceInfo = new FaceInfo();
+			faceInfo.setFaceId("alice");
+			return CompletableFuture.completedFuture(faceInfo);
+		};
+		RoutingFaceRecognitionProvider routing = new RoutingFaceRecognitionProvider(Arrays.asList(
+				new RoutingFaceRecognitionProvider.Backend("overloaded", overloaded, 0.2d),
+				new RoutingFaceRecognitionProvider.Backend("wrapped", wrapped, 0.2d),
+				new RoutingFaceRecognitionProvider.Backend("healthy", healthy, 0.2d)),
+				Executors.newSingleThreadScheduledExecutor());
+		routing.setHedgeEnabled(false);
+		try {
+			assertEquals("alice", routing.loadFaceInfo(token()).getFaceId());
+			assertEquals(1, healthyCalls.get());
+		} finally {
+			routing.close();
+		}
+	}
+
+	@Test
+	public void unmatchedFaceDoesNotFailOver() {
+		AtomicInteger secondCalls = new AtomicInteger();
+		AsyncFaceRecognitionProvider unmatched = token -> failed(new AuthenticationFaceIDNotFoundException("No matching face."));
+		AsyncFaceRecognitionProvider second = token -> {
+			secondCalls.incrementAndGet();
+			return CompletableFuture.completedFuture(new FaceInfo());
+		};
+		RoutingFaceRecognitionProvider routing = new RoutingFaceRecognitionProvider(Arrays.asList(
+				new RoutingFaceRecognitionProvider.Backend("unmatched", unmatched, 0.2d),
+				new RoutingFaceRecognitionProvider.Backend("second", second, 0.2d)),
+				Executors.newSingleThreadScheduledExecutor());
+		routing.setHedgeEnabled(false);
+		try {
+			assertThrows(AuthenticationFaceIDNotFoundException.class, () -> routing.loadFaceInfo(token()));
+			assertEquals(0, secondCalls.get());
+		} finally {
+			routing.close();
+		}
+	}
+
+	@Test
+	public void allBackendsOverloadedKeepsTheOverload() {
+		AsyncFaceRecognitionProvider overloaded = token -> failed(new AuthenticationOverloadException("busy", 2));
+		RoutingFaceRecognitionProvider routing = new RoutingFaceRecognitionProvider(Arrays.asList(
+				new RoutingFaceRecognitionProvider.Backend("first", overloaded, 0.2d),
+				new RoutingFaceRecognitionProvider.Backend("second", overloaded, 0.2d)),
+				Executors.newSingleThreadScheduledExecutor());
+		routing.setHedgeEnabled(false);
+		try {
+			AuthenticationOverloadException e = assertThrows(AuthenticationOverloadException.class,
+					() -> routing.loadFaceInfo(token()));
+			assertEquals(2, e.getRetryAfterSeconds());
+		} finally {
+			routing.close();
+		}
+	}
+
+	private static CompletableFuture<FaceInfo> failed(Throwable error) {
+		CompletableFuture<FaceInfo> future = new CompletableFuture<FaceInfo>();
+		future.completeExceptionally(error);
+		return future;
+	}
+
+	private static AuthenticationToken token() {
+		return new AuthenticationToken() {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public Object getPrincipal() {
+				return null;
+			}
+
+			@Override
+			public Object getCredentials() {
+				return null;
+			}
+
+		};
+	}
+
+	private static void sleep(long millis) {
+		try {
+			TimeUnit.MILLISECONDS.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
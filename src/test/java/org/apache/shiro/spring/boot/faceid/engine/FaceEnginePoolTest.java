@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.engine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.shiro.spring.boot.faceid.exception.AuthenticationOverloadException;
+import org.junit.jupiter.api.Test;
+
+public class FaceEnginePoolTest {
+
+	@Test
+	public void borrowTimeoutIsAnOverload() throws Exception {
+		FaceEnginePool<Object> pool = new FaceEnginePool<Object>(new FaceEngineFactory<Object>() {
+
+			@Override
+			public Object create() {
+				return new Object();
+			}
+
+			@Override
+			public void destroy(Object engine) {
+			}
+
+		}, 1, 20L);
+		pool.setWarmUp(false);
+		pool.setHealthCheckIntervalMillis(0);
+		pool.setRetryAfterSeconds(3);
+		pool.start();
+		CountDownLatch borrowed = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		Thread holder = new Thread(() -> pool.execute(engine -> {
+			borrowed.countDown();
+			return release.await(5, TimeUnit.SECONDS);
+		}));
+		holder.start();
+		try {
+			borrowed.await(5, TimeUnit.SECONDS);
+			AuthenticationOverloadException e = assertThrows(AuthenticationOverloadException.class,
+					() -> pool.execute(engine -> engine));
+			assertEquals(3, e.getRetryAfterSeconds());
+			assertEquals(1L, pool.getTimeoutCount());
+		} finally {
+			release.countDown();
+			holder.join();
+			pool.close();
+		}
+		assertEquals(0, pool.getActiveCount());
+	}
+
+}
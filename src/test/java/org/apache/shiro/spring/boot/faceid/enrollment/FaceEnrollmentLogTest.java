@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.enrollment;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class FaceEnrollmentLogTest {
+
+	@TempDir
+	File dir;
+
+	@Test
+	public void recordsSurviveReopen() throws IOException {
+		File file = new File(dir, "enrollment.wal");
+		try (FaceEnrollmentLog log = new FaceEnrollmentLog(file, 3, true)) {
+			log.appendEnroll("alice", new float[] { 1f, 2f, 3f });
+			log.appendEnroll("bob", new float[] { 4f, 5f, 6f });
+			log.appendRevoke("bob");
+		}
+		try (FaceEnrollmentLog log = new FaceEnrollmentLog(file, 3, true)) {
+			Map<String, float[]> replayed = replay(log);
+			assertEquals(3L, log.getRecords());
+			assertArrayEquals(new float[] { 1f, 2f, 3f }, replayed.get("alice"));
+			assertTrue(replayed.containsKey("bob"));
+			assertNull(replayed.get("bob"));
+		}
+	}
+
+	@Test
+	public void dimensionMismatchIsRejected() throws IOException {
+		File file = new File(dir, "enrollment.wal");
+		new FaceEnrollmentLog(file, 3, false).close();
+		assertThrows(IOException.class, () -> new FaceEnrollmentLog(file, 4, false));
+	}
+
+	@Test
+	public void tornTailIsTruncated() throws IOException {
+		File file = new File(dir, "enrollment.wal");
+		long intact;
+		try (FaceEnrollmentLog log = new FaceEnrollmentLog(file, 3, false)) {
+			log.appendEnroll("alice", new float[] { 1f, 2f, 3f });
+			intact = log.getSizeInBytes();
+			log.appendEnroll("bob", new float[] { 4f, 5f, 6f });
+		}
+		// 崩溃时最后一条记录只写了一半
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			raf.setLength(raf.length() - 5);
+		}
+		try (FaceEnrollmentLog log = new FaceEnrollmentLog(file, 3, false)) {
+			assertEquals(1, replay(log).size());
+			assertEquals(intact, log.getSizeInBytes());
+			// 截断后可以继续追加
+			log.appendEnroll("carol", new float[] { 7f, 8f, 9f });
+			assertEquals(2, replay(log).size());
+		}
+	}
+
+	@Test
+	public void corruptRecordFollowedByValidRecordsFailsReplay() throws IOException {
+		File file = new File(dir, "enrollment.wal");
+		try (FaceEnrollmentLog log = new FaceEnrollmentLog(file, 3, false)) {
+			log.appendEnroll("alice", new float[] { 1f, 2f, 3f });
+			log.appendEnroll("bob", new float[] { 4f, 5f, 6f });
+		}
+		long size = file.length();
+		// 翻转第一条记录特征中的一个字节
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			raf.seek(16 + 8 + 3 + 5);
+			int b = raf.read();
+			raf.seek(16 + 8 + 3 + 5);
+			raf.write(b ^ 0xFF);
+		}
+		try (FaceEnrollmentLog log = new FaceEnrollmentLog(file, 3, false)) {
+			assertThrows(IOException.class, () -> replay(log));
+		}
+		assertEquals(size, file.length());
+	}
+
+	@Test
+	public void compactionKeepsLatestLiveEnrollments() throws IOException {
+		File file = new File(dir, "enrollment.wal");
+		try (FaceEnrollmentLog log = new FaceEnrollmentLog(file, 2, false)) {
+			log.appendEnroll("alice", new float[] { 1f, 1f });
+			log.appendEnroll("bob", new float[] { 2f, 2f });
+			log.appendEnroll("alice", new float[] { 3f, 3f });
+			log.appendRevoke("bob");
+			log.appendEnroll("carol", new float[] { 4f, 4f });
+			assertEquals(2L, log.compact());
+			assertEquals(2L, log.getRecords());
+			log.appendEnroll("dave", new float[] { 5f, 5f });
+		}
+		assertFalse(new File(file.getPath() + ".compact").exists());
+		try (FaceEnrollmentLog log = new FaceEnrollmentLog(file, 2, false)) {
+			Map<String, float[]> replayed = replay(log);
+			assertEquals(3, replayed.size());
+			assertArrayEquals(new float[] { 3f, 3f }, replayed.get("alice"));
+			assertArrayEquals(new float[] { 4f, 4f }, replayed.get("carol"));
+			assertArrayEquals(new float[] { 5f, 5f }, replayed.get("dave"));
+		}
+	}
+
+	@Test
+	public void checkpointEmptiesTheLog() throws IOException {
+		File file = new File(dir, "enrollment.wal");
+		try (FaceEnrollmentLog log = new FaceEnrollmentLog(file, 2, false)) {
+			log.appendEnroll("alice", new float[] { 1f, 1f });
+			log.checkpoint();
+			assertEquals(0L, log.getRecords());
+			log.appendEnroll("bob", new float[] { 2f, 2f });
+		}
+		try (FaceEnrollmentLog log = new FaceEnrollmentLog(file, 2, false)) {
+			Map<String, float[]> replayed = replay(log);
+			assertEquals(1, replayed.size());
+			assertTrue(replayed.containsKey("bob"));
+		}
+	}
+
+	private static Map<String, float[]> replay(FaceEnrollmentLog log) throws IOException {
+		Map<String, float[]> replayed = new LinkedHashMap<String, float[]>();
+		log.replay(replayed::put);
+		return replayed;
+	}
+
+}
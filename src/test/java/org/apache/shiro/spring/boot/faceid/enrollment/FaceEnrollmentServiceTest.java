@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.enrollment;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+
+import org.apache.shiro.spring.boot.faceid.gallery.FaceMetric;
+import org.apache.shiro.spring.boot.faceid.gallery.FlatFaceGallery;
+import org.apache.shiro.spring.boot.faceid.gallery.MappedFaceTemplateStore;
+import org.apache.shiro.spring.boot.faceid.gallery.PersistentFaceGallery;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class FaceEnrollmentServiceTest {
+
+	@TempDir
+	File dir;
+
+	@Test
+	public void persistentGalleryIsNotReplayedAfterCleanShutdown() throws IOException {
+		FaceEnrollmentService service = open();
+		service.enroll("alice", new float[] { 1f, 0f });
+		service.enroll("bob", new float[] { 0f, 1f });
+		service.close();
+		store(service).close();
+
+		service = open();
+		try {
+			assertEquals(0, service.recover());
+			assertEquals(2, service.getGallery().size());
+			assertEquals(0L, service.getLog().getRecords());
+		} finally {
+			service.close();
+			store(service).close();
+		}
+	}
+
+	@Test
+	public void changesSinceLastCheckpointAreReplayedOnce() throws IOException {
+		FaceEnrollmentService service = open();
+		service.enroll("alice", new float[] { 1f, 0f });
+		service.checkpoint();
+		service.enroll("bob", new float[] { 0f, 1f });
+		// 模拟崩溃：日志未做检查点
+		service.getLog().close();
+		store(service).close();
+
+		service = open();
+		try {
+			assertEquals(1, service.recover());
+			assertEquals(0L, service.getLog().getRecords());
+			assertEquals(2, service.getGallery().size());
+			assertNotNull(store(service).get("bob"));
+		} finally {
+			service.close();
+			store(service).close();
+		}
+	}
+
+	@Test
+	public void inMemoryGalleryIsRebuiltFromTheLog() throws IOException {
+		File file = new File(dir, "enrollment.wal");
+		FaceEnrollmentService service = new FaceEnrollmentService(new FlatFaceGallery(2, FaceMetric.COSINE),
+				new FaceEnrollmentLog(file, 2, false));
+		service.enroll("alice", new float[] { 1f, 0f });
+		service.enroll("bob", new float[] { 0f, 1f });
+		service.revoke("bob");
+		service.close();
+
+		service = new FaceEnrollmentService(new FlatFaceGallery(2, FaceMetric.COSINE), new FaceEnrollmentLog(file, 2, false));
+		try {
+			assertEquals(1, service.recover());
+			assertEquals("alice", service.getGallery().search(new float[] { 1f, 0f }).getFaceId());
+			assertEquals(3L, service.getLog().getRecords());
+		} finally {
+			service.close();
+		}
+	}
+
+	private FaceEnrollmentService open() throws IOException {
+		MappedFaceTemplateStore store = new MappedFaceTemplateStore(new File(dir, "templates.dat"), 2, FaceMetric.COSINE,
+				MappedFaceTemplateStore.DEFAULT_MAX_FACE_ID_BYTES, 1024 * 1024, ForkJoinPool.commonPool());
+		PersistentFaceGallery gallery = new PersistentFaceGallery(store, new FlatFaceGallery(2, FaceMetric.COSINE));
+		return new FaceEnrollmentService(gallery, new FaceEnrollmentLog(new File(dir, "enrollment.wal"), 2, false));
+	}
+
+	private static MappedFaceTemplateStore store(FaceEnrollmentService service) {
+		return (MappedFaceTemplateStore) ((PersistentFaceGallery) service.getGallery()).getStore();
+	}
+
+}
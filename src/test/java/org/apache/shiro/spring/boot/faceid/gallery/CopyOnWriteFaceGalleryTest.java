@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.gallery;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+
+public class CopyOnWriteFaceGalleryTest {
+
+	private static final int DIMENSION = 8;
+
+	@Test
+	public void replaceAndRemoveAcrossBaseAndDelta() {
+		CopyOnWriteFaceGallery gallery = new CopyOnWriteFaceGallery(DIMENSION, FaceMetric.COSINE);
+		Map<String, float[]> base = new LinkedHashMap<String, float[]>();
+		base.put("alice", axis(0));
+		base.put("bob", axis(1));
+		gallery.addAll(base);
+		gallery.add("carol", axis(2));
+		assertEquals(3, gallery.size());
+
+		// 替换基础数组中的人脸：旧特征失效，新特征进入增量
+		gallery.add("alice", axis(3));
+		assertEquals(3, gallery.size());
+		assertEquals("alice", gallery.search(axis(3)).getFaceId());
+		// 失效的旧特征不再返回
+		assertEquals(3, gallery.search(axis(0), 10).size());
+
+		assertTrue(gallery.remove("bob"));
+		assertTrue(gallery.remove("carol"));
+		assertFalse(gallery.remove("carol"));
+		assertEquals(1, gallery.size());
+		assertEquals(Collections.singletonList("alice"), ids(gallery.search(axis(1), 10)));
+	}
+
+	@Test
+	public void mergesKeepResultsExact() {
+		Random random = new Random(17);
+		CopyOnWriteFaceGallery gallery = new CopyOnWriteFaceGallery(DIMENSION, FaceMetric.COSINE, ForkJoinPool.commonPool());
+		gallery.setMaxDelta(4);
+		gallery.setChunkSize(16);
+		Map<String, float[]> model = new LinkedHashMap<String, float[]>();
+		Map<String, float[]> initial = new LinkedHashMap<String, float[]>();
+		for (int i = 0; i < 50; i++) {
+			initial.put("face-" + i, feature(random));
+		}
+		gallery.addAll(initial);
+		model.putAll(initial);
+		for (int step = 0; step < 500; step++) {
+			String faceId = "face-" + random.nextInt(80);
+			if (random.nextInt(3) == 0) {
+				assertEquals(model.remove(faceId) != null, gallery.remove(faceId), faceId);
+			} else {
+				float[] feature = feature(random);
+				gallery.add(faceId, feature);
+				model.put(faceId, feature);
+			}
+			assertEquals(model.size(), gallery.size());
+			if (step % 25 == 0) {
+				float[] query = feature(random);
+				assertEquals(exact(model, query, 5), ids(gallery.search(query, 5)));
+			}
+		}
+		for (Map.Entry<String, float[]> entry : model.entrySet()) {
+			assertEquals(entry.getKey(), gallery.search(entry.getValue()).getFaceId());
+		}
+	}
+
+	@Test
+	public void addAllReplacesExistingFaces() {
+		CopyOnWriteFaceGallery gallery = new CopyOnWriteFaceGallery(DIMENSION, FaceMetric.COSINE);
+		gallery.add("alice", axis(0));
+		gallery.add("bob", axis(1));
+		Map<String, float[]> batch = new LinkedHashMap<String, float[]>();
+		batch.put("alice", axis(2));
+		batch.put("carol", axis(3));
+		gallery.addAll(batch);
+		assertEquals(3, gallery.size());
+		assertEquals("alice", gallery.search(axis(2)).getFaceId());
+		assertEquals("bob", gallery.search(axis(1)).getFaceId());
+		assertEquals(3, gallery.search(axis(0), 10).size());
+	}
+
+	private static List<String> exact(Map<String, float[]> model, float[] feature, int topK) {
+		final float[] query = FaceMetric.COSINE.prepare(feature);
+		List<Map.Entry<String, Float>> scored = new ArrayList<Map.Entry<String, Float>>();
+		for (Map.Entry<String, float[]> entry : model.entrySet()) {
+			float score = FaceMetric.COSINE.score(query, FaceMetric.COSINE.prepare(entry.getValue()), 0, DIMENSION);
+			scored.add(new AbstractMap.SimpleEntry<String, Float>(entry.getKey(), score));
+		}
+		scored.sort((a, b) -> Float.compare(b.getValue(), a.getValue()));
+		List<String> ids = new ArrayList<String>();
+		for (int i = 0; i < Math.min(topK, scored.size()); i++) {
+			ids.add(scored.get(i).getKey());
+		}
+		return ids;
+	}
+
+	private static List<String> ids(List<FaceMatch> matches) {
+		List<String> ids = new ArrayList<String>(matches.size());
+		for (FaceMatch match : matches) {
+			ids.add(match.getFaceId());
+		}
+		return ids;
+	}
+
+	private static float[] axis(int i) {
+		float[] feature = new float[DIMENSION];
+		feature[i] = 1f;
+		return feature;
+	}
+
+	private static float[] feature(Random random) {
+		float[] feature = new float[DIMENSION];
+		for (int i = 0; i < DIMENSION; i++) {
+			feature[i] = (float) random.nextGaussian();
+		}
+		return feature;
+	}
+
+}
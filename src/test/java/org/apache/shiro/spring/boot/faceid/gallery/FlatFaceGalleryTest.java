@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.gallery;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+
+public class FlatFaceGalleryTest {
+
+	private static final int DIMENSION = 16;
+
+	@Test
+	public void parallelScanMatchesExactSearch() {
+		for (FaceMetric metric : FaceMetric.values()) {
+			Random random = new Random(19);
+			FlatFaceGallery gallery = new FlatFaceGallery(DIMENSION, metric, 8, ForkJoinPool.commonPool());
+			// 小分块使检索走并行扫描与结果归并
+			gallery.setChunkSize(64);
+			float[][] features = new float[1000][];
+			for (int i = 0; i < features.length; i++) {
+				features[i] = feature(random);
+				gallery.add("face-" + i, features[i]);
+			}
+			for (int q = 0; q < 20; q++) {
+				float[] query = feature(random);
+				List<FaceMatch> matches = gallery.search(query, 10);
+				assertEquals(exact(metric, features, query, 10), ids(matches), metric.name());
+				for (int i = 1; i < matches.size(); i++) {
+					assertTrue(matches.get(i - 1).getScore() >= matches.get(i).getScore());
+				}
+			}
+		}
+	}
+
+	@Test
+	public void replaceAndRemove() {
+		FlatFaceGallery gallery = new FlatFaceGallery(DIMENSION, FaceMetric.COSINE);
+		assertNull(gallery.search(axis(0)));
+		gallery.add("alice", axis(0));
+		gallery.add("bob", axis(1));
+		gallery.add("alice", axis(2));
+		assertEquals(2, gallery.size());
+		assertEquals("alice", gallery.search(axis(2)).getFaceId());
+		assertEquals(2, gallery.search(axis(0), 10).size());
+		assertTrue(gallery.remove("alice"));
+		assertFalse(gallery.remove("alice"));
+		assertEquals(Collections.singletonList("bob"), ids(gallery.search(axis(2), 10)));
+	}
+
+	private static List<String> exact(FaceMetric metric, float[][] features, float[] feature, int topK) {
+		float[] query = metric.prepare(feature);
+		Integer[] order = new Integer[features.length];
+		final float[] scores = new float[features.length];
+		for (int i = 0; i < features.length; i++) {
+			order[i] = i;
+			scores[i] = metric.score(query, metric.prepare(features[i]), 0, DIMENSION);
+		}
+		Arrays.sort(order, (a, b) -> Float.compare(scores[b], scores[a]));
+		List<String> ids = new ArrayList<String>();
+		for (int i = 0; i < topK; i++) {
+			ids.add("face-" + order[i]);
+		}
+		return ids;
+	}
+
+	private static List<String> ids(List<FaceMatch> matches) {
+		List<String> ids = new ArrayList<String>(matches.size());
+		for (FaceMatch match : matches) {
+			ids.add(match.getFaceId());
+		}
+		return ids;
+	}
+
+	private static float[] axis(int i) {
+		float[] feature = new float[DIMENSION];
+		feature[i] = 1f;
+		return feature;
+	}
+
+	private static float[] feature(Random random) {
+		float[] feature = new float[DIMENSION];
+		for (int i = 0; i < DIMENSION; i++) {
+			feature[i] = (float) random.nextGaussian();
+		}
+		return feature;
+	}
+
+}
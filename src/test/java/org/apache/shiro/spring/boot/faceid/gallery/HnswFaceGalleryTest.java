@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.gallery;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+
+public class HnswFaceGalleryTest {
+
+	private static final int DIMENSION = 32;
+
+	@Test
+	public void recallAgainstExactSearch() {
+		Random random = new Random(7);
+		FlatFaceGallery exact = new FlatFaceGallery(DIMENSION, FaceMetric.COSINE, 16, ForkJoinPool.commonPool());
+		HnswFaceGallery approximate = new HnswFaceGallery(DIMENSION, FaceMetric.COSINE);
+		for (int i = 0; i < 3000; i++) {
+			float[] feature = randomFeature(random);
+			exact.add("face-" + i, feature);
+			approximate.add("face-" + i, feature);
+		}
+		List<float[]> queries = new ArrayList<float[]>();
+		for (int i = 0; i < 100; i++) {
+			queries.add(randomFeature(random));
+		}
+		FaceGalleryRecallReport report = FaceGalleryRecallReport.evaluate(exact, approximate, queries, 10);
+		assertTrue(report.getRecall() >= 0.9d, report.toString());
+		assertTrue(report.getTop1Agreement() >= 0.95d, report.toString());
+	}
+
+	@Test
+	public void deletedNodesNeverReturned() {
+		Random random = new Random(11);
+		HnswFaceGallery gallery = new HnswFaceGallery(DIMENSION, FaceMetric.COSINE);
+		float[][] features = new float[200][];
+		for (int i = 0; i < features.length; i++) {
+			features[i] = randomFeature(random);
+			gallery.add("face-" + i, features[i]);
+		}
+		for (int i = 0; i < features.length; i += 2) {
+			assertTrue(gallery.remove("face-" + i));
+		}
+		assertFalse(gallery.remove("face-0"));
+		assertEquals(100, gallery.size());
+		assertEquals(100, gallery.deletedCount());
+		for (int i = 0; i < features.length; i += 2) {
+			List<FaceMatch> matches = gallery.search(features[i], HnswFaceGallery.DEFAULT_EF_SEARCH);
+			assertEquals(HnswFaceGallery.DEFAULT_EF_SEARCH, matches.size());
+			for (FaceMatch match : matches) {
+				int id = Integer.parseInt(match.getFaceId().substring("face-".length()));
+				assertEquals(1, id % 2, "deleted face returned");
+			}
+		}
+	}
+
+	@Test
+	public void replacementsCompactTheGraph() {
+		Random random = new Random(13);
+		HnswFaceGallery gallery = new HnswFaceGallery(DIMENSION, FaceMetric.COSINE);
+		gallery.setMaxDeletedRatio(0.25d);
+		gallery.setCompactionExecutor(Runnable::run);
+		int faces = 2000;
+		for (int i = 0; i < faces; i++) {
+			gallery.add("face-" + i, randomFeature(random));
+		}
+		float[][] latest = new float[faces][];
+		for (int round = 0; round < 2; round++) {
+			for (int i = 0; i < faces; i++) {
+				latest[i] = randomFeature(random);
+				gallery.add("face-" + i, latest[i]);
+			}
+		}
+		assertEquals(faces, gallery.size());
+		assertTrue(gallery.deletedCount() <= Math.max(1024, faces / 4), "deleted=" + gallery.deletedCount());
+		gallery.compact();
+		assertEquals(0, gallery.deletedCount());
+		for (int i = 0; i < faces; i += 97) {
+			List<FaceMatch> matches = gallery.search(latest[i], 5);
+			assertEquals(5, matches.size());
+			assertEquals("face-" + i, matches.get(0).getFaceId());
+		}
+	}
+
+	@Test
+	public void compactionRunsOffTheWritePath() throws Exception {
+		Random random = new Random(17);
+		HnswFaceGallery gallery = new HnswFaceGallery(DIMENSION, FaceMetric.COSINE);
+		List<Runnable> scheduled = new ArrayList<Runnable>();
+		gallery.setCompactionExecutor(scheduled::add);
+		int faces = 2000;
+		float[][] latest = new float[faces][];
+		for (int i = 0; i < faces; i++) {
+			latest[i] = randomFeature(random);
+			gallery.add("face-" + i, latest[i]);
+		}
+		for (int i = 0; i < faces; i++) {
+			latest[i] = randomFeature(random);
+			gallery.add("face-" + i, latest[i]);
+		}
+		// 写入只提交重建任务，不在写锁内重建；重建进行中不会重复提交
+		assertEquals(1, scheduled.size());
+		assertEquals(faces, gallery.deletedCount());
+
+		Thread compaction = new Thread(scheduled.get(0));
+		compaction.start();
+		for (int i = 0; i < faces; i += 3) {
+			latest[i] = randomFeature(random);
+			gallery.add("face-" + i, latest[i]);
+		}
+		for (int i = 1; i < faces; i += 3) {
+			assertTrue(gallery.remove("face-" + i));
+			latest[i] = null;
+		}
+		compaction.join();
+
+		int live = 0;
+		for (float[] feature : latest) {
+			if (feature != null) {
+				live++;
+			}
+		}
+		assertEquals(live, gallery.size());
+		assertTrue(gallery.deletedCount() < faces, "deleted=" + gallery.deletedCount());
+		for (int i = 0; i < faces; i++) {
+			if (latest[i] == null) {
+				continue;
+			}
+			List<FaceMatch> matches = gallery.search(latest[i], 5);
+			assertEquals("face-" + i, matches.get(0).getFaceId());
+			for (FaceMatch match : matches) {
+				int id = Integer.parseInt(match.getFaceId().substring("face-".length()));
+				assertTrue(latest[id] != null, "removed face returned");
+			}
+		}
+	}
+
+	private static float[] randomFeature(Random random) {
+		float[] feature = new float[DIMENSION];
+		for (int i = 0; i < DIMENSION; i++) {
+			feature[i] = (float) random.nextGaussian();
+		}
+		return feature;
+	}
+
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.gallery;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class MappedFaceTemplateStoreTest {
+
+	private static final int DIMENSION = 8;
+
+	@TempDir
+	File dir;
+
+	@Test
+	public void recordsSurviveReopenAcrossSegments() throws IOException {
+		File file = new File(dir, "templates.dat");
+		Random random = new Random(23);
+		Map<String, float[]> expected = new HashMap<String, float[]>();
+		// 每个分段只容纳少量记录，写入跨越多个分段
+		try (MappedFaceTemplateStore store = open(file)) {
+			for (int i = 0; i < 100; i++) {
+				float[] feature = feature(random);
+				store.add("face-" + i, feature);
+				expected.put("face-" + i, feature);
+			}
+			float[] replaced = feature(random);
+			store.add("face-7", replaced);
+			expected.put("face-7", replaced);
+			assertTrue(store.remove("face-8"));
+			assertFalse(store.remove("face-8"));
+			expected.remove("face-8");
+		}
+		try (MappedFaceTemplateStore store = open(file)) {
+			assertEquals(expected.size(), store.size());
+			assertNull(store.get("face-8"));
+			for (Map.Entry<String, float[]> entry : expected.entrySet()) {
+				assertArrayEquals(entry.getValue(), store.get(entry.getKey()));
+			}
+			Map<String, float[]> visited = new HashMap<String, float[]>();
+			store.forEach(visited::put);
+			assertEquals(expected.keySet(), visited.keySet());
+			assertEquals("face-7", store.search(expected.get("face-7")).getFaceId());
+		}
+	}
+
+	@Test
+	public void searchMatchesFlatGallery() throws IOException {
+		Random random = new Random(29);
+		FlatFaceGallery flat = new FlatFaceGallery(DIMENSION, FaceMetric.COSINE);
+		try (MappedFaceTemplateStore store = open(new File(dir, "templates.dat"), FaceMetric.COSINE)) {
+			store.setChunkSize(16);
+			for (int i = 0; i < 300; i++) {
+				float[] feature = feature(random);
+				store.add("face-" + i, feature);
+				flat.add("face-" + i, feature);
+			}
+			for (int i = 0; i < 300; i += 3) {
+				store.remove("face-" + i);
+				flat.remove("face-" + i);
+			}
+			for (int q = 0; q < 20; q++) {
+				float[] query = feature(random);
+				assertEquals(ids(flat, query), ids(store, query));
+			}
+		}
+	}
+
+	@Test
+	public void duplicateLiveRecordsAreDroppedOnLoad() throws IOException {
+		File file = new File(dir, "templates.dat");
+		Random random = new Random(31);
+		float[] original = feature(random);
+		float[] replaced = feature(random);
+		try (MappedFaceTemplateStore store = open(file)) {
+			store.add("face-1", original);
+			store.add("face-2", feature(random));
+			store.add("face-1", replaced);
+		}
+		// 模拟替换时在作废旧记录之前崩溃：旧记录重新置为有效
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			raf.seek(64);
+			raf.write(new byte[] { 1, 0, 0, 0 });
+		}
+		try (MappedFaceTemplateStore store = open(file)) {
+			assertEquals(2, store.size());
+			assertArrayEquals(replaced, store.get("face-1"));
+			assertEquals(2, store.search(replaced, 5).size());
+			assertTrue(store.remove("face-1"));
+		}
+		try (MappedFaceTemplateStore store = open(file)) {
+			assertEquals(1, store.size());
+			assertNull(store.get("face-1"));
+			assertEquals("face-2", store.search(original).getFaceId());
+		}
+	}
+
+	@Test
+	public void mismatchedFilesAndIdsAreRejected() throws IOException {
+		File file = new File(dir, "templates.dat");
+		try (MappedFaceTemplateStore store = open(file)) {
+			char[] id = new char[MappedFaceTemplateStore.DEFAULT_MAX_FACE_ID_BYTES + 1];
+			Arrays.fill(id, 'x');
+			assertThrows(IllegalArgumentException.class, () -> store.add(new String(id), new float[DIMENSION]));
+			assertThrows(IllegalArgumentException.class, () -> store.add("short", new float[DIMENSION - 1]));
+		}
+		assertThrows(IOException.class, () -> new MappedFaceTemplateStore(file, DIMENSION + 1, FaceMetric.EUCLIDEAN));
+	}
+
+	private static MappedFaceTemplateStore open(File file) throws IOException {
+		return open(file, FaceMetric.EUCLIDEAN);
+	}
+
+	private static MappedFaceTemplateStore open(File file, FaceMetric metric) throws IOException {
+		return new MappedFaceTemplateStore(file, DIMENSION, metric, MappedFaceTemplateStore.DEFAULT_MAX_FACE_ID_BYTES,
+				1024, ForkJoinPool.commonPool());
+	}
+
+	private static String ids(FaceGallery gallery, float[] query) {
+		StringBuilder ids = new StringBuilder();
+		for (FaceMatch match : gallery.search(query, 5)) {
+			ids.append(match.getFaceId()).append(',');
+		}
+		return ids.toString();
+	}
+
+	private static float[] feature(Random random) {
+		float[] feature = new float[DIMENSION];
+		for (int i = 0; i < DIMENSION; i++) {
+			feature[i] = (float) random.nextGaussian();
+		}
+		return feature;
+	}
+
+}
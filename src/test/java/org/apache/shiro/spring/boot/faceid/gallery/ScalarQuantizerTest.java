@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.gallery;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class ScalarQuantizerTest {
+
+	private static final int DIMENSION = 512;
+
+	@Test
+	public void calibratedRangeKeepsCosineScoresClose() {
+		Random random = new Random(3);
+		List<float[]> samples = new ArrayList<float[]>();
+		for (int i = 0; i < 500; i++) {
+			samples.add(FaceMetric.COSINE.prepare(randomFeature(random)));
+		}
+		ScalarQuantizer calibrated = ScalarQuantizer.train(samples, DIMENSION, FaceMetric.COSINE);
+		ScalarQuantizer unitRange = new ScalarQuantizer(DIMENSION, FaceMetric.COSINE, 1f);
+		float calibratedError = maxError(calibrated, samples, random);
+		float unitRangeError = maxError(unitRange, samples, random);
+		assertTrue(calibratedError < 0.01f, "calibrated error " + calibratedError);
+		assertTrue(calibratedError * 3 < unitRangeError, "calibrated " + calibratedError + ", unit " + unitRangeError);
+	}
+
+	private static float maxError(ScalarQuantizer quantizer, List<float[]> templates, Random random) {
+		byte[] codes = new byte[DIMENSION];
+		float error = 0f;
+		for (int q = 0; q < 20; q++) {
+			float[] query = FaceMetric.COSINE.prepare(randomFeature(random));
+			FaceQuantizer.Scorer scorer = quantizer.scorer(query);
+			for (float[] template : templates) {
+				quantizer.encode(template, codes, 0);
+				float exact = FaceMetric.COSINE.score(query, template, 0, DIMENSION);
+				error = Math.max(error, Math.abs(exact - scorer.score(codes, 0)));
+			}
+		}
+		return error;
+	}
+
+	private static float[] randomFeature(Random random) {
+		float[] feature = new float[DIMENSION];
+		for (int i = 0; i < DIMENSION; i++) {
+			feature[i] = (float) random.nextGaussian();
+		}
+		return feature;
+	}
+
+}
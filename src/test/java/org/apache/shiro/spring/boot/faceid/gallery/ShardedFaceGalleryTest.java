@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.gallery;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+
+public class ShardedFaceGalleryTest {
+
+	private static final int DIMENSION = 16;
+
+	@Test
+	public void hashShardsMergeToTheSameResultAsOneGallery() {
+		Random random = new Random(37);
+		FlatFaceGallery flat = new FlatFaceGallery(DIMENSION, FaceMetric.COSINE);
+		ShardedFaceGallery sharded = new ShardedFaceGallery(DIMENSION, FaceGalleryPartition.HASH, 4, null,
+				key -> new FlatFaceGallery(DIMENSION, FaceMetric.COSINE), ForkJoinPool.commonPool());
+		Map<String, float[]> features = new LinkedHashMap<String, float[]>();
+		for (int i = 0; i < 400; i++) {
+			features.put("face-" + i, feature(random));
+		}
+		flat.addAll(features);
+		sharded.addAll(features);
+		for (int i = 0; i < 400; i += 5) {
+			assertTrue(flat.remove("face-" + i));
+			assertTrue(sharded.remove("face-" + i));
+		}
+		assertFalse(sharded.remove("face-0"));
+		assertEquals(4, sharded.getShardCount());
+		assertEquals(flat.size(), sharded.size());
+		for (int q = 0; q < 30; q++) {
+			float[] query = feature(random);
+			assertEquals(ids(flat.search(query, 10)), ids(sharded.search(query, 10)));
+		}
+	}
+
+	@Test
+	public void tenantHintSearchesOnlyThatTenantsShard() {
+		Random random = new Random(41);
+		List<String> created = new CopyOnWriteArrayList<String>();
+		ShardedFaceGallery sharded = new ShardedFaceGallery(DIMENSION, FaceGalleryPartition.TENANT, 0, null, key -> {
+			created.add(key);
+			return new FlatFaceGallery(DIMENSION, FaceMetric.COSINE);
+		}, ForkJoinPool.commonPool());
+		assertEquals(0, sharded.getShardCount());
+		float[] bob = feature(random);
+		sharded.add("dept01:alice", feature(random));
+		sharded.add("dept01:carol", feature(random));
+		sharded.add("dept02:bob", bob);
+		sharded.add("dave", feature(random));
+		assertEquals(Arrays.asList("dept01", "dept02", ShardedFaceGallery.DEFAULT_TENANT), created);
+
+		// 不带租户提示时检索全部分片
+		assertEquals("dept02:bob", sharded.search(bob, 4).get(0).getFaceId());
+		assertEquals(4, sharded.search(bob, 4).size());
+		List<FaceMatch> dept01 = sharded.search(bob, 4, "dept01");
+		assertEquals(Arrays.asList("dept01:alice", "dept01:carol"), sorted(ids(dept01)));
+		assertEquals(Arrays.asList("dave"), ids(sharded.search(bob, 4, ShardedFaceGallery.DEFAULT_TENANT)));
+		assertTrue(sharded.search(bob, 4, "dept03").isEmpty());
+		assertEquals(3, sharded.getShardCount());
+	}
+
+	@Test
+	public void tenantHintIsIgnoredByHashShards() {
+		Random random = new Random(43);
+		ShardedFaceGallery sharded = new ShardedFaceGallery(DIMENSION, FaceGalleryPartition.HASH, 3, null,
+				key -> new FlatFaceGallery(DIMENSION, FaceMetric.COSINE), ForkJoinPool.commonPool());
+		float[] alice = feature(random);
+		sharded.add("dept01:alice", alice);
+		sharded.add("dept02:bob", feature(random));
+		assertEquals("dept01:alice", sharded.search(alice, 1, "dept02").get(0).getFaceId());
+	}
+
+	@Test
+	public void mergeKeepsTheBestTopK() {
+		List<FaceMatch> left = Arrays.asList(new FaceMatch("a", 0.9f), new FaceMatch("c", 0.5f), new FaceMatch("e", 0.1f));
+		List<FaceMatch> right = Arrays.asList(new FaceMatch("b", 0.7f), new FaceMatch("d", 0.3f));
+		assertEquals(Arrays.asList("a", "b", "c", "d"), ids(ShardedFaceGallery.merge(left, right, 4)));
+		assertEquals(Arrays.asList("b", "d"), ids(ShardedFaceGallery.merge(Collections.<FaceMatch>emptyList(), right, 4)));
+		assertEquals(Arrays.asList("a", "b", "c", "d", "e"), ids(ShardedFaceGallery.merge(left, right, 10)));
+	}
+
+	private static List<String> ids(List<FaceMatch> matches) {
+		List<String> ids = new ArrayList<String>(matches.size());
+		for (FaceMatch match : matches) {
+			ids.add(match.getFaceId());
+		}
+		return ids;
+	}
+
+	private static List<String> sorted(List<String> ids) {
+		Collections.sort(ids);
+		return ids;
+	}
+
+	private static float[] feature(Random random) {
+		float[] feature = new float[DIMENSION];
+		for (int i = 0; i < DIMENSION; i++) {
+			feature[i] = (float) random.nextGaussian();
+		}
+		return feature;
+	}
+
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.gallery;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class TopKTest {
+
+	@Test
+	public void keepsHighestScoresInDescendingOrder() {
+		Random random = new Random(3);
+		float[] scores = new float[1000];
+		TopK topK = new TopK(10);
+		for (int slot = 0; slot < scores.length; slot++) {
+			scores[slot] = random.nextFloat();
+			topK.offer(slot, scores[slot]);
+		}
+		float[] sorted = scores.clone();
+		Arrays.sort(sorted);
+		assertEquals(10, topK.size());
+		for (int i = 0; i < topK.size(); i++) {
+			assertEquals(sorted[sorted.length - 1 - i], topK.score(i));
+			assertEquals(scores[topK.slot(i)], topK.score(i));
+		}
+	}
+
+	@Test
+	public void mergeEqualsSingleCollector() {
+		Random random = new Random(5);
+		TopK all = new TopK(5);
+		TopK left = new TopK(5);
+		TopK right = new TopK(5);
+		for (int slot = 0; slot < 200; slot++) {
+			float score = (float) random.nextGaussian();
+			all.offer(slot, score);
+			(slot < 100 ? left : right).offer(slot, score);
+		}
+		left.merge(right);
+		assertEquals(all.size(), left.size());
+		for (int i = 0; i < all.size(); i++) {
+			assertEquals(all.slot(i), left.slot(i));
+		}
+	}
+
+	@Test
+	public void nanScoresAreDropped() {
+		TopK topK = new TopK(2);
+		topK.offer(0, Float.NaN);
+		topK.offer(1, 0.1f);
+		topK.offer(2, Float.NaN);
+		assertEquals(1, topK.size());
+		assertEquals(1, topK.slot(0));
+	}
+
+	@Test
+	public void fewerCandidatesThanK() {
+		TopK topK = new TopK(4);
+		topK.offer(7, 0.5f);
+		topK.offer(3, 0.9f);
+		assertEquals(2, topK.size());
+		assertEquals(3, topK.slot(0));
+		assertEquals(7, topK.slot(1));
+		assertEquals(Float.NEGATIVE_INFINITY, topK.threshold());
+	}
+
+}
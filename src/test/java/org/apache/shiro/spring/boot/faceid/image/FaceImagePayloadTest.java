@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.image;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class FaceImagePayloadTest {
+
+	private static final int MAX_BYTES = 1 << 20;
+
+	private final FaceImageBufferPool pool = new FaceImageBufferPool();
+
+	@Test
+	public void decodesEveryLengthAndAlphabet() throws IOException {
+		Random random = new Random(31);
+		for (int length = 0; length < 300; length++) {
+			byte[] image = new byte[length];
+			random.nextBytes(image);
+			assertDecodes(image, Base64.getEncoder().encodeToString(image));
+			assertDecodes(image, Base64.getEncoder().withoutPadding().encodeToString(image));
+			assertDecodes(image, Base64.getUrlEncoder().encodeToString(image));
+			assertDecodes(image, Base64.getMimeEncoder().encodeToString(image));
+			assertDecodes(image, "data:image/jpeg;base64," + Base64.getEncoder().encodeToString(image));
+		}
+	}
+
+	@Test
+	public void chunkedDecodingMatchesWholeInput() throws IOException {
+		Random random = new Random(37);
+		byte[] image = new byte[5000];
+		random.nextBytes(image);
+		byte[] text = ("data:image/png;base64," + Base64.getMimeEncoder().encodeToString(image))
+				.getBytes(StandardCharsets.US_ASCII);
+		for (int trial = 0; trial < 20; trial++) {
+			// 首个分段须包含完整的 data: 前缀
+			int offset = 0;
+			try (FaceImagePayload.Base64PayloadDecoder decoder = FaceImagePayload.newBase64Decoder(-1, MAX_BYTES, pool)) {
+				while (offset < text.length) {
+					int size = offset == 0 ? 40 : 1 + random.nextInt(100);
+					int end = Math.min(text.length, offset + size);
+					decoder.write(ByteBuffer.wrap(text, offset, end - offset));
+					offset = end;
+				}
+				try (FaceImagePayload payload = decoder.toPayload()) {
+					assertArrayEquals(image, payload.toByteArray());
+				}
+			}
+		}
+	}
+
+	@Test
+	public void streamDecodingMatchesWholeInput() throws IOException {
+		byte[] image = new byte[20000];
+		new Random(41).nextBytes(image);
+		byte[] text = Base64.getEncoder().encode(image);
+		try (FaceImagePayload payload = FaceImagePayload.decode(new ByteArrayInputStream(text), text.length, MAX_BYTES, pool)) {
+			assertArrayEquals(image, payload.toByteArray());
+			assertEquals(Base64.getEncoder().encodeToString(image), payload.toBase64());
+		}
+	}
+
+	@Test
+	public void invalidOrOversizedInputIsRejected() {
+		assertThrows(IOException.class, () -> FaceImagePayload.decode("abc$def=", MAX_BYTES, pool));
+		String large = Base64.getEncoder().encodeToString(new byte[2048]);
+		assertThrows(IOException.class, () -> FaceImagePayload.decode(large, 1024, pool));
+		assertThrows(IOException.class,
+				() -> FaceImagePayload.decode(new ByteArrayInputStream(large.getBytes(StandardCharsets.US_ASCII)), -1, 1024, pool));
+	}
+
+	@Test
+	public void retainedPayloadIsReleasedByLastClose() throws IOException {
+		FaceImagePayload payload = FaceImagePayload.decode(Base64.getEncoder().encodeToString(new byte[] { 1, 2, 3 }),
+				MAX_BYTES, pool);
+		FaceImagePayload retained = payload.retain();
+		payload.close();
+		assertFalse(retained.isReleased());
+		assertArrayEquals(new byte[] { 1, 2, 3 }, retained.toByteArray());
+		retained.close();
+		assertTrue(payload.isReleased());
+		assertThrows(IllegalStateException.class, payload::retain);
+	}
+
+	private void assertDecodes(byte[] expected, String base64) throws IOException {
+		try (FaceImagePayload payload = FaceImagePayload.decode(base64, MAX_BYTES, pool)) {
+			assertEquals(expected.length, payload.length());
+			assertArrayEquals(expected, payload.toByteArray(), base64);
+		}
+	}
+
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.image;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.Test;
+
+public class FaceImagePreprocessorTest {
+
+	@Test
+	public void readsOrientationInBothByteOrders() throws IOException {
+		byte[] plain = jpeg(stored(40, 20));
+		assertEquals(1, FaceImagePreprocessor.readOrientation(new ByteArrayInputStream(plain)));
+		assertEquals(6, FaceImagePreprocessor.readOrientation(new ByteArrayInputStream(withOrientation(plain, 6, false))));
+		assertEquals(8, FaceImagePreprocessor.readOrientation(new ByteArrayInputStream(withOrientation(plain, 8, true))));
+		assertEquals(1, FaceImagePreprocessor.readOrientation(new ByteArrayInputStream(new byte[] { 1, 2, 3 })));
+	}
+
+	@Test
+	public void uprightImageIsReturnedAsIs() throws IOException {
+		FaceImagePayload payload = FaceImagePayload.wrap(jpeg(stored(200, 100)), "image/jpeg");
+		assertSame(payload, new FaceImagePreprocessor(new FaceImageBufferPool()).process(payload));
+	}
+
+	@Test
+	public void rotatedImageIsTurnedUprightBeforeEncoding() throws IOException {
+		// 存储为横图，左半红、右半蓝；方向 6 表示显示时顺时针旋转 90°，红色应在上方
+		byte[] image = withOrientation(jpeg(stored(200, 100)), 6, false);
+		FaceImagePayload processed = new FaceImagePreprocessor(new FaceImageBufferPool())
+				.process(FaceImagePayload.wrap(image, "image/jpeg"));
+		BufferedImage output = ImageIO.read(processed.asInputStream());
+		assertEquals(100, output.getWidth());
+		assertEquals(200, output.getHeight());
+		assertTrue(isRed(output.getRGB(50, 20)));
+		assertTrue(isBlue(output.getRGB(50, 180)));
+		assertEquals(1, FaceImagePreprocessor.readOrientation(processed.asInputStream()));
+	}
+
+	@Test
+	public void faceIsDetectedOnTheUprightImage() throws IOException {
+		byte[] image = withOrientation(jpeg(stored(800, 400)), 6, false);
+		FaceImagePreprocessor preprocessor = new FaceImagePreprocessor(new FaceImageBufferPool());
+		preprocessor.setMargin(0f);
+		// 检测器看到的是竖图，人脸位于上半部分（存储图的左半红色区域）
+		preprocessor.setDetector(analysis -> {
+			assertTrue(analysis.getHeight() > analysis.getWidth());
+			return Collections.singletonList(new Rectangle(0, 0, analysis.getWidth(), analysis.getHeight() / 2));
+		});
+		preprocessor.setTargetSize(100);
+		BufferedImage output = ImageIO.read(preprocessor.process(FaceImagePayload.wrap(image, "image/jpeg")).asInputStream());
+		assertEquals(100, output.getWidth());
+		assertEquals(100, output.getHeight());
+		assertTrue(isRed(output.getRGB(50, 50)));
+	}
+
+	/**
+	 * 左半红色、右半蓝色
+	 */
+	private static BufferedImage stored(int width, int height) {
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+		Graphics2D g = image.createGraphics();
+		g.setColor(Color.RED);
+		g.fillRect(0, 0, width / 2, height);
+		g.setColor(Color.BLUE);
+		g.fillRect(width / 2, 0, width - width / 2, height);
+		g.dispose();
+		return image;
+	}
+
+	private static byte[] jpeg(BufferedImage image) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ImageIO.write(image, "jpeg", out);
+		return out.toByteArray();
+	}
+
+	/**
+	 * 在 SOI 之后插入只含 Orientation 标记的 EXIF APP1 段
+	 */
+	private static byte[] withOrientation(byte[] jpeg, int orientation, boolean littleEndian) {
+		ByteArrayOutputStream tiff = new ByteArrayOutputStream();
+		tiff.write(littleEndian ? 'I' : 'M');
+		tiff.write(littleEndian ? 'I' : 'M');
+		writeShort(tiff, 42, littleEndian);
+		writeInt(tiff, 8, littleEndian);
+		writeShort(tiff, 1, littleEndian);
+		writeShort(tiff, 0x0112, littleEndian);
+		writeShort(tiff, 3, littleEndian);
+		writeInt(tiff, 1, littleEndian);
+		writeShort(tiff, orientation, littleEndian);
+		writeShort(tiff, 0, littleEndian);
+		writeInt(tiff, 0, littleEndian);
+		byte[] body = tiff.toByteArray();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.write(jpeg, 0, 2);
+		out.write(0xFF);
+		out.write(0xE1);
+		writeShort(out, 2 + 6 + body.length, false);
+		out.write(new byte[] { 'E', 'x', 'i', 'f', 0, 0 }, 0, 6);
+		out.write(body, 0, body.length);
+		out.write(jpeg, 2, jpeg.length - 2);
+		return out.toByteArray();
+	}
+
+	private static void writeShort(ByteArrayOutputStream out, int value, boolean littleEndian) {
+		if (littleEndian) {
+			out.write(value & 0xFF);
+			out.write(value >> 8 & 0xFF);
+		} else {
+			out.write(value >> 8 & 0xFF);
+			out.write(value & 0xFF);
+		}
+	}
+
+	private static void writeInt(ByteArrayOutputStream out, int value, boolean littleEndian) {
+		if (littleEndian) {
+			writeShort(out, value & 0xFFFF, true);
+			writeShort(out, value >>> 16, true);
+		} else {
+			writeShort(out, value >>> 16, false);
+			writeShort(out, value & 0xFFFF, false);
+		}
+	}
+
+	private static boolean isRed(int rgb) {
+		return (rgb >> 16 & 0xFF) > 200 && (rgb & 0xFF) < 60;
+	}
+
+	private static boolean isBlue(int rgb) {
+		return (rgb & 0xFF) > 200 && (rgb >> 16 & 0xFF) < 60;
+	}
+
+}
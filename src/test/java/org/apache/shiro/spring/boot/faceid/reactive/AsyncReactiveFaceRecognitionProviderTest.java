@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.reactive;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.shiro.spring.boot.faceid.FaceInfo;
+import org.apache.shiro.spring.boot.faceid.image.FaceImagePayload;
+import org.apache.shiro.spring.boot.faceid.token.FaceIDLoginToken;
+import org.junit.jupiter.api.Test;
+
+public class AsyncReactiveFaceRecognitionProviderTest {
+
+	@Test
+	public void timeoutKeepsSwappedPayloadUntilRecognitionEnds() {
+		FaceImagePayload original = FaceImagePayload.wrap("original".getBytes(StandardCharsets.UTF_8), "image/jpeg");
+		FaceImagePayload processed = FaceImagePayload.wrap("processed".getBytes(StandardCharsets.UTF_8), "image/jpeg");
+		CompletableFuture<FaceInfo> recognition = new CompletableFuture<FaceInfo>();
+		// 与预处理一致：释放原图并换上处理后的图片，识别仍在进行
+		AsyncReactiveFaceRecognitionProvider provider = new AsyncReactiveFaceRecognitionProvider(token -> {
+			FaceIDLoginToken faceToken = (FaceIDLoginToken) token;
+			faceToken.releasePayload();
+			faceToken.setPayload(processed);
+			return recognition;
+		});
+		FaceIDLoginToken token = new FaceIDLoginToken();
+		token.setPayload(original);
+
+		Throwable error = assertThrows(RuntimeException.class,
+				() -> provider.loadFaceInfo(token).timeout(Duration.ofMillis(20)).block());
+		assertTrue(error.getCause() instanceof TimeoutException, error.toString());
+		assertTrue(original.isReleased());
+		assertFalse(processed.isReleased());
+
+		recognition.complete(new FaceInfo());
+		assertTrue(processed.isReleased());
+		assertNull(token.getPayload());
+	}
+
+	@Test
+	public void payloadIsReleasedWhenSubmissionFails() {
+		FaceImagePayload payload = FaceImagePayload.wrap(new byte[] { 1, 2, 3 }, "image/jpeg");
+		AsyncReactiveFaceRecognitionProvider provider = new AsyncReactiveFaceRecognitionProvider(token -> {
+			throw new RejectedExecutionException("saturated");
+		});
+		FaceIDLoginToken token = new FaceIDLoginToken();
+		token.setPayload(payload);
+		assertThrows(RejectedExecutionException.class, () -> provider.loadFaceInfo(token).block());
+		assertTrue(payload.isReleased());
+	}
+
+	@Test
+	public void emptyResultCompletesEmpty() {
+		AsyncReactiveFaceRecognitionProvider provider = new AsyncReactiveFaceRecognitionProvider(
+				token -> CompletableFuture.completedFuture(null));
+		assertNull(provider.loadFaceInfo(new FaceIDLoginToken()).block());
+	}
+
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.realm;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.apache.shiro.authz.AuthorizationInfo;
+import org.apache.shiro.authz.SimpleAuthorizationInfo;
+import org.apache.shiro.biz.authz.principal.ShiroPrincipal;
+import org.apache.shiro.cache.Cache;
+import org.apache.shiro.cache.CacheManager;
+import org.apache.shiro.subject.PrincipalCollection;
+import org.apache.shiro.subject.SimplePrincipalCollection;
+import org.junit.jupiter.api.Test;
+
+public class FaceIDStatefulAuthorizingRealmTest {
+
+	@Test
+	public void authorizationIsCachedByUserid() {
+		CountingRealm realm = new CountingRealm();
+		realm.authorizationInfo(principals("u1"));
+		realm.authorizationInfo(principals("u1"));
+		// 不同的身份集合实例，只要用户ID相同即命中缓存
+		realm.authorizationInfo(principals("u1"));
+		assertEquals(1, realm.loads.get());
+		assertEquals("u1", realm.getAuthorizationCacheKey(principals("u1")));
+		assertEquals("alice", realm.getAuthorizationCacheKey(new SimplePrincipalCollection("alice", "faceid")));
+
+		realm.authorizationInfo(principals("u2"));
+		assertEquals(2, realm.loads.get());
+		assertEquals(2, ((FaceIDAuthorizationCache<?, ?>) realm.getAuthorizationCache()).size());
+	}
+
+	@Test
+	public void invalidationEvictsLocallyAndOnOtherNodes() {
+		InMemoryBus bus = new InMemoryBus();
+		CountingRealm local = new CountingRealm();
+		CountingRealm remote = new CountingRealm();
+		local.setInvalidationBus(bus);
+		remote.setInvalidationBus(bus);
+		for (CountingRealm realm : new CountingRealm[] { local, remote }) {
+			realm.authorizationInfo(principals("u1"));
+			realm.authorizationInfo(principals("u2"));
+		}
+
+		local.invalidateAuthorization("u1");
+		// 收到消息的节点只移除本地缓存，不再转发
+		assertEquals(Collections.singletonList("u1"), bus.published);
+		for (CountingRealm realm : new CountingRealm[] { local, remote }) {
+			assertNull(realm.getAuthorizationCache().get("u1"));
+			realm.authorizationInfo(principals("u2"));
+			assertEquals(2, realm.loads.get());
+			realm.authorizationInfo(principals("u1"));
+			assertEquals(3, realm.loads.get());
+		}
+
+		remote.invalidateAllAuthorization();
+		assertEquals(AuthorizationInvalidationBus.ALL, bus.published.get(1));
+		assertEquals(0, ((FaceIDAuthorizationCache<?, ?>) local.getAuthorizationCache()).size());
+		assertEquals(0, ((FaceIDAuthorizationCache<?, ?>) remote.getAuthorizationCache()).size());
+	}
+
+	@Test
+	public void cacheManagerReplacesTheDefaultCache() {
+		FaceIDAuthorizationCache<Object, AuthorizationInfo> managed = new FaceIDAuthorizationCache<Object, AuthorizationInfo>();
+		CountingRealm realm = new CountingRealm();
+		realm.setCacheManager(new CacheManager() {
+
+			@SuppressWarnings("unchecked")
+			@Override
+			public <K, V> Cache<K, V> getCache(String name) {
+				return (Cache<K, V>) managed;
+			}
+
+		});
+		assertSame(managed, realm.getAuthorizationCache());
+		realm.authorizationInfo(principals("u1"));
+		realm.invalidateAuthorization("u1");
+		assertEquals(0, managed.size());
+		assertEquals(1L, managed.getMissCount());
+	}
+
+	private static PrincipalCollection principals(String userid) {
+		ShiroPrincipal principal = new ShiroPrincipal();
+		principal.setUserid(userid);
+		principal.setUsername("user-" + userid);
+		return new SimplePrincipalCollection(principal, "faceid");
+	}
+
+	private static final class CountingRealm extends FaceIDStatefulAuthorizingRealm {
+
+		private final AtomicInteger loads = new AtomicInteger();
+
+		@Override
+		protected AuthorizationInfo doGetAuthorizationInfo(PrincipalCollection principals) {
+			loads.incrementAndGet();
+			return new SimpleAuthorizationInfo(Collections.singleton("role"));
+		}
+
+		AuthorizationInfo authorizationInfo(PrincipalCollection principals) {
+			return getAuthorizationInfo(principals);
+		}
+
+	}
+
+	private static final class InMemoryBus implements AuthorizationInvalidationBus {
+
+		private final List<String> published = new ArrayList<String>();
+		private final List<Consumer<String>> listeners = new ArrayList<Consumer<String>>();
+
+		@Override
+		public void publish(String key) {
+			published.add(key);
+			for (Consumer<String> listener : listeners) {
+				listener.accept(key);
+			}
+		}
+
+		@Override
+		public void subscribe(Consumer<String> listener) {
+			listeners.add(listener);
+		}
+
+	}
+
+}
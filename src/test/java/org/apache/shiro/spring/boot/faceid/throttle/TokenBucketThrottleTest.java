@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.throttle;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+public class TokenBucketThrottleTest {
+
+	@Test
+	public void burstIsAllowedThenRejected() {
+		TokenBucketThrottle throttle = new TokenBucketThrottle(1d, 3, 100);
+		for (int i = 0; i < 3; i++) {
+			assertEquals(0L, throttle.tryAcquire("10.0.0.1"));
+		}
+		assertTrue(throttle.tryAcquire("10.0.0.1") > 0L);
+		assertEquals(1L, throttle.getRejectedCount());
+		// 其它键不受影响，空键不限流
+		assertEquals(0L, throttle.tryAcquire("10.0.0.2"));
+		assertEquals(0L, throttle.tryAcquire(null));
+	}
+
+	@Test
+	public void tokensAreRefilledOverTime() throws InterruptedException {
+		TokenBucketThrottle throttle = new TokenBucketThrottle(50d, 1, 100);
+		assertEquals(0L, throttle.tryAcquire("10.0.0.1"));
+		long wait = throttle.tryAcquire("10.0.0.1");
+		assertTrue(wait > 0L && wait <= TimeUnit.MILLISECONDS.toNanos(20));
+		TimeUnit.NANOSECONDS.sleep(wait + TimeUnit.MILLISECONDS.toNanos(5));
+		assertEquals(0L, throttle.tryAcquire("10.0.0.1"));
+	}
+
+	@Test
+	public void floodOfNewKeysDoesNotResetActiveBucket() {
+		TokenBucketThrottle throttle = new TokenBucketThrottle(0.01d, 2, 16, 1);
+		throttle.tryAcquire("victim");
+		throttle.tryAcquire("victim");
+		assertTrue(throttle.tryAcquire("victim") > 0L);
+		for (int i = 0; i < 1000; i++) {
+			throttle.tryAcquire("attacker-" + i);
+		}
+		assertTrue(throttle.tryAcquire("victim") > 0L);
+		assertEquals(16, throttle.size());
+		assertEquals(0L, throttle.getEvictionCount());
+	}
+
+	@Test
+	public void newKeysShareOverflowBucketWhenFull() {
+		TokenBucketThrottle throttle = new TokenBucketThrottle(0.01d, 2, 1, 1);
+		assertEquals(0L, throttle.tryAcquire("a"));
+		assertEquals(0L, throttle.tryAcquire("b"));
+		assertEquals(0L, throttle.tryAcquire("c"));
+		// 溢出桶由新键共用，容量耗尽后一律拒绝
+		assertTrue(throttle.tryAcquire("d") > 0L);
+		assertEquals(3L, throttle.getOverflowCount());
+		assertEquals(1, throttle.size());
+	}
+
+	@Test
+	public void refilledBucketsAreEvictedToMakeRoom() throws InterruptedException {
+		TokenBucketThrottle throttle = new TokenBucketThrottle(100d, 1, 1, 1);
+		assertEquals(0L, throttle.tryAcquire("a"));
+		TimeUnit.MILLISECONDS.sleep(30);
+		assertEquals(0L, throttle.tryAcquire("b"));
+		assertEquals(1L, throttle.getEvictionCount());
+		assertEquals(0L, throttle.getOverflowCount());
+	}
+
+}
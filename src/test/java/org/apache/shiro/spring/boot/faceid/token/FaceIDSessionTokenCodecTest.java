@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2018, hiwepy (https://github.com/hiwepy).
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.apache.shiro.spring.boot.faceid.token;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.shiro.biz.authz.principal.ShiroPrincipal;
+import org.junit.jupiter.api.Test;
+
+public class FaceIDSessionTokenCodecTest {
+
+	private static final long TTL = 60000L;
+
+	@Test
+	public void issuedTokenVerifies() {
+		FaceIDSessionTokenCodec codec = new FaceIDSessionTokenCodec("k1", secrets("k1"), TTL);
+		ShiroPrincipal principal = codec.verify(codec.issue(principal()));
+		assertNotNull(principal);
+		assertEquals("u-1", principal.getUserid());
+		assertEquals("alice", principal.getUsername());
+		assertEquals(Collections.singleton("admin"), principal.getRoles());
+		assertEquals(60L, codec.getTtlSeconds());
+	}
+
+	@Test
+	public void tamperedTokensAreRejected() {
+		FaceIDSessionTokenCodec codec = new FaceIDSessionTokenCodec("k1", secrets("k1"), TTL);
+		String token = codec.issue(principal());
+		String[] parts = token.split("\\.");
+		String other = codec.issue(principal()).split("\\.")[1];
+		// 替换载荷、截断签名、篡改签名、多余的段
+		assertNull(codec.verify(parts[0] + "." + other + "." + parts[2]));
+		assertNull(codec.verify(parts[0] + "." + parts[1] + "." + parts[2].substring(1)));
+		assertNull(codec.verify(parts[0] + "." + parts[1] + "." + flip(parts[2])));
+		assertNull(codec.verify(token + ".x"));
+		assertNull(codec.verify(parts[0] + "." + parts[1]));
+		assertNull(codec.verify("not a token"));
+		assertNull(codec.verify(null));
+	}
+
+	@Test
+	public void tokenSignedWithAnotherSecretIsRejected() {
+		FaceIDSessionTokenCodec issuer = new FaceIDSessionTokenCodec("k1", secrets("k1"), TTL);
+		Map<String, byte[]> forged = new LinkedHashMap<String, byte[]>();
+		forged.put("k1", "another-secret-of-sufficient-length".getBytes(StandardCharsets.UTF_8));
+		FaceIDSessionTokenCodec verifier = new FaceIDSessionTokenCodec("k1", forged, TTL);
+		assertNull(verifier.verify(issuer.issue(principal())));
+	}
+
+	@Test
+	public void expiredTokenIsRejected() {
+		// 负的有效期：签发即过期
+		FaceIDSessionTokenCodec codec = new FaceIDSessionTokenCodec("k1", secrets("k1"), -2000L);
+		assertNull(codec.verify(codec.issue(principal())));
+	}
+
+	@Test
+	public void rotationKeepsVerifyingOldTokens() {
+		FaceIDSessionTokenCodec before = new FaceIDSessionTokenCodec("k1", secrets("k1"), TTL);
+		String oldToken = before.issue(principal());
+		FaceIDSessionTokenCodec after = new FaceIDSessionTokenCodec("k2", secrets("k1", "k2"), TTL);
+		String newToken = after.issue(principal());
+		assertNotNull(after.verify(oldToken));
+		assertNotNull(after.verify(newToken));
+		// 旧密钥下线后，用它签发的令牌失效
+		FaceIDSessionTokenCodec retired = new FaceIDSessionTokenCodec("k2", secrets("k2"), TTL);
+		assertNull(retired.verify(oldToken));
+		assertNotNull(retired.verify(newToken));
+		assertNull(before.verify(newToken));
+	}
+
+	@Test
+	public void signingKeyMustHaveASecret() {
+		assertThrows(IllegalArgumentException.class, () -> new FaceIDSessionTokenCodec("k3", secrets("k1"), TTL));
+	}
+
+	private static Map<String, byte[]> secrets(String... keyIds) {
+		Map<String, byte[]> secrets = new LinkedHashMap<String, byte[]>();
+		for (String keyId : keyIds) {
+			secrets.put(keyId, ("secret-of-sufficient-length-" + keyId).getBytes(StandardCharsets.UTF_8));
+		}
+		return secrets;
+	}
+
+	private static ShiroPrincipal principal() {
+		ShiroPrincipal principal = new ShiroPrincipal();
+		principal.setUserid("u-1");
+		principal.setUserkey("alice");
+		principal.setUsername("alice");
+		principal.setRoles(Collections.singleton("admin"));
+		principal.setPerms(Collections.singleton("user:read"));
+		return principal;
+	}
+
+	private static String flip(String segment) {
+		char[] chars = segment.toCharArray();
+		chars[0] = chars[0] == 'A' ? 'B' : 'A';
+		return new String(chars);
+	}
+
+}